@@ -21,10 +21,12 @@ import com.intellij.psi.PsiElement;
 import com.intellij.psi.stubs.*;
 import com.intellij.util.io.StringRef;
 import com.perl5.lang.htmlmason.HTMLMasonLanguage;
+import com.perl5.lang.htmlmason.MasonCoreUtil;
 import com.perl5.lang.htmlmason.parser.psi.HTMLMasonFlagsStatement;
 import com.perl5.lang.htmlmason.parser.psi.impl.HTMLMasonFlagsStatementImpl;
 import com.perl5.lang.htmlmason.parser.stubs.HTMLMasonFlagsStatementStub;
 import com.perl5.lang.htmlmason.parser.stubs.HTMLMasonFlagsStubIndex;
+import com.perl5.lang.htmlmason.parser.stubs.HTMLMasonParentNameStubIndex;
 import com.perl5.lang.htmlmason.parser.stubs.impl.HTMLMasonFlagsStatementStubImpl;
 import com.perl5.lang.perl.parser.elementTypes.PsiElementProvider;
 import org.jetbrains.annotations.NonNls;
@@ -52,7 +54,15 @@ public class HTMLMasonFlagsStatementElementType extends IStubElementType<HTMLMas
 
   @Override
   public @NotNull HTMLMasonFlagsStatementStub createStub(@NotNull HTMLMasonFlagsStatement psi, StubElement parentStub) {
-    return new HTMLMasonFlagsStatementStubImpl(parentStub, this, psi.getParentComponentPath());
+    String parentComponentPath = psi.getParentComponentPath();
+    String parentComponentKey = null;
+
+    //noinspection StringEquality
+    if (parentComponentPath != null && parentComponentPath != HTMLMasonFlagsStatement.UNDEF_RESULT) {
+      parentComponentKey = HTMLMasonParentNameStubIndex.getParentKey(
+        MasonCoreUtil.getContainingVirtualFile(psi.getContainingFile()), parentComponentPath);
+    }
+    return new HTMLMasonFlagsStatementStubImpl(parentStub, this, parentComponentPath, parentComponentKey);
   }
 
   @Override
@@ -71,15 +81,18 @@ public class HTMLMasonFlagsStatementElementType extends IStubElementType<HTMLMas
     }
     dataStream.writeBoolean(true);
     dataStream.writeName(parentComponentPath);
+    dataStream.writeName(stub.getParentComponentKey());
   }
 
   @Override
   public @NotNull HTMLMasonFlagsStatementStub deserialize(@NotNull StubInputStream dataStream, StubElement parentStub) throws IOException {
     if (!dataStream.readBoolean()) {
-      return new HTMLMasonFlagsStatementStubImpl(parentStub, this, HTMLMasonFlagsStatement.UNDEF_RESULT);
+      return new HTMLMasonFlagsStatementStubImpl(parentStub, this, HTMLMasonFlagsStatement.UNDEF_RESULT, null);
     }
     StringRef nameRef = dataStream.readName();
-    return new HTMLMasonFlagsStatementStubImpl(parentStub, this, nameRef == null ? null : nameRef.toString());
+    StringRef keyRef = dataStream.readName();
+    return new HTMLMasonFlagsStatementStubImpl(
+      parentStub, this, nameRef == null ? null : nameRef.toString(), keyRef == null ? null : keyRef.toString());
   }
 
   @Override
@@ -90,5 +103,9 @@ public class HTMLMasonFlagsStatementElementType extends IStubElementType<HTMLMas
     if (parentComponentPath != null && parentComponentPath != HTMLMasonFlagsStatement.UNDEF_RESULT) {
       sink.occurrence(HTMLMasonFlagsStubIndex.KEY, parentComponentPath);
     }
+    String parentComponentKey = stub.getParentComponentKey();
+    if (parentComponentKey != null) {
+      sink.occurrence(HTMLMasonParentNameStubIndex.KEY, parentComponentKey);
+    }
   }
 }
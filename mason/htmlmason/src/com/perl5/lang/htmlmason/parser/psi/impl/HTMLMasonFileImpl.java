@@ -22,7 +22,9 @@ import com.intellij.openapi.vfs.VfsUtil;
 import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.psi.*;
 import com.intellij.psi.scope.PsiScopeProcessor;
+import com.intellij.psi.search.FileTypeIndex;
 import com.intellij.psi.search.GlobalSearchScope;
+import com.intellij.psi.search.GlobalSearchScopesCore;
 import com.intellij.psi.stubs.StubElement;
 import com.intellij.psi.stubs.StubIndex;
 import com.intellij.psi.util.CachedValueProvider;
@@ -32,9 +34,10 @@ import com.intellij.util.Processor;
 import com.perl5.lang.htmlmason.HTMLMasonLanguage;
 import com.perl5.lang.htmlmason.HTMLMasonUtil;
 import com.perl5.lang.htmlmason.MasonCoreUtil;
+import com.perl5.lang.htmlmason.filetypes.HTMLMasonFileType;
 import com.perl5.lang.htmlmason.idea.configuration.HTMLMasonSettings;
 import com.perl5.lang.htmlmason.parser.psi.*;
-import com.perl5.lang.htmlmason.parser.stubs.HTMLMasonFlagsStubIndex;
+import com.perl5.lang.htmlmason.parser.stubs.HTMLMasonParentNameStubIndex;
 import com.perl5.lang.perl.psi.PerlCompositeElement;
 import com.perl5.lang.perl.psi.PerlVariableDeclarationElement;
 import com.perl5.lang.perl.psi.impl.PerlFileImpl;
@@ -46,6 +49,7 @@ import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -178,40 +182,32 @@ public class HTMLMasonFileImpl extends PerlFileImpl implements HTMLMasonFile {
     final List<HTMLMasonFileImpl> result = new ArrayList<>();
     VirtualFile containingFile = getComponentVirtualFile();
 
-    if (containingFile != null) {
-      VirtualFile componentRoot = getComponentRoot();
-
-      if (componentRoot != null) {
-        final String relativePath = VfsUtil.VFS_SEPARATOR_CHAR + VfsUtil.getRelativePath(containingFile, componentRoot);
-        final Project project = getProject();
-        final GlobalSearchScope scope = GlobalSearchScope.allScope(project);
-        final HTMLMasonFileImpl currentFile = this;
-        HTMLMasonSettings settings = HTMLMasonSettings.getInstance(project);
-
-        // indexed children
-        for (String parentPath : StubIndex.getInstance().getAllKeys(HTMLMasonFlagsStubIndex.KEY, project)) {
-          boolean isEquals = StringUtil.equals(relativePath, parentPath);
-          boolean isRelative = parentPath.length() == 0 || parentPath.charAt(0) != VfsUtil.VFS_SEPARATOR_CHAR;
-
-          for (HTMLMasonFlagsStatement statement : StubIndex.getElements(
-            HTMLMasonFlagsStubIndex.KEY,
-            parentPath,
-            project,
-            scope,
-            HTMLMasonFlagsStatement.class
-          )) {
-            PsiFile file = statement.getContainingFile();
-            if (file instanceof HTMLMasonFileImpl) {
-              if (isEquals || isRelative && currentFile.equals(((HTMLMasonFileImpl)file).getParentComponent())) {
-                result.add((HTMLMasonFileImpl)file);
-              }
-            }
-          }
+    if (containingFile != null && getComponentRoot() != null) {
+      final Project project = getProject();
+      final PsiManager manager = PsiManager.getInstance(project);
+      HTMLMasonSettings settings = HTMLMasonSettings.getInstance(project);
+
+      // explicitly inheriting children, indexed by resolved relative or by absolute path of the inherited component
+      for (String parentKey : Arrays.asList(containingFile.getPath(), getAbsoluteComponentPath())) {
+        for (HTMLMasonFlagsStatement statement : StubIndex.getElements(
+          HTMLMasonParentNameStubIndex.KEY,
+          parentKey,
+          project,
+          GlobalSearchScope.allScope(project),
+          HTMLMasonFlagsStatement.class
+        )) {
+          addIfChild(statement.getContainingFile(), result);
         }
+      }
 
-        // implicit auto-handled children
-        if (StringUtil.equals(containingFile.getName(), settings.autoHandlerName)) {
-          collectAutoHandledFiles(PsiManager.getInstance(project), containingFile.getParent(), result, settings.autoHandlerName, null);
+      // implicit auto-handled children
+      if (StringUtil.equals(containingFile.getName(), settings.autoHandlerName)) {
+        for (VirtualFile virtualFile : FileTypeIndex.getFiles(
+          HTMLMasonFileType.INSTANCE, GlobalSearchScopesCore.directoryScope(project, containingFile.getParent(), true))) {
+          PsiFile file = manager.findFile(virtualFile);
+          if (file instanceof HTMLMasonFileImpl && ((HTMLMasonFileImpl)file).getParentComponentPath() == null) {
+            addIfChild(file, result);
+          }
         }
       }
     }
@@ -219,46 +215,12 @@ public class HTMLMasonFileImpl extends PerlFileImpl implements HTMLMasonFile {
     return result;
   }
 
-  protected void collectAutoHandledFiles(
-    PsiManager manager,
-    VirtualFile dir,
-    List<HTMLMasonFileImpl> result,
-    String autoHandlerName,
-    @Nullable Set<VirtualFile> recursionMap
-  ) {
-    if (dir != null) {
-      if (recursionMap == null) // first iteration
-      {
-        recursionMap = new THashSet<>();
-      }
-      else // non-first iteration
-      {
-        VirtualFile autoHandlerVirtualFile = dir.findChild(autoHandlerName);
-        if (autoHandlerVirtualFile != null) {
-          PsiFile autoHandlerPsiFile = manager.findFile(autoHandlerVirtualFile);
-          if (autoHandlerPsiFile instanceof HTMLMasonFileImpl &&
-              this.equals(((HTMLMasonFileImpl)autoHandlerPsiFile).getParentComponent())) {
-            result.add((HTMLMasonFileImpl)autoHandlerPsiFile);
-          }
-          return;
-        }
-      }
-
-      recursionMap.add(dir);
-
-      // all iterations
-      for (VirtualFile file : dir.getChildren()) {
-        if (file.isDirectory() && !recursionMap.contains(file)) {
-          collectAutoHandledFiles(manager, file, result, autoHandlerName, recursionMap);
-        }
-        else if (!StringUtil.equals(file.getName(), autoHandlerName)) // non auto-handler file
-        {
-          PsiFile psiFile = manager.findFile(file);
-          if (psiFile instanceof HTMLMasonFileImpl && this.equals(((HTMLMasonFileImpl)psiFile).getParentComponent())) {
-            result.add((HTMLMasonFileImpl)psiFile);
-          }
-        }
-      }
+  /**
+   * Adds {@code file} to the {@code result} if it is a component inheriting this one
+   */
+  private void addIfChild(@Nullable PsiFile file, @NotNull List<HTMLMasonFileImpl> result) {
+    if (file instanceof HTMLMasonFileImpl && !result.contains(file) && equals(((HTMLMasonFileImpl)file).getParentComponent())) {
+      result.add((HTMLMasonFileImpl)file);
     }
   }
 
@@ -24,4 +24,10 @@ import org.jetbrains.annotations.Nullable;
 public interface HTMLMasonFlagsStatementStub extends StubElement<HTMLMasonFlagsStatement> {
   @Nullable
   String getParentComponentPath();
+
+  /**
+   * @return key of the inherited component in the {@link HTMLMasonParentNameStubIndex}
+   */
+  @Nullable
+  String getParentComponentKey();
 }
@@ -0,0 +1,63 @@
+/*
+ * Copyright 2015-2020 Alexandr Evstigneev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.perl5.lang.htmlmason.parser.stubs;
+
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.openapi.util.text.StringUtil;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.stubs.StubIndexKey;
+import com.perl5.lang.htmlmason.parser.psi.HTMLMasonFlagsStatement;
+import com.perl5.lang.perl.psi.stubs.PerlStubIndexBase;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Index of flags statements by path of the inherited component. Relative paths are resolved against the directory of the component, absolute
+ * ones are kept relative to the components roots, which may change with project settings. Child components lookup queries both forms and
+ * verifies candidates by resolving their parents.
+ */
+public class HTMLMasonParentNameStubIndex extends PerlStubIndexBase<HTMLMasonFlagsStatement> {
+  public static final StubIndexKey<String, HTMLMasonFlagsStatement> KEY = StubIndexKey.createIndexKey("perl.html.mason.parent.name");
+  public static final int VERSION = 2;
+
+  @Override
+  public int getVersion() {
+    return VERSION + super.getVersion();
+  }
+
+  @Override
+  protected @NotNull Class<HTMLMasonFlagsStatement> getPsiClass() {
+    return HTMLMasonFlagsStatement.class;
+  }
+
+  @Override
+  public @NotNull StubIndexKey<String, HTMLMasonFlagsStatement> getKey() {
+    return KEY;
+  }
+
+  /**
+   * @return index key for the {@code parentComponentPath} inherited by the component from {@code componentFile} or null if relative path
+   * can't be resolved
+   */
+  public static @Nullable String getParentKey(@Nullable VirtualFile componentFile, @NotNull String parentComponentPath) {
+    if (StringUtil.startsWith(parentComponentPath, "/")) {
+      return FileUtil.toCanonicalPath(parentComponentPath);
+    }
+    VirtualFile containingDir = componentFile == null ? null : componentFile.getParent();
+    return containingDir == null ? null : FileUtil.toCanonicalPath(containingDir.getPath() + '/' + parentComponentPath);
+  }
+}
@@ -25,14 +25,24 @@ import org.jetbrains.annotations.Nullable;
 
 public class HTMLMasonFlagsStatementStubImpl extends StubBase<HTMLMasonFlagsStatement> implements HTMLMasonFlagsStatementStub {
   final String myParentComponentPath;
+  final String myParentComponentKey;
 
-  public HTMLMasonFlagsStatementStubImpl(StubElement parent, IStubElementType elementType, @Nullable String parentComponentPath) {
+  public HTMLMasonFlagsStatementStubImpl(StubElement parent,
+                                         IStubElementType elementType,
+                                         @Nullable String parentComponentPath,
+                                         @Nullable String parentComponentKey) {
     super(parent, elementType);
     myParentComponentPath = parentComponentPath;
+    myParentComponentKey = parentComponentKey;
   }
 
   @Override
   public @Nullable String getParentComponentPath() {
     return myParentComponentPath;
   }
+
+  @Override
+  public @Nullable String getParentComponentKey() {
+    return myParentComponentKey;
+  }
 }
@@ -0,0 +1,108 @@
+/*
+ * Copyright 2015-2021 Alexandr Evstigneev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package unit.components;
+
+import base.HTMLMasonLightTestCase;
+import com.intellij.openapi.projectRoots.impl.PerlModuleExtension;
+import com.intellij.openapi.vfs.VfsUtil;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.PsiManager;
+import com.intellij.util.containers.ContainerUtil;
+import com.perl5.lang.htmlmason.idea.configuration.HTMLMasonSourceRootType;
+import com.perl5.lang.htmlmason.parser.psi.impl.HTMLMasonFileImpl;
+import org.jetbrains.annotations.NotNull;
+import org.junit.Test;
+
+public class HTMLMasonChildComponentsTest extends HTMLMasonLightTestCase {
+  private static final String INHERIT_UNDEF = "<%flags>\ninherit => undef\n</%flags>\n";
+
+  private VirtualFile myRoot;
+
+  @Override
+  protected String getBaseDataPath() {
+    return "testData/unit";
+  }
+
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    myRoot = myFixture.getTempDirFixture().findOrCreateDir("comp");
+    PerlModuleExtension.modify(getModule(), it -> it.setRoot(myRoot, HTMLMasonSourceRootType.INSTANCE));
+    addPerlTearDownListener(() -> removePerlSourceRoot(myRoot));
+    createComponent("autohandler", "root");
+    createComponent("page.mas", "page");
+    createComponent("base.mas", "base");
+    createComponent("orphan.mas", INHERIT_UNDEF);
+    createComponent("sub/autohandler", "sub");
+    createComponent("sub/inner.mas", "inner");
+    createComponent("sub/explicit.mas", inheriting("/base.mas"));
+    createComponent("sub/relative.mas", inheriting("../base.mas"));
+    createComponent("sub/sibling.mas", inheriting("inner.mas"));
+  }
+
+  @Test
+  public void testAutohandlerChildren() {
+    assertChildren("autohandler", "base.mas", "page.mas", "sub/autohandler");
+    assertChildren("sub/autohandler", "sub/inner.mas");
+  }
+
+  @Test
+  public void testExplicitChildren() {
+    assertChildren("base.mas", "sub/explicit.mas", "sub/relative.mas");
+    assertEquals(getComponent("base.mas"), getComponent("sub/explicit.mas").getParentComponent());
+  }
+
+  @Test
+  public void testRelativeChildren() {
+    assertChildren("sub/inner.mas", "sub/sibling.mas");
+    assertEquals(getComponent("base.mas"), getComponent("sub/relative.mas").getParentComponent());
+  }
+
+  @Test
+  public void testInheritUndef() {
+    assertNull(getComponent("orphan.mas").getParentComponent());
+    assertChildren("orphan.mas");
+    createComponent("sub/autohandler", INHERIT_UNDEF);
+    assertNull(getComponent("sub/autohandler").getParentComponent());
+    assertChildren("autohandler", "base.mas", "page.mas");
+    assertChildren("sub/autohandler", "sub/inner.mas");
+  }
+
+  private void assertChildren(@NotNull String componentPath, String @NotNull ... expectedChildren) {
+    assertSameElements(
+      ContainerUtil.map(getComponent(componentPath).getChildComponents(),
+                        it -> VfsUtil.getRelativePath(it.getVirtualFile(), myRoot)),
+      expectedChildren);
+  }
+
+  private @NotNull HTMLMasonFileImpl getComponent(@NotNull String componentPath) {
+    VirtualFile virtualFile = myRoot.findFileByRelativePath(componentPath);
+    assertNotNull(virtualFile);
+    PsiFile file = PsiManager.getInstance(getProject()).findFile(virtualFile);
+    assertInstanceOf(file, HTMLMasonFileImpl.class);
+    return (HTMLMasonFileImpl)file;
+  }
+
+  private void createComponent(@NotNull String componentPath, @NotNull String text) {
+    myFixture.getTempDirFixture().createFile(myRoot.getName() + "/" + componentPath, text);
+  }
+
+  private static @NotNull String inheriting(@NotNull String parentPath) {
+    return "<%flags>\ninherit => '" + parentPath + "'\n</%flags>\n";
+  }
+}
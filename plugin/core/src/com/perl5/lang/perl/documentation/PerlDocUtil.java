@@ -28,6 +28,8 @@ import com.intellij.psi.search.FilenameIndex;
 import com.intellij.psi.search.GlobalSearchScope;
 import com.intellij.psi.search.PsiElementProcessor;
 import com.intellij.psi.tree.IElementType;
+import com.intellij.psi.util.CachedValueProvider;
+import com.intellij.psi.util.CachedValuesManager;
 import com.intellij.psi.util.PsiTreeUtil;
 import com.intellij.psi.util.PsiUtilCore;
 import com.intellij.util.ObjectUtils;
@@ -41,6 +43,7 @@ import com.perl5.lang.pod.parser.psi.*;
 import com.perl5.lang.pod.parser.psi.impl.PodFileImpl;
 import com.perl5.lang.pod.parser.psi.mixin.PodFormatterX;
 import com.perl5.lang.pod.parser.psi.mixin.PodSectionItem;
+import com.perl5.lang.pod.parser.psi.util.PodAnchorsIndex;
 import com.perl5.lang.pod.parser.psi.util.PodFileUtil;
 import com.perl5.lang.pod.parser.psi.util.PodRenderUtil;
 import org.jetbrains.annotations.Contract;
@@ -49,6 +52,7 @@ import org.jetbrains.annotations.Nullable;
 
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -72,6 +76,10 @@ public class PerlDocUtil implements PerlElementTypes {
 
   private static final Map<String, PodLinkDescriptor> OPERATORS_LINKS = new HashMap<>();
   private static final Map<String, PodLinkDescriptor> VARIABLES_LINKS = new HashMap<>();
+  /**
+   * Maximum number of rendered sections cached for each file
+   */
+  private static final int RENDERED_SECTIONS_CACHE_SIZE = 100;
 
 
   static {
@@ -290,22 +298,7 @@ public class PerlDocUtil implements PerlElementTypes {
       }
     }
 
-    final List<PodCompositeElement> result = new ArrayList<>();
-
-    psiFile.accept(new PsiStubsAwareRecursiveVisitor() {
-      @Override
-      public void visitElement(@NotNull PsiElement element) {
-        if (pattern.accepts(element)) {
-          result.add((PodCompositeElement)element);
-          stop();
-        }
-        else {
-          super.visitElement(element);
-        }
-      }
-    });
-
-    return result.isEmpty() ? null : result.get(0);
+    return PodAnchorsIndex.getInstance(psiFile).find(pattern);
   }
 
   public static String renderPodFile(PodFileImpl file) {
@@ -388,11 +381,44 @@ public class PerlDocUtil implements PerlElementTypes {
     return resultRef.get();
   }
 
+  /**
+   * @return rendered documentation for the {@code podSection}, cached until the file modification
+   */
   @Contract("null->null")
   public static @Nullable String renderElement(@Nullable PodSection podSection) {
     if (podSection == null) {
       return null;
     }
+    PsiFile podFile = podSection.getContainingFile();
+    if (podFile == null) {
+      return doRenderElement(podSection);
+    }
+    Map<TextRange, String> renderedSections = CachedValuesManager.getCachedValue(
+      podFile, () -> CachedValueProvider.Result.create(createRenderedSectionsCache(), podFile));
+    TextRange sectionRange = podSection.getTextRange();
+    synchronized (renderedSections) {
+      String cachedResult = renderedSections.get(sectionRange);
+      if (cachedResult != null) {
+        return cachedResult;
+      }
+    }
+    String result = doRenderElement(podSection);
+    synchronized (renderedSections) {
+      renderedSections.put(sectionRange, result);
+    }
+    return result;
+  }
+
+  private static @NotNull Map<TextRange, String> createRenderedSectionsCache() {
+    return new LinkedHashMap<>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<TextRange, String> eldest) {
+        return size() > RENDERED_SECTIONS_CACHE_SIZE;
+      }
+    };
+  }
+
+  private static @NotNull String doRenderElement(@NotNull PodSection podSection) {
     PsiElement run = podSection;
 
     // detecting first section
@@ -0,0 +1,77 @@
+/*
+ * Copyright 2015-2020 Alexandr Evstigneev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.perl5.lang.perl.extensions.packageprocessor;
+
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.Key;
+import com.intellij.psi.search.GlobalSearchScope;
+import com.intellij.psi.util.CachedValue;
+import com.intellij.psi.util.CachedValueProvider;
+import com.intellij.psi.util.CachedValuesManager;
+import com.perl5.lang.perl.idea.project.PerlNamespacesModificationTracker;
+import com.perl5.lang.perl.psi.PerlNamespaceDefinitionElement;
+import com.perl5.lang.perl.util.PerlPackageUtil;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Project-level cache of {@link PerlExportsTable} for namespaces. Dropped on namespaces structure changes, tracked by
+ * {@link PerlNamespacesModificationTracker}
+ */
+public class PerlExportsCache {
+  private static final Key<CachedValue<Map<String, PerlExportsTable>>> EXPORTS_CACHE_KEY = Key.create("perl.exports.cache");
+  private final @NotNull Project myProject;
+
+  public PerlExportsCache(@NotNull Project project) {
+    myProject = project;
+  }
+
+  /**
+   * @return merged exports of all definitions of the {@code namespaceName}
+   */
+  public @NotNull PerlExportsTable getExportsTable(@NotNull String namespaceName) {
+    return getCache().computeIfAbsent(namespaceName, this::computeExportsTable);
+  }
+
+  private @NotNull PerlExportsTable computeExportsTable(@NotNull String namespaceName) {
+    Set<String> export = new LinkedHashSet<>();
+    Set<String> exportOk = new LinkedHashSet<>();
+    Map<String, List<String>> exportTags = new HashMap<>();
+    for (PerlNamespaceDefinitionElement namespaceDefinition : PerlPackageUtil
+      .getNamespaceDefinitions(myProject, GlobalSearchScope.allScope(myProject), namespaceName)) {
+      export.addAll(namespaceDefinition.getEXPORT());
+      exportOk.addAll(namespaceDefinition.getEXPORT_OK());
+      namespaceDefinition.getEXPORT_TAGS().forEach((tag, names) -> exportTags.computeIfAbsent(tag, key -> new ArrayList<>()).addAll(names));
+    }
+    exportOk.addAll(export);
+    return export.isEmpty() && exportOk.isEmpty() && exportTags.isEmpty() ? PerlExportsTable.EMPTY :
+           new PerlExportsTable(export, exportOk, exportTags);
+  }
+
+  private @NotNull Map<String, PerlExportsTable> getCache() {
+    return CachedValuesManager.getManager(myProject).getCachedValue(
+      myProject, EXPORTS_CACHE_KEY,
+      () -> CachedValueProvider.Result.create(new ConcurrentHashMap<>(), PerlNamespacesModificationTracker.getInstance(myProject)),
+      false);
+  }
+
+  public static @NotNull PerlExportsCache getInstance(@NotNull Project project) {
+    return project.getService(PerlExportsCache.class);
+  }
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright 2015-2020 Alexandr Evstigneev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.perl5.lang.perl.extensions.packageprocessor;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.*;
+
+/**
+ * Immutable exports of a namespace: {@code @EXPORT}, {@code @EXPORT_OK} and {@code %EXPORT_TAGS}
+ *
+ * @see PerlExportsCache
+ */
+public final class PerlExportsTable {
+  static final PerlExportsTable EMPTY = new PerlExportsTable(Collections.emptySet(), Collections.emptySet(), Collections.emptyMap());
+  private static final String DEFAULT_TAG = "DEFAULT";
+
+  private final @NotNull Set<String> myExport;
+  private final @NotNull Set<String> myExportOk;
+  private final @NotNull Map<String, List<String>> myExportTags;
+
+  PerlExportsTable(@NotNull Set<String> export, @NotNull Set<String> exportOk, @NotNull Map<String, List<String>> exportTags) {
+    myExport = Collections.unmodifiableSet(export);
+    myExportOk = Collections.unmodifiableSet(exportOk);
+    myExportTags = Collections.unmodifiableMap(exportTags);
+  }
+
+  /**
+   * @return names exported by default
+   */
+  public @NotNull Set<String> getExport() {
+    return myExport;
+  }
+
+  /**
+   * @return names allowed to be exported, including default ones
+   */
+  public @NotNull Set<String> getExportOk() {
+    return myExportOk;
+  }
+
+  /**
+   * @return names exported with {@code :tagName} import parameter. Tags mentioned in the tag are expanded recursively, {@code DEFAULT}
+   * tag means {@code @EXPORT} unless redefined
+   */
+  public @NotNull Set<String> getTagNames(@NotNull String tagName) {
+    Set<String> result = new LinkedHashSet<>();
+    collectTagNames(tagName, result, new HashSet<>());
+    return result;
+  }
+
+  private void collectTagNames(@NotNull String tagName, @NotNull Set<String> result, @NotNull Set<String> visitedTags) {
+    if (!visitedTags.add(tagName)) {
+      return;
+    }
+    List<String> names = myExportTags.get(tagName);
+    if (names == null) {
+      if (DEFAULT_TAG.equals(tagName)) {
+        result.addAll(myExport);
+      }
+      return;
+    }
+    for (String name : names) {
+      if (name.length() > 1 && name.charAt(0) == ':') {
+        collectTagNames(name.substring(1), result, visitedTags);
+      }
+      else {
+        result.add(name);
+      }
+    }
+  }
+}
@@ -18,10 +18,7 @@ package com.perl5.lang.perl.extensions.packageprocessor;
 
 import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.util.text.StringUtil;
-import com.intellij.psi.search.GlobalSearchScope;
-import com.perl5.lang.perl.psi.PerlNamespaceDefinitionElement;
 import com.perl5.lang.perl.psi.impl.PerlUseStatementElement;
-import com.perl5.lang.perl.util.PerlPackageUtil;
 import com.perl5.lang.perl.util.PerlTimeLogger;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
@@ -44,17 +41,11 @@ public abstract class PerlPackageProcessorBase implements PerlPackageProcessor {
       return;
     }
 
-    // fixme handle tags
-    GlobalSearchScope scope = GlobalSearchScope.allScope(useStatement.getProject());
-    for (PerlNamespaceDefinitionElement namespaceDefinition : PerlPackageUtil
-      .getNamespaceDefinitions(useStatement.getProject(), scope, packageName)) {
-      export.addAll(namespaceDefinition.getEXPORT());
-      exportOk.addAll(namespaceDefinition.getEXPORT_OK());
-    }
-    exportOk.addAll(export);
+    PerlExportsTable exportsTable = PerlExportsCache.getInstance(useStatement.getProject()).getExportsTable(packageName);
+    export.addAll(exportsTable.getExport());
+    exportOk.addAll(exportsTable.getExportOk());
   }
 
-
   @Override
   public @NotNull List<PerlExportDescriptor> getImports(@NotNull PerlUseStatementElement useStatement) {
     String packageName = useStatement.getPackageName();
@@ -73,9 +64,22 @@ public abstract class PerlPackageProcessorBase implements PerlPackageProcessor {
       exportNames.forEach(name -> result.add(createDescriptor(packageName, name)));
     }
     else {
-      importParameters.stream()
-        .filter(exportOkNames::contains)
-        .forEach(name -> result.add(createDescriptor(packageName, name)));
+      PerlExportsTable exportsTable = null;
+      Set<String> importedNames = new LinkedHashSet<>();
+      for (String importParameter : importParameters) {
+        if (importParameter.length() > 1 && importParameter.charAt(0) == ':') {
+          if (exportsTable == null) {
+            exportsTable = PerlExportsCache.getInstance(useStatement.getProject()).getExportsTable(packageName);
+          }
+          exportsTable.getTagNames(importParameter.substring(1)).stream()
+            .filter(exportOkNames::contains)
+            .forEach(importedNames::add);
+        }
+        else if (exportOkNames.contains(importParameter)) {
+          importedNames.add(importParameter);
+        }
+      }
+      importedNames.forEach(name -> result.add(createDescriptor(packageName, name)));
     }
 
     logger.debug("Collected imports for ", packageName);
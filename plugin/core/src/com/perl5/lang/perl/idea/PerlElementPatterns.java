@@ -159,6 +159,19 @@ public interface PerlElementPatterns extends PerlElementTypes {
     )
   );
 
+  PsiElementPattern.Capture<PsiPerlHashVariable> EXPORT_TAGS_VARIABLE = psiElement(PsiPerlHashVariable.class).withText("%EXPORT_TAGS");
+  PsiElementPattern.Capture<PsiPerlVariableDeclarationGlobal> EXPORT_TAGS_DECLARATION = psiElement(PsiPerlVariableDeclarationGlobal.class)
+    .withChild(
+      psiElement(PerlVariableDeclarationElement.class).withFirstChild(EXPORT_TAGS_VARIABLE)
+    );
+
+  PsiElementPattern.Capture<PsiPerlStatement> EXPORT_TAGS_ASSIGN_STATEMENT = psiElement(PsiPerlStatement.class).withFirstChild(
+    psiElement(PsiPerlAssignExpr.class).andOr(
+      psiElement().withFirstChild(EXPORT_TAGS_VARIABLE),
+      psiElement().withFirstChild(EXPORT_TAGS_DECLARATION)
+    )
+  );
+
   // @EXPORT = ();
   PsiElementPattern.Capture<PsiPerlArrayVariable> EXPORT_ARRAY_VARIABLE_PATTERN =
     psiElement(PsiPerlArrayVariable.class).andOr(
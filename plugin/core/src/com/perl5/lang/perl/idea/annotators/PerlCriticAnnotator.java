@@ -16,7 +16,6 @@
 
 package com.perl5.lang.perl.idea.annotators;
 
-import com.intellij.execution.process.BaseProcessHandler;
 import com.intellij.lang.annotation.AnnotationHolder;
 import com.intellij.lang.annotation.ExternalAnnotator;
 import com.intellij.lang.annotation.HighlightSeverity;
@@ -26,31 +25,22 @@ import com.intellij.notification.Notifications;
 import com.intellij.openapi.application.ReadAction;
 import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.editor.Document;
-import com.intellij.openapi.project.Project;
+import com.intellij.openapi.progress.ProcessCanceledException;
 import com.intellij.openapi.util.TextRange;
-import com.intellij.openapi.util.text.StringUtil;
 import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.psi.PsiElement;
 import com.intellij.psi.PsiFile;
 import com.intellij.psi.util.PsiUtilCore;
 import com.perl5.PerlBundle;
 import com.perl5.lang.perl.idea.configuration.settings.PerlSharedSettings;
-import com.perl5.lang.perl.idea.execution.PerlCommandLine;
-import com.perl5.lang.perl.idea.sdk.host.PerlHostData;
 import com.perl5.lang.perl.psi.PerlFile;
-import com.perl5.lang.perl.util.PerlRunUtil;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
-import java.io.OutputStream;
-import java.util.ArrayList;
 import java.util.List;
-import java.util.Objects;
 
 
 public class PerlCriticAnnotator extends ExternalAnnotator<PerlFile, List<PerlCriticErrorDescriptor>> {
-  private static final String SCRIPT_NAME = "perlcritic";
-  private static final String PACKAGE_NAME = "Perl::Critic";
   private static final Logger LOG = Logger.getInstance(PerlCriticAnnotator.class);
 
   @Override
@@ -59,27 +49,6 @@ public class PerlCriticAnnotator extends ExternalAnnotator<PerlFile, List<PerlCr
            ? (PerlFile)file : null;
   }
 
-  protected @Nullable PerlCommandLine getPerlCriticCommandLine(Project project) {
-    PerlSharedSettings sharedSettings = PerlSharedSettings.getInstance(project);
-    VirtualFile perlCriticScript =
-      ReadAction.compute(() -> PerlRunUtil.findLibraryScriptWithNotification(project, SCRIPT_NAME, PACKAGE_NAME));
-    if (perlCriticScript == null) {
-      return null;
-    }
-    PerlCommandLine commandLine = PerlRunUtil.getPerlCommandLine(project, perlCriticScript);
-    if (commandLine == null) {
-      return null;
-    }
-    commandLine.withWorkDirectory(project.getBasePath());
-
-    if (StringUtil.isNotEmpty(sharedSettings.PERL_CRITIC_ARGS)) {
-      commandLine.addParameters(StringUtil.split(sharedSettings.PERL_CRITIC_ARGS, " "));
-    }
-
-    return commandLine;
-  }
-
-
   @Override
   public @Nullable List<PerlCriticErrorDescriptor> doAnnotate(final PerlFile sourcePsiFile) {
     if (sourcePsiFile == null) {
@@ -97,35 +66,10 @@ public class PerlCriticAnnotator extends ExternalAnnotator<PerlFile, List<PerlCr
     }
 
     try {
-      PerlCommandLine criticCommandLine = getPerlCriticCommandLine(sourcePsiFile.getProject());
-      if (criticCommandLine == null) {
-        PerlSharedSettings.getInstance(sourcePsiFile.getProject()).PERL_CRITIC_ENABLED = false;
-        return null;
-      }
-
-      BaseProcessHandler<?> processHandler = PerlHostData.createProcessHandler(
-        criticCommandLine.withCharset(virtualFile.getCharset())
-      );
-
-      OutputStream outputStream = Objects.requireNonNull(processHandler.getProcessInput());
-      outputStream.write(sourceBytes);
-      outputStream.close();
-
-      List<PerlCriticErrorDescriptor> errors = new ArrayList<>();
-      PerlCriticErrorDescriptor lastDescriptor = null;
-      for (String output : PerlHostData.getOutput(processHandler).getStdoutLines()) {
-        PerlCriticErrorDescriptor fromString = PerlCriticErrorDescriptor.getFromString(output);
-        if (fromString != null) {
-          errors.add(lastDescriptor = fromString);
-        }
-        else if (lastDescriptor != null) {
-          lastDescriptor.append(" " + output);
-        }
-        else if (!StringUtil.equals(output, "source OK")) {
-          LOG.warn("Could not parse line: " + output);
-        }
-      }
-      return errors;
+      return PerlCriticService.getInstance(sourcePsiFile.getProject()).critique(virtualFile, sourceBytes);
+    }
+    catch (ProcessCanceledException e) {
+      throw e;
     }
     catch (Exception e) {
       LOG.warn("Error running perlcritic", e);
@@ -0,0 +1,429 @@
+/*
+ * Copyright 2015-2020 Alexandr Evstigneev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.perl5.lang.perl.idea.annotators;
+
+import com.intellij.execution.ExecutionException;
+import com.intellij.execution.process.BaseProcessHandler;
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.application.ReadAction;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.progress.ProcessCanceledException;
+import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.projectRoots.Sdk;
+import com.intellij.openapi.util.text.StringUtil;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.openapi.vfs.VirtualFileManager;
+import com.intellij.openapi.vfs.newvfs.BulkFileListener;
+import com.intellij.openapi.vfs.newvfs.events.VFileEvent;
+import com.intellij.util.EnvironmentUtil;
+import com.intellij.util.PathUtil;
+import com.intellij.util.SystemProperties;
+import com.intellij.util.concurrency.SequentialTaskExecutor;
+import com.intellij.util.io.DigestUtil;
+import com.perl5.lang.perl.idea.configuration.settings.PerlSharedSettings;
+import com.perl5.lang.perl.idea.execution.PerlCommandLine;
+import com.perl5.lang.perl.idea.project.PerlProjectManager;
+import com.perl5.lang.perl.idea.sdk.host.PerlHostData;
+import com.perl5.lang.perl.util.PerlPluginUtil;
+import com.perl5.lang.perl.util.PerlRunUtil;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Runs Perl::Critic for the {@link PerlCriticAnnotator}. Sources are critiqued by the single long-living {@link PerlCriticWorker},
+ * restarted when SDK, critic arguments or profile change or when it hangs. If worker can't handle critic arguments, {@code perlcritic}
+ * script is run for each source instead. Results are cached by source content hash and worker configuration. Pending requests for the same
+ * source of a file are coalesced, newer source of the file supersedes the pending one. The number of pending requests is bounded, the
+ * oldest ones are dropped.
+ */
+public class PerlCriticService implements Disposable {
+  private static final Logger LOG = Logger.getInstance(PerlCriticService.class);
+  private static final String SCRIPT_NAME = "perlcritic";
+  private static final String PACKAGE_NAME = "Perl::Critic";
+  private static final String WORKER_SCRIPT_NAME = "perlcritic_worker.pl";
+  private static final String PROFILE_NAME = ".perlcriticrc";
+  private static final String PROFILE_ENV_VARIABLE = "PERLCRITIC";
+  private static final Pattern PROFILE_OPTION_PATTERN = Pattern.compile("--?(?:profile|p)(?:=(.*))?");
+  private static final Pattern NO_PROFILE_OPTION_PATTERN = Pattern.compile("--?(?:noprofile|np)");
+  private static final int MAX_CACHE_SIZE = 500;
+  private static final int MAX_PENDING_REQUESTS = 32;
+
+  private final @NotNull Project myProject;
+  private final @NotNull ExecutorService myExecutor =
+    SequentialTaskExecutor.createSequentialApplicationPoolExecutor("Perl::Critic Worker");
+  private final Object myLock = new Object();
+  /**
+   * Access-ordered map of results by source hash and worker key. Guarded by {@link #myLock}
+   */
+  private final @NotNull Map<String, List<PerlCriticErrorDescriptor>> myResultsCache =
+    new LinkedHashMap<>(MAX_CACHE_SIZE / 4, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, List<PerlCriticErrorDescriptor>> eldest) {
+        return size() > MAX_CACHE_SIZE;
+      }
+    };
+  /**
+   * Requests waiting for the worker in order of submission. Guarded by {@link #myLock}
+   */
+  private final @NotNull Map<VirtualFile, Request> myPendingRequests = new LinkedHashMap<>();
+  /**
+   * Accessed from {@link #myExecutor} only
+   */
+  private @Nullable PerlCriticWorker myWorker;
+  /**
+   * Key of the configuration worker does not support. Accessed from {@link #myExecutor} only
+   */
+  private @Nullable String myUnsupportedWorkerKey;
+  private volatile boolean myIsDisposed = false;
+  /**
+   * Incremented on reset, prevents caching of results computed before it. Guarded by {@link #myLock}
+   */
+  private long myResetStamp = 0;
+
+  public PerlCriticService(@NotNull Project project) {
+    myProject = project;
+    project.getMessageBus().connect(this).subscribe(VirtualFileManager.VFS_CHANGES, new BulkFileListener() {
+      @Override
+      public void after(@NotNull List<? extends VFileEvent> events) {
+        for (VFileEvent event : events) {
+          if (PROFILE_NAME.equals(PathUtil.getFileName(event.getPath()))) {
+            reset();
+            return;
+          }
+        }
+      }
+    });
+  }
+
+  /**
+   * Drops cached results and stops the worker, so profile changes could be picked up
+   */
+  public void reset() {
+    LOG.debug("Resetting Perl::Critic worker");
+    synchronized (myLock) {
+      myResetStamp++;
+      myResultsCache.clear();
+    }
+    myExecutor.execute(this::stopWorker);
+  }
+
+  /**
+   * @return violations found in {@code sourceBytes} of the {@code virtualFile} or null if Perl::Critic is not available or request has been
+   * superseded by the newer one
+   * @throws IOException if worker failed to start or crashed
+   */
+  public @Nullable List<PerlCriticErrorDescriptor> critique(@NotNull VirtualFile virtualFile, byte[] sourceBytes) throws IOException {
+    return waitFor(submit(virtualFile, sourceBytes));
+  }
+
+  /**
+   * @return future of the {@link #critique(VirtualFile, byte[])} result, completed if the result is cached
+   */
+  @NotNull CompletableFuture<List<PerlCriticErrorDescriptor>> submit(@NotNull VirtualFile virtualFile, byte[] sourceBytes) {
+    Charset charset = virtualFile.getCharset();
+    String cacheKey =
+      StringUtil.toHexString(DigestUtil.sha256().digest(sourceBytes)) + ' ' + charset.name() + ' ' + computeWorkerKey();
+    synchronized (myLock) {
+      List<PerlCriticErrorDescriptor> cachedResult = myResultsCache.get(cacheKey);
+      if (cachedResult != null) {
+        return CompletableFuture.completedFuture(cachedResult);
+      }
+      Request pendingRequest = myPendingRequests.get(virtualFile);
+      if (pendingRequest != null) {
+        if (pendingRequest.myCacheKey.equals(cacheKey)) {
+          return pendingRequest.myFuture;
+        }
+        myPendingRequests.remove(virtualFile);
+        pendingRequest.myFuture.complete(null);
+      }
+      else if (myPendingRequests.size() >= MAX_PENDING_REQUESTS) {
+        Iterator<Request> iterator = myPendingRequests.values().iterator();
+        Request eldestRequest = iterator.next();
+        iterator.remove();
+        eldestRequest.myFuture.complete(null);
+      }
+      Request request = new Request(sourceBytes, charset, cacheKey);
+      myPendingRequests.put(virtualFile, request);
+      myExecutor.execute(() -> processRequest(virtualFile, request));
+      return request.myFuture;
+    }
+  }
+
+  private static @Nullable List<PerlCriticErrorDescriptor> waitFor(@NotNull CompletableFuture<List<PerlCriticErrorDescriptor>> future)
+    throws IOException {
+    while (true) {
+      ProgressManager.checkCanceled();
+      try {
+        return future.get(50, TimeUnit.MILLISECONDS);
+      }
+      catch (TimeoutException ignore) {
+      }
+      catch (InterruptedException e) {
+        throw new ProcessCanceledException(e);
+      }
+      catch (java.util.concurrent.ExecutionException e) {
+        Throwable cause = e.getCause();
+        if (cause instanceof IOException) {
+          throw (IOException)cause;
+        }
+        throw new IOException(cause);
+      }
+    }
+  }
+
+  private void processRequest(@NotNull VirtualFile virtualFile, @NotNull Request request) {
+    long resetStamp;
+    synchronized (myLock) {
+      // superseded, dropped or completed on disposal
+      if (!myPendingRequests.remove(virtualFile, request)) {
+        return;
+      }
+      resetStamp = myResetStamp;
+    }
+    if (myIsDisposed) {
+      request.myFuture.complete(null);
+      return;
+    }
+
+    try {
+      List<PerlCriticErrorDescriptor> errors = doCritique(request.mySourceBytes, request.myCharset);
+      if (errors == null) {
+        PerlSharedSettings.getInstance(myProject).PERL_CRITIC_ENABLED = false;
+        request.myFuture.complete(null);
+        return;
+      }
+      List<PerlCriticErrorDescriptor> result = Collections.unmodifiableList(errors);
+      synchronized (myLock) {
+        if (resetStamp == myResetStamp) {
+          myResultsCache.put(request.myCacheKey, result);
+        }
+      }
+      request.myFuture.complete(result);
+    }
+    catch (PerlCriticWorker.CritiqueTimeoutException e) {
+      LOG.warn(e.getMessage());
+      stopWorker();
+      request.myFuture.complete(null);
+    }
+    catch (Exception e) {
+      stopWorker();
+      request.myFuture.completeExceptionally(e);
+    }
+  }
+
+  /**
+   * @return violations found by the worker or by the {@code perlcritic} script if worker does not support critic arguments, null if
+   * Perl::Critic is not available. Invoked on the {@link #myExecutor} only
+   */
+  @Nullable List<PerlCriticErrorDescriptor> doCritique(byte[] sourceBytes, @NotNull Charset charset)
+    throws ExecutionException, IOException {
+    String workerKey = computeWorkerKey();
+    if (!workerKey.equals(myUnsupportedWorkerKey)) {
+      PerlCriticWorker worker = getWorker(workerKey);
+      if (worker == null) {
+        return null;
+      }
+      try {
+        return worker.critique(sourceBytes, charset);
+      }
+      catch (PerlCriticWorker.UnsupportedArgumentsException e) {
+        LOG.info(e.getMessage() + ", running " + SCRIPT_NAME + " for each file");
+        stopWorker();
+        myUnsupportedWorkerKey = workerKey;
+      }
+    }
+    return critiqueWithScript(sourceBytes, charset);
+  }
+
+  /**
+   * Runs {@code perlcritic} script for the source, slow, but supports all critic arguments
+   */
+  private @Nullable List<PerlCriticErrorDescriptor> critiqueWithScript(byte[] sourceBytes, @NotNull Charset charset)
+    throws ExecutionException, IOException {
+    VirtualFile perlCriticScript = findPerlCriticScript();
+    if (perlCriticScript == null) {
+      return null;
+    }
+    PerlCommandLine commandLine = PerlRunUtil.getPerlCommandLine(myProject, perlCriticScript);
+    if (commandLine == null) {
+      return null;
+    }
+    commandLine.withWorkDirectory(myProject.getBasePath());
+    addCriticArguments(commandLine);
+
+    BaseProcessHandler<?> processHandler = PerlHostData.createProcessHandler(commandLine.withCharset(charset));
+    try (OutputStream outputStream = Objects.requireNonNull(processHandler.getProcessInput())) {
+      outputStream.write(sourceBytes);
+    }
+
+    List<PerlCriticErrorDescriptor> errors = new ArrayList<>();
+    PerlCriticErrorDescriptor lastDescriptor = null;
+    for (String output : PerlHostData.getOutput(processHandler).getStdoutLines()) {
+      PerlCriticErrorDescriptor fromString = PerlCriticErrorDescriptor.getFromString(output);
+      if (fromString != null) {
+        errors.add(lastDescriptor = fromString);
+      }
+      else if (lastDescriptor != null) {
+        lastDescriptor.append(" " + output);
+      }
+      else if (!StringUtil.equals(output, "source OK")) {
+        LOG.warn("Could not parse line: " + output);
+      }
+    }
+    return errors;
+  }
+
+  /**
+   * @return running worker for the {@code workerKey} configuration, (re)starting it if necessary or null if Perl::Critic is not available
+   */
+  private @Nullable PerlCriticWorker getWorker(@NotNull String workerKey) throws ExecutionException {
+    if (myWorker != null && (!myWorker.isAlive() || !myWorker.getKey().equals(workerKey))) {
+      stopWorker();
+    }
+    if (myWorker == null) {
+      PerlCommandLine commandLine = getWorkerCommandLine();
+      if (commandLine == null) {
+        return null;
+      }
+      LOG.debug("Starting Perl::Critic worker: ", workerKey);
+      myWorker = new PerlCriticWorker(workerKey, commandLine);
+    }
+    return myWorker;
+  }
+
+  private void stopWorker() {
+    if (myWorker != null) {
+      myWorker.destroy();
+      myWorker = null;
+    }
+  }
+
+  private @NotNull String computeWorkerKey() {
+    Sdk sdk = PerlProjectManager.getSdk(myProject);
+    String criticArgs = PerlSharedSettings.getInstance(myProject).PERL_CRITIC_ARGS;
+    return (sdk == null ? "" : sdk.getName()) + ' ' + StringUtil.notNullize(criticArgs) + ' ' +
+           computeProfileKey(criticArgs, EnvironmentUtil.getValue(PROFILE_ENV_VARIABLE), myProject.getBasePath(),
+                             SystemProperties.getUserHome());
+  }
+
+  /**
+   * Finds profile the same way Perl::Critic does: {@code --profile} option, {@code PERLCRITIC} environment variable, {@code .perlcriticrc}
+   * in the working directory or in the home directory.
+   *
+   * @return path and modification time of the profile, empty string if there is none or {@code --noprofile} is used
+   */
+  static @NotNull String computeProfileKey(@Nullable String criticArgs,
+                                           @Nullable String envProfilePath,
+                                           @Nullable String workDirectory,
+                                           @Nullable String homeDirectory) {
+    String profilePath = StringUtil.nullize(envProfilePath);
+    List<String> arguments = StringUtil.split(StringUtil.notNullize(criticArgs), " ");
+    for (int i = 0; i < arguments.size(); i++) {
+      String argument = arguments.get(i);
+      if (NO_PROFILE_OPTION_PATTERN.matcher(argument).matches()) {
+        return "";
+      }
+      Matcher matcher = PROFILE_OPTION_PATTERN.matcher(argument);
+      if (matcher.matches()) {
+        profilePath = matcher.group(1) != null ? matcher.group(1) : i + 1 < arguments.size() ? arguments.get(i + 1) : null;
+      }
+    }
+    if (profilePath != null) {
+      File profileFile = new File(profilePath);
+      return computeFileKey(profileFile.isAbsolute() || workDirectory == null ? profileFile : new File(workDirectory, profilePath));
+    }
+    for (String directory : Arrays.asList(workDirectory, homeDirectory)) {
+      File profileFile = directory == null ? null : new File(directory, PROFILE_NAME);
+      if (profileFile != null && profileFile.isFile()) {
+        return computeFileKey(profileFile);
+      }
+    }
+    return "";
+  }
+
+  private static @NotNull String computeFileKey(@NotNull File file) {
+    return file.getPath() + '@' + file.lastModified();
+  }
+
+  private @Nullable VirtualFile findPerlCriticScript() {
+    return ReadAction.compute(() -> PerlRunUtil.findLibraryScriptWithNotification(myProject, SCRIPT_NAME, PACKAGE_NAME));
+  }
+
+  private void addCriticArguments(@NotNull PerlCommandLine commandLine) {
+    String criticArgs = PerlSharedSettings.getInstance(myProject).PERL_CRITIC_ARGS;
+    if (StringUtil.isNotEmpty(criticArgs)) {
+      commandLine.addParameters(StringUtil.split(criticArgs, " "));
+    }
+  }
+
+  private @Nullable PerlCommandLine getWorkerCommandLine() {
+    if (findPerlCriticScript() == null) {
+      return null;
+    }
+    PerlCommandLine commandLine = PerlRunUtil.getPerlCommandLine(myProject, PerlPluginUtil.getHelperPath(WORKER_SCRIPT_NAME));
+    if (commandLine == null) {
+      return null;
+    }
+    commandLine.withWorkDirectory(myProject.getBasePath());
+    addCriticArguments(commandLine);
+    return commandLine;
+  }
+
+  @Override
+  public void dispose() {
+    myIsDisposed = true;
+    synchronized (myLock) {
+      myPendingRequests.values().forEach(it -> it.myFuture.complete(null));
+      myPendingRequests.clear();
+      myResultsCache.clear();
+    }
+    myExecutor.execute(this::stopWorker);
+  }
+
+  public static @NotNull PerlCriticService getInstance(@NotNull Project project) {
+    return project.getService(PerlCriticService.class);
+  }
+
+  /**
+   * Pending request for a source of a file, shared by all callers with the same source and configuration
+   */
+  private static class Request {
+    private final @NotNull CompletableFuture<List<PerlCriticErrorDescriptor>> myFuture = new CompletableFuture<>();
+    private final byte[] mySourceBytes;
+    private final @NotNull Charset myCharset;
+    private final @NotNull String myCacheKey;
+
+    Request(byte[] sourceBytes, @NotNull Charset charset, @NotNull String cacheKey) {
+      mySourceBytes = sourceBytes;
+      myCharset = charset;
+      myCacheKey = cacheKey;
+    }
+  }
+}
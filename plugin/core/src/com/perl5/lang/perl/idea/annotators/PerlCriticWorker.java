@@ -0,0 +1,195 @@
+/*
+ * Copyright 2015-2020 Alexandr Evstigneev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.perl5.lang.perl.idea.annotators;
+
+import com.intellij.execution.ExecutionException;
+import com.intellij.execution.process.BaseProcessHandler;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.util.text.StringUtil;
+import com.perl5.lang.perl.idea.execution.PerlCommandLine;
+import com.perl5.lang.perl.idea.sdk.host.PerlHostData;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.*;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Long-living {@code perlcritic_worker.pl} process. Policies are loaded once on start and each request only critiques the source.
+ * Output is read line by line on a pooled thread, so requests wait for it without polling. Not thread-safe, requests should be sent
+ * sequentially.
+ */
+class PerlCriticWorker {
+  private static final Logger LOG = Logger.getInstance(PerlCriticWorker.class);
+  private static final String TERMINATOR = "__PERLCRITIC_WORKER_DONE__";
+  private static final String UNSUPPORTED_ARGUMENTS_MARKER = "__PERLCRITIC_WORKER_UNSUPPORTED__";
+  private static final int MAX_ERROR_LINES = 20;
+  private static final long CRITIQUE_TIMEOUT_MS = 60_000;
+  /**
+   * Put to the {@link #myOutputLines} when output is over, compared by identity
+   */
+  private static final byte[] END_OF_OUTPUT = new byte[0];
+
+  private final @NotNull String myKey;
+  private final @NotNull BaseProcessHandler<?> myProcessHandler;
+  private final @NotNull OutputStream myOutputStream;
+  /**
+   * Raw lines of the worker output without line separators, decoded by the request, because charset depends on the source
+   */
+  private final @NotNull BlockingQueue<byte[]> myOutputLines = new LinkedBlockingQueue<>();
+
+  /**
+   * @param key identifies configuration the worker has been started with
+   */
+  PerlCriticWorker(@NotNull String key, @NotNull PerlCommandLine commandLine) throws ExecutionException {
+    myKey = key;
+    commandLine.setRedirectErrorStream(true);
+    myProcessHandler = PerlHostData.createProcessHandler(commandLine);
+    myOutputStream = new BufferedOutputStream(Objects.requireNonNull(myProcessHandler.getProcessInput()));
+    InputStream inputStream = new BufferedInputStream(myProcessHandler.getProcess().getInputStream());
+    ApplicationManager.getApplication().executeOnPooledThread(() -> readOutput(inputStream));
+  }
+
+  @NotNull String getKey() {
+    return myKey;
+  }
+
+  boolean isAlive() {
+    return myProcessHandler.getProcess().isAlive();
+  }
+
+  void destroy() {
+    myProcessHandler.getProcess().destroy();
+  }
+
+  /**
+   * Sends {@code sourceBytes} to the worker and parses reported violations. Output is decoded with the {@code charset} of the source,
+   * because messages may contain parts of it.
+   *
+   * @throws UnsupportedArgumentsException if worker can't handle critic arguments it has been started with
+   * @throws CritiqueTimeoutException      if worker has not finished critique in time
+   * @throws IOException                   if worker failed to start or terminated unexpectedly, message contains its last output
+   */
+  @NotNull List<PerlCriticErrorDescriptor> critique(byte[] sourceBytes, @NotNull Charset charset) throws IOException {
+    myOutputStream.write((sourceBytes.length + "\n").getBytes(StandardCharsets.US_ASCII));
+    myOutputStream.write(sourceBytes);
+    myOutputStream.flush();
+
+    long deadline = System.currentTimeMillis() + CRITIQUE_TIMEOUT_MS;
+    List<PerlCriticErrorDescriptor> errors = new ArrayList<>();
+    List<String> unparsedLines = new ArrayList<>();
+    PerlCriticErrorDescriptor lastDescriptor = null;
+    String output;
+    while ((output = readLine(charset, deadline)) != null) {
+      if (TERMINATOR.equals(output)) {
+        return errors;
+      }
+      if (output.startsWith(UNSUPPORTED_ARGUMENTS_MARKER)) {
+        throw new UnsupportedArgumentsException(output.substring(UNSUPPORTED_ARGUMENTS_MARKER.length()).trim());
+      }
+      PerlCriticErrorDescriptor fromString = PerlCriticErrorDescriptor.getFromString(output);
+      if (fromString != null) {
+        errors.add(lastDescriptor = fromString);
+      }
+      else if (lastDescriptor != null) {
+        lastDescriptor.append(" " + output);
+      }
+      else {
+        LOG.warn("Could not parse line: " + output);
+        if (unparsedLines.size() < MAX_ERROR_LINES) {
+          unparsedLines.add(output);
+        }
+      }
+    }
+    throw new IOException("Perl::Critic worker terminated unexpectedly: " + StringUtil.join(unparsedLines, "<br>"));
+  }
+
+  /**
+   * @return next line of the worker output without line separator or null if output is over
+   * @throws CritiqueTimeoutException if line is not complete before {@code deadline}
+   */
+  private @Nullable String readLine(@NotNull Charset charset, long deadline) throws IOException {
+    byte[] lineBytes;
+    try {
+      lineBytes = myOutputLines.poll(deadline - System.currentTimeMillis(), TimeUnit.MILLISECONDS);
+    }
+    catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException();
+    }
+    if (lineBytes == null) {
+      throw new CritiqueTimeoutException();
+    }
+    if (lineBytes == END_OF_OUTPUT) {
+      // keeps the end for subsequent reads
+      myOutputLines.add(END_OF_OUTPUT);
+      return null;
+    }
+    return StringUtil.trimEnd(new String(lineBytes, charset), '\r');
+  }
+
+  /**
+   * Splits worker output into lines until it is over
+   */
+  private void readOutput(@NotNull InputStream inputStream) {
+    ByteArrayOutputStream lineBytes = new ByteArrayOutputStream();
+    try {
+      int nextByte;
+      while ((nextByte = inputStream.read()) != -1) {
+        if (nextByte == '\n') {
+          myOutputLines.add(lineBytes.toByteArray());
+          lineBytes.reset();
+        }
+        else {
+          lineBytes.write(nextByte);
+        }
+      }
+      if (lineBytes.size() > 0) {
+        myOutputLines.add(lineBytes.toByteArray());
+      }
+    }
+    catch (IOException e) {
+      LOG.debug("Error reading Perl::Critic worker output", e);
+    }
+    finally {
+      myOutputLines.add(END_OF_OUTPUT);
+    }
+  }
+
+  /**
+   * Worker can't be used with current critic arguments, e.g. with output formatting options
+   */
+  static class UnsupportedArgumentsException extends IOException {
+    UnsupportedArgumentsException(@NotNull String arguments) {
+      super("Unsupported Perl::Critic arguments: " + arguments);
+    }
+  }
+
+  static class CritiqueTimeoutException extends IOException {
+    CritiqueTimeoutException() {
+      super("Perl::Critic worker has not finished in " + CRITIQUE_TIMEOUT_MS + "ms");
+    }
+  }
+}
@@ -178,16 +178,34 @@ public class PerlControlFlowBuilder extends ControlFlowBuilder {
     return instruction;
   }
 
-  public static @NotNull ClearableLazyValue<Instruction[]> createLazy(@NotNull PsiElement element) {
-    return ClearableLazyValue.create(() -> new PerlControlFlowBuilder().build(element).getInstructions());
+  /**
+   * @return lazy control flow of {@code element} with reaching definitions analysis for it
+   */
+  public static @NotNull ClearableLazyValue<PerlReachingDefinitions> createLazy(@NotNull PsiElement element) {
+    return ClearableLazyValue.create(() -> buildReachingDefinitions(element));
+  }
+
+  private static @NotNull PerlReachingDefinitions buildReachingDefinitions(@NotNull PsiElement element) {
+    return new PerlReachingDefinitions(new PerlControlFlowBuilder().build(element).getInstructions());
   }
 
   public static Instruction[] getFor(@NotNull PsiElement element) {
     if (element instanceof PerlControlFlowOwner) {
       return ((PerlControlFlowOwner)element).getControlFlow();
     }
+    return getReachingDefinitions(element).getInstructions();
+  }
+
+  /**
+   * @return reaching definitions analysis for the control flow of {@code element}. Analysis is created once per control flow and cached
+   * with it
+   */
+  public static @NotNull PerlReachingDefinitions getReachingDefinitions(@NotNull PsiElement element) {
+    if (element instanceof PerlControlFlowOwner) {
+      return ((PerlControlFlowOwner)element).getReachingDefinitions();
+    }
     return CachedValuesManager.getCachedValue(
-      element, () -> CachedValueProvider.Result.create(new PerlControlFlowBuilder().build(element).getInstructions(), element));
+      element, () -> CachedValueProvider.Result.create(buildReachingDefinitions(element), element));
   }
 
   @SuppressWarnings("UnusedReturnValue")
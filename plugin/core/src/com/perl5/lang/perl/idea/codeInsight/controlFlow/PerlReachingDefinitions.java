@@ -0,0 +1,347 @@
+/*
+ * Copyright 2015-2021 Alexandr Evstigneev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.perl5.lang.perl.idea.codeInsight.controlFlow;
+
+import com.intellij.codeInsight.controlflow.Instruction;
+import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.openapi.util.AtomicNotNullLazyValue;
+import com.intellij.psi.PsiElement;
+import com.intellij.util.ArrayUtil;
+import com.perl5.lang.perl.psi.PerlSubDefinitionElement;
+import com.perl5.lang.perl.psi.PerlSubExpr;
+import com.perl5.lang.perl.psi.PerlVariable;
+import com.perl5.lang.perl.psi.utils.PerlVariableType;
+import gnu.trove.TIntArrayList;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Reaching definitions analysis over the control flow of a single scope. Computed lazily per variable and cached together with
+ * instructions, see {@link PerlControlFlowBuilder#getReachingDefinitions(PsiElement)}.
+ * <p>
+ * Semantics matches the backward walk from the query instruction: assignments to the variable stop the walk, assignments placed after
+ * the query instruction are transparent, stop element blocks the walk and first instruction of the scope means that value may come from
+ * the outer scope. Because of the transparent assignments, data flow is solved separately for each number of assignments preceding the
+ * query instruction.
+ */
+public final class PerlReachingDefinitions {
+  private static final BitSet EMPTY_SET = new BitSet();
+
+  private final @NotNull Instruction[] myInstructions;
+  private final AtomicNotNullLazyValue<Map<PsiElement, Integer>> myElementsIndexProvider =
+    AtomicNotNullLazyValue.createValue(this::computeElementsIndex);
+  private final AtomicNotNullLazyValue<Map<VariableKey, int[]>> myDefinitionsIndexProvider =
+    AtomicNotNullLazyValue.createValue(this::computeDefinitionsIndex);
+  private final @NotNull Map<SolutionKey, BitSet[]> mySolutions = new ConcurrentHashMap<>();
+
+  PerlReachingDefinitions(@NotNull Instruction[] instructions) {
+    myInstructions = instructions;
+  }
+
+  public @NotNull Instruction[] getInstructions() {
+    return myInstructions;
+  }
+
+  /**
+   * @return number of the first instruction for the {@code element} or -1 if there is none
+   * @see com.intellij.codeInsight.controlflow.ControlFlowUtil#findInstructionNumberByElement(Instruction[], PsiElement)
+   */
+  public int findInstructionNumberByElement(@NotNull PsiElement element) {
+    Integer result = myElementsIndexProvider.getValue().get(element);
+    return result == null ? -1 : result;
+  }
+
+  /**
+   * @param instructionIndex index of the instruction definitions are computed for
+   * @param stopElement      element of instruction blocking the flow, e.g. lexical declaration
+   * @param withArguments    true iff sub definitions and expressions should be treated as definitions of the {@code @_}
+   * @return definitions of the variable, reaching the instruction
+   */
+  public @NotNull Result getReachingDefinitions(int instructionIndex,
+                                                @NotNull PerlVariableType actualType,
+                                                @NotNull String variableName,
+                                                @Nullable String namespaceName,
+                                                @Nullable PsiElement stopElement,
+                                                boolean withArguments) {
+    VariableKey variableKey = new VariableKey(actualType, variableName, namespaceName);
+    int[] definitions = myDefinitionsIndexProvider.getValue().getOrDefault(variableKey, ArrayUtil.EMPTY_INT_ARRAY);
+    Instruction instruction = myInstructions[instructionIndex];
+
+    int definitionIndex = Arrays.binarySearch(definitions, instructionIndex);
+    if (instruction instanceof PerlAssignInstruction && definitionIndex >= 0) {
+      return new Result(Collections.singletonList((PerlMutationInstruction)instruction), false, false);
+    }
+    if (!(instruction instanceof PerlMutationInstruction)) {
+      PsiElement instructionElement = instruction.getElement();
+      if (withArguments && isArgumentsSource(instructionElement)) {
+        return new Result(Collections.emptyList(), false, true);
+      }
+      if (Objects.equals(stopElement, instructionElement)) {
+        return new Result(Collections.emptyList(), false, false);
+      }
+    }
+
+    int activeDefinitions = definitionIndex >= 0 ? definitionIndex : -definitionIndex - 1;
+    SolutionKey solutionKey = new SolutionKey(variableKey, stopElement, withArguments, activeDefinitions);
+    BitSet[] solution = mySolutions.get(solutionKey);
+    if (solution == null) {
+      solution = solve(definitions, activeDefinitions, stopElement, withArguments);
+      mySolutions.putIfAbsent(solutionKey, solution);
+    }
+
+    BitSet reachingSet = computeInput(instruction, solution);
+    if (isOuterScopeSource(instruction)) {
+      reachingSet = withBit(reachingSet, definitions.length);
+    }
+    List<PerlMutationInstruction> reachingDefinitions = new ArrayList<>();
+    for (int i = reachingSet.nextSetBit(0); i >= 0 && i < definitions.length; i = reachingSet.nextSetBit(i + 1)) {
+      reachingDefinitions.add((PerlMutationInstruction)myInstructions[definitions[i]]);
+    }
+    return new Result(reachingDefinitions, reachingSet.get(definitions.length), reachingSet.get(definitions.length + 1));
+  }
+
+  /**
+   * Solves forward data flow problem for the variable with {@code definitions}. Bits {@code 0..definitions.length-1} are definitions,
+   * next bit is the outer scope value, next one is {@code @_} value. Sets are immutable and shared between instructions when possible.
+   *
+   * @param activeDefinitions number of leading definitions stopping the flow, the rest ones are transparent
+   * @return output sets for each instruction
+   */
+  private @NotNull BitSet[] solve(int[] definitions, int activeDefinitions, @Nullable PsiElement stopElement, boolean withArguments) {
+    int outerScopeBit = definitions.length;
+    int argumentsBit = definitions.length + 1;
+    BitSet[] output = new BitSet[myInstructions.length];
+    boolean changed = true;
+    while (changed) {
+      ProgressManager.checkCanceled();
+      changed = false;
+      for (Instruction instruction : myInstructions) {
+        BitSet newOutput;
+        int definitionIndex = instruction instanceof PerlMutationInstruction ? Arrays.binarySearch(definitions, instruction.num()) : -1;
+        if (definitionIndex >= 0 && definitionIndex < activeDefinitions) {
+          newOutput = output[instruction.num()];
+          if (newOutput == null) {
+            newOutput = withBit(EMPTY_SET, definitionIndex);
+          }
+        }
+        else if (!(instruction instanceof PerlMutationInstruction) && withArguments && isArgumentsSource(instruction.getElement())) {
+          newOutput = output[instruction.num()];
+          if (newOutput == null) {
+            newOutput = withBit(EMPTY_SET, argumentsBit);
+          }
+        }
+        else if (!(instruction instanceof PerlMutationInstruction) && Objects.equals(stopElement, instruction.getElement())) {
+          newOutput = EMPTY_SET;
+        }
+        else {
+          newOutput = computeInput(instruction, output);
+          if (isOuterScopeSource(instruction)) {
+            newOutput = withBit(newOutput, outerScopeBit);
+          }
+        }
+        BitSet oldOutput = output[instruction.num()];
+        if (oldOutput == null || oldOutput != newOutput && !oldOutput.equals(newOutput)) {
+          output[instruction.num()] = newOutput;
+          changed = true;
+        }
+      }
+    }
+    return output;
+  }
+
+  /**
+   * @return union of predecessors outputs, reusing one of them if possible
+   */
+  private static @NotNull BitSet computeInput(@NotNull Instruction instruction, @NotNull BitSet[] output) {
+    BitSet result = null;
+    boolean isCopy = false;
+    for (Instruction predecessor : instruction.allPred()) {
+      BitSet predecessorOutput = output[predecessor.num()];
+      if (predecessorOutput == null || predecessorOutput.isEmpty() || predecessorOutput == result) {
+        continue;
+      }
+      if (result == null) {
+        result = predecessorOutput;
+      }
+      else {
+        if (!isCopy) {
+          result = (BitSet)result.clone();
+          isCopy = true;
+        }
+        result.or(predecessorOutput);
+      }
+    }
+    return result == null ? EMPTY_SET : result;
+  }
+
+  private static @NotNull BitSet withBit(@NotNull BitSet set, int bit) {
+    if (set.get(bit)) {
+      return set;
+    }
+    BitSet result = (BitSet)set.clone();
+    result.set(bit);
+    return result;
+  }
+
+  private static boolean isArgumentsSource(@Nullable PsiElement element) {
+    return element instanceof PerlSubDefinitionElement || element instanceof PerlSubExpr;
+  }
+
+  /**
+   * @return true iff value may come from outer scope through this instruction
+   */
+  private static boolean isOuterScopeSource(@NotNull Instruction instruction) {
+    if (instruction.num() != 1 || instruction instanceof PerlMutationInstruction) {
+      return false;
+    }
+    PsiElement element = instruction.getElement();
+    return element != null && element.getContext() != null;
+  }
+
+  private @NotNull Map<PsiElement, Integer> computeElementsIndex() {
+    Map<PsiElement, Integer> result = new IdentityHashMap<>(myInstructions.length);
+    for (Instruction instruction : myInstructions) {
+      PsiElement element = instruction.getElement();
+      if (element != null) {
+        result.putIfAbsent(element, instruction.num());
+      }
+    }
+    return result;
+  }
+
+  private @NotNull Map<VariableKey, int[]> computeDefinitionsIndex() {
+    Map<VariableKey, TIntArrayList> definitions = new HashMap<>();
+    for (Instruction instruction : myInstructions) {
+      if (!(instruction instanceof PerlMutationInstruction)) {
+        continue;
+      }
+      PsiElement assignee = ((PerlMutationInstruction)instruction).getLeftSide();
+      if (!(assignee instanceof PerlVariable)) {
+        continue;
+      }
+      PerlVariable variable = (PerlVariable)assignee;
+      String variableName = variable.getName();
+      if (variableName == null) {
+        continue;
+      }
+      definitions.computeIfAbsent(new VariableKey(variable.getActualType(), variableName, variable.getExplicitNamespaceName()),
+                                  it -> new TIntArrayList()).add(instruction.num());
+    }
+    Map<VariableKey, int[]> result = new HashMap<>(definitions.size());
+    definitions.forEach((key, value) -> result.put(key, value.toNativeArray()));
+    return result;
+  }
+
+  public static final class Result {
+    private final @NotNull List<PerlMutationInstruction> myDefinitions;
+    private final boolean myOuterScopeReached;
+    private final boolean myArgumentsReached;
+
+    private Result(@NotNull List<PerlMutationInstruction> definitions, boolean outerScopeReached, boolean argumentsReached) {
+      myDefinitions = definitions;
+      myOuterScopeReached = outerScopeReached;
+      myArgumentsReached = argumentsReached;
+    }
+
+    /**
+     * @return mutation instructions of the variable, reaching the instruction
+     */
+    public @NotNull List<PerlMutationInstruction> getDefinitions() {
+      return myDefinitions;
+    }
+
+    /**
+     * @return true iff first instruction of the scope is reached and value should be looked in the outer scope
+     */
+    public boolean isOuterScopeReached() {
+      return myOuterScopeReached;
+    }
+
+    /**
+     * @return true iff sub definition or expression is reached, providing {@code @_} value
+     */
+    public boolean isArgumentsReached() {
+      return myArgumentsReached;
+    }
+  }
+
+  private static final class VariableKey {
+    private final @NotNull PerlVariableType myActualType;
+    private final @NotNull String myName;
+    private final @Nullable String myNamespaceName;
+
+    VariableKey(@NotNull PerlVariableType actualType, @NotNull String name, @Nullable String namespaceName) {
+      myActualType = actualType;
+      myName = name;
+      myNamespaceName = namespaceName;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (o == null || getClass() != o.getClass()) {
+        return false;
+      }
+      VariableKey key = (VariableKey)o;
+      return myActualType == key.myActualType && myName.equals(key.myName) && Objects.equals(myNamespaceName, key.myNamespaceName);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(myActualType, myName, myNamespaceName);
+    }
+  }
+
+  private static final class SolutionKey {
+    private final @NotNull VariableKey myVariableKey;
+    private final @Nullable PsiElement myStopElement;
+    private final boolean myWithArguments;
+    private final int myActiveDefinitions;
+
+    SolutionKey(@NotNull VariableKey variableKey, @Nullable PsiElement stopElement, boolean withArguments, int activeDefinitions) {
+      myVariableKey = variableKey;
+      myStopElement = stopElement;
+      myWithArguments = withArguments;
+      myActiveDefinitions = activeDefinitions;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (o == null || getClass() != o.getClass()) {
+        return false;
+      }
+      SolutionKey key = (SolutionKey)o;
+      return myWithArguments == key.myWithArguments &&
+             myActiveDefinitions == key.myActiveDefinitions &&
+             myVariableKey.equals(key.myVariableKey) &&
+             Objects.equals(myStopElement, key.myStopElement);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(myVariableKey, myStopElement, myWithArguments, myActiveDefinitions);
+    }
+  }
+}
@@ -87,6 +87,7 @@ public abstract class PerlCallValue extends PerlParametrizedOperationValue {
       Pair.create(resolver.getResolveScope(), this), true, () -> {
         processCallTargets(resolver.getProject(), resolver.getResolveScope(), resolver.getContextFile(), namespaceNames, subNames, it -> {
           hasTargets[0] = true;
+            resolver.addDependency(it);
             if (it instanceof PerlSubElement) {
               builder.addVariant(new PerlSubValueResolver(it, argumentsValue).resolve(((PerlSubElement)it).getReturnValue()));
             }
@@ -19,6 +19,8 @@ package com.perl5.lang.perl.idea.codeInsight.typeInference.value;
 import com.intellij.psi.PsiElement;
 import org.jetbrains.annotations.NotNull;
 
+import java.util.Arrays;
+
 public class PerlSubValueResolver extends PerlValueResolver {
   private final @NotNull PerlValue myArguments;
 
@@ -33,6 +35,11 @@ public class PerlSubValueResolver extends PerlValueResolver {
     return perlValue == PerlValues.ARGUMENTS_VALUE ? myArguments : perlValue;
   }
 
+  @Override
+  @NotNull Object getCacheKey() {
+    return Arrays.asList(super.getCacheKey(), myArguments);
+  }
+
   @Override
   public boolean equals(Object o) {
     if (this == o) {
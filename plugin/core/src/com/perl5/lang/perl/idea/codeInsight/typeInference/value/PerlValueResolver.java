@@ -18,12 +18,14 @@ package com.perl5.lang.perl.idea.codeInsight.typeInference.value;
 
 import com.intellij.openapi.project.Project;
 import com.intellij.psi.PsiElement;
+import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.psi.PsiFile;
 import com.intellij.psi.search.GlobalSearchScope;
 import com.intellij.util.ObjectUtils;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.util.Arrays;
 import java.util.Objects;
 import java.util.function.Function;
 
@@ -34,10 +36,13 @@ public abstract class PerlValueResolver {
 
   private final @Nullable PsiFile myContextFile;
 
+  private final @Nullable VirtualFile myContextVirtualFile;
+
   public PerlValueResolver(@NotNull PsiElement contextElement) {
     myResolveScope = contextElement.getResolveScope();
     myCacheService = PerlValuesCacheService.getInstance(contextElement.getProject());
     myContextFile = ObjectUtils.doIfNotNull(contextElement.getContainingFile(), PsiFile::getOriginalFile);
+    myContextVirtualFile = myContextFile == null ? null : myContextFile.getViewProvider().getVirtualFile();
   }
 
   public @NotNull PerlValue resolve(@NotNull PerlValue unresolvedValue) {
@@ -48,6 +53,21 @@ public abstract class PerlValueResolver {
     return substitute(myCacheService.getResolvedValue(substitutedUnresolvedValue, this));
   }
 
+  /**
+   * Registers {@code element} as a dependency of the value being resolved, so cached value is invalidated on changes in its file
+   */
+  void addDependency(@NotNull PsiElement element) {
+    myCacheService.addDependency(element);
+  }
+
+  /**
+   * @return key of values resolved with this resolver in the {@link PerlValuesCacheService}. Equal for equal resolvers and holds no PSI,
+   * because cached values may outlive it
+   */
+  @NotNull Object getCacheKey() {
+    return Arrays.asList(getClass(), myResolveScope, myContextVirtualFile);
+  }
+
   public @Nullable PsiFile getContextFile() {
     return myContextFile;
   }
@@ -16,30 +16,118 @@
 
 package com.perl5.lang.perl.idea.codeInsight.typeInference.value;
 
+import com.intellij.ProjectTopics;
 import com.intellij.openapi.Disposable;
 import com.intellij.openapi.components.ServiceManager;
 import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.project.DumbService;
 import com.intellij.openapi.project.Project;
+import com.intellij.openapi.roots.ModuleRootEvent;
+import com.intellij.openapi.roots.ModuleRootListener;
 import com.intellij.openapi.util.Pair;
 import com.intellij.openapi.util.RecursionManager;
-import com.intellij.psi.util.PsiModificationTracker;
-import com.intellij.util.containers.ContainerUtil;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.*;
+import com.intellij.psi.util.PsiTreeUtil;
+import com.intellij.util.messages.MessageBusConnection;
+import com.perl5.lang.perl.psi.*;
+import com.perl5.lang.perl.psi.impl.PerlPolyNamedElement;
+import com.perl5.lang.perl.psi.impl.PerlUseStatementElement;
+import com.perl5.lang.perl.psi.utils.PerlVariableType;
+import gnu.trove.THashMap;
+import gnu.trove.THashSet;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
-import java.util.Map;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicLong;
 
 import static com.perl5.lang.perl.idea.codeInsight.typeInference.value.PerlValues.UNKNOWN_VALUE;
 
-public class PerlValuesCacheService implements PsiModificationTracker.Listener, Disposable {
+/**
+ * Bounded LRU cache of resolved values. Each value remembers files it depends on: file of the resolve context and files of the call targets
+ * processed while resolving, including ones from the nested resolves. Changes inside subs bodies invalidate only values depending on the
+ * changed file, any other change may affect the set of the call targets and invalidates everything. Keys are built from
+ * {@link PerlValueResolver#getCacheKey()} and hold no PSI, so evicted or invalidated files are not leaked by the cache.
+ */
+public class PerlValuesCacheService implements Disposable {
   private static final Logger LOG = Logger.getInstance(PerlValuesCacheService.class);
-  private final @NotNull Map<Pair<PerlValue, PerlValueResolver>, PerlValue> myResolveMap = ContainerUtil.createConcurrentWeakMap();
+  private static final int MAX_SIZE = 10_000;
+
+  private static final int SEGMENTS_NUMBER = 16;
 
-  private final AtomicLong myResolveRequests = new AtomicLong();
-  private final AtomicLong myResolveBuilds = new AtomicLong();
+  /**
+   * LRU maps with own locks, key is stored in the segment selected by its hash
+   */
+  private final Segment[] mySegments = new Segment[SEGMENTS_NUMBER];
+  /**
+   * Reverse index of dependencies. Sets are modified atomically with {@link Map#compute} of the owning file
+   */
+  private final @NotNull Map<VirtualFile, Set<Pair<PerlValue, Object>>> myDependentKeys = new ConcurrentHashMap<>();
+  /**
+   * Incremented on each invalidation, prevents caching of values computed before it
+   */
+  private final AtomicLong myModificationStamp = new AtomicLong();
+  /**
+   * Dependencies of values being resolved in the current thread, innermost on top
+   */
+  private final ThreadLocal<Deque<Set<VirtualFile>>> myDependenciesStack = ThreadLocal.withInitial(ArrayDeque::new);
+
+  private final AtomicLong myHits = new AtomicLong();
+  private final AtomicLong myMisses = new AtomicLong();
+  private final AtomicLong myEvictions = new AtomicLong();
+  private final AtomicLong myInvalidations = new AtomicLong();
+  private final AtomicLong myRecursionsPrevented = new AtomicLong();
 
   public PerlValuesCacheService(@NotNull Project project) {
-    project.getMessageBus().connect(this).subscribe(PsiModificationTracker.TOPIC, this);
+    for (int i = 0; i < SEGMENTS_NUMBER; i++) {
+      mySegments[i] = new Segment();
+    }
+    MessageBusConnection connection = project.getMessageBus().connect(this);
+    connection.subscribe(ProjectTopics.PROJECT_ROOTS, new ModuleRootListener() {
+      @Override
+      public void rootsChanged(@NotNull ModuleRootEvent event) {
+        invalidateAll();
+      }
+    });
+    connection.subscribe(DumbService.DUMB_MODE, new DumbService.DumbModeListener() {
+      @Override
+      public void exitDumbMode() {
+        invalidateAll();
+      }
+    });
+    PsiManager.getInstance(project).addPsiTreeChangeListener(new PsiTreeChangeAdapter() {
+      @Override
+      public void childAdded(@NotNull PsiTreeChangeEvent event) {
+        processEvent(event);
+      }
+
+      @Override
+      public void childRemoved(@NotNull PsiTreeChangeEvent event) {
+        processEvent(event);
+      }
+
+      @Override
+      public void childReplaced(@NotNull PsiTreeChangeEvent event) {
+        processEvent(event);
+      }
+
+      @Override
+      public void childMoved(@NotNull PsiTreeChangeEvent event) {
+        processEvent(event);
+      }
+
+      @Override
+      public void childrenChanged(@NotNull PsiTreeChangeEvent event) {
+        processEvent(event);
+      }
+
+      @Override
+      public void propertyChanged(@NotNull PsiTreeChangeEvent event) {
+        processEvent(event);
+      }
+    }, this);
   }
 
   @Override
@@ -48,36 +136,357 @@ public class PerlValuesCacheService implements PsiModificationTracker.Listener,
   }
 
   public @NotNull PerlValue getResolvedValue(@NotNull PerlValue deferredValue, @NotNull PerlValueResolver resolver) {
-    Pair<PerlValue, PerlValueResolver> key = Pair.create(deferredValue, resolver);
-    myResolveRequests.incrementAndGet();
-    PerlValue result = myResolveMap.get(key);
-    if (result != null) {
-      return result;
-    }
-    myResolveBuilds.incrementAndGet();
-    PerlValue resolvedValue = RecursionManager.doPreventingRecursion(
-      key, true, () -> PerlValuesManager.intern(deferredValue.computeResolve(resolver)));
+    Pair<PerlValue, Object> key = Pair.create(deferredValue, resolver.getCacheKey());
+    Segment segment = getSegment(key);
+    CacheEntry cacheEntry = segment.get(key);
+    if (cacheEntry != null) {
+      myHits.incrementAndGet();
+      propagateDependencies(cacheEntry.myDependencies);
+      return cacheEntry.myValue;
+    }
+    myMisses.incrementAndGet();
+
+    Set<VirtualFile> dependencies = new THashSet<>();
+    addFileDependency(dependencies, resolver.getContextFile());
+    long modificationStamp = myModificationStamp.get();
+    Deque<Set<VirtualFile>> dependenciesStack = myDependenciesStack.get();
+    dependenciesStack.push(dependencies);
+    PerlValue resolvedValue;
+    try {
+      resolvedValue = RecursionManager.doPreventingRecursion(
+        key, true, () -> PerlValuesManager.intern(deferredValue.computeResolve(resolver)));
+    }
+    finally {
+      dependenciesStack.pop();
+    }
+    propagateDependencies(dependencies);
+
     if (resolvedValue == null) {
+      myRecursionsPrevented.incrementAndGet();
       // fixme probably we could use this for recursion prevention. Actually, this may happen because of flaws of our loops/conditions handling
       return UNKNOWN_VALUE;
     }
-    myResolveMap.putIfAbsent(key, resolvedValue);
+    segment.putIfActual(key, new CacheEntry(resolvedValue, dependencies), modificationStamp);
     return resolvedValue;
   }
 
-  @Override
-  public void modificationCountChanged() {
-    myResolveMap.clear();
+  /**
+   * Registers containing file of the {@code element} as a dependency of the value being resolved in the current thread.
+   */
+  void addDependency(@NotNull PsiElement element) {
+    Set<VirtualFile> currentDependencies = myDependenciesStack.get().peek();
+    if (currentDependencies != null) {
+      addFileDependency(currentDependencies, element.getContainingFile());
+    }
+  }
+
+  private void propagateDependencies(@NotNull Set<VirtualFile> dependencies) {
+    Set<VirtualFile> outerDependencies = myDependenciesStack.get().peek();
+    if (outerDependencies != null) {
+      outerDependencies.addAll(dependencies);
+    }
+  }
+
+  private static void addFileDependency(@NotNull Set<VirtualFile> dependencies, @Nullable PsiFile psiFile) {
+    if (psiFile != null) {
+      dependencies.add(psiFile.getOriginalFile().getViewProvider().getVirtualFile());
+    }
+  }
+
+  /**
+   * Changes inside subs bodies, not introducing new declarations, can't affect values resolved in other files, unless they depend on such
+   * subs. Any other change invalidates the whole cache.
+   */
+  private void processEvent(@NotNull PsiTreeChangeEvent event) {
+    PsiFile psiFile = event.getFile();
+    if (psiFile == null || !isInsideSubBody(event)) {
+      invalidateAll();
+    }
+    else {
+      invalidateFile(psiFile.getViewProvider().getVirtualFile());
+    }
+  }
+
+  private static boolean isInsideSubBody(@NotNull PsiTreeChangeEvent event) {
+    PsiElement parent = event.getParent();
+    if (parent == null || parent instanceof PsiFileSystemItem) {
+      return false;
+    }
+    PerlSubDefinitionElement subDefinitionElement = PsiTreeUtil.getParentOfType(parent, PerlSubDefinitionElement.class, false);
+    PsiPerlBlock subBody = subDefinitionElement == null ? null : subDefinitionElement.getSubDefinitionBody();
+    if (subBody == null || !PsiTreeUtil.isAncestor(subBody, parent, false)) {
+      return false;
+    }
+    for (PsiElement run = parent; run != subBody; run = run.getParent()) {
+      if (run instanceof PerlAssignExpression && isGlobalAssignment((PerlAssignExpression)run)) {
+        return false;
+      }
+    }
+    return !mayAffectOtherFiles(event.getChild()) && !mayAffectOtherFiles(event.getNewChild());
+  }
+
+  /**
+   * @return true iff {@code element} contains declarations or assignments to package variables, which may be used in other files
+   */
+  private static boolean mayAffectOtherFiles(@Nullable PsiElement element) {
+    return element != null && !PsiTreeUtil.processElements(element, it -> !isDeclaration(it) && !(
+      it instanceof PerlAssignExpression && isGlobalAssignment((PerlAssignExpression)it)));
+  }
+
+  private static boolean isDeclaration(@NotNull PsiElement element) {
+    return element instanceof PerlSubDefinitionElement || element instanceof PerlNamespaceDefinitionElement ||
+           element instanceof PerlPolyNamedElement || element instanceof PerlUseStatementElement ||
+           element instanceof PerlVariableDeclarationElement && ((PerlVariableDeclarationElement)element).isGlobalDeclaration();
+  }
+
+  /**
+   * @return true iff left side of the {@code assignExpression} has {@code our} declarations, globs or variables not declared lexically
+   */
+  private static boolean isGlobalAssignment(@NotNull PerlAssignExpression assignExpression) {
+    return !PsiTreeUtil.processElements(assignExpression.getLeftSide(), it -> !isGlobalTarget(it));
+  }
+
+  private static boolean isGlobalTarget(@NotNull PsiElement element) {
+    if (element instanceof PerlVariableDeclarationElement) {
+      return ((PerlVariableDeclarationElement)element).isGlobalDeclaration();
+    }
+    if (element instanceof PerlGlobVariable) {
+      return true;
+    }
+    if (!(element instanceof PerlVariable) || element.getParent() instanceof PerlVariableDeclarationElement) {
+      return false;
+    }
+    PerlVariable variable = (PerlVariable)element;
+    // removed elements have no scope, so their variables are considered global
+    return variable.getExplicitNamespaceName() != null || !variable.isValid() || !hasLexicalDeclaration(variable);
+  }
+
+  /**
+   * Resolving is too expensive for tree change events, so only syntax is checked: enclosing sub or, failing that, containing file should
+   * have lexical declaration of the variable with same type and name. Declarations order and nested blocks are not taken into account.
+   */
+  private static boolean hasLexicalDeclaration(@NotNull PerlVariable variable) {
+    String variableName = variable.getName();
+    PerlVariableType variableType = variable.getActualType();
+    if (variableName == null || variableType == null) {
+      return false;
+    }
+    PerlSubDefinitionElement subDefinitionElement = PsiTreeUtil.getParentOfType(variable, PerlSubDefinitionElement.class);
+    return subDefinitionElement != null && hasLexicalDeclaration(subDefinitionElement, variableName, variableType) ||
+           hasLexicalDeclaration(variable.getContainingFile(), variableName, variableType);
+  }
+
+  private static boolean hasLexicalDeclaration(@Nullable PsiElement scope,
+                                               @NotNull String variableName,
+                                               @NotNull PerlVariableType variableType) {
+    return scope != null && !PsiTreeUtil.processElements(scope, it -> !(
+      it instanceof PerlVariableDeclarationElement &&
+      ((PerlVariableDeclarationElement)it).isLexicalDeclaration() &&
+      ((PerlVariableDeclarationElement)it).getActualType() == variableType &&
+      variableName.equals(((PerlVariableDeclarationElement)it).getName())));
+  }
+
+  private void invalidateFile(@NotNull VirtualFile virtualFile) {
+    myModificationStamp.incrementAndGet();
+    Set<Pair<PerlValue, Object>> dependentKeys = myDependentKeys.remove(virtualFile);
+    if (dependentKeys == null) {
+      return;
+    }
+    for (Pair<PerlValue, Object> key : dependentKeys) {
+      if (getSegment(key).remove(key)) {
+        myInvalidations.incrementAndGet();
+      }
+    }
+  }
 
-    if (myResolveRequests.get() > 0) {
-      LOG.debug(String.format("Value resolve effectiveness: %d, %d, %d", myResolveRequests.get(), myResolveBuilds.get(),
-                              (myResolveRequests.get() - myResolveBuilds.get()) * 100 / myResolveRequests.get()));
+  private void invalidateAll() {
+    myModificationStamp.incrementAndGet();
+    for (Segment segment : mySegments) {
+      myInvalidations.addAndGet(segment.clear());
+    }
+    if (LOG.isDebugEnabled()) {
+      LOG.debug("Cache invalidated: " + getStatistics());
     }
-    myResolveRequests.set(0);
-    myResolveBuilds.set(0);
+  }
+
+  private @NotNull Segment getSegment(@NotNull Pair<PerlValue, Object> key) {
+    return mySegments[Math.floorMod(key.hashCode(), SEGMENTS_NUMBER)];
+  }
+
+  /**
+   * Should be invoked under lock of the key segment
+   */
+  private void registerDependencies(@NotNull Pair<PerlValue, Object> key, @NotNull CacheEntry cacheEntry) {
+    for (VirtualFile dependency : cacheEntry.myDependencies) {
+      myDependentKeys.compute(dependency, (file, keys) -> {
+        Set<Pair<PerlValue, Object>> result = keys == null ? new THashSet<>() : keys;
+        result.add(key);
+        return result;
+      });
+    }
+  }
+
+  /**
+   * Should be invoked under lock of the key segment
+   */
+  private void unregisterDependencies(@NotNull Pair<PerlValue, Object> key, @NotNull CacheEntry cacheEntry) {
+    for (VirtualFile dependency : cacheEntry.myDependencies) {
+      myDependentKeys.computeIfPresent(dependency, (file, keys) -> {
+        keys.remove(key);
+        return keys.isEmpty() ? null : keys;
+      });
+    }
+  }
+
+  public @NotNull Statistics getStatistics() {
+    int size = 0;
+    for (Segment segment : mySegments) {
+      size += segment.size();
+    }
+    return new Statistics(size, myHits.get(), myMisses.get(), myEvictions.get(), myInvalidations.get(), myRecursionsPrevented.get());
   }
 
   public static @NotNull PerlValuesCacheService getInstance(@NotNull Project project) {
     return ServiceManager.getService(project, PerlValuesCacheService.class);
   }
+
+  /**
+   * Access-ordered map with eviction of the least recently used entry, guarded by the segment itself
+   */
+  private final class Segment {
+    private final @NotNull Map<Pair<PerlValue, Object>, CacheEntry> myMap =
+      new LinkedHashMap<>(MAX_SIZE / SEGMENTS_NUMBER / 4, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Pair<PerlValue, Object>, CacheEntry> eldest) {
+          if (size() <= MAX_SIZE / SEGMENTS_NUMBER) {
+            return false;
+          }
+          myEvictions.incrementAndGet();
+          unregisterDependencies(eldest.getKey(), eldest.getValue());
+          return true;
+        }
+      };
+
+    synchronized @Nullable CacheEntry get(@NotNull Pair<PerlValue, Object> key) {
+      return myMap.get(key);
+    }
+
+    /**
+     * Stores the {@code cacheEntry} if there were no invalidations since {@code modificationStamp}. Stamp is checked again after
+     * registering dependencies: invalidation, which missed them, has changed the stamp before
+     */
+    synchronized void putIfActual(@NotNull Pair<PerlValue, Object> key, @NotNull CacheEntry cacheEntry, long modificationStamp) {
+      if (modificationStamp != myModificationStamp.get()) {
+        return;
+      }
+      CacheEntry oldEntry = myMap.put(key, cacheEntry);
+      if (oldEntry != null) {
+        unregisterDependencies(key, oldEntry);
+      }
+      registerDependencies(key, cacheEntry);
+      if (modificationStamp != myModificationStamp.get()) {
+        remove(key);
+      }
+    }
+
+    /**
+     * @return true iff entry has been removed
+     */
+    synchronized boolean remove(@NotNull Pair<PerlValue, Object> key) {
+      CacheEntry cacheEntry = myMap.remove(key);
+      if (cacheEntry == null) {
+        return false;
+      }
+      unregisterDependencies(key, cacheEntry);
+      return true;
+    }
+
+    /**
+     * @return number of removed entries
+     */
+    synchronized int clear() {
+      int size = myMap.size();
+      myMap.forEach(PerlValuesCacheService.this::unregisterDependencies);
+      myMap.clear();
+      return size;
+    }
+
+    synchronized int size() {
+      return myMap.size();
+    }
+  }
+
+  private static final class CacheEntry {
+    private final @NotNull PerlValue myValue;
+    private final @NotNull Set<VirtualFile> myDependencies;
+
+    public CacheEntry(@NotNull PerlValue value, @NotNull Set<VirtualFile> dependencies) {
+      myValue = value;
+      myDependencies = dependencies;
+    }
+  }
+
+  /**
+   * Snapshot of the cache counters, accumulated since project opening
+   */
+  public static final class Statistics {
+    private final int mySize;
+    private final long myHits;
+    private final long myMisses;
+    private final long myEvictions;
+    private final long myInvalidations;
+    private final long myRecursionsPrevented;
+
+    private Statistics(int size, long hits, long misses, long evictions, long invalidations, long recursionsPrevented) {
+      mySize = size;
+      myHits = hits;
+      myMisses = misses;
+      myEvictions = evictions;
+      myInvalidations = invalidations;
+      myRecursionsPrevented = recursionsPrevented;
+    }
+
+    public int getSize() {
+      return mySize;
+    }
+
+    public long getHits() {
+      return myHits;
+    }
+
+    public long getMisses() {
+      return myMisses;
+    }
+
+    public long getEvictions() {
+      return myEvictions;
+    }
+
+    public long getInvalidations() {
+      return myInvalidations;
+    }
+
+    public long getRecursionsPrevented() {
+      return myRecursionsPrevented;
+    }
+
+    /**
+     * @return percent of requests served from the cache
+     */
+    public long getHitRatio() {
+      long requests = myHits + myMisses;
+      return requests == 0 ? 0 : myHits * 100 / requests;
+    }
+
+    @Override
+    public String toString() {
+      return "size: " + mySize +
+             "; hits: " + myHits +
+             "; misses: " + myMisses +
+             "; hit ratio: " + getHitRatio() + "%" +
+             "; evictions: " + myEvictions +
+             "; invalidations: " + myInvalidations +
+             "; recursions prevented: " + myRecursionsPrevented;
+    }
+  }
 }
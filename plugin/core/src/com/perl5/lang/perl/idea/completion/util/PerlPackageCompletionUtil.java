@@ -30,10 +30,13 @@ import com.intellij.psi.PsiFile;
 import com.intellij.psi.search.GlobalSearchScope;
 import com.intellij.util.ObjectUtils;
 import com.intellij.util.Processor;
+import com.intellij.util.containers.ContainerUtil;
 import com.perl5.PerlIcons;
 import com.perl5.lang.perl.fileTypes.PerlFileTypePackage;
 import com.perl5.lang.perl.idea.completion.providers.processors.PerlCompletionProcessor;
 import com.perl5.lang.perl.idea.completion.providers.processors.PerlSimpleDelegatingCompletionProcessor;
+import com.perl5.lang.perl.idea.project.PerlNamesCache;
+import com.perl5.lang.perl.idea.project.PerlNamesSnapshot;
 import com.perl5.lang.perl.internals.PerlFeaturesTable;
 import com.perl5.lang.perl.internals.PerlVersion;
 import com.perl5.lang.perl.psi.PerlNamespaceDefinitionElement;
@@ -147,18 +150,17 @@ public class PerlPackageCompletionUtil {
 
   /**
    * Iterates all namespaces in {@code project} and {@code searchScope}, and processes the first element with each name with
-   * {@code namespaceProcessor}
+   * {@code namespaceProcessor}. Names are taken from the {@link PerlNamesCache names cache} dictionary, if it is available. If prefix is
+   * qualified, only names from the qualifying namespace are checked. Leading {@code ::} of the prefix, meaning {@code main::}, is ignored.
    */
   public static boolean processFirstNamespaceForEachName(@NotNull PerlCompletionProcessor completionProcessor,
                                                          @NotNull Project project,
                                                          @NotNull GlobalSearchScope searchScope,
                                                          @NotNull Processor<PerlNamespaceDefinitionElement> namespaceProcessor) {
     PerlTimeLogger logger = PerlTimeLogger.create(LOG);
-    Collection<String> names = PerlPackageUtil.getKnownNamespaceNames(searchScope);
-    logger.debug("Collected all namespaces names: ", names.size());
-    for (String packageName : names) {
+    Processor<String> namesProcessor = packageName -> {
       if (!completionProcessor.matches(packageName)) {
-        continue;
+        return true;
       }
       PerlPackageUtil.processNamespaces(packageName, project, searchScope, namespace -> {
         String name = namespace.getNamespaceName();
@@ -176,8 +178,23 @@ public class PerlPackageCompletionUtil {
         LOG.debug("Processor is full");
         return false;
       }
+      return true;
+    };
+
+    PerlNamesSnapshot namesSnapshot = PerlNamesCache.getInstance(project).getActualSnapshot();
+    if (namesSnapshot.getVersion() > 0) {
+      String prefix = StringUtil.trimStart(completionProcessor.getPrefix(), PerlPackageUtil.NAMESPACE_SEPARATOR);
+      int separatorIndex = prefix.lastIndexOf(PerlPackageUtil.NAMESPACE_SEPARATOR);
+      String namesPrefix = separatorIndex < 0 ? "" : prefix.substring(0, separatorIndex + PerlPackageUtil.NAMESPACE_SEPARATOR.length());
+      namesSnapshot.processNamespacesNames(namesPrefix, namesProcessor);
+      logger.debug("Processed namespaces from names cache with prefix: ", namesPrefix);
+    }
+    else {
+      Collection<String> names = PerlPackageUtil.getKnownNamespaceNames(searchScope);
+      logger.debug("Collected all namespaces names: ", names.size());
+      ContainerUtil.process(names, namesProcessor);
+      logger.debug("Collected namespaces from indexes");
     }
-    logger.debug("Collected namespaces from indexes");
 
     return completionProcessor.result();
   }
@@ -269,9 +269,9 @@ public class PerlSubCompletionUtil {
       }
     };
 
-    return PerlImplicitDeclarationsService.getInstance(completionProcessor.getProject()).processSubs(
-      sub -> sub.isBuiltIn() ? processSubDefinitionLookupElement(sub, builtInCompletionProcessor)
-                             : builtInCompletionProcessor.result());
+    return PerlImplicitDeclarationsService.getInstance(completionProcessor.getProject()).processSubsInPackage(
+      PerlPackageUtil.CORE_NAMESPACE,
+      sub -> sub.isBuiltIn() ? processSubDefinitionLookupElement(sub, builtInCompletionProcessor) : builtInCompletionProcessor.result());
   }
 
   /**
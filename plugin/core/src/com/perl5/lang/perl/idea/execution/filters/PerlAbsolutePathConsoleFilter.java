@@ -19,26 +19,21 @@ package com.perl5.lang.perl.idea.execution.filters;
 
 import com.intellij.execution.filters.Filter;
 import com.intellij.openapi.project.Project;
+import com.intellij.util.SmartList;
 import com.perl5.lang.perl.idea.sdk.host.PerlHostData;
 import com.perl5.lang.perl.idea.sdk.host.PerlHostDataProvider;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
-import java.util.ArrayList;
 import java.util.List;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 /**
- * Handles any path in the console. Should be used only for our consoles
+ * Handles any path in the console. Should be used only for our consoles.
+ * <p>
+ * Lines are scanned by hand for {@code (?<=^|-I|[^.\w/~:])((?:[/~]|\w:[/\\])[-@\w./~:\\]+[-@\w.~])}, because filters are applied to each
+ * line of the output
  */
 public class PerlAbsolutePathConsoleFilter implements Filter {
-  private static final Pattern PATTERN = Pattern.compile(
-    "(?<=^|-I|[^.\\w/~:])" +
-    "((?:[/~]|\\w:[/\\\\])" +
-    "[-@\\w./~:\\\\]+[-@\\w.~])"
-  );
-
   private final @NotNull Project myProject;
 
   private final @NotNull PerlHostDataProvider myHostDataContainer;
@@ -51,20 +46,77 @@ public class PerlAbsolutePathConsoleFilter implements Filter {
   @Override
   public @Nullable Result applyFilter(String line, int entireLength) {
     int startOffset = entireLength - line.length();
-    List<ResultItem> resultList = new ArrayList<>();
-    Matcher matcher = PATTERN.matcher(line);
-    while (matcher.find()) {
-      String filePath;
+    List<ResultItem> resultList = null;
+    int length = line.length();
+    int offset = 0;
+    while (offset < length) {
+      int pathEnd = matchPath(line, offset);
+      if (pathEnd < 0) {
+        offset++;
+        continue;
+      }
+      String remotePath = line.substring(offset, pathEnd);
       PerlHostData<?, ?> hostData = myHostDataContainer.getHostData();
-      filePath = hostData == null ? matcher.group(1) : hostData.getLocalPath(matcher.group(1));
+      String filePath = hostData == null ? null : hostData.getLocalPath(remotePath);
+      if (resultList == null) {
+        resultList = new SmartList<>();
+      }
       resultList.add(new Result(
-        startOffset + matcher.start(1),
-        startOffset + matcher.end(1),
-        new MyHyperLinkInfo(myProject, 0, filePath == null ? matcher.group(1) : filePath)));
+        startOffset + offset,
+        startOffset + pathEnd,
+        new MyHyperLinkInfo(myProject, 0, filePath == null ? remotePath : filePath)));
+      offset = pathEnd;
     }
 
-    return resultList.isEmpty() ? null :
+    return resultList == null ? null :
            resultList.size() == 1 ? (Result)resultList.get(0) :
            new Result(resultList);
   }
+
+  /**
+   * @return end offset of the path starting at {@code offset} or -1 if there is no path
+   */
+  private static int matchPath(@NotNull String line, int offset) {
+    int length = line.length();
+    char c = line.charAt(offset);
+    int bodyStart;
+    if (c == '/' || c == '~') {
+      bodyStart = offset + 1;
+    }
+    else if (isWordChar(c) && offset + 2 < length && line.charAt(offset + 1) == ':' &&
+             (line.charAt(offset + 2) == '/' || line.charAt(offset + 2) == '\\')) {
+      bodyStart = offset + 3;
+    }
+    else {
+      return -1;
+    }
+    if (offset > 0 && !(offset > 1 && line.charAt(offset - 2) == '-' && line.charAt(offset - 1) == 'I')) {
+      char previous = line.charAt(offset - 1);
+      if (previous == '.' || previous == '/' || previous == '~' || previous == ':' || isWordChar(previous)) {
+        return -1;
+      }
+    }
+    int bodyEnd = bodyStart;
+    while (bodyEnd < length && isPathChar(line.charAt(bodyEnd))) {
+      bodyEnd++;
+    }
+    for (int pathEnd = bodyEnd; pathEnd > bodyStart + 1; pathEnd--) {
+      if (isPathEndChar(line.charAt(pathEnd - 1))) {
+        return pathEnd;
+      }
+    }
+    return -1;
+  }
+
+  private static boolean isPathChar(char c) {
+    return isPathEndChar(c) || c == '/' || c == ':' || c == '\\';
+  }
+
+  private static boolean isPathEndChar(char c) {
+    return isWordChar(c) || c == '-' || c == '@' || c == '.' || c == '~';
+  }
+
+  private static boolean isWordChar(char c) {
+    return PerlConsoleFileLinkFilter.isAsciiLetter(c) || PerlConsoleFileLinkFilter.isAsciiDigit(c) || c == '_';
+  }
 }
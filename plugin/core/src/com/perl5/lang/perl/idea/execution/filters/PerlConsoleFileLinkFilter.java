@@ -17,7 +17,6 @@
 package com.perl5.lang.perl.idea.execution.filters;
 
 import com.intellij.execution.filters.Filter;
-import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.util.text.StringUtil;
 import com.perl5.lang.perl.idea.sdk.host.PerlHostData;
@@ -25,13 +24,13 @@ import com.perl5.lang.perl.idea.sdk.host.PerlHostDataProvider;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
-
+/**
+ * Links {@code at /path/to/file line 42} in the console to the file and line. Lines are scanned by hand instead of regex, because filters
+ * are applied to each line of the output and verbose test runs produce millions of them.
+ */
 public class PerlConsoleFileLinkFilter implements Filter {
-  private static final Logger LOG = Logger.getInstance(PerlConsoleFileLinkFilter.class);
-  private static final String FILE_PATH_REGEXP = "((?:(?:\\p{Alpha}:)|/:)?[0-9a-z_A-Z\\-\\\\./]+)";
-  private static final Pattern DIE_PATH_PATTERN = Pattern.compile("\\bat " + FILE_PATH_REGEXP + " line (\\d+)\\.?\\b");
+  private static final String AT_MARKER = "at ";
+  private static final String LINE_MARKER = " line ";
   private final @NotNull Project myProject;
   private final @NotNull PerlHostDataProvider myHostDataContainer;
 
@@ -42,31 +41,79 @@ public class PerlConsoleFileLinkFilter implements Filter {
 
   @Override
   public @Nullable Result applyFilter(@NotNull String textLine, int endOffset) {
-    if (StringUtil.isEmpty(textLine)) {
+    int lastLineMarkerOffset = textLine.lastIndexOf(LINE_MARKER);
+    if (lastLineMarkerOffset < 0) {
       return null;
     }
-    Matcher matcher = DIE_PATH_PATTERN.matcher(textLine);
-    if (!matcher.find()) {
-      return null;
+    int atOffset = textLine.indexOf(AT_MARKER);
+    while (atOffset >= 0 && atOffset < lastLineMarkerOffset) {
+      Result result = matchLink(textLine, endOffset, atOffset);
+      if (result != null) {
+        return result;
+      }
+      atOffset = textLine.indexOf(AT_MARKER, atOffset + 1);
     }
+    return null;
+  }
 
-    int lineStartOffset = endOffset - textLine.length();
-    int fileStartOffset = matcher.start(1);
-    int lineNumberEndOffset = matcher.end(2);
-    PerlHostData<?, ?> hostData = myHostDataContainer.getHostData();
-    String filePath = hostData == null ? matcher.group(1) : hostData.getLocalPath(matcher.group(1));
-    int line;
-    try {
-      line = Integer.parseInt(matcher.group(2)) - 1;
+  /**
+   * Matches {@code \bat ((?:\p{Alpha}:|/:)?[0-9a-z_A-Z\-\\./]+) line (\d+)\.?\b} at the {@code atOffset}
+   */
+  private @Nullable Result matchLink(@NotNull String textLine, int endOffset, int atOffset) {
+    if (atOffset > 0 && isBoundaryWordChar(textLine.charAt(atOffset - 1))) {
+      return null;
+    }
+    int length = textLine.length();
+    int pathStart = atOffset + AT_MARKER.length();
+    int offset = pathStart;
+    if (offset + 1 < length && textLine.charAt(offset + 1) == ':' &&
+        (isAsciiLetter(textLine.charAt(offset)) || textLine.charAt(offset) == '/')) {
+      offset += 2;
+    }
+    int pathEnd = offset;
+    while (pathEnd < length && isPathChar(textLine.charAt(pathEnd))) {
+      pathEnd++;
     }
-    catch (NumberFormatException e) {
-      line = 0;
-      LOG.warn("Could not parse int from " + matcher.group(2) + " ; line: " + textLine);
+    if (pathEnd == offset || !textLine.startsWith(LINE_MARKER, pathEnd)) {
+      return null;
+    }
+    int lineNumberStart = pathEnd + LINE_MARKER.length();
+    int lineNumberEnd = lineNumberStart;
+    while (lineNumberEnd < length && isAsciiDigit(textLine.charAt(lineNumberEnd))) {
+      lineNumberEnd++;
+    }
+    // optional dot is not a word char, so word boundary is the same with or without it
+    if (lineNumberEnd == lineNumberStart || lineNumberEnd < length && isBoundaryWordChar(textLine.charAt(lineNumberEnd))) {
+      return null;
     }
 
+    String remotePath = textLine.substring(pathStart, pathEnd);
+    PerlHostData<?, ?> hostData = myHostDataContainer.getHostData();
+    String filePath = hostData == null ? null : hostData.getLocalPath(remotePath);
+    int line = StringUtil.parseInt(textLine.substring(lineNumberStart, lineNumberEnd), 1) - 1;
+    int lineStartOffset = endOffset - textLine.length();
     return new Result(
-      lineStartOffset + fileStartOffset,
-      lineStartOffset + lineNumberEndOffset,
-      new MyHyperLinkInfo(myProject, line, filePath == null ? matcher.group(1) : filePath));
+      lineStartOffset + pathStart,
+      lineStartOffset + lineNumberEnd,
+      new MyHyperLinkInfo(myProject, line, filePath == null ? remotePath : filePath));
+  }
+
+  private static boolean isPathChar(char c) {
+    return isAsciiLetter(c) || isAsciiDigit(c) || c == '_' || c == '-' || c == '\\' || c == '.' || c == '/';
+  }
+
+  /**
+   * @return true iff {@code c} is a word char for the regex word boundary
+   */
+  private static boolean isBoundaryWordChar(char c) {
+    return c == '_' || Character.isLetterOrDigit(c);
+  }
+
+  static boolean isAsciiLetter(char c) {
+    return c >= 'a' && c <= 'z' || c >= 'A' && c <= 'Z';
+  }
+
+  static boolean isAsciiDigit(char c) {
+    return c >= '0' && c <= '9';
   }
 }
@@ -1,5 +1,5 @@
 /*
- * Copyright 2015-2020 Alexandr Evstigneev
+ * Copyright 2015-2021 Alexandr Evstigneev
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -16,21 +16,535 @@
 
 package com.perl5.lang.perl.idea.findusages;
 
-import com.intellij.lang.cacheBuilder.DefaultWordsScanner;
-import com.intellij.psi.tree.TokenSet;
-import com.perl5.lang.perl.PerlParserDefinition;
-import com.perl5.lang.perl.lexer.PerlElementTypes;
-import com.perl5.lang.perl.lexer.PerlLexingContext;
-import com.perl5.lang.perl.lexer.adapters.PerlMergingLexerAdapter;
-
-
-public class PerlWordsScanner extends DefaultWordsScanner implements PerlElementTypes {
-  public PerlWordsScanner() {
-    super(new PerlMergingLexerAdapter(PerlLexingContext.create(null).withEnforcedSublexing(true)),
-          PerlParserDefinition.IDENTIFIERS,
-          TokenSet.orSet(PerlParserDefinition.COMMENTS, TokenSet.create(POD)),
-          PerlParserDefinition.LITERALS
-    );
-    setMayHaveFileRefsInLiterals(true);
+import com.intellij.lang.cacheBuilder.VersionedWordsScanner;
+import com.intellij.lang.cacheBuilder.WordOccurrence;
+import com.intellij.util.Processor;
+import com.intellij.util.text.CharArrayUtil;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.intellij.lang.cacheBuilder.WordOccurrence.Kind.*;
+
+/**
+ * Single-pass words scanner for the words index. Unlike the lexer, it does not classify identifiers and does not lex strings, regexes and
+ * heredocs, but just splits text into code, comments (including POD, heredoc terminators and data section) and literals words. Variables
+ * interpolated into strings are reported as code.
+ * <p>
+ * Literal words are reported as foreign language words too, as lexer-based scanner did, so references search finds code inside strings,
+ * e.g. {@code @{[ foo() ]}}, and words of misrecognized strings. Regex/division ambiguity is resolved by the previous significant token,
+ * as perl does, and quote-like operators are recognized by the delimiter following them. Mistakes in these heuristics may only change
+ * kind of some words between code and literals.
+ */
+public class PerlWordsScanner extends VersionedWordsScanner {
+  private static final int VERSION = 3;
+
+  @Override
+  public void processWords(@NotNull CharSequence fileText, @NotNull Processor<? super WordOccurrence> processor) {
+    new Session(fileText, processor).scan();
+  }
+
+  @Override
+  public int getVersion() {
+    return VERSION;
+  }
+
+  private static final class Session {
+    private static final String POD_END = "=cut";
+    private final @NotNull CharSequence myText;
+    private final int myEnd;
+    private final @NotNull Processor<? super WordOccurrence> myProcessor;
+    private final @NotNull WordOccurrence myOccurrence;
+    /**
+     * Heredocs opened on the current line, bodies start from the next one
+     */
+    private final @NotNull List<HeredocMarker> myHeredocs = new ArrayList<>();
+    /**
+     * True if previous significant token was an operand, so {@code /} is a division, not a regex
+     */
+    private boolean myIsOperand;
+    private boolean myIsStopped;
+
+    Session(@NotNull CharSequence text, @NotNull Processor<? super WordOccurrence> processor) {
+      myText = text;
+      myEnd = text.length();
+      myProcessor = processor;
+      myOccurrence = new WordOccurrence(text, 0, 0, CODE);
+    }
+
+    void scan() {
+      int offset = 0;
+      boolean isLineStart = true;
+      while (offset < myEnd && !myIsStopped) {
+        char c = myText.charAt(offset);
+        if (c == '\n') {
+          offset = myHeredocs.isEmpty() ? offset + 1 : scanHeredocs(offset + 1);
+          isLineStart = true;
+          continue;
+        }
+        if (isLineStart && c == '=' && offset + 1 < myEnd && isAsciiLetter(myText.charAt(offset + 1))) {
+          offset = scanPod(offset);
+          continue;
+        }
+        isLineStart = false;
+        if (Character.isWhitespace(c)) {
+          offset++;
+        }
+        else if (c == '#') {
+          int lineEnd = findLineEnd(offset);
+          emitWords(offset + 1, lineEnd, COMMENTS);
+          offset = lineEnd;
+        }
+        else if (isIdentifierStart(c)) {
+          offset = scanIdentifier(offset);
+        }
+        else if (isAsciiDigit(c)) {
+          offset = skipWordChars(offset);
+          myIsOperand = true;
+        }
+        else {
+          offset = scanOperator(offset, c);
+        }
+      }
+    }
+
+    private int scanOperator(int offset, char c) {
+      switch (c) {
+        case '$':
+          myIsOperand = true;
+          return skipSpecialVariableName(offset + 1);
+        case '\'':
+          return scanDelimited(offset + 1, c, c, false);
+        case '"':
+        case '`':
+          return scanDelimited(offset + 1, c, c, true);
+        case '/':
+          if (!myIsOperand) {
+            return skipModifiers(scanDelimited(offset + 1, c, c, true));
+          }
+          break;
+        case '<':
+          if (offset + 2 < myEnd && myText.charAt(offset + 1) == '<') {
+            int markerEnd = scanHeredocOpener(offset + 2);
+            if (markerEnd > 0) {
+              myIsOperand = true;
+              return markerEnd;
+            }
+            myIsOperand = false;
+            return offset + 2;
+          }
+          break;
+        case ')':
+        case ']':
+        case '}':
+          myIsOperand = true;
+          return offset + 1;
+      }
+      myIsOperand = false;
+      return offset + 1;
+    }
+
+    /**
+     * Skips special variable name after {@code $}, like {@code $/}, {@code $"} or {@code $#}, so it won't be taken for regex, string or
+     * comment start. {@code $#array} and {@code $#{expr}} are handled as well.
+     */
+    private int skipSpecialVariableName(int offset) {
+      if (offset >= myEnd) {
+        return offset;
+      }
+      char c = myText.charAt(offset);
+      if (c == '{' || c == '$' || c == ':' || isIdentifierStart(c) || Character.isWhitespace(c)) {
+        return offset;
+      }
+      return offset + 1;
+    }
+
+    private int scanIdentifier(int start) {
+      int end = skipIdentifier(start);
+      int length = end - start;
+      if (length <= 2 && !isAfterSigilOrDash(start)) {
+        int delimiterOffset = skipSpaces(end);
+        if (isQuoteLikeDelimiter(delimiterOffset, delimiterOffset > end)) {
+          QuoteLikeType type = getQuoteLikeType(start, length);
+          if (type != null) {
+            myIsOperand = true;
+            return scanQuoteLike(type, delimiterOffset);
+          }
+        }
+      }
+      if (isWord(start, end, "__END__") || isWord(start, end, "__DATA__")) {
+        emitWords(end, myEnd, COMMENTS);
+        return myEnd;
+      }
+      emitWords(start, end, CODE);
+      myIsOperand = !isRegexExpected(start, end);
+      return end;
+    }
+
+    private @Nullable QuoteLikeType getQuoteLikeType(int start, int length) {
+      char first = myText.charAt(start);
+      if (length == 1) {
+        return first == 'q' ? QuoteLikeType.SINGLE :
+               first == 'm' ? QuoteLikeType.MATCH :
+               first == 's' ? QuoteLikeType.SUBSTITUTION :
+               first == 'y' ? QuoteLikeType.TRANSLITERATION : null;
+      }
+      char second = myText.charAt(start + 1);
+      if (first == 'q') {
+        return second == 'q' || second == 'x' ? QuoteLikeType.DOUBLE :
+               second == 'w' ? QuoteLikeType.SINGLE :
+               second == 'r' ? QuoteLikeType.MATCH : null;
+      }
+      return first == 't' && second == 'r' ? QuoteLikeType.TRANSLITERATION : null;
+    }
+
+    private int scanQuoteLike(@NotNull QuoteLikeType type, int openerOffset) {
+      char opener = myText.charAt(openerOffset);
+      char closer = getCloser(opener);
+      int offset = scanDelimited(openerOffset + 1, opener, closer, type.isInterpolated);
+      if (type.hasReplacement) {
+        if (opener != closer) {
+          int secondOpenerOffset = skipSpaces(offset);
+          if (secondOpenerOffset >= myEnd) {
+            return myEnd;
+          }
+          char secondOpener = myText.charAt(secondOpenerOffset);
+          offset = scanDelimited(secondOpenerOffset + 1, secondOpener, getCloser(secondOpener), type.isInterpolated);
+        }
+        else {
+          offset = scanDelimited(offset, opener, closer, type.isInterpolated);
+        }
+      }
+      return type == QuoteLikeType.SINGLE || type == QuoteLikeType.DOUBLE ? offset : skipModifiers(offset);
+    }
+
+    /**
+     * Reports words of the string body, starting at {@code start} and terminated with {@code closer}, respecting escapes and nesting of
+     * bracket delimiters
+     *
+     * @return offset after the closer
+     */
+    private int scanDelimited(int start, char opener, char closer, boolean isInterpolated) {
+      int depth = 0;
+      int offset = start;
+      while (offset < myEnd) {
+        char c = myText.charAt(offset);
+        if (c == '\\') {
+          offset += 2;
+          continue;
+        }
+        if (c == closer) {
+          if (depth == 0) {
+            break;
+          }
+          depth--;
+        }
+        else if (c == opener && opener != closer) {
+          depth++;
+        }
+        offset++;
+      }
+      int bodyEnd = Math.min(offset, myEnd);
+      emitLiteralWords(start, bodyEnd, isInterpolated);
+      myIsOperand = true;
+      return Math.min(bodyEnd + 1, myEnd);
+    }
+
+    /**
+     * Parses heredoc marker after {@code <<} and remembers it for the next line
+     *
+     * @return offset after the marker or -1 if this is not a heredoc opener
+     */
+    private int scanHeredocOpener(int offset) {
+      boolean isIndented = myText.charAt(offset) == '~';
+      if (isIndented) {
+        offset++;
+      }
+      if (offset >= myEnd) {
+        return -1;
+      }
+      char c = myText.charAt(offset);
+      if (c == ' ' || c == '\t') {
+        // spaces are allowed before quoted marker only
+        int markerOffset = skipSpaces(offset);
+        if (markerOffset >= myEnd || myText.charAt(markerOffset) != '"' && myText.charAt(markerOffset) != '\'') {
+          return -1;
+        }
+        offset = markerOffset;
+        c = myText.charAt(offset);
+      }
+      if (c == '"' || c == '\'' || c == '`') {
+        int markerEnd = offset + 1;
+        while (markerEnd < myEnd && myText.charAt(markerEnd) != c && myText.charAt(markerEnd) != '\n') {
+          markerEnd++;
+        }
+        myHeredocs.add(new HeredocMarker(myText.subSequence(offset + 1, markerEnd).toString(), c != '\'', isIndented));
+        return Math.min(markerEnd + 1, myEnd);
+      }
+      if (!isIdentifierStart(c)) {
+        return -1;
+      }
+      int markerEnd = skipWordChars(offset);
+      myHeredocs.add(new HeredocMarker(myText.subSequence(offset, markerEnd).toString(), true, isIndented));
+      return markerEnd;
+    }
+
+    /**
+     * Reports words of pending heredocs bodies, starting from {@code offset}
+     *
+     * @return offset of the line after the last heredoc terminator
+     */
+    private int scanHeredocs(int offset) {
+      for (HeredocMarker heredoc : myHeredocs) {
+        int bodyStart = offset;
+        while (offset < myEnd) {
+          int lineEnd = findLineEnd(offset);
+          int markerStart = heredoc.isIndented ? skipSpaces(offset) : offset;
+          int markerEnd = lineEnd > markerStart && myText.charAt(lineEnd - 1) == '\r' ? lineEnd - 1 : lineEnd;
+          if (isWord(markerStart, markerEnd, heredoc.marker)) {
+            emitLiteralWords(bodyStart, offset, heredoc.isInterpolated);
+            emitWords(markerStart, markerEnd, COMMENTS);
+            bodyStart = -1;
+            offset = Math.min(lineEnd + 1, myEnd);
+            break;
+          }
+          offset = Math.min(lineEnd + 1, myEnd);
+        }
+        if (bodyStart >= 0) {
+          emitLiteralWords(bodyStart, myEnd, heredoc.isInterpolated);
+        }
+      }
+      myHeredocs.clear();
+      return offset;
+    }
+
+    /**
+     * Reports words of the POD block, starting at {@code offset}, including the {@code =cut} line
+     *
+     * @return offset of the line end after {@code =cut} or the end of the text
+     */
+    private int scanPod(int offset) {
+      int lineStart = offset;
+      while (lineStart < myEnd) {
+        int lineEnd = findLineEnd(lineStart);
+        if (lineStart > offset && CharArrayUtil.regionMatches(myText, lineStart, POD_END) &&
+            (lineStart + POD_END.length() == lineEnd || !isWordChar(myText.charAt(lineStart + POD_END.length())))) {
+          emitWords(offset, lineEnd, COMMENTS);
+          return lineEnd;
+        }
+        lineStart = lineEnd + 1;
+      }
+      emitWords(offset, myEnd, COMMENTS);
+      return myEnd;
+    }
+
+    /**
+     * Reports literal words. In interpolated strings variables names are reported as code and escape sequences are skipped.
+     */
+    private void emitLiteralWords(int start, int end, boolean isInterpolated) {
+      int offset = start;
+      while (offset < end && !myIsStopped) {
+        char c = myText.charAt(offset);
+        if (!isWordChar(c)) {
+          offset++;
+          continue;
+        }
+        if (isInterpolated && offset > start && isInterpolatedName(start, offset)) {
+          int nameEnd = Math.min(skipIdentifier(offset), end);
+          emitWords(offset, nameEnd, CODE);
+          offset = nameEnd;
+          continue;
+        }
+        int wordEnd = Math.min(skipWordChars(offset), end);
+        emitLiteralWord(isInterpolated && offset > start && myText.charAt(offset - 1) == '\\' ? offset + 1 : offset, wordEnd);
+        offset = wordEnd;
+      }
+    }
+
+    private void emitLiteralWord(int start, int end) {
+      emitWord(start, end, LITERALS);
+      emitWord(start, end, FOREIGN_LANGUAGE);
+    }
+
+    /**
+     * @return true iff word at {@code offset} in the string, starting at {@code start}, follows a sigil, like {@code $name} or
+     * {@code ${name}}
+     */
+    private boolean isInterpolatedName(int start, int offset) {
+      char previous = myText.charAt(offset - 1);
+      if (previous == '{' && offset - 2 >= start) {
+        previous = myText.charAt(offset - 2);
+      }
+      return previous == '$' || previous == '@';
+    }
+
+    private void emitWords(int start, int end, @NotNull WordOccurrence.Kind kind) {
+      int offset = start;
+      while (offset < end && !myIsStopped) {
+        if (!isWordChar(myText.charAt(offset))) {
+          offset++;
+          continue;
+        }
+        int wordEnd = Math.min(skipWordChars(offset), end);
+        emitWord(offset, wordEnd, kind);
+        offset = wordEnd;
+      }
+    }
+
+    private void emitWord(int start, int end, @NotNull WordOccurrence.Kind kind) {
+      if (start < end && !myIsStopped) {
+        myOccurrence.init(myText, start, end, kind);
+        myIsStopped = !myProcessor.process(myOccurrence);
+      }
+    }
+
+    /**
+     * @return true iff delimiter at {@code offset} may open a quote-like operator body. Comma, semicolon, closing brace and fat comma mean
+     * that this is a bareword and sharp after a space means a comment.
+     */
+    private boolean isQuoteLikeDelimiter(int offset, boolean afterSpace) {
+      if (offset >= myEnd) {
+        return false;
+      }
+      char c = myText.charAt(offset);
+      if (isWordChar(c) || Character.isWhitespace(c) || c == ',' || c == ';' || c == ')' || c == '}' || afterSpace && c == '#') {
+        return false;
+      }
+      return c != '=' || offset + 1 >= myEnd || myText.charAt(offset + 1) != '>';
+    }
+
+    /**
+     * @return true iff identifier at {@code offset} is a part of variable name, method name after arrow or filetest operator
+     */
+    private boolean isAfterSigilOrDash(int offset) {
+      if (offset == 0) {
+        return false;
+      }
+      char previous = myText.charAt(offset - 1);
+      return previous == '$' || previous == '@' || previous == '%' || previous == '&' || previous == '*' || previous == '-' ||
+             previous == '#' || previous == '>' && offset > 1 && myText.charAt(offset - 2) == '-';
+    }
+
+    /**
+     * @return true iff identifier is an operator or keyword, which may be followed by a regex
+     */
+    private boolean isRegexExpected(int start, int end) {
+      int length = end - start;
+      if (length < 2 || length > 6) {
+        return false;
+      }
+      for (String keyword : REGEX_EXPECTING_KEYWORDS) {
+        if (isWord(start, end, keyword)) {
+          return true;
+        }
+      }
+      return false;
+    }
+
+    private boolean isWord(int start, int end, @NotNull String word) {
+      return end - start == word.length() && CharArrayUtil.regionMatches(myText, start, word);
+    }
+
+    private int skipIdentifier(int offset) {
+      int end = skipWordChars(offset);
+      while (end + 2 < myEnd && myText.charAt(end) == ':' && myText.charAt(end + 1) == ':' && isWordChar(myText.charAt(end + 2))) {
+        end = skipWordChars(end + 2);
+      }
+      return end;
+    }
+
+    private int skipWordChars(int offset) {
+      while (offset < myEnd && isWordChar(myText.charAt(offset))) {
+        offset++;
+      }
+      return offset;
+    }
+
+    private int skipModifiers(int offset) {
+      while (offset < myEnd && isAsciiLetter(myText.charAt(offset))) {
+        offset++;
+      }
+      return offset;
+    }
+
+    private int skipSpaces(int offset) {
+      while (offset < myEnd && Character.isWhitespace(myText.charAt(offset)) && myText.charAt(offset) != '\n') {
+        offset++;
+      }
+      return offset;
+    }
+
+    private int findLineEnd(int offset) {
+      while (offset < myEnd && myText.charAt(offset) != '\n') {
+        offset++;
+      }
+      return offset;
+    }
+
+    private static char getCloser(char opener) {
+      switch (opener) {
+        case '(':
+          return ')';
+        case '[':
+          return ']';
+        case '{':
+          return '}';
+        case '<':
+          return '>';
+        default:
+          return opener;
+      }
+    }
+  }
+
+  private static final String[] REGEX_EXPECTING_KEYWORDS = {
+    "if", "unless", "while", "until", "and", "or", "not", "xor", "return", "split", "grep", "map", "join", "push", "unshift", "when", "x",
+    "lt", "gt", "le", "ge", "eq", "ne", "cmp"
+  };
+
+  private static boolean isAsciiLetter(char c) {
+    return c >= 'a' && c <= 'z' || c >= 'A' && c <= 'Z';
+  }
+
+  private static boolean isAsciiDigit(char c) {
+    return c >= '0' && c <= '9';
+  }
+
+  private static boolean isIdentifierStart(char c) {
+    return isAsciiLetter(c) || c == '_' || c > 127 && Character.isJavaIdentifierStart(c);
+  }
+
+  private static boolean isWordChar(char c) {
+    return isAsciiLetter(c) || isAsciiDigit(c) || c == '_' || c > 127 && Character.isJavaIdentifierPart(c);
+  }
+
+  private enum QuoteLikeType {
+    SINGLE(false, false),
+    DOUBLE(true, false),
+    MATCH(true, false),
+    SUBSTITUTION(true, true),
+    TRANSLITERATION(false, true);
+
+    private final boolean isInterpolated;
+    private final boolean hasReplacement;
+
+    QuoteLikeType(boolean isInterpolated, boolean hasReplacement) {
+      this.isInterpolated = isInterpolated;
+      this.hasReplacement = hasReplacement;
+    }
+  }
+
+  private static final class HeredocMarker {
+    private final @NotNull String marker;
+    private final boolean isInterpolated;
+    private final boolean isIndented;
+
+    HeredocMarker(@NotNull String marker, boolean isInterpolated, boolean isIndented) {
+      this.marker = marker;
+      this.isInterpolated = isInterpolated;
+      this.isIndented = isIndented;
+    }
   }
 }
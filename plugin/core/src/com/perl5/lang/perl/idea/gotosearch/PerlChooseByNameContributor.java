@@ -16,35 +16,71 @@
 
 package com.perl5.lang.perl.idea.gotosearch;
 
-import com.intellij.navigation.ChooseByNameContributor;
+import com.intellij.navigation.ChooseByNameContributorEx;
 import com.intellij.navigation.NavigationItem;
+import com.intellij.openapi.progress.ProgressManager;
 import com.intellij.openapi.project.Project;
-import com.intellij.openapi.util.Condition;
+import com.intellij.psi.search.GlobalSearchScope;
 import com.intellij.util.ArrayUtilRt;
-import com.intellij.util.containers.ContainerUtil;
+import com.intellij.util.CommonProcessors;
+import com.intellij.util.Processor;
+import com.intellij.util.indexing.FindSymbolParameters;
+import com.intellij.util.indexing.IdFilter;
 import com.perl5.lang.perl.psi.impl.PerlImplicitElement;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
-import java.util.Collection;
+/**
+ * Base contributor, streaming names and items from the indexes instead of collecting them. Implicit elements are not navigatable and
+ * filtered out.
+ */
+abstract class PerlChooseByNameContributor implements ChooseByNameContributorEx {
+  @Override
+  public final void processNames(@NotNull Processor<? super String> processor,
+                                 @NotNull GlobalSearchScope scope,
+                                 @Nullable IdFilter filter) {
+    doProcessNames(scope, filter, processor);
+  }
 
-abstract class PerlChooseByNameContributor implements ChooseByNameContributor {
-  private static final Condition<NavigationItem> FILTER = it -> !(it instanceof PerlImplicitElement);
+  /**
+   * Processes names of items in the {@code scope} with {@code processor}
+   *
+   * @param idFilter optional filter for the ids of files, e.g. limiting the search with project files
+   */
+  protected abstract boolean doProcessNames(@NotNull GlobalSearchScope scope,
+                                            @Nullable IdFilter idFilter,
+                                            @NotNull Processor<? super String> processor);
 
   @Override
-  public final String @NotNull [] getNames(Project project, boolean includeNonProjectItems) {
-    return ArrayUtilRt.toStringArray(getNamesCollection(project, includeNonProjectItems));
+  public final void processElementsWithName(@NotNull String name,
+                                            @NotNull Processor<? super NavigationItem> processor,
+                                            @NotNull FindSymbolParameters parameters) {
+    doProcessItemsByName(name, parameters.getProject(), parameters.getSearchScope(), it -> {
+      ProgressManager.checkCanceled();
+      return it instanceof PerlImplicitElement || processor.process(it);
+    });
   }
 
-  protected abstract @NotNull Collection<String> getNamesCollection(Project project, boolean includeNonProjectItems);
+  /**
+   * Processes items with {@code name} in the {@code scope} with {@code processor}
+   */
+  protected abstract boolean doProcessItemsByName(@NotNull String name,
+                                                  @NotNull Project project,
+                                                  @NotNull GlobalSearchScope scope,
+                                                  @NotNull Processor<? super NavigationItem> processor);
 
   @Override
-  public final NavigationItem @NotNull [] getItemsByName(String name, String pattern, Project project, boolean includeNonProjectItems) {
-    return ContainerUtil.filter(getItemsCollectionByName(name, pattern, project, includeNonProjectItems), FILTER)
-      .toArray(NavigationItem.EMPTY_NAVIGATION_ITEM_ARRAY);
+  public final String @NotNull [] getNames(Project project, boolean includeNonProjectItems) {
+    CommonProcessors.CollectUniquesProcessor<String> processor = new CommonProcessors.CollectUniquesProcessor<>();
+    FindSymbolParameters parameters = FindSymbolParameters.wrap("", project, includeNonProjectItems);
+    processNames(processor, parameters.getSearchScope(), parameters.getIdFilter());
+    return ArrayUtilRt.toStringArray(processor.getResults());
   }
 
-  protected abstract @NotNull Collection<? extends NavigationItem> getItemsCollectionByName(String name,
-                                                                                            String pattern,
-                                                                                            Project project,
-                                                                                            boolean includeNonProjectItems);
+  @Override
+  public final NavigationItem @NotNull [] getItemsByName(String name, String pattern, Project project, boolean includeNonProjectItems) {
+    CommonProcessors.CollectProcessor<NavigationItem> processor = new CommonProcessors.CollectProcessor<>();
+    processElementsWithName(name, processor, FindSymbolParameters.wrap(pattern, project, includeNonProjectItems));
+    return processor.toArray(NavigationItem.EMPTY_NAVIGATION_ITEM_ARRAY);
+  }
 }
@@ -20,13 +20,14 @@ import com.intellij.navigation.GotoClassContributor;
 import com.intellij.navigation.NavigationItem;
 import com.intellij.openapi.project.Project;
 import com.intellij.psi.search.GlobalSearchScope;
+import com.intellij.util.Processor;
+import com.intellij.util.indexing.IdFilter;
+import com.perl5.lang.perl.psi.stubs.namespaces.PerlLightNamespaceIndex;
+import com.perl5.lang.perl.psi.stubs.namespaces.PerlNamespaceIndex;
 import com.perl5.lang.perl.util.PerlPackageUtil;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
-import java.util.Collection;
-import java.util.Collections;
-
 /**
  * GoToClassContributor looks up namespaces (packages names) - windows shortcut Ctrl+N
  */
@@ -42,19 +43,19 @@ public class PerlGoToClassContributor extends PerlChooseByNameContributor implem
   }
 
   @Override
-  protected @NotNull Collection<String> getNamesCollection(Project project, boolean includeNonProjectItems) {
-    return PerlPackageUtil.getKnownNamespaceNames(project);
+  protected boolean doProcessNames(@NotNull GlobalSearchScope scope,
+                                   @Nullable IdFilter idFilter,
+                                   @NotNull Processor<? super String> processor) {
+    return PerlNamespaceIndex.getInstance().processAllNames(scope, idFilter, processor) &&
+           PerlLightNamespaceIndex.getInstance().processAllNames(scope, idFilter, processor);
   }
 
   @Override
-  protected @NotNull Collection<? extends NavigationItem> getItemsCollectionByName(String packageName,
-                                                                                   String pattern,
-                                                                                   Project project,
-                                                                                   boolean includeNonProjectItems) {
-    if (PerlPackageUtil.MAIN_NAMESPACE_NAME.equals(packageName)) {
-      return Collections.emptyList();
-    }
-    var searchScope = includeNonProjectItems ? GlobalSearchScope.allScope(project) : GlobalSearchScope.projectScope(project);
-    return PerlPackageUtil.getNamespaceDefinitions(project, searchScope, packageName);
+  protected boolean doProcessItemsByName(@NotNull String packageName,
+                                         @NotNull Project project,
+                                         @NotNull GlobalSearchScope scope,
+                                         @NotNull Processor<? super NavigationItem> processor) {
+    return PerlPackageUtil.MAIN_NAMESPACE_NAME.equals(packageName) ||
+           PerlPackageUtil.processNamespaces(packageName, project, scope, processor::process);
   }
 }
@@ -19,25 +19,30 @@ package com.perl5.lang.perl.idea.gotosearch;
 import com.intellij.navigation.NavigationItem;
 import com.intellij.openapi.project.Project;
 import com.intellij.psi.search.GlobalSearchScope;
+import com.intellij.util.Processor;
+import com.intellij.util.indexing.IdFilter;
+import com.perl5.lang.perl.psi.stubs.subsdefinitions.PerlLightSubDefinitionsIndex;
+import com.perl5.lang.perl.psi.stubs.subsdefinitions.PerlSubDefinitionsIndex;
 import com.perl5.lang.perl.util.PerlSubUtil;
 import org.jetbrains.annotations.NotNull;
-
-import java.util.Collection;
+import org.jetbrains.annotations.Nullable;
 
 
 public class PerlGoToSubDefinitionContributor extends PerlChooseByNameContributor {
 
   @Override
-  protected @NotNull Collection<String> getNamesCollection(Project project, boolean includeNonProjectItems) {
-    return PerlSubUtil.getDefinedSubsNames(project);
+  protected boolean doProcessNames(@NotNull GlobalSearchScope scope,
+                                   @Nullable IdFilter idFilter,
+                                   @NotNull Processor<? super String> processor) {
+    return PerlSubDefinitionsIndex.getInstance().processAllNames(scope, idFilter, processor) &&
+           PerlLightSubDefinitionsIndex.getInstance().processAllNames(scope, idFilter, processor);
   }
 
   @Override
-  protected @NotNull Collection<? extends NavigationItem> getItemsCollectionByName(String name,
-                                                                                   String pattern,
-                                                                                   Project project,
-                                                                                   boolean includeNonProjectItems) {
-    var searchScope = includeNonProjectItems ? GlobalSearchScope.allScope(project) : GlobalSearchScope.projectScope(project);
-    return PerlSubUtil.getSubDefinitions(project, name, searchScope);
+  protected boolean doProcessItemsByName(@NotNull String name,
+                                         @NotNull Project project,
+                                         @NotNull GlobalSearchScope scope,
+                                         @NotNull Processor<? super NavigationItem> processor) {
+    return PerlSubUtil.processSubDefinitions(project, name, scope, processor::process);
   }
 }
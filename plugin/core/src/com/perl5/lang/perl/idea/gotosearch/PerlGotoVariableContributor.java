@@ -19,66 +19,68 @@ package com.perl5.lang.perl.idea.gotosearch;
 import com.intellij.navigation.NavigationItem;
 import com.intellij.openapi.project.Project;
 import com.intellij.psi.search.GlobalSearchScope;
-import com.perl5.lang.perl.util.PerlArrayUtil;
-import com.perl5.lang.perl.util.PerlGlobUtil;
-import com.perl5.lang.perl.util.PerlHashUtil;
-import com.perl5.lang.perl.util.PerlScalarUtil;
+import com.intellij.psi.stubs.StubIndex;
+import com.intellij.psi.stubs.StubIndexKey;
+import com.intellij.util.Processor;
+import com.intellij.util.indexing.IdFilter;
+import com.perl5.lang.perl.psi.PsiPerlGlobVariable;
+import com.perl5.lang.perl.psi.stubs.globs.PerlGlobsStubIndex;
+import com.perl5.lang.perl.util.PerlStubUtil;
+import com.perl5.lang.perl.util.PerlVariableUtil;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
-import java.util.ArrayList;
-import java.util.Collection;
-import java.util.Collections;
+import static com.perl5.lang.perl.psi.stubs.variables.PerlVariablesStubIndex.*;
 
 
 public class PerlGotoVariableContributor extends PerlChooseByNameContributor {
   @Override
-  protected @NotNull Collection<String> getNamesCollection(Project project, boolean includeNonProjectItems) {
-    Collection<String> result = new ArrayList<>();
-
-    for (String name : PerlScalarUtil.getDefinedGlobalScalarNames(project)) {
-      result.add("$" + name);
-    }
-
-    for (String name : PerlArrayUtil.getDefinedGlobalArrayNames(project)) {
-      result.add("@" + name);
-    }
-
-    for (String name : PerlHashUtil.getDefinedGlobalHashNames(project)) {
-      result.add("%" + name);
-    }
-
-    for (String name : PerlGlobUtil.getDefinedGlobsNames(project)) {
-      result.add("*" + name);
-    }
+  protected boolean doProcessNames(@NotNull GlobalSearchScope scope,
+                                   @Nullable IdFilter idFilter,
+                                   @NotNull Processor<? super String> processor) {
+    return processNames(KEY_SCALAR, "$", scope, idFilter, processor) &&
+           processNames(KEY_ARRAY, "@", scope, idFilter, processor) &&
+           processNames(KEY_HASH, "%", scope, idFilter, processor) &&
+           processNames(PerlGlobsStubIndex.KEY, "*", scope, idFilter, processor);
+  }
 
-    return result;
+  /**
+   * Processes names from the {@code indexKey} with {@code sigil} prepended. Internal keys, like {@code *Namespace}, are skipped
+   */
+  private static boolean processNames(@NotNull StubIndexKey<String, ?> indexKey,
+                                      @NotNull String sigil,
+                                      @NotNull GlobalSearchScope scope,
+                                      @Nullable IdFilter idFilter,
+                                      @NotNull Processor<? super String> processor) {
+    PerlStubUtil.PerlInternalIndexKeysProcessor keysFilter = new PerlStubUtil.PerlInternalIndexKeysProcessor();
+    return PerlStubUtil.processAllKeys(indexKey, scope, idFilter, it -> !keysFilter.process(it) || processor.process(sigil + it));
   }
 
   @Override
-  protected @NotNull Collection<? extends NavigationItem> getItemsCollectionByName(String name,
-                                                                                   String pattern,
-                                                                                   Project project,
-                                                                                   boolean includeNonProjectItems) {
-    if (name.length() <= 0) {
-      return Collections.emptyList();
+  protected boolean doProcessItemsByName(@NotNull String name,
+                                         @NotNull Project project,
+                                         @NotNull GlobalSearchScope scope,
+                                         @NotNull Processor<? super NavigationItem> processor) {
+    if (name.length() <= 1) {
+      return true;
     }
-    GlobalSearchScope scope =
-      includeNonProjectItems ? GlobalSearchScope.allScope(project) : GlobalSearchScope.projectScope(project);
 
     char firstChar = name.charAt(0);
+    String canonicalName = name.substring(1);
 
     if (firstChar == '$') {
-      return PerlScalarUtil.getGlobalScalarDefinitions(project, name.substring(1), scope);
+      return PerlVariableUtil.processGlobalVariables(KEY_SCALAR, project, scope, processor::process, canonicalName, false);
     }
     else if (firstChar == '@') {
-      return PerlArrayUtil.getGlobalArrayDefinitions(project, name.substring(1), scope);
+      return PerlVariableUtil.processGlobalVariables(KEY_ARRAY, project, scope, processor::process, canonicalName, false);
     }
     else if (firstChar == '%') {
-      return PerlHashUtil.getGlobalHashDefinitions(project, name.substring(1), scope);
+      return PerlVariableUtil.processGlobalVariables(KEY_HASH, project, scope, processor::process, canonicalName, false);
     }
     else if (firstChar == '*') {
-      return PerlGlobUtil.getGlobsDefinitions(project, name.substring(1), scope);
+      return StubIndex.getInstance().processElements(
+        PerlGlobsStubIndex.KEY, canonicalName, project, scope, PsiPerlGlobVariable.class, processor::process);
     }
-    return Collections.emptyList();
+    return true;
   }
 }
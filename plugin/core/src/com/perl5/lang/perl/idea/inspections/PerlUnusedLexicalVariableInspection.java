@@ -22,6 +22,7 @@ import com.intellij.psi.search.searches.ReferencesSearch;
 import com.perl5.PerlBundle;
 import com.perl5.lang.perl.psi.PerlVariable;
 import com.perl5.lang.perl.psi.PerlVariableDeclarationElement;
+import com.perl5.lang.perl.psi.references.scopes.PerlLexicalDeclarationsTable;
 
 
 public class PerlUnusedLexicalVariableInspection extends PerlVariableInspectionBase {
@@ -30,6 +31,10 @@ public class PerlUnusedLexicalVariableInspection extends PerlVariableInspectionB
     if (variableDeclarationWrapper.isLexicalDeclaration() &&
         !variableDeclarationWrapper.isLocalDeclaration()
       ) {
+      PerlLexicalDeclarationsTable declarationsTable = PerlLexicalDeclarationsTable.getInstance(variableDeclarationWrapper);
+      if (declarationsTable != null && declarationsTable.hasUsages(variableDeclarationWrapper)) {
+        return;
+      }
       if (ReferencesSearch.search(variableDeclarationWrapper, variableDeclarationWrapper.getUseScope()).findFirst() == null) {
         PerlVariable variable = variableDeclarationWrapper.getVariable();
         holder.registerProblem(
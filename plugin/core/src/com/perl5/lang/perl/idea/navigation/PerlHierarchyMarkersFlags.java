@@ -0,0 +1,165 @@
+/*
+ * Copyright 2015-2021 Alexandr Evstigneev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.perl5.lang.perl.idea.navigation;
+
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.text.StringUtil;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.PsiNamedElement;
+import com.intellij.psi.search.GlobalSearchScope;
+import com.intellij.psi.util.CachedValueProvider;
+import com.intellij.psi.util.CachedValuesManager;
+import com.intellij.psi.util.PsiModificationTracker;
+import com.intellij.util.containers.ContainerUtil;
+import com.perl5.lang.perl.psi.PerlNamespaceDefinitionElement;
+import com.perl5.lang.perl.psi.PerlSubElement;
+import com.perl5.lang.perl.psi.mro.PerlMro;
+import com.perl5.lang.perl.util.PerlPackageUtil;
+import com.perl5.lang.perl.util.PerlSubUtil;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static com.perl5.lang.perl.util.PerlSubUtil.SUB_AUTOLOAD;
+
+/**
+ * Per-file flags for the hierarchy line markers: whether namespaces have parents and subclasses and methods have super and overriding
+ * methods. Flags are computed in batches per namespace, from the names of subs in its ancestors and descendants, so markers of all
+ * methods of a class do not resolve the hierarchy one by one. Flags may be false positive, actual targets are resolved on navigation.
+ */
+final class PerlHierarchyMarkersFlags {
+  private final @NotNull Project myProject;
+  private final @NotNull GlobalSearchScope myResolveScope;
+  private final @NotNull Map<String, Boolean> myKnownNamespaces = new ConcurrentHashMap<>();
+  private final @NotNull Map<String, Boolean> myNamespacesWithSubclasses = new ConcurrentHashMap<>();
+  /**
+   * Namespace names to the names of subs in its ancestors
+   */
+  private final @NotNull Map<String, Set<String>> myAncestorsSubsNames = new ConcurrentHashMap<>();
+  /**
+   * Namespace names to the names of subs in its descendants
+   */
+  private final @NotNull Map<String, Set<String>> myDescendantsSubsNames = new ConcurrentHashMap<>();
+
+  private PerlHierarchyMarkersFlags(@NotNull PsiFile file) {
+    myProject = file.getProject();
+    myResolveScope = file.getResolveScope();
+  }
+
+  /**
+   * @return true iff some of the parent namespaces of {@code namespaceDefinition} is defined
+   */
+  boolean hasParentNamespaces(@NotNull PerlNamespaceDefinitionElement namespaceDefinition) {
+    return ContainerUtil.exists(namespaceDefinition.getParentNamespacesNames(), it -> myKnownNamespaces.computeIfAbsent(
+      it, name -> !PerlPackageUtil.processNamespaces(name, myProject, GlobalSearchScope.allScope(myProject), __ -> false)));
+  }
+
+  /**
+   * @return true iff {@code namespaceName} has subclasses
+   */
+  boolean hasChildNamespaces(@Nullable String namespaceName) {
+    return StringUtil.isNotEmpty(namespaceName) && myNamespacesWithSubclasses.computeIfAbsent(
+      namespaceName, it -> !PerlPackageUtil.getChildNamespaces(myProject, it).isEmpty());
+  }
+
+  /**
+   * @return true iff {@code subElement} may have a super method. Only methods have them, see {@link PerlSubElement#getDirectSuperMethod()}
+   */
+  boolean mayHaveSuperMethod(@NotNull PerlSubElement subElement) {
+    if (!subElement.isMethod()) {
+      return false;
+    }
+    String namespaceName = subElement.getNamespaceName();
+    String subName = subElement.getSubName();
+    if (StringUtil.isEmpty(namespaceName) || StringUtil.isEmpty(subName)) {
+      return false;
+    }
+    Set<String> ancestorsSubsNames = myAncestorsSubsNames.computeIfAbsent(namespaceName, this::computeAncestorsSubsNames);
+    return ancestorsSubsNames.contains(subName) || ancestorsSubsNames.contains(SUB_AUTOLOAD);
+  }
+
+  /**
+   * @return true iff {@code subElement} may be overridden in subclasses
+   */
+  boolean mayHaveOverridingSubs(@NotNull PerlSubElement subElement) {
+    String namespaceName = subElement.getNamespaceName();
+    String subName = subElement.getSubName();
+    return StringUtil.isNotEmpty(namespaceName) && StringUtil.isNotEmpty(subName) &&
+           hasChildNamespaces(namespaceName) &&
+           myDescendantsSubsNames.computeIfAbsent(namespaceName, this::computeDescendantsSubsNames).contains(subName);
+  }
+
+  /**
+   * @return names of subs in the ancestors of {@code namespaceName}. {@code AUTOLOAD} is included only if it is defined outside of the
+   * {@code UNIVERSAL}, as in {@link PerlMro#processTargets}
+   */
+  private @NotNull Set<String> computeAncestorsSubsNames(@NotNull String namespaceName) {
+    Set<String> result = new HashSet<>();
+    for (String ancestorName : PerlMro.getLinearISA(myProject, myResolveScope, namespaceName, true)) {
+      boolean isUniversal = PerlPackageUtil.isUNIVERSAL(ancestorName);
+      PerlSubUtil.processRelatedSubsInPackage(myProject, myResolveScope, ancestorName, it -> {
+        String subName = getSubName(it);
+        if (subName != null && !(isUniversal && SUB_AUTOLOAD.equals(subName))) {
+          result.add(subName);
+        }
+        return true;
+      });
+    }
+    return result;
+  }
+
+  /**
+   * @return names of methods defined in all descendants of {@code namespaceName}. Functions can't override, because they have no super
+   * methods
+   */
+  private @NotNull Set<String> computeDescendantsSubsNames(@NotNull String namespaceName) {
+    Set<String> result = new HashSet<>();
+    Set<String> processedNamespaces = new HashSet<>();
+    Deque<String> namespacesToProcess = new ArrayDeque<>();
+    namespacesToProcess.add(namespaceName);
+    while (!namespacesToProcess.isEmpty()) {
+      for (PerlNamespaceDefinitionElement childNamespace : PerlPackageUtil.getChildNamespaces(myProject, namespacesToProcess.poll())) {
+        String childNamespaceName = childNamespace.getNamespaceName();
+        if (StringUtil.isNotEmpty(childNamespaceName) && processedNamespaces.add(childNamespaceName)) {
+          PerlSubUtil.processSubDefinitionsInPackage(
+            myProject, childNamespaceName, GlobalSearchScope.allScope(myProject), it -> {
+              if (it.isMethod()) {
+                ContainerUtil.addIfNotNull(result, it.getSubName());
+              }
+              return true;
+            });
+          namespacesToProcess.add(childNamespaceName);
+        }
+      }
+    }
+    return result;
+  }
+
+  private static @Nullable String getSubName(@NotNull PsiNamedElement element) {
+    return element instanceof PerlSubElement ? ((PerlSubElement)element).getSubName() : element.getName();
+  }
+
+  /**
+   * @return flags for the {@code file}, cached until any PSI change
+   */
+  static @NotNull PerlHierarchyMarkersFlags getInstance(@NotNull PsiFile file) {
+    return CachedValuesManager.getCachedValue(file, () -> CachedValueProvider.Result.create(
+      new PerlHierarchyMarkersFlags(file), PsiModificationTracker.getInstance(file.getProject())));
+  }
+}
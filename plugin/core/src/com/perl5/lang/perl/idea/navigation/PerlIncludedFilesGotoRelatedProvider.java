@@ -0,0 +1,70 @@
+/*
+ * Copyright 2015-2021 Alexandr Evstigneev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.perl5.lang.perl.idea.navigation;
+
+import com.intellij.navigation.GotoRelatedItem;
+import com.intellij.navigation.GotoRelatedProvider;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.PsiElement;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.PsiManager;
+import com.perl5.PerlBundle;
+import com.perl5.lang.perl.idea.project.PerlDependenciesGraph;
+import com.perl5.lang.perl.psi.PerlFile;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Provides files directly included by the current one and files directly including it. Transitive ones may be the whole project
+ */
+public class PerlIncludedFilesGotoRelatedProvider extends GotoRelatedProvider {
+  @Override
+  public @NotNull List<? extends GotoRelatedItem> getItems(@NotNull PsiElement psiElement) {
+    PsiFile psiFile = psiElement.getContainingFile();
+    if (!(psiFile instanceof PerlFile)) {
+      return Collections.emptyList();
+    }
+    VirtualFile virtualFile = psiFile.getOriginalFile().getVirtualFile();
+    if (virtualFile == null) {
+      return Collections.emptyList();
+    }
+    PerlDependenciesGraph dependenciesGraph = PerlDependenciesGraph.getInstance(psiFile.getProject());
+    PsiManager psiManager = psiFile.getManager();
+    List<GotoRelatedItem> result = new ArrayList<>();
+    addItems(result, dependenciesGraph.getDirectDependencies(virtualFile), psiManager,
+             PerlBundle.message("perl.goto.related.included.files"));
+    addItems(result, dependenciesGraph.getDirectDependents(virtualFile), psiManager,
+             PerlBundle.message("perl.goto.related.including.files"));
+    return result;
+  }
+
+  private static void addItems(@NotNull List<GotoRelatedItem> result,
+                               @NotNull Collection<VirtualFile> files,
+                               @NotNull PsiManager psiManager,
+                               @NotNull String group) {
+    for (VirtualFile virtualFile : files) {
+      PsiFile psiFile = virtualFile.isValid() ? psiManager.findFile(virtualFile) : null;
+      if (psiFile != null) {
+        result.add(new GotoRelatedItem(psiFile, group));
+      }
+    }
+  }
+}
@@ -1,5 +1,5 @@
 /*
- * Copyright 2015-2020 Alexandr Evstigneev
+ * Copyright 2015-2021 Alexandr Evstigneev
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -20,17 +20,21 @@ import com.intellij.codeInsight.daemon.RelatedItemLineMarkerInfo;
 import com.intellij.codeInsight.daemon.RelatedItemLineMarkerProvider;
 import com.intellij.codeInsight.navigation.NavigationGutterIconBuilder;
 import com.intellij.icons.AllIcons;
+import com.intellij.openapi.util.NotNullLazyValue;
 import com.intellij.psi.PsiElement;
+import com.intellij.psi.SmartPointerManager;
+import com.intellij.psi.SmartPsiElementPointer;
 import com.intellij.psi.util.PsiTreeUtil;
+import com.intellij.util.Function;
+import com.intellij.util.containers.ContainerUtil;
 import com.perl5.lang.perl.lexer.PerlElementTypes;
 import com.perl5.lang.perl.psi.*;
 import com.perl5.lang.perl.psi.impl.PerlPolyNamedElement;
 import com.perl5.lang.perl.psi.light.PerlDelegatingLightNamedElement;
 import org.jetbrains.annotations.NotNull;
 
-import java.util.ArrayList;
 import java.util.Collection;
-import java.util.List;
+import java.util.Collections;
 
 
 public class PerlLineMarkerProvider extends RelatedItemLineMarkerProvider implements PerlElementTypes {
@@ -61,21 +65,20 @@ public class PerlLineMarkerProvider extends RelatedItemLineMarkerProvider implem
       nameIdentifier = element;
     }
 
-    List<PerlNamespaceDefinitionElement> parentNamespaces = element.getParentNamespaceDefinitions();
-    if (!parentNamespaces.isEmpty()) {
+    PerlHierarchyMarkersFlags markersFlags = PerlHierarchyMarkersFlags.getInstance(element.getContainingFile());
+    if (markersFlags.hasParentNamespaces(element)) {
       NavigationGutterIconBuilder<PsiElement> builder = NavigationGutterIconBuilder
         .create(AllIcons.Gutter.ImplementingMethod)
-        .setTargets(parentNamespaces)
+        .setTargets(createLazyTargets(element, PerlNamespaceDefinitionElement::getParentNamespaceDefinitions))
         .setTooltipText("Parent classes");
 
       result.add(getMarkerInfo(builder, nameIdentifier));
     }
 
-    Collection<PerlNamespaceDefinitionElement> childNamespaces = element.getChildNamespaceDefinitions();
-    if (!childNamespaces.isEmpty()) {
+    if (markersFlags.hasChildNamespaces(element.getNamespaceName())) {
       NavigationGutterIconBuilder<PsiElement> builder = NavigationGutterIconBuilder
         .create(AllIcons.Gutter.ImplementedMethod)
-        .setTargets(childNamespaces)
+        .setTargets(createLazyTargets(element, PerlNamespaceDefinitionElement::getChildNamespaceDefinitions))
         .setTooltipText("Subclasses");
 
       result.add(getMarkerInfo(builder, nameIdentifier));
@@ -99,27 +102,36 @@ public class PerlLineMarkerProvider extends RelatedItemLineMarkerProvider implem
         nameIdentifier = subElement;
       }
 
-      PerlSubElement parentSub = subElement.getDirectSuperMethod();
-
-      if (parentSub != null) {
+      PerlHierarchyMarkersFlags markersFlags = PerlHierarchyMarkersFlags.getInstance(subElement.getContainingFile());
+      if (markersFlags.mayHaveSuperMethod(subElement)) {
         NavigationGutterIconBuilder<PsiElement> builder = NavigationGutterIconBuilder
           .create(AllIcons.Gutter.OverridingMethod)
-          .setTarget(parentSub)
+          .setTargets(createLazyTargets(subElement, it -> ContainerUtil.createMaybeSingletonList(it.getDirectSuperMethod())))
           .setTooltipText("Overriding method");
 
         result.add(getMarkerInfo(builder, nameIdentifier));
       }
 
-      List<PerlSubElement> overridingSubs = new ArrayList<>();
-      subElement.processDirectOverridingSubs(overridingSubs::add);
-      if (!overridingSubs.isEmpty()) {
+      if (markersFlags.mayHaveOverridingSubs(subElement)) {
         NavigationGutterIconBuilder<PsiElement> builder = NavigationGutterIconBuilder
           .create(AllIcons.Gutter.OverridenMethod)
-          .setTargets(overridingSubs)
+          .setTargets(createLazyTargets(subElement, PerlSubElement::getDirectOverridingSubs))
           .setTooltipText("Overridden methods");
 
         result.add(getMarkerInfo(builder, nameIdentifier));
       }
     }
   }
+
+  /**
+   * @return targets computed from the {@code element} on navigation. Element is held with smart pointer to avoid leaking the PSI
+   */
+  private static <T extends PsiElement> @NotNull NotNullLazyValue<Collection<? extends PsiElement>> createLazyTargets(
+    @NotNull T element, @NotNull Function<? super T, ? extends Collection<? extends PsiElement>> targetsComputation) {
+    SmartPsiElementPointer<T> elementPointer = SmartPointerManager.createPointer(element);
+    return NotNullLazyValue.createValue(() -> {
+      T currentElement = elementPointer.getElement();
+      return currentElement == null ? Collections.emptyList() : targetsComputation.fun(currentElement);
+    });
+  }
 }
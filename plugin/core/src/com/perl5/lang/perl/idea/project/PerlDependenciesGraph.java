@@ -0,0 +1,570 @@
+/*
+ * Copyright 2015-2021 Alexandr Evstigneev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.perl5.lang.perl.idea.project;
+
+import com.intellij.ProjectTopics;
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.fileTypes.FileTypeRegistry;
+import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.openapi.project.DumbService;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.roots.ModuleRootEvent;
+import com.intellij.openapi.roots.ModuleRootListener;
+import com.intellij.openapi.util.Key;
+import com.intellij.openapi.util.ModificationTracker;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.openapi.vfs.VirtualFileManager;
+import com.intellij.openapi.vfs.newvfs.BulkFileListener;
+import com.intellij.openapi.vfs.newvfs.events.*;
+import com.intellij.psi.*;
+import com.intellij.psi.impl.source.PsiFileImpl;
+import com.intellij.psi.search.GlobalSearchScope;
+import com.intellij.psi.stubs.StubElement;
+import com.intellij.psi.util.CachedValue;
+import com.intellij.psi.util.CachedValueProvider;
+import com.intellij.psi.util.CachedValuesManager;
+import com.intellij.psi.util.PsiUtilCore;
+import com.intellij.util.PathUtil;
+import com.intellij.util.containers.ContainerUtil;
+import com.intellij.util.messages.MessageBusConnection;
+import com.perl5.lang.perl.fileTypes.PerlPluginBaseFileType;
+import com.perl5.lang.perl.psi.PerlFile;
+import com.perl5.lang.perl.psi.stubs.imports.PerlIncludedFilesIndex;
+import com.perl5.lang.perl.psi.stubs.imports.PerlUseStatementStub;
+import com.perl5.lang.perl.psi.stubs.imports.runtime.PerlRuntimeImportStub;
+import com.perl5.lang.perl.util.PerlPackageUtil;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Graph of files included with {@code use}, {@code no}, {@code require} and {@code do}. Included paths of files and their targets are
+ * computed from stubs and kept until the file is changed; changed files are re-checked by queries and the graph is considered modified only
+ * if their imports changed. Transitive dependencies and dependents are cached until the graph modification. Direct dependents are found with
+ * {@link PerlIncludedFilesIndex}.
+ * <p>
+ * Lib dirs added with {@code use lib} are global in perl, so they are applied to all files included after the statement. Import, unresolved by
+ * the file itself, is considered as resolved with lib dirs of the including file if it matches any file with the same relative path.
+ * <p>
+ * Creation, removal or renaming of a perl file invalidates only files including paths with its name, found with the reverse index of included
+ * file names. Events of other files are ignored. Directories events, roots changes and dumb mode exit drop the whole graph, because they
+ * may change resolution of lib dirs.
+ */
+public class PerlDependenciesGraph implements ModificationTracker, Disposable {
+  private static final Logger LOG = Logger.getInstance(PerlDependenciesGraph.class);
+  private static final Key<CachedValue<Map<VirtualFile, Set<VirtualFile>>>> DEPENDENCIES_KEY = Key.create("perl.dependencies");
+  private static final Key<CachedValue<Map<VirtualFile, Set<VirtualFile>>>> DEPENDENTS_KEY = Key.create("perl.dependents");
+  private static final Key<CachedValue<Map<VirtualFile, List<VirtualFile>>>> DIRECT_DEPENDENTS_KEY = Key.create("perl.direct.dependents");
+  private final @NotNull Project myProject;
+  private final AtomicLong myModificationCount = new AtomicLong();
+  /**
+   * Incremented on each invalidation of file imports, to avoid caching of ones computed concurrently with it
+   */
+  private final AtomicLong myInvalidationsCount = new AtomicLong();
+  /**
+   * Guards re-checking of dirty files, so the modification count is incremented once per change
+   */
+  private final Object myLock = new Object();
+  /**
+   * Files changed since last check
+   */
+  private final Set<VirtualFile> myDirtyFiles = ContainerUtil.newConcurrentSet();
+  private final Map<VirtualFile, FileImports> myFilesImports = new ConcurrentHashMap<>();
+  /**
+   * Reverse index of {@link #myFilesImports}: files by names of the files they include. May contain extra files, which are checked by their
+   * imports, but never misses one
+   */
+  private final Map<String, Set<VirtualFile>> myIncludingFiles = new ConcurrentHashMap<>();
+
+  public PerlDependenciesGraph(@NotNull Project project) {
+    myProject = project;
+    MessageBusConnection connection = project.getMessageBus().connect(this);
+    connection.subscribe(ProjectTopics.PROJECT_ROOTS, new ModuleRootListener() {
+      @Override
+      public void rootsChanged(@NotNull ModuleRootEvent event) {
+        clear();
+      }
+    });
+    connection.subscribe(DumbService.DUMB_MODE, new DumbService.DumbModeListener() {
+      @Override
+      public void exitDumbMode() {
+        clear();
+      }
+    });
+    connection.subscribe(VirtualFileManager.VFS_CHANGES, new BulkFileListener() {
+      @Override
+      public void after(@NotNull List<? extends VFileEvent> events) {
+        for (VFileEvent event : events) {
+          if (!processFileEvent(event)) {
+            clear();
+            return;
+          }
+        }
+      }
+    });
+    PsiManager.getInstance(project).addPsiTreeChangeListener(new PsiTreeChangeAdapter() {
+      @Override
+      public void childAdded(@NotNull PsiTreeChangeEvent event) {
+        processEvent(event);
+      }
+
+      @Override
+      public void childRemoved(@NotNull PsiTreeChangeEvent event) {
+        processEvent(event);
+      }
+
+      @Override
+      public void childReplaced(@NotNull PsiTreeChangeEvent event) {
+        processEvent(event);
+      }
+
+      @Override
+      public void childMoved(@NotNull PsiTreeChangeEvent event) {
+        processEvent(event);
+      }
+
+      @Override
+      public void childrenChanged(@NotNull PsiTreeChangeEvent event) {
+        processEvent(event);
+      }
+
+      @Override
+      public void propertyChanged(@NotNull PsiTreeChangeEvent event) {
+        processEvent(event);
+      }
+    }, this);
+  }
+
+  /**
+   * File system items events are handled by the file system listener
+   */
+  private void processEvent(@NotNull PsiTreeChangeEvent event) {
+    PsiFile psiFile = event.getFile();
+    if (psiFile == null || event.getChild() instanceof PsiFileSystemItem) {
+      return;
+    }
+    FileViewProvider viewProvider = psiFile.getViewProvider();
+    if (psiFile.isPhysical() && ContainerUtil.findInstance(viewProvider.getAllFiles(), PerlFile.class) != null) {
+      markDirty(viewProvider.getVirtualFile());
+    }
+  }
+
+  /**
+   * @return false if event can't be handled incrementally and whole graph should be dropped
+   */
+  private boolean processFileEvent(@NotNull VFileEvent event) {
+    if (event instanceof VFileContentChangeEvent) {
+      VirtualFile virtualFile = ((VFileContentChangeEvent)event).getFile();
+      if (isPerlFile(virtualFile)) {
+        markDirty(virtualFile);
+      }
+      return true;
+    }
+    if (event instanceof VFilePropertyChangeEvent) {
+      VFilePropertyChangeEvent propertyChangeEvent = (VFilePropertyChangeEvent)event;
+      if (!propertyChangeEvent.isRename()) {
+        return true;
+      }
+      VirtualFile virtualFile = propertyChangeEvent.getFile();
+      if (virtualFile.isDirectory()) {
+        return false;
+      }
+      String oldName = (String)propertyChangeEvent.getOldValue();
+      if (isPerlFile(virtualFile) || FileTypeRegistry.getInstance().getFileTypeByFileName(oldName) instanceof PerlPluginBaseFileType) {
+        invalidateFilesIncluding(oldName);
+        invalidateFilesIncluding((String)propertyChangeEvent.getNewValue());
+        markDirty(virtualFile);
+      }
+      return true;
+    }
+    VirtualFile virtualFile = event.getFile();
+    boolean isDirectory = event instanceof VFileCreateEvent ? ((VFileCreateEvent)event).isDirectory() :
+                          virtualFile == null || virtualFile.isDirectory();
+    if (isDirectory) {
+      return false;
+    }
+    if (!isPerlFile(virtualFile)) {
+      return true;
+    }
+    invalidateFilesIncluding(PathUtil.getFileName(event.getPath()));
+    if (event instanceof VFileDeleteEvent) {
+      evictFile(virtualFile);
+    }
+    else {
+      markDirty(virtualFile);
+    }
+    return true;
+  }
+
+  private static boolean isPerlFile(@Nullable VirtualFile virtualFile) {
+    return virtualFile != null && virtualFile.getFileType() instanceof PerlPluginBaseFileType;
+  }
+
+  /**
+   * Marks as dirty all known files including paths with {@code fileName}, because their resolution may change
+   */
+  private void invalidateFilesIncluding(@NotNull String fileName) {
+    Set<VirtualFile> includingFiles = myIncludingFiles.get(fileName);
+    if (includingFiles == null) {
+      return;
+    }
+    for (VirtualFile virtualFile : includingFiles) {
+      FileImports fileImports = myFilesImports.get(virtualFile);
+      if (fileImports != null && fileImports.includesFileNamed(fileName)) {
+        markDirty(virtualFile);
+      }
+    }
+  }
+
+  /**
+   * Drops imports of the deleted {@code virtualFile}, graph is modified if it had some
+   */
+  private void evictFile(@NotNull VirtualFile virtualFile) {
+    myInvalidationsCount.incrementAndGet();
+    myDirtyFiles.remove(virtualFile);
+    FileImports oldImports = removeFileImports(virtualFile);
+    if (oldImports != null && !oldImports.isEmpty()) {
+      myModificationCount.incrementAndGet();
+    }
+  }
+
+  /**
+   * Names are registered before storing imports, so the reverse index is never behind {@link #myFilesImports}
+   *
+   * @return previous imports of the {@code virtualFile}
+   */
+  private @Nullable FileImports putFileImports(@NotNull VirtualFile virtualFile, @NotNull FileImports fileImports) {
+    registerIncludedNames(virtualFile, fileImports);
+    FileImports oldImports = myFilesImports.put(virtualFile, fileImports);
+    if (oldImports != null) {
+      unregisterIncludedNames(virtualFile, oldImports, fileImports);
+    }
+    return oldImports;
+  }
+
+  private @Nullable FileImports removeFileImports(@NotNull VirtualFile virtualFile) {
+    FileImports oldImports = myFilesImports.remove(virtualFile);
+    if (oldImports != null) {
+      unregisterIncludedNames(virtualFile, oldImports, FileImports.EMPTY);
+    }
+    return oldImports;
+  }
+
+  private void registerIncludedNames(@NotNull VirtualFile virtualFile, @NotNull FileImports fileImports) {
+    for (String includedName : fileImports.getIncludedNames()) {
+      myIncludingFiles.computeIfAbsent(includedName, it -> ContainerUtil.newConcurrentSet()).add(virtualFile);
+    }
+  }
+
+  /**
+   * Unregisters names included by {@code oldImports} only
+   */
+  private void unregisterIncludedNames(@NotNull VirtualFile virtualFile, @NotNull FileImports oldImports, @NotNull FileImports newImports) {
+    Set<String> newNames = newImports.getIncludedNames();
+    for (String includedName : oldImports.getIncludedNames()) {
+      if (!newNames.contains(includedName)) {
+        myIncludingFiles.computeIfPresent(includedName, (name, files) -> {
+          files.remove(virtualFile);
+          return files.isEmpty() ? null : files;
+        });
+      }
+    }
+  }
+
+  private void markDirty(@NotNull VirtualFile virtualFile) {
+    myInvalidationsCount.incrementAndGet();
+    myDirtyFiles.add(virtualFile);
+  }
+
+  private void clear() {
+    myInvalidationsCount.incrementAndGet();
+    myModificationCount.incrementAndGet();
+    myDirtyFiles.clear();
+    myFilesImports.clear();
+    myIncludingFiles.clear();
+  }
+
+  @Override
+  public void dispose() {
+    myFilesImports.clear();
+    myIncludingFiles.clear();
+  }
+
+  /**
+   * @implNote changed files are re-checked by queries, see {@link #ensureUpToDate()}
+   */
+  @Override
+  public long getModificationCount() {
+    return myModificationCount.get();
+  }
+
+  /**
+   * Re-checks imports of changed files and increments modification count if any of them changed. Dirty files without known imports are
+   * considered as changed if they have some, because they could be added since the last check. File invalidated during the check is kept
+   * dirty for the next one.
+   */
+  private void ensureUpToDate() {
+    if (myDirtyFiles.isEmpty()) {
+      return;
+    }
+    synchronized (myLock) {
+      boolean isChanged = false;
+      for (VirtualFile virtualFile : new ArrayList<>(myDirtyFiles)) {
+        long invalidationsCount = myInvalidationsCount.get();
+        FileImports newImports = computeFileImports(virtualFile);
+        myDirtyFiles.remove(virtualFile);
+        if (invalidationsCount != myInvalidationsCount.get()) {
+          myDirtyFiles.add(virtualFile);
+          continue;
+        }
+        FileImports oldImports = virtualFile.isValid() ? putFileImports(virtualFile, newImports) : removeFileImports(virtualFile);
+        isChanged |= oldImports == null ? !newImports.isEmpty() : !oldImports.equals(newImports);
+      }
+      if (isChanged) {
+        LOG.debug("Dependencies graph changed");
+        myModificationCount.incrementAndGet();
+      }
+    }
+  }
+
+  /**
+   * @return files directly included by the {@code virtualFile}, in order of appearance. Lib dirs of including files are not applied.
+   */
+  public @NotNull List<VirtualFile> getDirectDependencies(@NotNull VirtualFile virtualFile) {
+    ensureUpToDate();
+    return getFileImports(virtualFile).getDependencies(virtualFile);
+  }
+
+  /**
+   * @return files including the {@code virtualFile} directly
+   */
+  public @NotNull List<VirtualFile> getDirectDependents(@NotNull VirtualFile virtualFile) {
+    ensureUpToDate();
+    return getCache(DIRECT_DEPENDENTS_KEY).computeIfAbsent(virtualFile, this::computeDirectDependents);
+  }
+
+  /**
+   * @return files included by the {@code virtualFile} directly or transitively, not including the file itself. Lib dirs added by the
+   * {@code virtualFile} and included files are applied to files included after them.
+   */
+  public @NotNull Set<VirtualFile> getDependencies(@NotNull VirtualFile virtualFile) {
+    ensureUpToDate();
+    return getCache(DEPENDENCIES_KEY).computeIfAbsent(virtualFile, this::computeDependencies);
+  }
+
+  /**
+   * @return files including the {@code virtualFile} directly or transitively, not including the file itself
+   */
+  public @NotNull Set<VirtualFile> getDependents(@NotNull VirtualFile virtualFile) {
+    ensureUpToDate();
+    return getCache(DEPENDENTS_KEY).computeIfAbsent(virtualFile, this::computeDependents);
+  }
+
+  private <T> @NotNull Map<VirtualFile, T> getCache(@NotNull Key<CachedValue<Map<VirtualFile, T>>> key) {
+    return CachedValuesManager.getManager(myProject).getCachedValue(
+      myProject, key, () -> CachedValueProvider.Result.create(new ConcurrentHashMap<>(), this), false);
+  }
+
+  private @NotNull FileImports getFileImports(@NotNull VirtualFile virtualFile) {
+    FileImports cachedImports = myFilesImports.get(virtualFile);
+    if (cachedImports != null) {
+      return cachedImports;
+    }
+    long invalidationsCount = myInvalidationsCount.get();
+    FileImports fileImports = computeFileImports(virtualFile);
+    if (invalidationsCount == myInvalidationsCount.get() && virtualFile.isValid()) {
+      registerIncludedNames(virtualFile, fileImports);
+      myFilesImports.putIfAbsent(virtualFile, fileImports);
+    }
+    return fileImports;
+  }
+
+  /**
+   * Walks included files breadth-first, collecting lib dirs added by visited files. Later {@code use lib} takes precedence, like in perl.
+   */
+  private @NotNull Set<VirtualFile> computeDependencies(@NotNull VirtualFile virtualFile) {
+    Set<VirtualFile> result = new LinkedHashSet<>();
+    List<VirtualFile> libDirs = new ArrayList<>();
+    Deque<VirtualFile> queue = new ArrayDeque<>();
+    queue.add(virtualFile);
+    while (!queue.isEmpty()) {
+      ProgressManager.checkCanceled();
+      FileImports fileImports = getFileImports(queue.removeFirst());
+      for (int i = 0; i < fileImports.myPaths.size(); i++) {
+        VirtualFile includedFile = fileImports.resolve(i, libDirs);
+        if (includedFile != null && result.add(includedFile)) {
+          queue.add(includedFile);
+        }
+      }
+      libDirs.addAll(0, fileImports.myLibDirs);
+    }
+    result.remove(virtualFile);
+    return result.isEmpty() ? Collections.emptySet() : Collections.unmodifiableSet(result);
+  }
+
+  private @NotNull Set<VirtualFile> computeDependents(@NotNull VirtualFile virtualFile) {
+    Set<VirtualFile> result = new LinkedHashSet<>();
+    Deque<VirtualFile> queue = new ArrayDeque<>();
+    queue.add(virtualFile);
+    while (!queue.isEmpty()) {
+      ProgressManager.checkCanceled();
+      for (VirtualFile dependentFile : getDirectDependents(queue.removeFirst())) {
+        if (result.add(dependentFile)) {
+          queue.add(dependentFile);
+        }
+      }
+    }
+    result.remove(virtualFile);
+    return result.isEmpty() ? Collections.emptySet() : Collections.unmodifiableSet(result);
+  }
+
+  /**
+   * @return files, including {@code virtualFile}. Candidates are taken from the index by file name and checked by their imports.
+   */
+  private @NotNull List<VirtualFile> computeDirectDependents(@NotNull VirtualFile virtualFile) {
+    Set<VirtualFile> candidates = new LinkedHashSet<>();
+    PerlIncludedFilesIndex.getInstance().processElements(
+      myProject, virtualFile.getName(), GlobalSearchScope.allScope(myProject), it -> {
+        ContainerUtil.addIfNotNull(candidates, PsiUtilCore.getVirtualFile(it));
+        return true;
+      });
+    candidates.remove(virtualFile);
+    List<VirtualFile> result = ContainerUtil.filter(candidates, it -> getFileImports(it).mayInclude(virtualFile));
+    return result.isEmpty() ? Collections.emptyList() : Collections.unmodifiableList(result);
+  }
+
+  private @NotNull FileImports computeFileImports(@NotNull VirtualFile virtualFile) {
+    PsiFile psiFile = virtualFile.isValid() ? PsiManager.getInstance(myProject).findFile(virtualFile) : null;
+    PerlFile perlFile = psiFile == null ? null : ContainerUtil.findInstance(psiFile.getViewProvider().getAllFiles(), PerlFile.class);
+    if (!(perlFile instanceof PsiFileImpl)) {
+      return FileImports.EMPTY;
+    }
+    List<String> paths = new ArrayList<>();
+    List<VirtualFile> targets = new ArrayList<>();
+    for (StubElement<?> stubElement : ((PsiFileImpl)perlFile).calcStubTree().getPlainList()) {
+      String includedPath = getIncludedPath(stubElement);
+      if (includedPath != null) {
+        paths.add(includedPath);
+        targets.add(PerlPackageUtil.resolveRelativePathToVirtualFile(perlFile, includedPath));
+      }
+    }
+    List<VirtualFile> libDirs = PerlPackageUtil.getUseLibDirs(perlFile);
+    return paths.isEmpty() && libDirs.isEmpty() ? FileImports.EMPTY : new FileImports(paths, targets, libDirs);
+  }
+
+  private static @Nullable String getIncludedPath(@NotNull StubElement<?> stubElement) {
+    if (stubElement instanceof PerlUseStatementStub) {
+      return PerlPackageUtil.getPackagePathByName(((PerlUseStatementStub)stubElement).getPackageName());
+    }
+    if (stubElement instanceof PerlRuntimeImportStub) {
+      return ((PerlRuntimeImportStub)stubElement).getImportPath();
+    }
+    return null;
+  }
+
+  public static @NotNull PerlDependenciesGraph getInstance(@NotNull Project project) {
+    return project.getService(PerlDependenciesGraph.class);
+  }
+
+  /**
+   * Paths included by a file, in order of appearance, their targets, resolved by the file itself, and lib dirs added by it
+   */
+  private static final class FileImports {
+    private static final FileImports EMPTY = new FileImports(Collections.emptyList(), Collections.emptyList(), Collections.emptyList());
+    private final @NotNull List<String> myPaths;
+    private final @NotNull List<VirtualFile> myTargets;
+    private final @NotNull List<VirtualFile> myLibDirs;
+    private volatile @Nullable Set<String> myIncludedNames;
+
+    private FileImports(@NotNull List<String> paths, @NotNull List<VirtualFile> targets, @NotNull List<VirtualFile> libDirs) {
+      myPaths = paths;
+      myTargets = targets;
+      myLibDirs = libDirs;
+    }
+
+    boolean isEmpty() {
+      return myPaths.isEmpty() && myLibDirs.isEmpty();
+    }
+
+    @NotNull List<VirtualFile> getDependencies(@NotNull VirtualFile virtualFile) {
+      Set<VirtualFile> result = new LinkedHashSet<>(myTargets);
+      result.remove(null);
+      result.remove(virtualFile);
+      return result.isEmpty() ? Collections.emptyList() : List.copyOf(result);
+    }
+
+    /**
+     * Own lib dirs take precedence over the inherited ones, which take precedence over the rest of {@code @INC}
+     */
+    @Nullable VirtualFile resolve(int index, @NotNull List<VirtualFile> inheritedLibDirs) {
+      if (!inheritedLibDirs.isEmpty()) {
+        String path = myPaths.get(index);
+        for (VirtualFile libDir : ContainerUtil.concat(myLibDirs, inheritedLibDirs)) {
+          VirtualFile targetFile = PerlIncPathIndex.findFileInRoot(libDir, path);
+          if (targetFile != null) {
+            return targetFile;
+          }
+        }
+      }
+      return myTargets.get(index);
+    }
+
+    boolean mayInclude(@NotNull VirtualFile virtualFile) {
+      for (int i = 0; i < myPaths.size(); i++) {
+        VirtualFile targetFile = myTargets.get(i);
+        if (virtualFile.equals(targetFile) || targetFile == null && virtualFile.getPath().endsWith("/" + myPaths.get(i))) {
+          return true;
+        }
+      }
+      return false;
+    }
+
+    boolean includesFileNamed(@NotNull String fileName) {
+      return getIncludedNames().contains(fileName);
+    }
+
+    @NotNull Set<String> getIncludedNames() {
+      Set<String> result = myIncludedNames;
+      if (result == null) {
+        result = myPaths.isEmpty() ? Collections.emptySet() : Set.copyOf(ContainerUtil.map(myPaths, PathUtil::getFileName));
+        myIncludedNames = result;
+      }
+      return result;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (o == null || getClass() != o.getClass()) {
+        return false;
+      }
+      FileImports imports = (FileImports)o;
+      return myPaths.equals(imports.myPaths) && myTargets.equals(imports.myTargets) && myLibDirs.equals(imports.myLibDirs);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(myPaths, myTargets, myLibDirs);
+    }
+  }
+}
@@ -0,0 +1,222 @@
+/*
+ * Copyright 2015-2021 Alexandr Evstigneev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.perl5.lang.perl.idea.project;
+
+import com.intellij.ProjectTopics;
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.roots.ModuleRootEvent;
+import com.intellij.openapi.roots.ModuleRootListener;
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.openapi.util.text.StringUtil;
+import com.intellij.openapi.vfs.VfsUtil;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.openapi.vfs.VirtualFileManager;
+import com.intellij.openapi.vfs.newvfs.BulkFileListener;
+import com.intellij.openapi.vfs.newvfs.events.*;
+import com.intellij.util.SmartList;
+import com.intellij.util.containers.ContainerUtil;
+import com.intellij.util.messages.MessageBusConnection;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.jetbrains.annotations.TestOnly;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Index of files relative paths in the project library roots: {@code Foo/Bar.pm} &rarr; files with such relative path in all roots, in
+ * order of roots precedence. Entries are computed lazily and invalidated on roots changes and VFS events. Events invalidate entries with
+ * the relative path of the changed file or with the relative path prefix of the changed directory.
+ */
+public class PerlIncPathIndex implements Disposable {
+  private static final Logger LOG = Logger.getInstance(PerlIncPathIndex.class);
+  private final @NotNull Project myProject;
+  private final @NotNull Map<String, List<VirtualFile>> myFilesMap = new ConcurrentHashMap<>();
+  /**
+   * Incremented on each invalidation, to avoid caching of entries computed concurrently with it
+   */
+  private final AtomicLong myModificationCount = new AtomicLong();
+
+  public PerlIncPathIndex(@NotNull Project project) {
+    myProject = project;
+    MessageBusConnection connection = project.getMessageBus().connect(this);
+    connection.subscribe(ProjectTopics.PROJECT_ROOTS, new ModuleRootListener() {
+      @Override
+      public void rootsChanged(@NotNull ModuleRootEvent event) {
+        clear();
+      }
+    });
+    connection.subscribe(VirtualFileManager.VFS_CHANGES, new BulkFileListener() {
+      @Override
+      public void after(@NotNull List<? extends VFileEvent> events) {
+        events.forEach(PerlIncPathIndex.this::processEvent);
+      }
+    });
+  }
+
+  private void processEvent(@NotNull VFileEvent event) {
+    if (event instanceof VFileContentChangeEvent) {
+      return;
+    }
+    if (event instanceof VFilePropertyChangeEvent) {
+      VFilePropertyChangeEvent propertyChangeEvent = (VFilePropertyChangeEvent)event;
+      if (!propertyChangeEvent.isRename()) {
+        return;
+      }
+      boolean isDirectory = propertyChangeEvent.getFile().isDirectory();
+      invalidatePath(propertyChangeEvent.getOldPath(), isDirectory);
+      invalidatePath(propertyChangeEvent.getNewPath(), isDirectory);
+      return;
+    }
+    if (event instanceof VFileCreateEvent) {
+      invalidatePath(event.getPath(), ((VFileCreateEvent)event).isDirectory());
+      return;
+    }
+    if (event instanceof VFileCopyEvent) {
+      VFileCopyEvent copyEvent = (VFileCopyEvent)event;
+      invalidatePath(copyEvent.getPath(), copyEvent.getFile().isDirectory());
+      return;
+    }
+    if (event instanceof VFileMoveEvent) {
+      VFileMoveEvent moveEvent = (VFileMoveEvent)event;
+      boolean isDirectory = moveEvent.getFile().isDirectory();
+      invalidatePath(moveEvent.getOldPath(), isDirectory);
+      invalidatePath(moveEvent.getNewPath(), isDirectory);
+      return;
+    }
+    VirtualFile file = event.getFile();
+    invalidatePath(event.getPath(), file == null || file.isDirectory());
+  }
+
+  /**
+   * Drops entries which may be affected by a change of the file or directory with {@code path}: entry with the file relative path in
+   * any library root or entries with relative paths under the directory. Any change of a library root or its ancestor drops all entries.
+   */
+  private void invalidatePath(@NotNull String path, boolean isDirectory) {
+    if (myFilesMap.isEmpty()) {
+      myModificationCount.incrementAndGet();
+      return;
+    }
+    List<String> relativePaths = new SmartList<>();
+    for (VirtualFile root : PerlProjectManager.getInstance(myProject).getAllLibraryRoots()) {
+      String rootPath = root.getPath();
+      if (FileUtil.isAncestor(path, rootPath, false)) {
+        clear();
+        return;
+      }
+      if (FileUtil.isAncestor(rootPath, path, true)) {
+        relativePaths.add(path.substring(rootPath.length() + (rootPath.endsWith("/") ? 0 : 1)));
+      }
+    }
+    invalidateRelativePaths(relativePaths, isDirectory);
+  }
+
+  /**
+   * Drops entries for {@code relativePaths} or, for directories, entries under them
+   */
+  private void invalidateRelativePaths(@NotNull List<String> relativePaths, boolean isDirectory) {
+    myModificationCount.incrementAndGet();
+    if (relativePaths.isEmpty()) {
+      return;
+    }
+    myFilesMap.keySet().removeIf(key -> ContainerUtil.exists(
+      relativePaths, it -> isDirectory ? key.startsWith(it + "/") : key.equals(it)));
+  }
+
+  private void clear() {
+    myModificationCount.incrementAndGet();
+    if (!myFilesMap.isEmpty()) {
+      LOG.debug("Dropping inc paths index");
+      myFilesMap.clear();
+    }
+  }
+
+  @TestOnly
+  public boolean isCached(@NotNull String relativePath) {
+    return myFilesMap.containsKey(relativePath);
+  }
+
+  @Override
+  public void dispose() {
+    myFilesMap.clear();
+  }
+
+  /**
+   * @return first file with {@code relativePath} in the project library roots or null if there is no such file
+   */
+  public @Nullable VirtualFile findFile(@NotNull String relativePath) {
+    return ContainerUtil.getFirstItem(getFiles(relativePath));
+  }
+
+  /**
+   * @return files with {@code relativePath} in the project library roots, ordered by roots precedence
+   */
+  public @NotNull List<VirtualFile> getFiles(@NotNull String relativePath) {
+    List<VirtualFile> cachedFiles = myFilesMap.get(relativePath);
+    if (cachedFiles != null && ContainerUtil.and(cachedFiles, VirtualFile::isValid)) {
+      return cachedFiles;
+    }
+    long modificationCount = myModificationCount.get();
+    List<VirtualFile> files = computeFiles(PerlProjectManager.getInstance(myProject).getAllLibraryRoots(), relativePath);
+    if (modificationCount == myModificationCount.get()) {
+      myFilesMap.put(relativePath, files);
+    }
+    return files;
+  }
+
+  /**
+   * @return files with {@code relativePath} in {@code roots}, ordered by roots precedence. Files found by different path, e.g. with
+   * different case on case-insensitive file systems, are ignored.
+   */
+  public static @NotNull List<VirtualFile> computeFiles(@NotNull List<VirtualFile> roots, @NotNull String relativePath) {
+    List<VirtualFile> result = null;
+    for (VirtualFile root : roots) {
+      VirtualFile file = findFileInRoot(root, relativePath);
+      if (file != null) {
+        if (result == null) {
+          result = new SmartList<>();
+        }
+        result.add(file);
+      }
+    }
+    return result == null ? Collections.emptyList() : Collections.unmodifiableList(result);
+  }
+
+  /**
+   * @return file with {@code relativePath} in {@code root} if any
+   */
+  public static @Nullable VirtualFile findFileInRoot(@Nullable VirtualFile root, @NotNull String relativePath) {
+    if (root == null || !root.isValid()) {
+      return null;
+    }
+    VirtualFile file = root.findFileByRelativePath(relativePath);
+    if (file == null) {
+      return null;
+    }
+    String foundRelativePath = VfsUtil.getRelativePath(file, root);
+    return StringUtil.isNotEmpty(foundRelativePath) && StringUtil.equals(foundRelativePath, relativePath) ? file : null;
+  }
+
+  public static @NotNull PerlIncPathIndex getInstance(@NotNull Project project) {
+    return project.getService(PerlIncPathIndex.class);
+  }
+}
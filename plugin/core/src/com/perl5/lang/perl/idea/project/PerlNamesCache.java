@@ -22,40 +22,108 @@ import com.intellij.openapi.Disposable;
 import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.application.ReadAction;
 import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.editor.Document;
+import com.intellij.openapi.fileEditor.FileDocumentManager;
+import com.intellij.openapi.progress.ProcessCanceledException;
 import com.intellij.openapi.progress.ProgressManager;
 import com.intellij.openapi.project.DumbService;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.roots.ModuleRootEvent;
 import com.intellij.openapi.roots.ModuleRootListener;
-import com.intellij.psi.PsiManager;
-import com.intellij.psi.PsiTreeChangeAdapter;
-import com.intellij.psi.PsiTreeChangeEvent;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.*;
+import com.intellij.psi.impl.source.PsiFileImpl;
+import com.intellij.psi.stubs.*;
+import com.intellij.testFramework.LightVirtualFile;
+import com.intellij.util.containers.ContainerUtil;
 import com.intellij.util.messages.MessageBusConnection;
 import com.intellij.util.ui.update.MergingUpdateQueue;
 import com.intellij.util.ui.update.Update;
+import com.perl5.lang.perl.psi.PerlFile;
+import com.perl5.lang.perl.psi.stubs.PerlStubIndexBase;
+import com.perl5.lang.perl.psi.stubs.globs.PerlGlobsStubIndex;
 import com.perl5.lang.perl.psi.stubs.namespaces.PerlLightNamespaceIndex;
 import com.perl5.lang.perl.psi.stubs.namespaces.PerlNamespaceIndex;
 import com.perl5.lang.perl.psi.stubs.subsdeclarations.PerlSubDeclarationIndex;
 import com.perl5.lang.perl.psi.stubs.subsdefinitions.PerlLightSubDefinitionsIndex;
 import com.perl5.lang.perl.psi.stubs.subsdefinitions.PerlSubDefinitionsIndex;
+import com.perl5.lang.perl.psi.stubs.variables.PerlArraysStubIndex;
+import com.perl5.lang.perl.psi.stubs.variables.PerlHashesStubIndex;
+import com.perl5.lang.perl.psi.stubs.variables.PerlScalarsStubIndex;
+import com.perl5.lang.perl.psi.stubs.variables.PerlVariablesStubIndex;
 import com.perl5.lang.perl.util.PerlPackageUtil;
 import com.perl5.lang.perl.util.PerlTimeLogger;
+import gnu.trove.THashMap;
+import gnu.trove.THashSet;
+import gnu.trove.TObjectIntHashMap;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.jetbrains.annotations.TestOnly;
 
-import java.util.Collection;
-import java.util.Collections;
-import java.util.HashSet;
-import java.util.Set;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
 
 
+/**
+ * Project-wide sets of known subs, namespaces and global variables names, used by lexer to distinguish packages from subs and by
+ * completion.
+ * Base sets are collected from indexes on roots change, dumb mode exit or on demand. Changes in the files are applied incrementally:
+ * names contributed by each changed file are collected from its stub tree and reference-counted. Before the first change of the file, its
+ * cached stub tree or last committed text is remembered, and names contributed by the file before the change are collected from them in
+ * background, so removed names are detected as well. If name from the base set may have gone, full rebuild is scheduled.
+ */
 public class PerlNamesCache implements Disposable {
   private static final Logger LOG = Logger.getInstance(PerlNamesCache.class);
+  private static final Set<StubIndexKey<String, ?>> SUBS_KEYS = Set.of(
+    PerlSubDeclarationIndex.KEY, PerlSubDefinitionsIndex.KEY, PerlLightSubDefinitionsIndex.KEY);
+  private static final Set<StubIndexKey<String, ?>> NAMESPACES_KEYS = Set.of(
+    PerlNamespaceIndex.KEY, PerlLightNamespaceIndex.KEY);
+  private static final Set<StubIndexKey<String, ?>> GLOBALS_KEYS = Set.of(
+    PerlVariablesStubIndex.KEY_SCALAR, PerlVariablesStubIndex.KEY_ARRAY, PerlVariablesStubIndex.KEY_HASH, PerlGlobsStubIndex.KEY);
+  /**
+   * Prefix of the globals indexes keys, used to find globals by namespace, e.g. {@code *Foo::Bar}
+   */
+  private static final String NAMESPACE_KEY_PREFIX = "*";
+  private static final long UPDATE_LOCK_TIMEOUT_MS = 10;
+
   private final MergingUpdateQueue myQueue = new MergingUpdateQueue("Perl names cache updater", 1000, true, null, this, null, false);
   private final Project myProject;
-  private final AtomicBoolean myIsUpdating = new AtomicBoolean(false);
-  private volatile Set<String> myKnownSubs = Collections.emptySet();
-  private volatile Set<String> myKnownNamespaces = Collections.emptySet();
+  /**
+   * Held by the thread updating the cache
+   */
+  private final ReentrantLock myUpdateLock = new ReentrantLock();
+  private final AtomicBoolean myNeedsFullRebuild = new AtomicBoolean(true);
+  /**
+   * Files changed since last update
+   */
+  private final Set<VirtualFile> myDirtyFiles = ContainerUtil.newConcurrentSet();
+  private final Object myLock = new Object();
+  /**
+   * Names contributed by files changed since last full rebuild. Guarded by {@link #myLock}
+   */
+  private final Map<VirtualFile, FileNames> myFilesNames = new THashMap<>();
+  /**
+   * Contents of files before their first change, names from them are not applied yet. Guarded by {@link #myLock}
+   */
+  private final Map<VirtualFile, InitialContent> myInitialFilesContents = new THashMap<>();
+  private final TObjectIntHashMap<String> mySubsCounters = new TObjectIntHashMap<>();
+  private final TObjectIntHashMap<String> myNamespacesCounters = new TObjectIntHashMap<>();
+  private final TObjectIntHashMap<String> myGlobalsCounters = new TObjectIntHashMap<>();
+  private Set<String> myBaseSubs = Collections.emptySet();
+  private Set<String> myBaseNamespaces = Collections.emptySet();
+  private Set<String> myBaseGlobals = Collections.emptySet();
+  private PerlNamesDictionary myBaseSubsDictionary = PerlNamesDictionary.EMPTY;
+  private PerlNamesDictionary myBaseNamespacesDictionary = PerlNamesDictionary.EMPTY;
+  private PerlNamesDictionary myBaseGlobalsDictionary = PerlNamesDictionary.EMPTY;
+  private volatile @NotNull PerlNamesSnapshot mySnapshot = PerlNamesSnapshot.EMPTY;
+
+  private final AtomicLong myFullRebuildsCounter = new AtomicLong();
+  private final AtomicLong myIncrementalUpdatesCounter = new AtomicLong();
+  private volatile long myLastUpdateTime;
+  private volatile int myLastDeltaSize;
 
   public PerlNamesCache(Project project) {
     myProject = project;
@@ -66,59 +134,162 @@ public class PerlNamesCache implements Disposable {
     connection.subscribe(ProjectTopics.PROJECT_ROOTS, new ModuleRootListener() {
       @Override
       public void rootsChanged(@NotNull ModuleRootEvent event) {
-        queueUpdate();
+        queueFullRebuild();
       }
     });
     connection.subscribe(DumbService.DUMB_MODE, new DumbService.DumbModeListener() {
       @Override
       public void exitDumbMode() {
-        queueUpdate();
+        queueFullRebuild();
       }
     });
     PsiManager.getInstance(myProject).addPsiTreeChangeListener(new PsiTreeChangeAdapter() {
+      @Override
+      public void beforeChildAddition(@NotNull PsiTreeChangeEvent event) {
+        processBeforeEvent(event);
+      }
+
+      @Override
+      public void beforeChildRemoval(@NotNull PsiTreeChangeEvent event) {
+        processBeforeEvent(event);
+      }
+
+      @Override
+      public void beforeChildReplacement(@NotNull PsiTreeChangeEvent event) {
+        processBeforeEvent(event);
+      }
+
+      @Override
+      public void beforeChildMovement(@NotNull PsiTreeChangeEvent event) {
+        processBeforeEvent(event);
+      }
+
+      @Override
+      public void beforeChildrenChange(@NotNull PsiTreeChangeEvent event) {
+        processBeforeEvent(event);
+      }
+
+      @Override
+      public void beforePropertyChange(@NotNull PsiTreeChangeEvent event) {
+        processBeforeEvent(event);
+      }
+
       @Override
       public void childAdded(@NotNull PsiTreeChangeEvent event) {
-        queueUpdate();
+        processEvent(event);
       }
 
       @Override
       public void childRemoved(@NotNull PsiTreeChangeEvent event) {
-        queueUpdate();
+        processEvent(event);
       }
 
       @Override
       public void childReplaced(@NotNull PsiTreeChangeEvent event) {
-        queueUpdate();
+        processEvent(event);
       }
 
       @Override
       public void childMoved(@NotNull PsiTreeChangeEvent event) {
-        queueUpdate();
+        processEvent(event);
       }
 
       @Override
       public void childrenChanged(@NotNull PsiTreeChangeEvent event) {
-        queueUpdate();
+        processEvent(event);
       }
 
       @Override
       public void propertyChanged(@NotNull PsiTreeChangeEvent event) {
-        queueUpdate();
+        processEvent(event);
       }
     }, this);
   }
 
+  /**
+   * Remembers content of the file before its first change, to be able to detect names removed by the change. Nothing is computed here,
+   * names are collected from the content in background
+   */
+  private void processBeforeEvent(@NotNull PsiTreeChangeEvent event) {
+    PsiFile psiFile = event.getFile();
+    if (psiFile == null || !psiFile.isPhysical()) {
+      return;
+    }
+    FileViewProvider viewProvider = psiFile.getViewProvider();
+    VirtualFile virtualFile = viewProvider.getVirtualFile();
+    synchronized (myLock) {
+      if (myFilesNames.containsKey(virtualFile) || myInitialFilesContents.containsKey(virtualFile)) {
+        return;
+      }
+    }
+    if (ContainerUtil.findInstance(viewProvider.getAllFiles(), PerlFile.class) == null) {
+      return;
+    }
+    InitialContent initialContent = getInitialContent(viewProvider);
+    synchronized (myLock) {
+      myInitialFilesContents.putIfAbsent(virtualFile, initialContent);
+    }
+  }
+
+  /**
+   * @return cached stub trees of perl files of the {@code viewProvider} if all of them are available, or the text, PSI is built from
+   */
+  private @NotNull InitialContent getInitialContent(@NotNull FileViewProvider viewProvider) {
+    List<StubTree> stubTrees = new ArrayList<>();
+    for (PsiFile file : viewProvider.getAllFiles()) {
+      if (!(file instanceof PerlFile) || !(file instanceof PsiFileImpl)) {
+        continue;
+      }
+      StubTree stubTree = ((PsiFileImpl)file).getGreenStubTree();
+      if (stubTree == null) {
+        stubTrees = null;
+        break;
+      }
+      stubTrees.add(stubTree);
+    }
+    if (stubTrees != null) {
+      return new InitialContent(stubTrees, null);
+    }
+    // on commit document is already changed, while PSI is not
+    Document document = FileDocumentManager.getInstance().getCachedDocument(viewProvider.getVirtualFile());
+    CharSequence text =
+      document == null ? viewProvider.getContents() : PsiDocumentManager.getInstance(myProject).getLastCommittedText(document);
+    return new InitialContent(null, text);
+  }
+
+  /**
+   * Changes inside the file are handled incrementally, everything else, e.g. adding, removing or renaming files, requires full rebuild
+   */
+  private void processEvent(@NotNull PsiTreeChangeEvent event) {
+    PsiFile psiFile = event.getFile();
+    if (psiFile == null || event.getChild() instanceof PsiFileSystemItem) {
+      queueFullRebuild();
+      return;
+    }
+    FileViewProvider viewProvider = psiFile.getViewProvider();
+    if (!psiFile.isPhysical() || ContainerUtil.findInstance(viewProvider.getAllFiles(), PerlFile.class) == null) {
+      return;
+    }
+    myDirtyFiles.add(viewProvider.getVirtualFile());
+    queueUpdate();
+  }
+
+  private void queueFullRebuild() {
+    myNeedsFullRebuild.set(true);
+    queueUpdate();
+  }
+
   private void queueUpdate() {
     myQueue.queue(Update.create(this, this::doUpdateSingleThread));
   }
 
   private void doUpdateSingleThread() {
-    if (!DumbService.isDumb(myProject) && myIsUpdating.compareAndSet(false, true)) {
+    if (!DumbService.isDumb(myProject) && myUpdateLock.tryLock()) {
       try {
         doUpdateCache();
       }
       finally {
-        myIsUpdating.set(false);
+        myUpdateLock.unlock();
       }
     }
     else {
@@ -130,50 +301,312 @@ public class PerlNamesCache implements Disposable {
     if (LightEdit.owns(myProject)) {
       return;
     }
-    ReadAction.nonBlocking(() -> {
-      PerlTimeLogger logger = PerlTimeLogger.create(LOG);
-      logger.debug("Starting to update names cache at");
+    ReadAction.nonBlocking(this::doApplyPendingChanges).inSmartMode(myProject).expireWhen(myProject::isDisposed).executeSynchronously();
+  }
 
-      PerlSubDeclarationIndex subDeclarationIndex = PerlSubDeclarationIndex.getInstance();
-      Collection<String> declarationsNames = subDeclarationIndex.getAllNames(myProject);
-      Set<String> subsSet = new HashSet<>(declarationsNames);
-      logger.debug("Got declarations names: ", declarationsNames.size());
-      ProgressManager.checkCanceled();
+  /**
+   * Rebuilds the cache if necessary and applies changes of dirty files. Should be invoked in read action in smart mode
+   */
+  private void doApplyPendingChanges() {
+    long startTime = System.currentTimeMillis();
+    if (myNeedsFullRebuild.getAndSet(false)) {
+      try {
+        doRebuildCache();
+      }
+      catch (Throwable e) {
+        myNeedsFullRebuild.set(true);
+        throw e;
+      }
+    }
+    if (!myDirtyFiles.isEmpty()) {
+      doApplyChanges();
+    }
+    myLastUpdateTime = System.currentTimeMillis() - startTime;
+  }
 
-      PerlSubDefinitionsIndex subDefinitionsIndex = PerlSubDefinitionsIndex.getInstance();
-      Collection<String> definitionsNames = subDefinitionsIndex.getAllNames(myProject);
-      subsSet.addAll(definitionsNames);
-      logger.debug("Got definitions names: ", definitionsNames.size());
-      ProgressManager.checkCanceled();
+  /**
+   * Re-reads all names from indexes and drops per-file contributions
+   */
+  private void doRebuildCache() {
+    PerlTimeLogger logger = PerlTimeLogger.create(LOG);
+    logger.debug("Starting to rebuild names cache at");
+
+    PerlSubDeclarationIndex subDeclarationIndex = PerlSubDeclarationIndex.getInstance();
+    Collection<String> declarationsNames = subDeclarationIndex.getAllNames(myProject);
+    Set<String> subsSet = new HashSet<>(declarationsNames);
+    logger.debug("Got declarations names: ", declarationsNames.size());
+    ProgressManager.checkCanceled();
+
+    PerlSubDefinitionsIndex subDefinitionsIndex = PerlSubDefinitionsIndex.getInstance();
+    Collection<String> definitionsNames = subDefinitionsIndex.getAllNames(myProject);
+    subsSet.addAll(definitionsNames);
+    logger.debug("Got definitions names: ", definitionsNames.size());
+    ProgressManager.checkCanceled();
+
+    PerlLightSubDefinitionsIndex lightSubDefinitionsIndex = PerlLightSubDefinitionsIndex.getInstance();
+    Collection<String> lightDefinitionsNames = lightSubDefinitionsIndex.getAllNames(myProject);
+    subsSet.addAll(lightDefinitionsNames);
+    logger.debug("Got light definitions names: ", lightDefinitionsNames.size());
+    ProgressManager.checkCanceled();
+
+    Set<String> namespacesSet = new HashSet<>(PerlPackageUtil.CORE_PACKAGES_ALL);
+
+    PerlNamespaceIndex namespaceIndex = PerlNamespaceIndex.getInstance();
+    Collection<String> namespacesNames = namespaceIndex.getAllNames(myProject);
+    namespacesSet.addAll(namespacesNames);
+    logger.debug("Got namespaces names: ", namespacesNames.size());
+    ProgressManager.checkCanceled();
 
-      PerlLightSubDefinitionsIndex lightSubDefinitionsIndex = PerlLightSubDefinitionsIndex.getInstance();
-      Collection<String> lightDefinitionsNames = lightSubDefinitionsIndex.getAllNames(myProject);
-      subsSet.addAll(lightDefinitionsNames);
-      logger.debug("Got light definitions names: ", lightDefinitionsNames.size());
+    PerlLightNamespaceIndex lightNamespaceIndex = PerlLightNamespaceIndex.getInstance();
+    Collection<String> lightNamespacesNames = lightNamespaceIndex.getAllNames(myProject);
+    namespacesSet.addAll(lightNamespacesNames);
+    logger.debug("Got light namespaces names: ", lightNamespacesNames.size());
+
+    Set<String> globalsSet = new HashSet<>();
+    for (PerlStubIndexBase<?> globalsIndex : Arrays.asList(
+      PerlScalarsStubIndex.getInstance(), PerlArraysStubIndex.getInstance(), PerlHashesStubIndex.getInstance(),
+      PerlGlobsStubIndex.getInstance())) {
+      for (String name : globalsIndex.getAllNames(myProject)) {
+        if (!name.startsWith(NAMESPACE_KEY_PREFIX)) {
+          globalsSet.add(name);
+        }
+      }
       ProgressManager.checkCanceled();
-      myKnownSubs = Collections.unmodifiableSet(subsSet);
+    }
+    logger.debug("Got globals names: ", globalsSet.size());
+
+    PerlNamesDictionary subsDictionary = PerlNamesDictionary.create(subsSet);
+    PerlNamesDictionary namespacesDictionary = PerlNamesDictionary.create(namespacesSet);
+    PerlNamesDictionary globalsDictionary = PerlNamesDictionary.create(globalsSet);
+    logger.debug("Built names dictionaries");
 
-      Set<String> namespacesSet = new HashSet<>(PerlPackageUtil.CORE_PACKAGES_ALL);
+    synchronized (myLock) {
+      myBaseSubs = Collections.unmodifiableSet(subsSet);
+      myBaseNamespaces = Collections.unmodifiableSet(namespacesSet);
+      myBaseGlobals = Collections.unmodifiableSet(globalsSet);
+      myBaseSubsDictionary = subsDictionary;
+      myBaseNamespacesDictionary = namespacesDictionary;
+      myBaseGlobalsDictionary = globalsDictionary;
+      myFilesNames.clear();
+      myInitialFilesContents.clear();
+      mySubsCounters.clear();
+      myNamespacesCounters.clear();
+      myGlobalsCounters.clear();
+      updateSnapshot();
+    }
+    myFullRebuildsCounter.incrementAndGet();
+    logger.debug("Names cache rebuilt: ", mySnapshot);
+  }
 
-      PerlNamespaceIndex namespaceIndex = PerlNamespaceIndex.getInstance();
-      Collection<String> namespacesNames = namespaceIndex.getAllNames(myProject);
-      namespacesSet.addAll(namespacesNames);
-      logger.debug("Got namespaces names: ", namespacesNames.size());
+  /**
+   * Collects names from the stubs of changed files and applies the difference with previously collected ones
+   */
+  private void doApplyChanges() {
+    PerlTimeLogger logger = PerlTimeLogger.create(LOG);
+    Map<VirtualFile, FileNames> changedFilesNames = new THashMap<>();
+    Map<VirtualFile, FileNames> initialFilesNames = new THashMap<>();
+    for (Iterator<VirtualFile> iterator = myDirtyFiles.iterator(); iterator.hasNext(); ) {
       ProgressManager.checkCanceled();
+      VirtualFile virtualFile = iterator.next();
+      InitialContent initialContent;
+      synchronized (myLock) {
+        initialContent = myInitialFilesContents.get(virtualFile);
+      }
+      if (initialContent != null) {
+        initialFilesNames.put(virtualFile, computeFileNames(virtualFile, initialContent));
+      }
+      changedFilesNames.put(virtualFile, computeFileNames(virtualFile));
+      iterator.remove();
+    }
+    logger.debug("Collected names from changed files: ", changedFilesNames.size());
+
+    int deltaSize = 0;
+    boolean baseMayBeStale = false;
+    synchronized (myLock) {
+      for (Map.Entry<VirtualFile, FileNames> entry : changedFilesNames.entrySet()) {
+        VirtualFile virtualFile = entry.getKey();
+        FileNames newNames = entry.getValue();
+        FileNames oldNames = newNames == null ? myFilesNames.remove(virtualFile) : myFilesNames.put(virtualFile, newNames);
+        if (oldNames == null) {
+          // contents may have been dropped by the full rebuild meanwhile
+          oldNames = myInitialFilesContents.remove(virtualFile) == null ? null : initialFilesNames.get(virtualFile);
+          if (oldNames != null) {
+            // initial names are known from indexes, counting them makes their removal detectable
+            addNames(mySubsCounters, oldNames.subs, Collections.emptySet());
+            addNames(myNamespacesCounters, oldNames.namespaces, Collections.emptySet());
+            addNames(myGlobalsCounters, oldNames.globals, Collections.emptySet());
+          }
+          else {
+            // initial names were dropped by the full rebuild, which already took the change into account
+            oldNames = FileNames.EMPTY;
+          }
+        }
+        Set<String> newSubs = newNames == null ? Collections.emptySet() : newNames.subs;
+        Set<String> newNamespaces = newNames == null ? Collections.emptySet() : newNames.namespaces;
+        Set<String> newGlobals = newNames == null ? Collections.emptySet() : newNames.globals;
+        deltaSize += addNames(mySubsCounters, newSubs, oldNames.subs);
+        deltaSize += addNames(myNamespacesCounters, newNamespaces, oldNames.namespaces);
+        deltaSize += addNames(myGlobalsCounters, newGlobals, oldNames.globals);
+        int removedSubs = removeNames(mySubsCounters, oldNames.subs, newSubs, myBaseSubs);
+        int removedNamespaces = removeNames(myNamespacesCounters, oldNames.namespaces, newNamespaces, myBaseNamespaces);
+        int removedGlobals = removeNames(myGlobalsCounters, oldNames.globals, newGlobals, myBaseGlobals);
+        baseMayBeStale |= removedSubs < 0 || removedNamespaces < 0 || removedGlobals < 0;
+        deltaSize += Math.abs(removedSubs) + Math.abs(removedNamespaces) + Math.abs(removedGlobals);
+      }
+      if (deltaSize > 0) {
+        updateSnapshot();
+      }
+    }
+    myIncrementalUpdatesCounter.incrementAndGet();
+    myLastDeltaSize = deltaSize;
+    logger.debug("Applied names delta: ", deltaSize, "; ", mySnapshot);
+
+    if (baseMayBeStale) {
+      LOG.debug("Some of names known from indexes were removed, scheduling full rebuild");
+      queueFullRebuild();
+    }
+  }
+
+  /**
+   * @return number of names which have been added to the {@code counters} from the {@code newNames}, missing in {@code oldNames}
+   */
+  private static int addNames(@NotNull TObjectIntHashMap<String> counters, @NotNull Set<String> newNames, @NotNull Set<String> oldNames) {
+    int result = 0;
+    for (String name : newNames) {
+      if (!oldNames.contains(name) && counters.adjustOrPutValue(name, 1, 1) == 1) {
+        result++;
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Decrements counters for names from {@code oldNames}, missing in {@code newNames}
+   *
+   * @return number of names which have gone from the counters, negative if some of them was present in the {@code baseNames}
+   */
+  private static int removeNames(@NotNull TObjectIntHashMap<String> counters,
+                                 @NotNull Set<String> oldNames,
+                                 @NotNull Set<String> newNames,
+                                 @NotNull Set<String> baseNames) {
+    int result = 0;
+    boolean hasBaseNames = false;
+    for (String name : oldNames) {
+      if (newNames.contains(name) || !counters.containsKey(name)) {
+        continue;
+      }
+      if (counters.adjustOrPutValue(name, -1, 0) <= 0) {
+        counters.remove(name);
+        result++;
+        hasBaseNames |= baseNames.contains(name);
+      }
+    }
+    return hasBaseNames ? -result : result;
+  }
 
-      PerlLightNamespaceIndex lightNamespaceIndex = PerlLightNamespaceIndex.getInstance();
-      Collection<String> lightNamespacesNames = lightNamespaceIndex.getAllNames(myProject);
-      namespacesSet.addAll(lightNamespacesNames);
-      logger.debug("Got light namespaces names: ", lightNamespacesNames.size());
-      myKnownNamespaces = Collections.unmodifiableSet(namespacesSet);
+  /**
+   * Creates a new immutable snapshot with names from base sets and names contributed by changed files. Should be invoked under
+   * {@link #myLock}
+   */
+  private void updateSnapshot() {
+    mySnapshot = new PerlNamesSnapshot(
+      mySnapshot.getVersion() + 1,
+      myBaseSubs, collectAddedNames(mySubsCounters, myBaseSubs),
+      myBaseNamespaces, collectAddedNames(myNamespacesCounters, myBaseNamespaces),
+      collectAddedNames(myGlobalsCounters, myBaseGlobals),
+      myBaseSubsDictionary, myBaseNamespacesDictionary, myBaseGlobalsDictionary);
+  }
+
+  private static @NotNull Set<String> collectAddedNames(@NotNull TObjectIntHashMap<String> counters, @NotNull Set<String> baseNames) {
+    if (counters.isEmpty()) {
+      return Collections.emptySet();
+    }
+    Set<String> result = new THashSet<>();
+    counters.forEachKey(name -> {
+      if (!baseNames.contains(name)) {
+        result.add(name);
+      }
+      return true;
+    });
+    return result.isEmpty() ? Collections.emptySet() : Collections.unmodifiableSet(result);
+  }
+
+  /**
+   * @return names contributed by the {@code virtualFile}, computed from its stubs the same way as they are indexed or null if file is gone
+   */
+  private @Nullable FileNames computeFileNames(@NotNull VirtualFile virtualFile) {
+    if (!virtualFile.isValid()) {
+      return null;
+    }
+    PsiFile psiFile = PsiManager.getInstance(myProject).findFile(virtualFile);
+    return psiFile == null ? null : computeFileNames(psiFile.getViewProvider());
+  }
+
+  /**
+   * @return names contributed by the {@code virtualFile} before its first change, computed from the {@code initialContent}
+   */
+  private @NotNull FileNames computeFileNames(@NotNull VirtualFile virtualFile, @NotNull InitialContent initialContent) {
+    if (initialContent.stubTrees != null) {
+      return computeFileNames(initialContent.stubTrees);
+    }
+    LightVirtualFile initialFile = new LightVirtualFile(virtualFile.getName(), virtualFile.getFileType(), initialContent.text);
+    initialFile.setOriginalFile(virtualFile);
+    PsiFile psiFile = PsiManager.getInstance(myProject).findFile(initialFile);
+    return psiFile == null ? FileNames.EMPTY : computeFileNames(psiFile.getViewProvider());
+  }
+
+  /**
+   * @return names contributed by perl files of the {@code viewProvider}, computed from their stubs the same way as they are indexed
+   */
+  private static @NotNull FileNames computeFileNames(@NotNull FileViewProvider viewProvider) {
+    List<StubTree> stubTrees = new ArrayList<>();
+    for (PsiFile file : viewProvider.getAllFiles()) {
+      if (file instanceof PerlFile && file instanceof PsiFileImpl) {
+        stubTrees.add(((PsiFileImpl)file).calcStubTree());
+      }
+    }
+    return computeFileNames(stubTrees);
+  }
 
-      logger.debug("Names cache updated");
-    }).inSmartMode(myProject).expireWhen(myProject::isDisposed).executeSynchronously();
+  /**
+   * @return names from the {@code stubTrees}, computed the same way as they are indexed
+   */
+  private static @NotNull FileNames computeFileNames(@NotNull List<StubTree> stubTrees) {
+    FileNames result = new FileNames();
+    IndexSink sink = new IndexSink() {
+      @Override
+      public <Psi extends PsiElement, K> void occurrence(@NotNull StubIndexKey<K, Psi> indexKey, @NotNull K value) {
+        if (SUBS_KEYS.contains(indexKey)) {
+          result.subs.add((String)value);
+        }
+        else if (NAMESPACES_KEYS.contains(indexKey)) {
+          result.namespaces.add((String)value);
+        }
+        else if (GLOBALS_KEYS.contains(indexKey) && !((String)value).startsWith(NAMESPACE_KEY_PREFIX)) {
+          result.globals.add((String)value);
+        }
+      }
+    };
+    for (StubTree stubTree : stubTrees) {
+      for (StubElement<?> stubElement : stubTree.getPlainList()) {
+        ProgressManager.checkCanceled();
+        if (stubElement instanceof PsiFileStub) {
+          continue;
+        }
+        //noinspection unchecked,rawtypes
+        IStubElementType<StubElement<?>, ?> stubType = (IStubElementType)stubElement.getStubType();
+        if (stubType != null) {
+          stubType.indexStub(stubElement, sink);
+        }
+      }
+    }
+    return result;
   }
 
   public void forceCacheUpdate() {
     var application = ApplicationManager.getApplication();
     LOG.assertTrue(!application.isDispatchThread() || application.isUnitTestMode());
+    myNeedsFullRebuild.set(true);
     doUpdateCache();
   }
 
@@ -181,15 +614,104 @@ public class PerlNamesCache implements Disposable {
   public void dispose() {
   }
 
-  public Set<String> getSubsNamesSet() {
-    return myKnownSubs;
+  /**
+   * @return current immutable snapshot of known names
+   */
+  public @NotNull PerlNamesSnapshot getSnapshot() {
+    return mySnapshot;
   }
 
-  public Set<String> getNamespacesNamesSet() {
-    return myKnownNamespaces;
+  /**
+   * @return snapshot with pending changes applied synchronously, rebuilding the cache if it is stale. If cache is being updated by someone
+   * else, waits for the update to finish. Should be invoked in read action in smart mode, e.g. from completion
+   */
+  public @NotNull PerlNamesSnapshot getActualSnapshot() {
+    if (LightEdit.owns(myProject) || DumbService.isDumb(myProject)) {
+      return mySnapshot;
+    }
+    while (myNeedsFullRebuild.get() || !myDirtyFiles.isEmpty()) {
+      if (!tryLockUpdate()) {
+        continue;
+      }
+      try {
+        doApplyPendingChanges();
+      }
+      finally {
+        myUpdateLock.unlock();
+      }
+    }
+    return mySnapshot;
+  }
+
+  /**
+   * Waits for the update lock for a while, checking for cancellation, e.g. if update in background waits for a write action
+   *
+   * @return true iff lock was acquired
+   */
+  private boolean tryLockUpdate() {
+    ProgressManager.checkCanceled();
+    try {
+      return myUpdateLock.tryLock(UPDATE_LOCK_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+    }
+    catch (InterruptedException e) {
+      throw new ProcessCanceledException(e);
+    }
+  }
+
+  /**
+   * Applies pending changes synchronously, rebuilding the cache only if necessary
+   */
+  @TestOnly
+  public void flushPendingChanges() {
+    doUpdateCache();
+  }
+
+  @TestOnly
+  public long getFullRebuildsCount() {
+    return myFullRebuildsCounter.get();
+  }
+
+  @TestOnly
+  public long getIncrementalUpdatesCount() {
+    return myIncrementalUpdatesCounter.get();
+  }
+
+  /**
+   * @return time of the last cache update in ms
+   */
+  public long getLastUpdateTime() {
+    return myLastUpdateTime;
+  }
+
+  /**
+   * @return number of names added or removed by the last incremental update
+   */
+  public int getLastDeltaSize() {
+    return myLastDeltaSize;
   }
 
   public static @NotNull PerlNamesCache getInstance(@NotNull Project project) {
     return project.getService(PerlNamesCache.class);
   }
-}
\ No newline at end of file
+
+  /**
+   * Content of the file before its first change: cached stub trees of its perl files or its text if some of them were not cached
+   */
+  private static class InitialContent {
+    private final @Nullable List<StubTree> stubTrees;
+    private final @Nullable CharSequence text;
+
+    private InitialContent(@Nullable List<StubTree> stubTrees, @Nullable CharSequence text) {
+      this.stubTrees = stubTrees;
+      this.text = text;
+    }
+  }
+
+  private static class FileNames {
+    private static final FileNames EMPTY = new FileNames();
+
+    private final Set<String> subs = new THashSet<>();
+    private final Set<String> namespaces = new THashSet<>();
+    private final Set<String> globals = new THashSet<>();
+  }
+}
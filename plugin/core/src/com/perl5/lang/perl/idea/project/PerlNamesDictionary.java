@@ -0,0 +1,126 @@
+/*
+ * Copyright 2015-2021 Alexandr Evstigneev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.perl5.lang.perl.idea.project;
+
+import com.intellij.openapi.util.text.StringUtil;
+import com.intellij.util.ArrayUtil;
+import com.intellij.util.Processor;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+
+import static com.perl5.lang.perl.util.PerlPackageUtil.NAMESPACE_SEPARATOR;
+
+/**
+ * Compact immutable dictionary of names: a sorted array, allowing to process names by case-insensitive prefix or namespace without
+ * iterating and copying the whole set.
+ */
+public final class PerlNamesDictionary {
+  static final PerlNamesDictionary EMPTY = new PerlNamesDictionary(ArrayUtil.EMPTY_STRING_ARRAY);
+
+  /**
+   * Case-insensitive order, so names with case-insensitive prefix form a continuous range. Ties are resolved by the natural order to make
+   * the order total
+   */
+  private static final Comparator<String> NAMES_ORDER = String.CASE_INSENSITIVE_ORDER.thenComparing(Comparator.naturalOrder());
+
+  private final @NotNull String[] myNames;
+
+  private PerlNamesDictionary(@NotNull String[] names) {
+    myNames = names;
+  }
+
+  public int size() {
+    return myNames.length;
+  }
+
+  /**
+   * Processes all names in dictionary order
+   */
+  public boolean processNames(@NotNull Processor<? super String> processor) {
+    for (String name : myNames) {
+      if (!processor.process(name)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Processes names starting with {@code prefix}, ignoring case
+   */
+  public boolean processNamesWithPrefix(@NotNull String prefix, @NotNull Processor<? super String> processor) {
+    if (prefix.isEmpty()) {
+      return processNames(processor);
+    }
+    for (int i = findFirstWithPrefix(prefix); i < myNames.length; i++) {
+      String name = myNames[i];
+      if (!StringUtil.startsWithIgnoreCase(name, prefix)) {
+        break;
+      }
+      if (!processor.process(name)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Processes names declared directly in {@code namespaceName}, e.g. {@code Foo::Bar} for {@code Foo}, but not {@code Foo::Bar::Baz}.
+   * Namespace name is case-sensitive.
+   */
+  public boolean processNamesInNamespace(@NotNull String namespaceName, @NotNull Processor<? super String> processor) {
+    String prefix = namespaceName + NAMESPACE_SEPARATOR;
+    return processNamesWithPrefix(prefix, name -> !name.startsWith(prefix) ||
+                                                  name.indexOf(NAMESPACE_SEPARATOR, prefix.length()) >= 0 ||
+                                                  processor.process(name));
+  }
+
+  /**
+   * @return index of the first name not less than {@code prefix} ignoring case
+   */
+  private int findFirstWithPrefix(@NotNull String prefix) {
+    int low = 0;
+    int high = myNames.length;
+    while (low < high) {
+      int middle = (low + high) >>> 1;
+      if (String.CASE_INSENSITIVE_ORDER.compare(myNames[middle], prefix) < 0) {
+        low = middle + 1;
+      }
+      else {
+        high = middle;
+      }
+    }
+    return low;
+  }
+
+  @Override
+  public String toString() {
+    return "PerlNamesDictionary{size=" + myNames.length + '}';
+  }
+
+  public static @NotNull PerlNamesDictionary create(@NotNull Collection<String> names) {
+    if (names.isEmpty()) {
+      return EMPTY;
+    }
+    String[] namesArray = ArrayUtil.toStringArray(names);
+    Arrays.sort(namesArray, NAMES_ORDER);
+    return new PerlNamesDictionary(namesArray);
+  }
+}
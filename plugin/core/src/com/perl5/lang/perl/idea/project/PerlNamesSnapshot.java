@@ -0,0 +1,164 @@
+/*
+ * Copyright 2015-2021 Alexandr Evstigneev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.perl5.lang.perl.idea.project;
+
+import com.intellij.util.Processor;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Collections;
+import java.util.Set;
+
+/**
+ * Immutable view of names known to the {@link PerlNamesCache} at some moment. Consists of the base sets, collected from indexes on full
+ * rebuild and small delta sets, collected from the files changed since then.
+ */
+public final class PerlNamesSnapshot {
+  static final PerlNamesSnapshot EMPTY = new PerlNamesSnapshot(
+    0, Collections.emptySet(), Collections.emptySet(), Collections.emptySet(), Collections.emptySet(), Collections.emptySet(),
+    PerlNamesDictionary.EMPTY, PerlNamesDictionary.EMPTY, PerlNamesDictionary.EMPTY);
+
+  private final long myVersion;
+  private final @NotNull Set<String> myBaseSubs;
+  private final @NotNull Set<String> myAddedSubs;
+  private final @NotNull Set<String> myBaseNamespaces;
+  private final @NotNull Set<String> myAddedNamespaces;
+  private final @NotNull Set<String> myAddedGlobals;
+  private final @NotNull PerlNamesDictionary myBaseSubsDictionary;
+  private final @NotNull PerlNamesDictionary myAddedSubsDictionary;
+  private final @NotNull PerlNamesDictionary myBaseNamespacesDictionary;
+  private final @NotNull PerlNamesDictionary myAddedNamespacesDictionary;
+  private final @NotNull PerlNamesDictionary myBaseGlobalsDictionary;
+  private final @NotNull PerlNamesDictionary myAddedGlobalsDictionary;
+
+  PerlNamesSnapshot(long version,
+                    @NotNull Set<String> baseSubs,
+                    @NotNull Set<String> addedSubs,
+                    @NotNull Set<String> baseNamespaces,
+                    @NotNull Set<String> addedNamespaces,
+                    @NotNull Set<String> addedGlobals,
+                    @NotNull PerlNamesDictionary baseSubsDictionary,
+                    @NotNull PerlNamesDictionary baseNamespacesDictionary,
+                    @NotNull PerlNamesDictionary baseGlobalsDictionary) {
+    myVersion = version;
+    myBaseSubs = baseSubs;
+    myAddedSubs = addedSubs;
+    myBaseNamespaces = baseNamespaces;
+    myAddedNamespaces = addedNamespaces;
+    myAddedGlobals = addedGlobals;
+    myBaseSubsDictionary = baseSubsDictionary;
+    myAddedSubsDictionary = PerlNamesDictionary.create(addedSubs);
+    myBaseNamespacesDictionary = baseNamespacesDictionary;
+    myAddedNamespacesDictionary = PerlNamesDictionary.create(addedNamespaces);
+    myBaseGlobalsDictionary = baseGlobalsDictionary;
+    myAddedGlobalsDictionary = PerlNamesDictionary.create(addedGlobals);
+  }
+
+  /**
+   * @return version of this snapshot, incremented on each cache update
+   */
+  public long getVersion() {
+    return myVersion;
+  }
+
+  /**
+   * @return true iff sub with {@code canonicalName} is known to be declared or defined somewhere
+   */
+  public boolean isKnownSub(@NotNull String canonicalName) {
+    return myBaseSubs.contains(canonicalName) || myAddedSubs.contains(canonicalName);
+  }
+
+  /**
+   * @return true iff namespace with {@code canonicalName} is known to be defined somewhere
+   */
+  public boolean isKnownNamespace(@NotNull String canonicalName) {
+    return myBaseNamespaces.contains(canonicalName) || myAddedNamespaces.contains(canonicalName);
+  }
+
+  /**
+   * Processes canonical names of known subs, starting with {@code prefix} ignoring case. Names are not filtered by any scope and may
+   * contain names which are gone since the last full rebuild.
+   */
+  public boolean processSubsNames(@NotNull String prefix, @NotNull Processor<? super String> processor) {
+    return myBaseSubsDictionary.processNamesWithPrefix(prefix, processor) &&
+           myAddedSubsDictionary.processNamesWithPrefix(prefix, processor);
+  }
+
+  /**
+   * Processes canonical names of known subs, declared directly in the {@code namespaceName}
+   *
+   * @see PerlNamesDictionary#processNamesInNamespace(String, Processor)
+   */
+  public boolean processSubsNamesInNamespace(@NotNull String namespaceName, @NotNull Processor<? super String> processor) {
+    return myBaseSubsDictionary.processNamesInNamespace(namespaceName, processor) &&
+           myAddedSubsDictionary.processNamesInNamespace(namespaceName, processor);
+  }
+
+  /**
+   * Processes names of known namespaces, starting with {@code prefix} ignoring case. Names are not filtered by any scope and may contain
+   * names which are gone since the last full rebuild.
+   */
+  public boolean processNamespacesNames(@NotNull String prefix, @NotNull Processor<? super String> processor) {
+    return myBaseNamespacesDictionary.processNamesWithPrefix(prefix, processor) &&
+           myAddedNamespacesDictionary.processNamesWithPrefix(prefix, processor);
+  }
+
+  /**
+   * Processes names of known namespaces, declared directly in the {@code namespaceName}
+   *
+   * @see PerlNamesDictionary#processNamesInNamespace(String, Processor)
+   */
+  public boolean processNamespacesNamesInNamespace(@NotNull String namespaceName, @NotNull Processor<? super String> processor) {
+    return myBaseNamespacesDictionary.processNamesInNamespace(namespaceName, processor) &&
+           myAddedNamespacesDictionary.processNamesInNamespace(namespaceName, processor);
+  }
+
+  /**
+   * Processes canonical names of known global variables and globs, without sigils, starting with {@code prefix} ignoring case. Names are
+   * not filtered by any scope and may contain names which are gone since the last full rebuild.
+   */
+  public boolean processGlobalsNames(@NotNull String prefix, @NotNull Processor<? super String> processor) {
+    return myBaseGlobalsDictionary.processNamesWithPrefix(prefix, processor) &&
+           myAddedGlobalsDictionary.processNamesWithPrefix(prefix, processor);
+  }
+
+  /**
+   * Processes canonical names of known global variables and globs, declared directly in the {@code namespaceName}
+   *
+   * @see PerlNamesDictionary#processNamesInNamespace(String, Processor)
+   */
+  public boolean processGlobalsNamesInNamespace(@NotNull String namespaceName, @NotNull Processor<? super String> processor) {
+    return myBaseGlobalsDictionary.processNamesInNamespace(namespaceName, processor) &&
+           myAddedGlobalsDictionary.processNamesInNamespace(namespaceName, processor);
+  }
+
+  /**
+   * @return number of names in delta sets of this snapshot
+   */
+  public int getDeltaSize() {
+    return myAddedSubs.size() + myAddedNamespaces.size() + myAddedGlobals.size();
+  }
+
+  @Override
+  public String toString() {
+    return "PerlNamesSnapshot{" +
+           "version=" + myVersion +
+           ", subs=" + myBaseSubs.size() + "+" + myAddedSubs.size() +
+           ", namespaces=" + myBaseNamespaces.size() + "+" + myAddedNamespaces.size() +
+           ", globals=" + myBaseGlobalsDictionary.size() + "+" + myAddedGlobals.size() +
+           '}';
+  }
+}
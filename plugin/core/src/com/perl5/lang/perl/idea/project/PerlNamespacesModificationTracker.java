@@ -0,0 +1,175 @@
+/*
+ * Copyright 2015-2021 Alexandr Evstigneev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.perl5.lang.perl.idea.project;
+
+import com.intellij.ProjectTopics;
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.project.DumbService;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.roots.ModuleRootEvent;
+import com.intellij.openapi.roots.ModuleRootListener;
+import com.intellij.openapi.util.ModificationTracker;
+import com.intellij.psi.*;
+import com.intellij.psi.impl.PsiTreeChangeEventImpl;
+import com.intellij.psi.util.PsiTreeUtil;
+import com.intellij.util.containers.ContainerUtil;
+import com.intellij.util.messages.MessageBusConnection;
+import com.perl5.lang.perl.extensions.parser.PerlRuntimeParentsProvider;
+import com.perl5.lang.perl.psi.*;
+import com.perl5.lang.perl.psi.impl.PerlPolyNamedElement;
+import com.perl5.lang.perl.psi.impl.PerlUseStatementElement;
+import com.perl5.lang.perl.psi.properties.PerlStatementsContainer;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.perl5.lang.perl.idea.PerlElementPatterns.*;
+
+/**
+ * Tracks changes of namespaces structure: namespaces definitions, their parents, MRO types and exports. Tree changes are checked
+ * syntactically, so the count is cheap to get: only changes of namespaces headers, use statements, runtime parents providers,
+ * light elements and assignments to {@code @ISA} or exports arrays are considered as structure changes. Adding, removing or moving
+ * files, roots changes and dumb mode exit are structure changes as well.
+ */
+public class PerlNamespacesModificationTracker implements ModificationTracker, Disposable {
+  private final AtomicLong myModificationCount = new AtomicLong();
+
+  public PerlNamespacesModificationTracker(@NotNull Project project) {
+    MessageBusConnection connection = project.getMessageBus().connect(this);
+    connection.subscribe(ProjectTopics.PROJECT_ROOTS, new ModuleRootListener() {
+      @Override
+      public void rootsChanged(@NotNull ModuleRootEvent event) {
+        incModificationCount();
+      }
+    });
+    connection.subscribe(DumbService.DUMB_MODE, new DumbService.DumbModeListener() {
+      @Override
+      public void exitDumbMode() {
+        incModificationCount();
+      }
+    });
+    PsiManager.getInstance(project).addPsiTreeChangeListener(new PsiTreeChangeAdapter() {
+      @Override
+      public void childAdded(@NotNull PsiTreeChangeEvent event) {
+        processEvent(event);
+      }
+
+      @Override
+      public void childRemoved(@NotNull PsiTreeChangeEvent event) {
+        processEvent(event);
+      }
+
+      @Override
+      public void childReplaced(@NotNull PsiTreeChangeEvent event) {
+        processEvent(event);
+      }
+
+      @Override
+      public void childMoved(@NotNull PsiTreeChangeEvent event) {
+        processEvent(event);
+      }
+
+      @Override
+      public void childrenChanged(@NotNull PsiTreeChangeEvent event) {
+        processEvent(event);
+      }
+
+      @Override
+      public void propertyChanged(@NotNull PsiTreeChangeEvent event) {
+        processEvent(event);
+      }
+    }, this);
+  }
+
+  private void processEvent(@NotNull PsiTreeChangeEvent event) {
+    if (event instanceof PsiTreeChangeEventImpl && ((PsiTreeChangeEventImpl)event).isGenericChange()) {
+      return;
+    }
+    PsiFile psiFile = event.getFile();
+    if (psiFile == null || event.getChild() instanceof PsiFileSystemItem) {
+      incModificationCount();
+      return;
+    }
+    if (psiFile.isPhysical() && ContainerUtil.findInstance(psiFile.getViewProvider().getAllFiles(), PerlFile.class) != null &&
+        mayChangeStructure(event)) {
+      incModificationCount();
+    }
+  }
+
+  /**
+   * @return false iff changed elements and their ancestors can't affect namespaces structure. Resolving and stubs building are too
+   * expensive for tree change events, so only syntax is checked
+   */
+  private static boolean mayChangeStructure(@NotNull PsiTreeChangeEvent event) {
+    PsiElement parent = event.getParent();
+    if (parent == null || parent instanceof PsiFileSystemItem) {
+      return true;
+    }
+    PsiElement child = event.getChild();
+    PsiElement oldChild = event.getOldChild();
+    PsiElement newChild = event.getNewChild();
+    if (child == null && oldChild == null && newChild == null) {
+      return true;
+    }
+    PsiElement previous = child == null ? newChild : child;
+    for (PsiElement run = parent; !(run instanceof PsiFile); run = run.getParent()) {
+      if (run == null || isStructureElement(run) &&
+                         (!(run instanceof PerlNamespaceDefinitionElement) || !isNamespaceBody(previous))) {
+        return true;
+      }
+      previous = run;
+    }
+    return containsStructureElements(child) || containsStructureElements(oldChild) || containsStructureElements(newChild);
+  }
+
+  /**
+   * @return true iff {@code element} is a block or content of the namespace, changes inside of which are checked separately
+   */
+  private static boolean isNamespaceBody(@Nullable PsiElement element) {
+    return element instanceof PerlBlock || element instanceof PerlStatementsContainer;
+  }
+
+  private static boolean containsStructureElements(@Nullable PsiElement element) {
+    return element != null && !PsiTreeUtil.processElements(element, it -> !isStructureElement(it));
+  }
+
+  private static boolean isStructureElement(@NotNull PsiElement element) {
+    return element instanceof PerlNamespaceDefinitionElement || element instanceof PerlUseStatementElement ||
+           element instanceof PerlPolyNamedElement || element instanceof PerlRuntimeParentsProvider ||
+           element instanceof PsiPerlStatement && (
+             ISA_ASSIGN_STATEMENT.accepts(element) || EXPORT_ASSIGN_STATEMENT.accepts(element) ||
+             EXPORT_OK_ASSIGN_STATEMENT.accepts(element) || EXPORT_TAGS_ASSIGN_STATEMENT.accepts(element));
+  }
+
+  private void incModificationCount() {
+    myModificationCount.incrementAndGet();
+  }
+
+  @Override
+  public void dispose() {
+  }
+
+  @Override
+  public long getModificationCount() {
+    return myModificationCount.get();
+  }
+
+  public static @NotNull PerlNamespacesModificationTracker getInstance(@NotNull Project project) {
+    return project.getService(PerlNamespacesModificationTracker.class);
+  }
+}
@@ -36,6 +36,13 @@ public class PerlSMTRunnerConsoleView extends SMTRunnerConsoleView implements Pe
     PerlTerminalExecutionConsole.addFiltersToConsole(project, this);
   }
 
+  @Override
+  public void initUI() {
+    super.initUI();
+    getResultsViewer().addEventsListener(
+      PerlTestDurationsState.getInstance(getProperties().getProject()).createDurationsListener(this::getHostData));
+  }
+
   @Override
   public @NotNull PerlSMTRunnerConsoleView withHostData(@Nullable PerlHostData<?, ?> hostData) {
     myHostData = hostData;
@@ -33,7 +33,7 @@ import java.util.Collections;
 import java.util.List;
 
 class PerlSMTestLocator implements SMTestLocator {
-  private static final String FILE_PROTOCOL = "myfile";
+  static final String FILE_PROTOCOL = "myfile";
 
   private final @NotNull PerlHostData<?, ?> myHostData;
 
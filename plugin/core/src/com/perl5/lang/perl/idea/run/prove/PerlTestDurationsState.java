@@ -0,0 +1,165 @@
+/*
+ * Copyright 2015-2021 Alexandr Evstigneev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.perl5.lang.perl.idea.run.prove;
+
+import com.intellij.execution.testframework.sm.runner.SMTRunnerEventsAdapter;
+import com.intellij.execution.testframework.sm.runner.SMTestProxy;
+import com.intellij.openapi.components.PersistentStateComponent;
+import com.intellij.openapi.components.State;
+import com.intellij.openapi.components.Storage;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.openapi.util.text.StringUtil;
+import com.intellij.openapi.vfs.VfsUtilCore;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.openapi.vfs.VirtualFileManager;
+import com.intellij.util.containers.ContainerUtil;
+import com.intellij.util.xmlb.annotations.Transient;
+import com.perl5.lang.perl.fileTypes.PerlFileTypeTest;
+import com.perl5.lang.perl.idea.PerlPathMacros;
+import com.perl5.lang.perl.idea.sdk.host.PerlHostData;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Durations of test scripts from the previous runs. Used to run the slowest tests first, so long tests are not left for the end of the
+ * parallel run.
+ */
+@State(
+  name = "Perl5TestDurationsState",
+  storages = @Storage(PerlPathMacros.PERL5_PROJECT_SETTINGS_FILE)
+)
+public class PerlTestDurationsState implements PersistentStateComponent<PerlTestDurationsState> {
+  private static final Logger LOG = Logger.getInstance(PerlTestDurationsState.class);
+  /**
+   * Maximum number of test scripts passed to prove explicitly instead of the directories containing them
+   */
+  @Transient
+  static final int MAX_SCHEDULED_TESTS = 1000;
+  /**
+   * Local paths of test scripts to their durations in milliseconds
+   */
+  public Map<String, Long> myDurations = new ConcurrentHashMap<>();
+
+  @Override
+  public @Nullable PerlTestDurationsState getState() {
+    return this;
+  }
+
+  @Override
+  public void loadState(@NotNull PerlTestDurationsState state) {
+    myDurations = new ConcurrentHashMap<>(state.myDurations);
+  }
+
+  /**
+   * @return duration of the last run of {@code testFile} in milliseconds or null if unknown
+   */
+  public @Nullable Long getDuration(@NotNull VirtualFile testFile) {
+    return myDurations.get(testFile.getPath());
+  }
+
+  public void setDuration(@NotNull String localPath, long duration) {
+    myDurations.put(localPath, duration);
+  }
+
+  /**
+   * Orders test files to run the slowest ones first. Tests without known duration go first, in their original order, because they may be
+   * the slowest ones. Directories are expanded to the tests they contain, unless no durations are known for them or there are too many
+   * of them. Durations of tests removed from the expanded directories are forgotten.
+   *
+   * @return {@code testFiles} if nothing is known about their durations, or scheduled list of files otherwise
+   */
+  public @NotNull List<VirtualFile> scheduleTests(@NotNull List<VirtualFile> testFiles) {
+    if (myDurations.isEmpty()) {
+      return testFiles;
+    }
+    Set<VirtualFile> expandedFiles = new LinkedHashSet<>();
+    for (VirtualFile testFile : testFiles) {
+      if (!testFile.isDirectory()) {
+        expandedFiles.add(testFile);
+        continue;
+      }
+      List<VirtualFile> directoryTests = new ArrayList<>();
+      VfsUtilCore.iterateChildrenRecursively(testFile, null, it -> {
+        if (!it.isDirectory() && it.getFileType() == PerlFileTypeTest.INSTANCE) {
+          directoryTests.add(it);
+        }
+        return directoryTests.size() <= MAX_SCHEDULED_TESTS;
+      });
+      if (directoryTests.size() > MAX_SCHEDULED_TESTS) {
+        LOG.debug("Too many tests in ", testFile, ", not scheduling");
+        return testFiles;
+      }
+      directoryTests.sort(Comparator.comparing(VirtualFile::getPath));
+      pruneDurations(testFile, directoryTests);
+      expandedFiles.addAll(directoryTests);
+    }
+    if (expandedFiles.size() > MAX_SCHEDULED_TESTS || !ContainerUtil.exists(expandedFiles, it -> getDuration(it) != null)) {
+      return testFiles;
+    }
+    List<VirtualFile> result = new ArrayList<>(expandedFiles);
+    result.sort(Comparator.comparingLong(it -> {
+      Long duration = getDuration(it);
+      return duration == null ? Long.MIN_VALUE : -duration;
+    }));
+    return result;
+  }
+
+  /**
+   * Removes durations of tests that are no longer in the {@code directory}
+   *
+   * @param directoryTests all tests currently in the {@code directory}
+   */
+  private void pruneDurations(@NotNull VirtualFile directory, @NotNull List<VirtualFile> directoryTests) {
+    String directoryPrefix = StringUtil.trimEnd(directory.getPath(), "/") + "/";
+    Set<String> existingPaths = ContainerUtil.map2Set(directoryTests, VirtualFile::getPath);
+    myDurations.keySet().removeIf(it -> it.startsWith(directoryPrefix) && !existingPaths.contains(it));
+  }
+
+  /**
+   * @return listener, saving durations of test scripts, run with {@code hostDataSupplier}
+   */
+  @NotNull SMTRunnerEventsAdapter createDurationsListener(@NotNull Supplier<PerlHostData<?, ?>> hostDataSupplier) {
+    return new SMTRunnerEventsAdapter() {
+      @Override
+      public void onSuiteFinished(@NotNull SMTestProxy suite) {
+        SMTestProxy parent = suite.getParent();
+        Long duration = suite.getDuration();
+        String locationUrl = suite.getLocationUrl();
+        if (parent == null || parent.getParent() != null || duration == null || locationUrl == null ||
+            !PerlSMTestLocator.FILE_PROTOCOL.equals(VirtualFileManager.extractProtocol(locationUrl))) {
+          return;
+        }
+        PerlHostData<?, ?> hostData = hostDataSupplier.get();
+        String remotePath = VirtualFileManager.extractPath(locationUrl);
+        String localPath = hostData == null ? remotePath : hostData.getLocalPath(remotePath);
+        if (localPath != null) {
+          setDuration(FileUtil.toSystemIndependentName(localPath), duration);
+        }
+      }
+    };
+  }
+
+  public static @NotNull PerlTestDurationsState getInstance(@NotNull Project project) {
+    return project.getService(PerlTestDurationsState.class);
+  }
+}
@@ -62,6 +62,10 @@ public class PerlTestRunConfiguration extends GenericPerlRunConfiguration {
   private static final String TEST_HARNESS = "Test::Harness";
   private static final String PROVE_PASS_PREFIX = "PROVE_PASS_";
   static final int DEFAULT_JOBS_NUMBER = 1;
+  /**
+   * Jobs number meaning the number of available processors
+   */
+  static final int AUTO_JOBS_NUMBER = 0;
   private static final String PROVE_FORMAT_PARAMETER = "--formatter";
   private static final String PROVE_FRAMEWORK_NAME = TEST_HARNESS;
   private static final Pattern MISSING_FILTER_PATTERN = Pattern.compile("Can't load module (\\S+) at .+?/prove line");
@@ -91,6 +95,14 @@ public class PerlTestRunConfiguration extends GenericPerlRunConfiguration {
     myJobsNumber = jobsNumber;
   }
 
+  /**
+   * @return jobs number with {@link #AUTO_JOBS_NUMBER} replaced with number of available processors
+   */
+  int getEffectiveJobsNumber() {
+    int jobsNumber = getJobsNumber();
+    return jobsNumber == AUTO_JOBS_NUMBER ? Runtime.getRuntime().availableProcessors() : Math.max(jobsNumber, 1);
+  }
+
   @Nullable
   String getTestScriptParameters() {
     return myTestScriptParameters;
@@ -142,22 +154,11 @@ public class PerlTestRunConfiguration extends GenericPerlRunConfiguration {
     Set<String> proveParameters = new LinkedHashSet<>(PROVE_DEFAULT_PARAMETERS);
     proveParameters.addAll(getScriptParameters());
     proveParameters.add(PROVE_JOBS_PARAMETER);
-    proveParameters.add(Integer.toString(perlRunProfileState.isParallelRunAllowed() ? getJobsNumber() : 1));
+    int jobsNumber = perlRunProfileState.isParallelRunAllowed() ? getEffectiveJobsNumber() : 1;
+    proveParameters.add(Integer.toString(jobsNumber));
     VirtualFile workingDirectory = computeExplicitWorkingDirectory();
 
-    List<String> testsPaths = new ArrayList<>();
-    for (VirtualFile testVirtualFile : computeTargetFiles()) {
-      if (testVirtualFile == null) {
-        continue;
-      }
-      String virtualFilePath = testVirtualFile.getPath();
-      if (workingDirectory != null && VfsUtil.isAncestor(workingDirectory, testVirtualFile, true)) {
-        testsPaths.add(VfsUtil.getRelativePath(testVirtualFile, workingDirectory));
-      }
-      else {
-        testsPaths.add(perlHostData.getRemotePath(virtualFilePath));
-      }
-    }
+    List<String> testsPaths = computeTestsPaths(computeTargetFiles(), jobsNumber, workingDirectory, perlHostData);
 
     String remotePath = perlHostData.getRemotePath(proveScript.getPath());
     if (StringUtil.isEmpty(remotePath)) {
@@ -199,6 +200,35 @@ public class PerlTestRunConfiguration extends GenericPerlRunConfiguration {
     return commandLine;
   }
 
+  /**
+   * @return paths of {@code targetFiles} for the prove command line, relative to the {@code workingDirectory} or remote ones. Parallel
+   * runs get the slowest tests first
+   */
+  @NotNull List<String> computeTestsPaths(@NotNull List<VirtualFile> targetFiles,
+                                          int jobsNumber,
+                                          @Nullable VirtualFile workingDirectory,
+                                          @NotNull PerlHostData<?, ?> perlHostData) {
+    List<VirtualFile> testsVirtualFiles = targetFiles;
+    if (jobsNumber > 1) {
+      testsVirtualFiles = PerlTestDurationsState.getInstance(getProject()).scheduleTests(testsVirtualFiles);
+    }
+
+    List<String> testsPaths = new ArrayList<>();
+    for (VirtualFile testVirtualFile : testsVirtualFiles) {
+      if (testVirtualFile == null) {
+        continue;
+      }
+      String virtualFilePath = testVirtualFile.getPath();
+      if (workingDirectory != null && VfsUtil.isAncestor(workingDirectory, testVirtualFile, true)) {
+        testsPaths.add(VfsUtil.getRelativePath(testVirtualFile, workingDirectory));
+      }
+      else {
+        testsPaths.add(perlHostData.getRemotePath(virtualFilePath));
+      }
+    }
+    return testsPaths;
+  }
+
   @Override
   protected @NotNull List<String> getScriptParameters() {
 
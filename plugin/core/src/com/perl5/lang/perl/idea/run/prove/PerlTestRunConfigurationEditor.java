@@ -25,6 +25,7 @@ import com.intellij.openapi.ui.TextFieldWithBrowseButton;
 import com.intellij.openapi.util.text.StringUtil;
 import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.ui.RawCommandLineEditor;
+import com.intellij.ui.SimpleListCellRenderer;
 import com.intellij.ui.components.fields.ExpandableTextField;
 import com.intellij.util.containers.ContainerUtil;
 import com.perl5.PerlBundle;
@@ -73,11 +74,13 @@ class PerlTestRunConfigurationEditor extends GenericPerlRunConfigurationEditor<P
       super.createLabeledComponents();
 
       ArrayList<Integer> jobs = new ArrayList<>();
-      for (int i = 1; i <= 32; i++) {
+      for (int i = PerlTestRunConfiguration.AUTO_JOBS_NUMBER; i <= 32; i++) {
         jobs.add(i);
       }
 
       myJobsCombobox = new JComboBox<>(jobs.toArray(new Integer[0]));
+      myJobsCombobox.setRenderer(SimpleListCellRenderer.create(
+        "", it -> it == PerlTestRunConfiguration.AUTO_JOBS_NUMBER ? PerlBundle.message("perl.run.option.jobs.auto") : it.toString()));
       myLabeledJobsCombobox = LabeledComponent.create(myJobsCombobox, PerlBundle.message("perl.run.option.jobs.number"));
       myLabeledJobsCombobox.setLabelLocation(BorderLayout.WEST);
 
@@ -21,6 +21,9 @@ import com.intellij.notification.NotificationType;
 import com.intellij.notification.Notifications;
 import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.progress.ProcessCanceledException;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.progress.ProgressManager;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.projectRoots.*;
 import com.intellij.openapi.projectRoots.impl.PerlSdkTable;
@@ -30,15 +33,19 @@ import com.intellij.openapi.roots.OrderRootType;
 import com.intellij.openapi.ui.Messages;
 import com.intellij.openapi.util.SystemInfo;
 import com.intellij.openapi.util.text.StringUtil;
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.openapi.vfs.LocalFileSystem;
 import com.intellij.openapi.vfs.VfsUtil;
 import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.util.ObjectUtils;
+import com.intellij.util.concurrency.AppExecutorUtil;
 import com.intellij.util.containers.ContainerUtil;
 import com.perl5.PerlBundle;
 import com.perl5.PerlIcons;
 import com.perl5.lang.perl.idea.project.PerlProjectManager;
 import com.perl5.lang.perl.idea.sdk.host.PerlHostData;
 import com.perl5.lang.perl.idea.sdk.host.PerlHostFileTransfer;
+import com.perl5.lang.perl.idea.sdk.host.PerlHostSyncManifest;
 import com.perl5.lang.perl.idea.sdk.implementation.PerlImplementationData;
 import com.perl5.lang.perl.idea.sdk.implementation.PerlImplementationHandler;
 import com.perl5.lang.perl.idea.sdk.versionManager.PerlVersionManagerData;
@@ -51,17 +58,24 @@ import org.jetbrains.annotations.Nullable;
 import javax.swing.*;
 import java.io.File;
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Objects;
+import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Consumer;
-import java.util.stream.Collectors;
 
 
 public class PerlSdkType extends SdkType {
   private static final Logger LOG = Logger.getInstance(PerlSdkType.class);
   public static final String PERL_SDK_TYPE_ID = "Perl5 Interpreter";
   public static final PerlSdkType INSTANCE = new PerlSdkType();
+  /**
+   * Maximum number of roots synchronized simultaneously
+   */
+  private static final int SYNC_THREADS = 4;
 
 
   private PerlSdkType() {
@@ -86,16 +100,21 @@ public class PerlSdkType extends SdkType {
     String oldText = PerlRunUtil.setProgressText(PerlBundle.message("perl.progress.refreshing.inc", sdk.getName()));
     LOG.info("Refreshing @INC for " + sdk);
     PerlHostData<?, ?> hostData = PerlHostData.notNullFrom(sdk);
-    List<String> pathsToRefresh = new ArrayList<>();
     // syncing data if necessary
     List<String> incPaths = computeIncPaths(sdk);
-    List<Exception> exceptions = new ArrayList<>();
+    Map<String, PerlHostSyncManifest> manifests = hostData.getLocalCacheRoot() == null ? null : PerlHostSyncManifest.compute(sdk, incPaths);
+    List<File> filesToRefresh = ContainerUtil.createConcurrentList();
+    List<Exception> exceptions = ContainerUtil.createConcurrentList();
+    AtomicInteger syncedRoots = new AtomicInteger();
 
     try (PerlHostFileTransfer<?> fileTransfer = hostData.getFileTransfer()) {
-      Consumer<File> downloader = it -> syncAndCollectException(fileTransfer, it, pathsToRefresh, exceptions, false);
-      Consumer<File> binStubber = it -> syncAndCollectException(fileTransfer, it, pathsToRefresh, exceptions, true);
+      Set<String> dirsToStub = new LinkedHashSet<>();
+      Consumer<File> binStubber = it -> {
+        if (it != null) {
+          dirsToStub.add(normalizeRootPath(it.getPath()));
+        }
+      };
       for (String hostPath : incPaths) {
-        downloader.accept(new File(hostPath));
         binStubber.accept(PerlRunUtil.findLibsBin(new File(hostPath)));
       }
       // additional bin dirs from version manager
@@ -105,15 +124,29 @@ public class PerlSdkType extends SdkType {
       File interpreterPath = new File(Objects.requireNonNull(PerlProjectManager.getInterpreterPath(sdk)));
       binStubber.accept(interpreterPath.getParentFile());
 
-      List<VirtualFile> filesToRefresh = pathsToRefresh.stream()
-        .map(it -> VfsUtil.findFileByIoFile(new File(it), true))
-        .filter(Objects::nonNull)
-        .collect(Collectors.toList());
+      // nested roots share local directories, so they are synced serially
+      List<Runnable> tasks = new ArrayList<>();
+      for (List<String> rootsGroup : groupNestedRoots(incPaths)) {
+        tasks.add(() -> {
+          for (String hostPath : rootsGroup) {
+            PerlHostSyncManifest manifest = manifests == null ? null : manifests.get(hostPath);
+            syncAndCollectException(fileTransfer, new File(hostPath), manifest, filesToRefresh, exceptions, syncedRoots, false);
+          }
+        });
+      }
+      runSyncTasks(tasks, exceptions);
 
-      if (!filesToRefresh.isEmpty()) {
-        PerlRunUtil.setProgressText(PerlBundle.message("perl.progress.refreshing.filesystem"));
-        VfsUtil.markDirtyAndRefresh(false, true, true, filesToRefresh.toArray(VirtualFile.EMPTY_ARRAY));
+      // stubs are cheap with prefetched listings and may be nested in the synced roots
+      try {
+        fileTransfer.prefetchListings(dirsToStub);
       }
+      catch (IOException e) {
+        LOG.warn("Error prefetching listings for " + sdk, e);
+      }
+      for (String dirToStub : dirsToStub) {
+        syncAndCollectException(fileTransfer, new File(dirToStub), null, filesToRefresh, exceptions, syncedRoots, true);
+      }
+      refreshLocalFiles(filesToRefresh);
 
       try {
         fileTransfer.syncHelpers();
@@ -123,7 +156,7 @@ public class PerlSdkType extends SdkType {
       }
 
       if (!exceptions.isEmpty()) {
-        int copiedFiles = filesToRefresh.size();
+        int copiedFiles = syncedRoots.get();
         int errorsNumber = exceptions.size();
         Notifications.Bus.notify(new Notification(
           PerlBundle.message("perl.sync.notification.group"),
@@ -162,26 +195,118 @@ public class PerlSdkType extends SdkType {
   }
 
   /**
-   * Copying {@code fileToCopy} using the {@code fileTransfer} and collecting local path of copied file to the {@code pathsToRefresh}. In
-   * case exception been thrown by the {@code fileTransfer}, it's collected to the {@code exceptionsThrown}
+   * @return {@code path} in system-independent form without redundant separators and dots, suitable for comparison
+   */
+  private static @NotNull String normalizeRootPath(@NotNull String path) {
+    return Objects.requireNonNull(FileUtil.toCanonicalPath(FileUtil.toSystemIndependentName(path)));
+  }
+
+  /**
+   * @return {@code rootPaths} grouped so that nested roots are in the same group with the roots containing them. Members of the groups
+   * keep order of the {@code rootPaths}
+   */
+  static @NotNull List<List<String>> groupNestedRoots(@NotNull List<String> rootPaths) {
+    List<List<String>> result = new ArrayList<>();
+    for (String rootPath : rootPaths) {
+      List<String> rootGroup = new ArrayList<>();
+      for (Iterator<List<String>> iterator = result.iterator(); iterator.hasNext(); ) {
+        List<String> group = iterator.next();
+        if (ContainerUtil.exists(group, it -> FileUtil.isAncestor(it, rootPath, false) || FileUtil.isAncestor(rootPath, it, false))) {
+          rootGroup.addAll(group);
+          iterator.remove();
+        }
+      }
+      rootGroup.add(rootPath);
+      result.add(rootGroup);
+    }
+    for (List<String> group : result) {
+      group.sort(Comparator.comparingInt(rootPaths::indexOf));
+    }
+    return result;
+  }
+
+  /**
+   * Runs independent sync tasks with a bounded parallelism under the current progress indicator and waits for them
+   */
+  private static void runSyncTasks(@NotNull List<Runnable> tasks, @NotNull List<Exception> exceptionsThrown) {
+    ProgressIndicator indicator = ProgressManager.getInstance().getProgressIndicator();
+    ExecutorService executor = AppExecutorUtil.createBoundedApplicationPoolExecutor(
+      "Perl5 SDK Sync", Math.min(SYNC_THREADS, Runtime.getRuntime().availableProcessors()));
+    try {
+      List<Callable<Object>> callables = ContainerUtil.map(
+        tasks, it -> Executors.callable(() -> ProgressManager.getInstance().runProcess(it, indicator)));
+      for (Future<Object> future : executor.invokeAll(callables)) {
+        try {
+          future.get();
+        }
+        catch (ExecutionException e) {
+          if (e.getCause() instanceof ProcessCanceledException) {
+            throw (ProcessCanceledException)e.getCause();
+          }
+          exceptionsThrown.add(e);
+        }
+      }
+    }
+    catch (InterruptedException e) {
+      exceptionsThrown.add(e);
+    }
+    finally {
+      executor.shutdown();
+    }
+  }
+
+  /**
+   * Refreshes changed local files: known to VFS ones are marked dirty and refreshed recursively, new ones are refreshed and found, deleted
+   * unknown ones cause refresh of the parent directory.
+   */
+  private static void refreshLocalFiles(@NotNull List<File> filesToRefresh) {
+    if (filesToRefresh.isEmpty()) {
+      return;
+    }
+    PerlRunUtil.setProgressText(PerlBundle.message("perl.progress.refreshing.filesystem"));
+    LocalFileSystem localFileSystem = LocalFileSystem.getInstance();
+    Set<VirtualFile> virtualFiles = new LinkedHashSet<>();
+    for (File file : filesToRefresh) {
+      VirtualFile virtualFile = localFileSystem.findFileByIoFile(file);
+      if (virtualFile == null) {
+        virtualFile = file.exists() ? VfsUtil.findFileByIoFile(file, true) : localFileSystem.findFileByIoFile(file.getParentFile());
+      }
+      ContainerUtil.addIfNotNull(virtualFiles, virtualFile);
+    }
+    if (!virtualFiles.isEmpty()) {
+      LOG.info("Refreshing " + virtualFiles.size() + " files");
+      VfsUtil.markDirtyAndRefresh(false, true, true, virtualFiles.toArray(VirtualFile.EMPTY_ARRAY));
+    }
+  }
+
+  /**
+   * Copying {@code fileToCopy} using the {@code fileTransfer} and collecting local paths of changed files to the {@code filesToRefresh}.
+   * In case exception been thrown by the {@code fileTransfer}, it's collected to the {@code exceptionsThrown}
    *
-   * @param if set, only empty stubs with same names going to be created, instead of actual copying the file.
+   * @param manifest remote manifest of {@code fileToCopy}, if known, only changed files are going to be refreshed
+   * @param stubOnly if set, only empty stubs with same names going to be created, instead of actual copying the file.
    */
   private static void syncAndCollectException(@NotNull PerlHostFileTransfer<?> fileTransfer,
                                               @Nullable File fileToCopy,
-                                              @NotNull List<String> pathsToRefresh,
+                                              @Nullable PerlHostSyncManifest manifest,
+                                              @NotNull List<File> filesToRefresh,
                                               @NotNull List<Exception> exceptionsThrown,
+                                              @NotNull AtomicInteger syncedRoots,
                                               boolean stubOnly) {
     if (fileToCopy == null) {
       return;
     }
     try {
       if (stubOnly) {
-        pathsToRefresh.add(fileTransfer.stubFiles(fileToCopy).getPath());
+        filesToRefresh.add(fileTransfer.stubFiles(fileToCopy));
+      }
+      else if (manifest != null) {
+        filesToRefresh.addAll(fileTransfer.syncFile(FileUtil.toSystemIndependentName(fileToCopy.getPath()), manifest));
       }
       else {
-        pathsToRefresh.add(fileTransfer.syncFile(fileToCopy).getPath());
+        filesToRefresh.add(fileTransfer.syncFile(fileToCopy));
       }
+      syncedRoots.incrementAndGet();
     }
     catch (IOException e) {
       exceptionsThrown.add(e);
@@ -220,7 +345,13 @@ public class PerlSdkType extends SdkType {
   }
 
   private static @NotNull List<String> computeIncPaths(@NotNull Sdk sdk) {
-    return ContainerUtil.filter(PerlRunUtil.getOutputFromPerl(sdk, PerlRunUtil.PERL_LE, "print for @INC"), it -> !".".equals(it));
+    Set<String> result = new LinkedHashSet<>();
+    for (String incPath : PerlRunUtil.getOutputFromPerl(sdk, PerlRunUtil.PERL_LE, "print for @INC")) {
+      if (!".".equals(incPath)) {
+        result.add(normalizeRootPath(incPath));
+      }
+    }
+    return new ArrayList<>(result);
   }
 
   @Override
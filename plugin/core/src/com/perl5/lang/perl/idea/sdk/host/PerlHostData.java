@@ -41,6 +41,7 @@ import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import java.io.File;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Objects;
 import java.util.stream.Stream;
@@ -51,6 +52,17 @@ import java.util.stream.Stream;
 public abstract class PerlHostData<Data extends PerlHostData<Data, Handler>, Handler extends PerlHostHandler<Data, Handler>>
   extends AbstractPerlData<Data, Handler> {
   private static final Logger LOG = Logger.getInstance(PerlHostData.class);
+  private static final int LOCAL_PATHS_CACHE_SIZE = 1000;
+  /**
+   * Recently mapped remote paths. Console filters are mapping same paths for each line of the output. Unmappable paths are not cached,
+   * because they may become mappable later, e.g. after syncing
+   */
+  private final Map<String, String> myLocalPathsCache = new LinkedHashMap<>(16, 0.75f, true) {
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+      return size() > LOCAL_PATHS_CACHE_SIZE;
+    }
+  };
 
   public PerlHostData(@NotNull Handler handler) {
     super(handler);
@@ -151,7 +163,22 @@ public abstract class PerlHostData<Data extends PerlHostData<Data, Handler>, Han
     if (remotePathname == null) {
       return null;
     }
+    synchronized (myLocalPathsCache) {
+      String cachedPath = myLocalPathsCache.get(remotePathname);
+      if (cachedPath != null) {
+        return cachedPath;
+      }
+    }
+    String localPath = computeLocalPath(remotePathname);
+    if (localPath != null) {
+      synchronized (myLocalPathsCache) {
+        myLocalPathsCache.put(remotePathname, localPath);
+      }
+    }
+    return localPath;
+  }
 
+  private @Nullable String computeLocalPath(@NotNull String remotePathname) {
     File remotePath = new File(remotePathname);
     File remoteHelpersPath = new File(getHelpersRootPath());
     if (FileUtil.isAncestor(remoteHelpersPath, remotePath, false)) {
@@ -31,12 +31,14 @@ import org.jetbrains.annotations.Nullable;
 import java.io.Closeable;
 import java.io.File;
 import java.io.IOException;
-import java.util.HashSet;
-import java.util.List;
-import java.util.Set;
+import java.util.*;
 
 public abstract class PerlHostFileTransfer<HostData extends PerlHostData<?, ?>> implements Closeable {
   private static final Logger LOG = Logger.getInstance(PerlHostFileTransfer.class);
+  /**
+   * Maximum number of changed files copied one by one, if more files were changed, the whole root is synced
+   */
+  private static final int MAX_FILES_TO_COPY = 500;
   protected final @NotNull HostData myHostData;
 
   public PerlHostFileTransfer(@NotNull HostData hostData) {
@@ -80,6 +82,83 @@ public abstract class PerlHostFileTransfer<HostData extends PerlHostData<?, ?>>
     return localPath;
   }
 
+  /**
+   * Downloads {@code remotePath} to the local cache unless it is unchanged since the last sync according to the {@code manifest}
+   *
+   * @return local files changed by the sync: changed files if previous manifest is known, local copy of {@code remotePath} otherwise
+   */
+  public final @NotNull List<File> syncFile(@NotNull String remotePath, @NotNull PerlHostSyncManifest manifest) throws IOException {
+    File manifestFile = PerlHostSyncManifest.getManifestFile(myHostData, remotePath);
+    PerlHostSyncManifest oldManifest = manifestFile == null ? null : PerlHostSyncManifest.load(manifestFile);
+    String localPath = myHostData.getLocalPath(remotePath);
+    List<File> result;
+    if (oldManifest == null || localPath == null || !new File(localPath).isDirectory()) {
+      result = Collections.singletonList(new File(syncFile(remotePath)));
+    }
+    else {
+      result = syncChangedFiles(remotePath, localPath, manifest, oldManifest);
+      if (result.isEmpty()) {
+        LOG.info(myHostData + " up to date: " + remotePath + "; files: " + manifest.size());
+        return result;
+      }
+    }
+    if (manifestFile != null) {
+      try {
+        manifest.save(manifestFile);
+      }
+      catch (IOException e) {
+        LOG.warn("Error saving manifest for " + remotePath + " to " + manifestFile, e);
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Copies files changed since the {@code oldManifest} from the {@code remotePath} to the {@code localPath} and removes local copies of
+   * files removed from the {@code remotePath}. If too many files were changed, the whole {@code remotePath} is synced.
+   *
+   * @return local files changed by the sync
+   */
+  final @NotNull List<File> syncChangedFiles(@NotNull String remotePath,
+                                             @NotNull String localPath,
+                                             @NotNull PerlHostSyncManifest manifest,
+                                             @NotNull PerlHostSyncManifest oldManifest) throws IOException {
+    Set<String> changedPaths = manifest.getChangedPaths(oldManifest);
+    if (changedPaths.isEmpty()) {
+      return Collections.emptyList();
+    }
+    LOG.info(myHostData + " changed " + changedPaths.size() + " of " + manifest.size() + " files in " + remotePath);
+    List<String> pathsToCopy = new ArrayList<>();
+    for (String changedPath : changedPaths) {
+      if (manifest.contains(changedPath)) {
+        pathsToCopy.add(changedPath);
+      }
+      else {
+        File removedFile = new File(localPath, changedPath);
+        if (removedFile.exists() && !FileUtil.delete(removedFile)) {
+          LOG.warn("Failed to delete: " + removedFile);
+        }
+      }
+    }
+    if (!pathsToCopy.isEmpty()) {
+      PerlRunUtil.setProgressText(PerlBundle.message("perl.host.progress.syncing", remotePath));
+      try {
+        if (pathsToCopy.size() > MAX_FILES_TO_COPY) {
+          LOG.info(myHostData + " syncing: " + remotePath + " => " + localPath);
+          doSyncPath(remotePath, localPath);
+        }
+        else {
+          LOG.info(myHostData + " syncing " + pathsToCopy.size() + " files: " + remotePath + " => " + localPath);
+          doSyncFiles(remotePath, localPath, pathsToCopy);
+        }
+      }
+      catch (IOException e) {
+        throw new IOException(PerlBundle.message("perl.sync.error.copying", remotePath, localPath, myHostData.getShortName()), e);
+      }
+    }
+    return ContainerUtil.map(changedPaths, it -> new File(localPath, it));
+  }
+
   /**
    * Creates a local stubs for the  {@code remoteDir}: empty files with same names
    */
@@ -161,6 +240,13 @@ public abstract class PerlHostFileTransfer<HostData extends PerlHostData<?, ?>>
     }
   }
 
+  /**
+   * Hints the transfer that contents of {@code remotePaths} are going to be {@link #listFiles(String) listed} soon, so it may fetch them
+   * in bulk.
+   */
+  public void prefetchListings(@NotNull Collection<String> remotePaths) throws IOException {
+  }
+
   /**
    * @return contents of {@code remotePath} on remote machine.
    * @implNote we need this method to optimize working with docker and/or ssh. Using virtual file system may cause additional container
@@ -175,6 +261,18 @@ public abstract class PerlHostFileTransfer<HostData extends PerlHostData<?, ?>>
    */
   protected abstract void doSyncPath(@NotNull String remotePath, String localPath) throws IOException;
 
+  /**
+   * Copies files with {@code relativePaths} from the {@code remoteRoot} to the {@code localRoot}
+   *
+   * @implNote always invoked on pooled thread. Default implementation syncs files one by one
+   */
+  protected void doSyncFiles(@NotNull String remoteRoot, @NotNull String localRoot, @NotNull List<String> relativePaths)
+    throws IOException {
+    for (String relativePath : relativePaths) {
+      doSyncPath(remoteRoot + '/' + relativePath, FileUtil.join(localRoot, relativePath));
+    }
+  }
+
   /**
    * Uploads local helpers to the remote machine
    *
@@ -0,0 +1,175 @@
+/*
+ * Copyright 2015-2020 Alexandr Evstigneev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.perl5.lang.perl.idea.sdk.host;
+
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.projectRoots.Sdk;
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.openapi.util.text.StringUtil;
+import com.intellij.util.io.DigestUtil;
+import com.perl5.lang.perl.util.PerlRunUtil;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * Snapshot of a remote directory: relative paths of files with their sizes and modification times. Manifest of the last sync is stored
+ * in the {@link PerlHostData#getLocalCacheRoot() local cache} and allows to skip unchanged directories and to refresh only changed files.
+ */
+public final class PerlHostSyncManifest {
+  private static final Logger LOG = Logger.getInstance(PerlHostSyncManifest.class);
+  private static final String MANIFESTS_DIR = ".perl5_manifests";
+  private static final String ROOT_PREFIX = "R\t";
+  private static final String FILE_PREFIX = "F\t";
+  private static final String END_MARKER = "END";
+  private static final char SEPARATOR = '\t';
+  private static final String MANIFEST_SCRIPT =
+    "use File::Find;" +
+    "for my $root (@ARGV) {" +
+    "  next unless -d $root;" +
+    "  (my $prefix = $root) =~ s{/?$}{/};" +
+    "  print '" + ROOT_PREFIX + "' . $root;" +
+    "  find({no_chdir => 1, wanted => sub {" +
+    "    return if -d $_;" +
+    "    my @stat = stat($_);" +
+    "    print join(qq{\\t}, 'F', substr($File::Find::name, length($prefix)), $stat[7], $stat[9]);" +
+    "  }}, $root);" +
+    "}" +
+    "print '" + END_MARKER + "';";
+
+  /**
+   * relative path -> size and modification time
+   */
+  private final @NotNull Map<String, String> myEntries;
+
+  PerlHostSyncManifest(@NotNull Map<String, String> entries) {
+    myEntries = entries;
+  }
+
+  /**
+   * @return relative paths of files added, removed or changed since the {@code oldManifest}
+   */
+  public @NotNull Set<String> getChangedPaths(@NotNull PerlHostSyncManifest oldManifest) {
+    Set<String> result = new HashSet<>();
+    myEntries.forEach((path, stamp) -> {
+      if (!stamp.equals(oldManifest.myEntries.get(path))) {
+        result.add(path);
+      }
+    });
+    for (String oldPath : oldManifest.myEntries.keySet()) {
+      if (!myEntries.containsKey(oldPath)) {
+        result.add(oldPath);
+      }
+    }
+    return result;
+  }
+
+  /**
+   * @return true iff manifest has a file with {@code relativePath}
+   */
+  public boolean contains(@NotNull String relativePath) {
+    return myEntries.containsKey(relativePath);
+  }
+
+  public int size() {
+    return myEntries.size();
+  }
+
+  void save(@NotNull File manifestFile) throws IOException {
+    StringBuilder sb = new StringBuilder();
+    myEntries.forEach((path, stamp) -> sb.append(path).append(SEPARATOR).append(stamp).append('\n'));
+    FileUtil.writeToFile(manifestFile, sb.toString().getBytes(StandardCharsets.UTF_8));
+  }
+
+  /**
+   * @return manifest from the {@code manifestFile} or null if there is no one or it is broken
+   */
+  static @Nullable PerlHostSyncManifest load(@NotNull File manifestFile) {
+    if (!manifestFile.isFile()) {
+      return null;
+    }
+    try {
+      Map<String, String> entries = new HashMap<>();
+      for (String line : StringUtil.splitByLines(FileUtil.loadFile(manifestFile, StandardCharsets.UTF_8))) {
+        int separatorIndex = line.indexOf(SEPARATOR);
+        if (separatorIndex <= 0) {
+          return null;
+        }
+        entries.put(line.substring(0, separatorIndex), line.substring(separatorIndex + 1));
+      }
+      return new PerlHostSyncManifest(entries);
+    }
+    catch (IOException e) {
+      LOG.warn("Error reading manifest: " + manifestFile, e);
+      return null;
+    }
+  }
+
+  /**
+   * @return file to store manifest of the {@code remotePath} in or null if host has no local cache
+   */
+  static @Nullable File getManifestFile(@NotNull PerlHostData<?, ?> hostData, @NotNull String remotePath) {
+    String localCacheRoot = hostData.getLocalCacheRoot();
+    if (localCacheRoot == null) {
+      return null;
+    }
+    String fileName = StringUtil.toHexString(DigestUtil.sha256().digest(remotePath.getBytes(StandardCharsets.UTF_8)));
+    return new File(new File(localCacheRoot, MANIFESTS_DIR), fileName);
+  }
+
+  /**
+   * Computes manifests of {@code remoteRoots} on the host of {@code sdk} with a single perl invocation
+   *
+   * @return map of remote root to its manifest, missing roots are omitted; null if output is incomplete
+   */
+  public static @Nullable Map<String, PerlHostSyncManifest> compute(@NotNull Sdk sdk, @NotNull List<String> remoteRoots) {
+    if (remoteRoots.isEmpty()) {
+      return Collections.emptyMap();
+    }
+    List<String> parameters = new ArrayList<>();
+    parameters.add(PerlRunUtil.PERL_LE);
+    parameters.add(MANIFEST_SCRIPT);
+    parameters.addAll(remoteRoots);
+    return parse(PerlRunUtil.getOutputFromPerl(sdk, parameters.toArray(new String[0])));
+  }
+
+  static @Nullable Map<String, PerlHostSyncManifest> parse(@NotNull List<String> lines) {
+    if (lines.isEmpty() || !END_MARKER.equals(lines.get(lines.size() - 1))) {
+      LOG.warn("Incomplete manifest output, lines: " + lines.size());
+      return null;
+    }
+    Map<String, PerlHostSyncManifest> result = new HashMap<>();
+    Map<String, String> currentEntries = null;
+    for (String line : lines) {
+      if (line.startsWith(ROOT_PREFIX)) {
+        currentEntries = new HashMap<>();
+        result.put(line.substring(ROOT_PREFIX.length()), new PerlHostSyncManifest(currentEntries));
+      }
+      else if (line.startsWith(FILE_PREFIX) && currentEntries != null) {
+        int separatorIndex = line.indexOf(SEPARATOR, FILE_PREFIX.length());
+        if (separatorIndex > FILE_PREFIX.length()) {
+          currentEntries.put(line.substring(FILE_PREFIX.length(), separatorIndex), line.substring(separatorIndex + 1));
+        }
+      }
+    }
+    return result;
+  }
+}
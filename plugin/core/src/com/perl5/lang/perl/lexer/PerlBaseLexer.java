@@ -28,6 +28,7 @@ import com.intellij.psi.tree.TokenSet;
 import com.perl5.lang.perl.extensions.parser.PerlParserExtension;
 import com.perl5.lang.perl.idea.configuration.settings.PerlSharedSettings;
 import com.perl5.lang.perl.idea.project.PerlNamesCache;
+import com.perl5.lang.perl.idea.project.PerlNamesSnapshot;
 import com.perl5.lang.perl.parser.PerlParserImpl;
 import com.perl5.lang.perl.parser.moose.MooseElementTypes;
 import com.perl5.lang.perl.psi.PerlString;
@@ -130,8 +131,10 @@ public abstract class PerlBaseLexer extends PerlProtoLexer implements PerlElemen
   private boolean myIsPerlSwitchEnabled = false;
 
   private @Nullable Project myProject;
-  private AtomicNotNullLazyValue<Set<String>> mySubNamesProvider;
-  private AtomicNotNullLazyValue<Set<String>> myNamespaceNamesProvider;
+  /**
+   * Snapshot of known names is taken once per lexing session, so all tokens are classified against the same set of names
+   */
+  private AtomicNotNullLazyValue<PerlNamesSnapshot> myNamesSnapshotProvider;
   private PerlImplicitDeclarationsService myImplicitSubsService;
   private final Set<String> myLocalPackages = new THashSet<>();
 
@@ -404,14 +407,9 @@ public abstract class PerlBaseLexer extends PerlProtoLexer implements PerlElemen
 
     myImplicitSubsService = myProject == null ? null : PerlImplicitDeclarationsService.getInstance(myProject);
 
-    mySubNamesProvider = AtomicNotNullLazyValue.createValue(() -> {
-      assert myProject != null;
-      return PerlNamesCache.getInstance(myProject).getSubsNamesSet();
-    });
-
-    myNamespaceNamesProvider = AtomicNotNullLazyValue.createValue(() -> {
+    myNamesSnapshotProvider = AtomicNotNullLazyValue.createValue(() -> {
       assert myProject != null;
-      return PerlNamesCache.getInstance(myProject).getNamespacesNamesSet();
+      return PerlNamesCache.getInstance(myProject).getSnapshot();
     });
     myLocalPackages.clear();
   }
@@ -460,17 +458,19 @@ public abstract class PerlBaseLexer extends PerlProtoLexer implements PerlElemen
    * @return token type
    */
   protected IElementType getIdentifierToken() {
-    String tokenText = yytext().toString();
+    CharSequence buffer = getBuffer();
+    int tokenStart = getTokenStart();
+    int tokenEnd = getTokenEnd();
     IElementType tokenType;
 
-    if (StringUtil.endsWithChar(tokenText, ':')) {
+    if (buffer.charAt(tokenEnd - 1) == ':') {
       tokenType = PACKAGE;
     }
     else if (myProject != null) {
-      String canonicalName = PerlPackageUtil.getCanonicalName(tokenText);
+      String canonicalName = PerlPackageUtil.getCanonicalName(buffer, tokenStart, tokenEnd);
       if (!StringUtil.containsChar(canonicalName, ':')) {
         if (StringUtil.isCapitalized(canonicalName) &&
-            (myNamespaceNamesProvider.getValue().contains(canonicalName) || myLocalPackages.contains(canonicalName))) {
+            (myNamesSnapshotProvider.getValue().isKnownNamespace(canonicalName) || myLocalPackages.contains(canonicalName))) {
           tokenType = PACKAGE;
         }
         else {
@@ -483,10 +483,10 @@ public abstract class PerlBaseLexer extends PerlProtoLexer implements PerlElemen
       else if (myImplicitSubsService.getSub(canonicalName) != null) {
         tokenType = QUALIFYING_PACKAGE;
       }
-      else if (mySubNamesProvider.getValue().contains(canonicalName)) {
+      else if (myNamesSnapshotProvider.getValue().isKnownSub(canonicalName)) {
         tokenType = QUALIFYING_PACKAGE;
       }
-      else if (myNamespaceNamesProvider.getValue().contains(canonicalName) || myLocalPackages.contains(canonicalName)) {
+      else if (myNamesSnapshotProvider.getValue().isKnownNamespace(canonicalName) || myLocalPackages.contains(canonicalName)) {
         tokenType = PACKAGE;
       }
       else {
@@ -500,8 +500,11 @@ public abstract class PerlBaseLexer extends PerlProtoLexer implements PerlElemen
     yybegin(AFTER_IDENTIFIER);
 
     if (tokenType == QUALIFYING_PACKAGE) {
-      int lastIndex = StringUtil.lastIndexOfAny(tokenText, ":'") + 1;
-      yypushback(tokenText.length() - lastIndex);
+      int nameStart = tokenEnd;
+      while (nameStart > tokenStart && buffer.charAt(nameStart - 1) != ':' && buffer.charAt(nameStart - 1) != '\'') {
+        nameStart--;
+      }
+      yypushback(tokenEnd - nameStart);
       pushStateAndBegin(LEX_SUB_NAME);
     }
 
@@ -18,6 +18,7 @@ package com.perl5.lang.perl.psi;
 
 import com.intellij.codeInsight.controlflow.Instruction;
 import com.intellij.psi.PsiElement;
+import com.perl5.lang.perl.idea.codeInsight.controlFlow.PerlReachingDefinitions;
 import org.jetbrains.annotations.NotNull;
 
 /**
@@ -25,4 +26,9 @@ import org.jetbrains.annotations.NotNull;
  */
 public interface PerlControlFlowOwner extends PsiElement {
   @NotNull Instruction[] getControlFlow();
+
+  /**
+   * @return reaching definitions analysis for the {@link #getControlFlow() control flow}, cached with it
+   */
+  @NotNull PerlReachingDefinitions getReachingDefinitions();
 }
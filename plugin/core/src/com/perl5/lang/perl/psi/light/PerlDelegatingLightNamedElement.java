@@ -16,16 +16,22 @@
 
 package com.perl5.lang.perl.psi.light;
 
+import com.intellij.ide.util.PsiNavigationSupport;
 import com.intellij.navigation.ItemPresentation;
 import com.intellij.openapi.util.TextRange;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.pom.Navigatable;
 import com.intellij.psi.*;
 import com.intellij.psi.stubs.IStubElementType;
+import com.intellij.psi.stubs.StubElement;
+import com.intellij.psi.util.PsiUtilCore;
 import com.intellij.util.Function;
 import com.intellij.util.IncorrectOperationException;
 import com.perl5.lang.perl.idea.presentations.PerlItemPresentationSimple;
 import com.perl5.lang.perl.parser.PerlIdentifierRangeProvider;
 import com.perl5.lang.perl.psi.PerlVisitor;
 import com.perl5.lang.perl.psi.impl.PerlPolyNamedElement;
+import com.perl5.lang.perl.psi.stubs.PerlLightElementStub;
 import org.jetbrains.annotations.NonNls;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
@@ -42,6 +48,11 @@ public class PerlDelegatingLightNamedElement<Delegate extends PerlPolyNamedEleme
   protected @NotNull String myName;
   private @Nullable PsiElement myNameIdentifier;
 
+  /**
+   * Offset of the name identifier, known from stubs. Allows to navigate to the element without loading the AST
+   */
+  private final int myNameIdentifierOffset;
+
   private boolean myIsImplicit = false;
 
   private @NotNull Function<String, String> myNameComputation = DEFAULT_NAME_COMPUTATION;
@@ -52,6 +63,17 @@ public class PerlDelegatingLightNamedElement<Delegate extends PerlPolyNamedEleme
     this(delegate, name, elementType, null);
   }
 
+  /**
+   * Creates element from the light {@code stub}, keeping offset of the name identifier
+   */
+  public PerlDelegatingLightNamedElement(@NotNull Delegate delegate,
+                                         @NotNull String name,
+                                         @NotNull StubElement<?> stub) {
+    super(delegate, stub.getStubType());
+    myName = name;
+    myNameIdentifierOffset = stub instanceof PerlLightElementStub ? ((PerlLightElementStub)stub).getNameIdentifierOffset() : -1;
+  }
+
   public PerlDelegatingLightNamedElement(@NotNull Delegate delegate,
                                          @NotNull String name,
                                          @NotNull IStubElementType<?, ?> elementType,
@@ -59,6 +81,7 @@ public class PerlDelegatingLightNamedElement<Delegate extends PerlPolyNamedEleme
     super(delegate, elementType);
     myName = name;
     myNameIdentifier = nameIdentifier;
+    myNameIdentifierOffset = -1;
   }
 
   @Override
@@ -71,6 +94,16 @@ public class PerlDelegatingLightNamedElement<Delegate extends PerlPolyNamedEleme
     return (IStubElementType<?, PerlDelegatingLightNamedElement<?>>)super.getElementType();
   }
 
+  /**
+   * @return offset of the name identifier in the file, if it is known without loading the AST, -1 otherwise
+   */
+  public int getNameIdentifierOffset() {
+    if (myNameIdentifier != null && myNameIdentifier.isValid()) {
+      return myNameIdentifier.getTextOffset();
+    }
+    return myNameIdentifierOffset;
+  }
+
   public PerlDelegatingLightNamedElement<Delegate> withNameComputation(@NotNull Function<String, String> nameComputation) {
     myNameComputation = nameComputation;
     return this;
@@ -118,6 +151,11 @@ public class PerlDelegatingLightNamedElement<Delegate extends PerlPolyNamedEleme
 
   @Override
   public void navigate(boolean requestFocus) {
+    Navigatable stubNavigatable = getStubNavigatable();
+    if (stubNavigatable != null) {
+      stubNavigatable.navigate(requestFocus);
+      return;
+    }
     PsiElement nameIdentifier = getNameIdentifier();
     if (nameIdentifier instanceof NavigatablePsiElement) {
       ((NavigatablePsiElement)nameIdentifier).navigate(requestFocus);
@@ -127,6 +165,20 @@ public class PerlDelegatingLightNamedElement<Delegate extends PerlPolyNamedEleme
     }
   }
 
+  /**
+   * @return navigatable for the identifier offset from stubs if identifier is not loaded yet, null otherwise
+   */
+  private @Nullable Navigatable getStubNavigatable() {
+    if (myIsImplicit || myNameIdentifierOffset < 0 || myNameIdentifier != null && myNameIdentifier.isValid()) {
+      return null;
+    }
+    VirtualFile virtualFile = PsiUtilCore.getVirtualFile(getDelegate());
+    if (virtualFile == null) {
+      return null;
+    }
+    return PsiNavigationSupport.getInstance().createNavigatable(getProject(), virtualFile, myNameIdentifierOffset);
+  }
+
   public boolean isImplicit() {
     return myIsImplicit;
   }
@@ -142,6 +194,12 @@ public class PerlDelegatingLightNamedElement<Delegate extends PerlPolyNamedEleme
 
   @Override
   public int getTextOffset() {
+    if (!myIsImplicit) {
+      int nameIdentifierOffset = getNameIdentifierOffset();
+      if (nameIdentifierOffset >= 0) {
+        return nameIdentifierOffset;
+      }
+    }
     return getNavigationElement().getTextOffset();
   }
 
@@ -49,7 +49,7 @@ public class PerlLightNamespaceDefinitionElement extends PerlDelegatingLightName
   private final @NotNull Map<String, List<String>> myExportTags;
 
   public PerlLightNamespaceDefinitionElement(@NotNull PerlPolyNamedElement<?> delegate, @NotNull PerlNamespaceDefinitionStub stub) {
-    super(delegate, stub.getNamespaceName(), stub.getStubType());
+    super(delegate, stub.getNamespaceName(), stub);
     myMroType = stub.getMroType();
     myParentNamespacesNames = stub.getParentNamespacesNames();
     myAnnotations = stub.getAnnotations();
@@ -84,7 +84,7 @@ public class PerlLightSubDefinitionElement<Delegate extends PerlPolyNamedElement
   }
 
   public PerlLightSubDefinitionElement(@NotNull Delegate delegate, @NotNull PerlSubDefinitionStub stub) {
-    super(delegate, stub.getSubName(), stub.getStubType());
+    super(delegate, stub.getSubName(), stub);
     myNamespaceName = stub.getNamespaceName();
     mySubArgumentsProvider = AtomicNotNullLazyValue.createValue(stub::getSubArgumentsList);
     myAnnotationsProvider = AtomicNullableLazyValue.createValue(stub::getAnnotations);
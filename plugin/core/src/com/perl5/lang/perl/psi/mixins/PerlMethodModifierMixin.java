@@ -23,6 +23,7 @@ import com.intellij.openapi.util.ClearableLazyValue;
 import com.intellij.psi.PsiElement;
 import com.intellij.psi.util.PsiTreeUtil;
 import com.perl5.lang.perl.idea.codeInsight.controlFlow.PerlControlFlowBuilder;
+import com.perl5.lang.perl.idea.codeInsight.controlFlow.PerlReachingDefinitions;
 import com.perl5.lang.perl.idea.presentations.PerlItemPresentationSimpleDynamicLocation;
 import com.perl5.lang.perl.idea.ui.PerlIconProvider;
 import com.perl5.lang.perl.psi.PerlMethodModifier;
@@ -35,7 +36,7 @@ import javax.swing.*;
 
 public abstract class PerlMethodModifierMixin extends PerlCompositeElementImpl implements PerlMethodModifier {
 
-  private final ClearableLazyValue<Instruction[]> myControlFlow = PerlControlFlowBuilder.createLazy(this);
+  private final ClearableLazyValue<PerlReachingDefinitions> myControlFlow = PerlControlFlowBuilder.createLazy(this);
 
   public PerlMethodModifierMixin(@NotNull ASTNode node) {
     super(node);
@@ -72,6 +73,11 @@ public abstract class PerlMethodModifierMixin extends PerlCompositeElementImpl i
 
   @Override
   public @NotNull Instruction[] getControlFlow() {
+    return myControlFlow.getValue().getInstructions();
+  }
+
+  @Override
+  public @NotNull PerlReachingDefinitions getReachingDefinitions() {
     return myControlFlow.getValue();
   }
 
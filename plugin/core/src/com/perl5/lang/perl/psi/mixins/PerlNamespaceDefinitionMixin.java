@@ -20,6 +20,7 @@ import com.intellij.lang.ASTNode;
 import com.intellij.navigation.ItemPresentation;
 import com.intellij.openapi.util.ClearableLazyValue;
 import com.intellij.openapi.util.text.StringUtil;
+import com.intellij.psi.ElementManipulators;
 import com.intellij.psi.PsiElement;
 import com.intellij.psi.StubBasedPsiElement;
 import com.intellij.psi.stubs.IStubElementType;
@@ -37,15 +38,13 @@ import com.perl5.lang.perl.psi.mro.PerlMroType;
 import com.perl5.lang.perl.psi.stubs.namespaces.PerlNamespaceDefinitionStub;
 import com.perl5.lang.perl.psi.utils.PerlNamespaceAnnotations;
 import com.perl5.lang.perl.psi.utils.PerlPsiUtil;
+import com.perl5.lang.perl.util.PerlHashUtil;
 import com.perl5.lang.perl.util.PerlPackageUtil;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import javax.swing.*;
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.List;
-import java.util.Map;
+import java.util.*;
 
 
 public abstract class PerlNamespaceDefinitionMixin extends PerlStubBasedPsiElementBase<PerlNamespaceDefinitionStub>
@@ -249,7 +248,7 @@ public abstract class PerlNamespaceDefinitionMixin extends PerlStubBasedPsiEleme
   public static class ExporterInfo implements Processor<PsiElement> {
     private final @NotNull List<String> EXPORT = new ArrayList<>();
     private final @NotNull List<String> EXPORT_OK = new ArrayList<>();
-    private final @NotNull Map<String, List<String>> EXPORT_TAGS = Collections.emptyMap();
+    private final @NotNull Map<String, List<String>> EXPORT_TAGS = new LinkedHashMap<>();
 
     @Override
     public boolean process(PsiElement element) {
@@ -268,6 +267,19 @@ public abstract class PerlNamespaceDefinitionMixin extends PerlStubBasedPsiEleme
             EXPORT_OK.addAll(getRightSideStrings(rightSide));
           }
         }
+        else if (EXPORT_TAGS_ASSIGN_STATEMENT.accepts(element)) {
+          PsiElement rightSide = element.getFirstChild().getLastChild();
+          if (rightSide != null) {
+            EXPORT_TAGS.clear();
+            PerlHashUtil.processHashElements(rightSide, (keyElement, valueElement) -> {
+              String tagName = ElementManipulators.getValueText(keyElement);
+              if (StringUtil.isNotEmpty(tagName) && valueElement instanceof PsiPerlAnonArray) {
+                EXPORT_TAGS.put(tagName, getRightSideStrings(valueElement));
+              }
+              return true;
+            });
+          }
+        }
       }
 
       return true;
@@ -24,6 +24,7 @@ import com.intellij.psi.PsiElement;
 import com.intellij.psi.PsiElementVisitor;
 import com.intellij.psi.stubs.IStubElementType;
 import com.perl5.lang.perl.idea.codeInsight.controlFlow.PerlControlFlowBuilder;
+import com.perl5.lang.perl.idea.codeInsight.controlFlow.PerlReachingDefinitions;
 import com.perl5.lang.perl.idea.codeInsight.typeInference.value.PerlValue;
 import com.perl5.lang.perl.idea.presentations.PerlItemPresentationSimpleDynamicLocation;
 import com.perl5.lang.perl.lexer.PerlElementTypes;
@@ -43,7 +44,7 @@ public abstract class PerlSubDefinitionBase extends PerlSubBase<PerlSubDefinitio
                                                                                                   PerlLexicalScope,
                                                                                                   PerlElementTypes,
                                                                                                   PerlControlFlowOwner {
-  private final ClearableLazyValue<Instruction[]> myControlFlow = PerlControlFlowBuilder.createLazy(this);
+  private final ClearableLazyValue<PerlReachingDefinitions> myControlFlow = PerlControlFlowBuilder.createLazy(this);
   private final ClearableLazyValue<PerlValue> myReturnValueFromCode = ClearableLazyValue.create(
     () -> PerlResolveUtil.computeReturnValueFromControlFlow(this));
 
@@ -156,6 +157,11 @@ public abstract class PerlSubDefinitionBase extends PerlSubBase<PerlSubDefinitio
 
   @Override
   public @NotNull Instruction[] getControlFlow() {
+    return myControlFlow.getValue().getInstructions();
+  }
+
+  @Override
+  public @NotNull PerlReachingDefinitions getReachingDefinitions() {
     return myControlFlow.getValue();
   }
 
@@ -20,12 +20,13 @@ import com.intellij.codeInsight.controlflow.Instruction;
 import com.intellij.lang.ASTNode;
 import com.intellij.openapi.util.ClearableLazyValue;
 import com.perl5.lang.perl.idea.codeInsight.controlFlow.PerlControlFlowBuilder;
+import com.perl5.lang.perl.idea.codeInsight.controlFlow.PerlReachingDefinitions;
 import com.perl5.lang.perl.psi.PerlSubExpr;
 import com.perl5.lang.perl.psi.impl.PsiPerlExprImpl;
 import org.jetbrains.annotations.NotNull;
 
 public abstract class PerlSubExpression extends PsiPerlExprImpl implements PerlSubExpr {
-  private final ClearableLazyValue<Instruction[]> myControlFlow = PerlControlFlowBuilder.createLazy(this);
+  private final ClearableLazyValue<PerlReachingDefinitions> myControlFlow = PerlControlFlowBuilder.createLazy(this);
 
   public PerlSubExpression(ASTNode node) {
     super(node);
@@ -33,6 +34,11 @@ public abstract class PerlSubExpression extends PsiPerlExprImpl implements PerlS
 
   @Override
   public @NotNull Instruction[] getControlFlow() {
+    return myControlFlow.getValue().getInstructions();
+  }
+
+  @Override
+  public @NotNull PerlReachingDefinitions getReachingDefinitions() {
     return myControlFlow.getValue();
   }
 
@@ -148,16 +148,24 @@ public abstract class PerlMro {
   }
 
   /**
-   * Building linear @ISA list
+   * Building linear @ISA list. Results are cached in the {@link PerlMroCache} until namespaces structure changes
    *
    * @param packageName current package name
    * @param isSuper     if false - we include current package into the list, true - otherwise
-   * @return list of linear @ISA
+   * @return unmodifiable list of linear @ISA
    */
-  public static ArrayList<String> getLinearISA(@NotNull Project project,
-                                               @NotNull GlobalSearchScope searchScope,
-                                               @NotNull String packageName,
-                                               boolean isSuper) {
+  public static @NotNull List<String> getLinearISA(@NotNull Project project,
+                                                   @NotNull GlobalSearchScope searchScope,
+                                                   @NotNull String packageName,
+                                                   boolean isSuper) {
+    return PerlMroCache.getInstance(project).getLinearISA(
+      searchScope, packageName, isSuper, () -> computeLinearISA(project, searchScope, packageName, isSuper));
+  }
+
+  private static @NotNull List<String> computeLinearISA(@NotNull Project project,
+                                                        @NotNull GlobalSearchScope searchScope,
+                                                        @NotNull String packageName,
+                                                        boolean isSuper) {
     HashSet<String> recursionMap = new HashSet<>();
     ArrayList<String> result = new ArrayList<>();
 
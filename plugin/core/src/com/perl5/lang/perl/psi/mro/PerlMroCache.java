@@ -0,0 +1,110 @@
+/*
+ * Copyright 2015-2021 Alexandr Evstigneev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.perl5.lang.perl.psi.mro;
+
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.Key;
+import com.intellij.psi.search.GlobalSearchScope;
+import com.intellij.psi.util.CachedValue;
+import com.intellij.psi.util.CachedValueProvider;
+import com.intellij.psi.util.CachedValuesManager;
+import com.perl5.lang.perl.idea.project.PerlNamespacesModificationTracker;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Project-level cache of linearized @ISA, computed with {@link PerlMroDfs} or {@link PerlMroC3} depending on namespaces definitions.
+ * Dropped on namespaces structure changes, tracked by {@link PerlNamespacesModificationTracker}
+ */
+public class PerlMroCache {
+  private static final Key<CachedValue<Map<LinearIsaKey, List<String>>>> LINEAR_ISA_CACHE_KEY = Key.create("perl.linear.isa.cache");
+  private final @NotNull Project myProject;
+
+  public PerlMroCache(@NotNull Project project) {
+    myProject = project;
+  }
+
+  /**
+   * @return cached linear @ISA for {@code namespaceName}, computed with {@code linearIsaComputable} if missing
+   * @implNote computed value is stored into the map obtained before computation. If namespaces structure changes meanwhile, the map is
+   * already dropped, so stale value is never returned by subsequent calls
+   */
+  @NotNull List<String> getLinearISA(@NotNull GlobalSearchScope searchScope,
+                                     @NotNull String namespaceName,
+                                     boolean isSuper,
+                                     @NotNull Supplier<? extends List<String>> linearIsaComputable) {
+    Map<LinearIsaKey, List<String>> cache = getCache();
+    LinearIsaKey key = new LinearIsaKey(searchScope, namespaceName, isSuper);
+    List<String> cachedResult = cache.get(key);
+    if (cachedResult != null) {
+      return cachedResult;
+    }
+    List<String> result = Collections.unmodifiableList(linearIsaComputable.get());
+    cachedResult = cache.putIfAbsent(key, result);
+    return cachedResult == null ? result : cachedResult;
+  }
+
+  private @NotNull Map<LinearIsaKey, List<String>> getCache() {
+    return CachedValuesManager.getManager(myProject).getCachedValue(
+      myProject, LINEAR_ISA_CACHE_KEY,
+      () -> CachedValueProvider.Result.create(new ConcurrentHashMap<>(), PerlNamespacesModificationTracker.getInstance(myProject)),
+      false);
+  }
+
+  public static @NotNull PerlMroCache getInstance(@NotNull Project project) {
+    return project.getService(PerlMroCache.class);
+  }
+
+  private static final class LinearIsaKey {
+    private final @NotNull GlobalSearchScope mySearchScope;
+    private final @NotNull String myNamespaceName;
+    private final boolean myIsSuper;
+
+    public LinearIsaKey(@NotNull GlobalSearchScope searchScope, @NotNull String namespaceName, boolean isSuper) {
+      mySearchScope = searchScope;
+      myNamespaceName = namespaceName;
+      myIsSuper = isSuper;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (o == null || getClass() != o.getClass()) {
+        return false;
+      }
+
+      LinearIsaKey key = (LinearIsaKey)o;
+
+      return myIsSuper == key.myIsSuper &&
+             myNamespaceName.equals(key.myNamespaceName) &&
+             mySearchScope.equals(key.mySearchScope);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(mySearchScope, myNamespaceName, myIsSuper);
+    }
+  }
+}
@@ -31,10 +31,7 @@ import org.jetbrains.annotations.NonNls;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.List;
-import java.util.Objects;
+import java.util.*;
 
 /**
  * Provides information about implicitly defined subs, e.g {@code Types::Standard}
@@ -58,14 +55,15 @@ public abstract class PerlImplicitDeclarationsProvider {
   protected abstract @Nullable String getDataFileName();
 
   /**
-   * Registers implicit entities with project-level {@link PerlImplicitDeclarationsService}
+   * Reads namespaces descriptors from the xml file, provided by {@link #getDataFileName()}. Entities are registered lazily by
+   * {@link PerlImplicitDeclarationsService}, using {@link #registerDeclarations(PerlImplicitDeclarationsService, String, List)}
    *
-   * @apiNote default implementation reads definitions from the xml file, provided by {@link #getDataFileName()}
+   * @return namespace name -> elements describing namespace entities
    */
-  protected void registerDeclarations(@NotNull PerlImplicitDeclarationsService declarationsService) {
+  @NotNull Map<String, List<Element>> readNamespacesDescriptors() {
     String fileName = getDataFileName();
     if (StringUtil.isEmpty(fileName)) {
-      return;
+      return Collections.emptyMap();
     }
 
     ClassLoader classLoader = getClass().getClassLoader();
@@ -75,29 +73,42 @@ public abstract class PerlImplicitDeclarationsProvider {
     }
     catch (Exception e) {
       LOG.warn("Error loading resources from " + classLoader + " " + fileName, e);
-      return;
+      return Collections.emptyMap();
     }
     if (xmlElement == null) {
       LOG.warn("Error loading resources from " + classLoader + " " + fileName);
-      return;
+      return Collections.emptyMap();
     }
+    Map<String, List<Element>> result = new LinkedHashMap<>();
     for (Element namespaceElement : xmlElement.getChildren(PACKAGE)) {
       String namespaceName = namespaceElement.getAttributeValue("name");
       if (StringUtil.isEmpty(namespaceName)) {
         LOG.warn("Missing or empty package name");
         continue;
       }
-      for (Element element : namespaceElement.getChildren()) {
-        switch (element.getName()) {
-          case SUB_ELEMENT:
-            readSub(declarationsService, namespaceName, element);
-            break;
-          case VARIABLE:
-            readVariable(declarationsService, namespaceName, element);
-            break;
-          default:
-            LOG.warn("Don't know what to do with: " + element.getName());
-        }
+      result.computeIfAbsent(namespaceName, key -> new ArrayList<>()).addAll(namespaceElement.getChildren());
+    }
+    return result;
+  }
+
+  /**
+   * Registers implicit entities of the {@code namespaceName} with project-level {@link PerlImplicitDeclarationsService}
+   *
+   * @param elements descriptors, read by {@link #readNamespacesDescriptors()}
+   */
+  void registerDeclarations(@NotNull PerlImplicitDeclarationsService declarationsService,
+                            @NotNull String namespaceName,
+                            @NotNull List<Element> elements) {
+    for (Element element : elements) {
+      switch (element.getName()) {
+        case SUB_ELEMENT:
+          readSub(declarationsService, namespaceName, element);
+          break;
+        case VARIABLE:
+          readVariable(declarationsService, namespaceName, element);
+          break;
+        default:
+          LOG.warn("Don't know what to do with: " + element.getName());
       }
     }
   }
@@ -20,21 +20,25 @@ import com.intellij.openapi.components.ServiceManager;
 import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.progress.ProgressManager;
 import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.Pair;
 import com.intellij.psi.PsiManager;
 import com.intellij.util.Processor;
+import com.intellij.util.SmartList;
+import com.intellij.util.containers.ContainerUtil;
 import com.perl5.lang.perl.idea.codeInsight.typeInference.value.PerlValue;
 import com.perl5.lang.perl.psi.PerlSubDefinitionElement;
 import com.perl5.lang.perl.psi.PerlVariableDeclarationElement;
 import com.perl5.lang.perl.psi.impl.PerlImplicitSubDefinition;
 import com.perl5.lang.perl.psi.impl.PerlImplicitVariableDeclaration;
 import com.perl5.lang.perl.psi.properties.PerlPackageMember;
+import org.jdom.Element;
 import org.jetbrains.annotations.Contract;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
+import org.jetbrains.annotations.TestOnly;
 
-import java.util.Collections;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 import static com.perl5.lang.perl.util.PerlPackageUtil.CORE_NAMESPACE;
 import static com.perl5.lang.perl.util.PerlPackageUtil.NAMESPACE_SEPARATOR;
@@ -48,15 +52,31 @@ import static com.perl5.lang.perl.util.PerlPackageUtil.NAMESPACE_SEPARATOR;
  */
 public class PerlImplicitDeclarationsService {
   private static final Logger LOG = Logger.getInstance(PerlImplicitDeclarationsService.class);
-  private final Map<String, PerlImplicitSubDefinition> mySubsMap = new HashMap<>();
-  private final Map<String, PerlImplicitVariableDeclaration> myScalarsMap = new HashMap<>();
-  private final Map<String, PerlImplicitVariableDeclaration> myArraysMap = new HashMap<>();
-  private final Map<String, PerlImplicitVariableDeclaration> myHashesMap = new HashMap<>();
+  private final Map<String, PerlImplicitSubDefinition> mySubsMap = new ConcurrentHashMap<>();
+  private final Map<String, PerlImplicitVariableDeclaration> myScalarsMap = new ConcurrentHashMap<>();
+  private final Map<String, PerlImplicitVariableDeclaration> myArraysMap = new ConcurrentHashMap<>();
+  private final Map<String, PerlImplicitVariableDeclaration> myHashesMap = new ConcurrentHashMap<>();
+  /**
+   * Same entities as above, grouped by namespace name
+   */
+  private final Map<String, List<PerlImplicitSubDefinition>> myNamespaceSubsMap = new ConcurrentHashMap<>();
+  private final Map<String, List<PerlImplicitVariableDeclaration>> myNamespaceScalarsMap = new ConcurrentHashMap<>();
+  private final Map<String, List<PerlImplicitVariableDeclaration>> myNamespaceArraysMap = new ConcurrentHashMap<>();
+  private final Map<String, List<PerlImplicitVariableDeclaration>> myNamespaceHashesMap = new ConcurrentHashMap<>();
+  /**
+   * Namespace name -> descriptors of entities, not registered yet. Read from providers xml files once, on service creation
+   *
+   * @see PerlImplicitDeclarationsProvider#readNamespacesDescriptors()
+   */
+  private final Map<String, List<Pair<PerlImplicitDeclarationsProvider, List<Element>>>> myPendingDescriptors = new ConcurrentHashMap<>();
   private final @NotNull PsiManager myPsiManager;
 
   public PerlImplicitDeclarationsService(@NotNull Project project) {
     myPsiManager = PsiManager.getInstance(project);
-    PerlImplicitDeclarationsProvider.EP_NAME.extensions().forEach(it -> it.registerDeclarations(this));
+    PerlImplicitDeclarationsProvider.EP_NAME.extensions().forEach(
+      provider -> provider.readNamespacesDescriptors().forEach(
+        (namespaceName, elements) -> myPendingDescriptors.computeIfAbsent(namespaceName, key -> new SmartList<>())
+          .add(Pair.create(provider, elements))));
   }
 
   public @NotNull PsiManager getPsiManager() {
@@ -66,13 +86,13 @@ public class PerlImplicitDeclarationsService {
   public void registerVariable(@NotNull PerlImplicitVariableDeclaration implicitVariable) {
     switch (implicitVariable.getVariableType()) {
       case SCALAR:
-        doRegister(myScalarsMap, implicitVariable);
+        doRegister(myScalarsMap, myNamespaceScalarsMap, implicitVariable);
         break;
       case ARRAY:
-        doRegister(myArraysMap, implicitVariable);
+        doRegister(myArraysMap, myNamespaceArraysMap, implicitVariable);
         break;
       case HASH:
-        doRegister(myHashesMap, implicitVariable);
+        doRegister(myHashesMap, myNamespaceHashesMap, implicitVariable);
         break;
       default:
         LOG.warn("Can handle only SCALAR, ARRAY or HASH at the moment, got: " + implicitVariable);
@@ -80,7 +100,7 @@ public class PerlImplicitDeclarationsService {
   }
 
   public void registerSub(@NotNull PerlImplicitSubDefinition subDefinition) {
-    doRegister(mySubsMap, subDefinition);
+    doRegister(mySubsMap, myNamespaceSubsMap, subDefinition);
   }
 
   public @NotNull PerlImplicitSubDefinition registerAnonSub(@NotNull String namespaceName,
@@ -88,14 +108,79 @@ public class PerlImplicitDeclarationsService {
                                                             @Nullable PerlValue returnValue) {
     PerlImplicitSubDefinition subDefinition = new PerlImplicitSubDefinition(
       myPsiManager, baseName, namespaceName, Collections.emptyList(), returnValue, true);
-    doRegister(mySubsMap, subDefinition);
+    doRegister(mySubsMap, myNamespaceSubsMap, subDefinition);
     return subDefinition;
   }
 
-  private static <T extends PerlPackageMember> void doRegister(@NotNull Map<String, T> targetMap, @NotNull T entity) {
+  private static <T extends PerlPackageMember> void doRegister(@NotNull Map<String, T> targetMap,
+                                                               @NotNull Map<String, List<T>> namespaceMap,
+                                                               @NotNull T entity) {
     String canonicalName = entity.getCanonicalName();
-    LOG.assertTrue(!targetMap.containsKey(canonicalName), "Multiple registrations for: " + entity);
-    targetMap.put(canonicalName, entity);
+    String namespaceName = entity.getNamespaceName();
+    if (canonicalName == null || namespaceName == null) {
+      LOG.error("Implicit entity without namespace: " + entity);
+      return;
+    }
+    LOG.assertTrue(targetMap.putIfAbsent(canonicalName, entity) == null, "Multiple registrations for: " + entity);
+    namespaceMap.computeIfAbsent(namespaceName, key -> ContainerUtil.createLockFreeCopyOnWriteList()).add(entity);
+  }
+
+  /**
+   * Registers pending declarations for namespace of the {@code canonicalName}. Namespace name is looked up in the pending descriptors
+   * map, without scanning pending namespaces, because it is used by lexer
+   */
+  private void ensureLoadedByCanonicalName(@Nullable String canonicalName) {
+    if (canonicalName == null || myPendingDescriptors.isEmpty()) {
+      return;
+    }
+    int separatorIndex = canonicalName.lastIndexOf(NAMESPACE_SEPARATOR);
+    if (separatorIndex > 0) {
+      ensureLoaded(canonicalName.substring(0, separatorIndex));
+    }
+  }
+
+  /**
+   * Registers pending declarations for the {@code namespaceName}
+   */
+  private void ensureLoaded(@Nullable String namespaceName) {
+    if (namespaceName != null && myPendingDescriptors.containsKey(namespaceName)) {
+      loadNamespaces(Collections.singletonList(namespaceName));
+    }
+  }
+
+  /**
+   * Registers all pending declarations. Necessary for processing all entities of some kind
+   */
+  private void ensureAllLoaded() {
+    if (!myPendingDescriptors.isEmpty()) {
+      loadNamespaces(new ArrayList<>(myPendingDescriptors.keySet()));
+    }
+  }
+
+  /**
+   * @implNote descriptors are removed after registration, so concurrent callers either see them pending and wait for the lock or see
+   * registered entities
+   */
+  private synchronized void loadNamespaces(@NotNull List<String> namespacesNames) {
+    for (String namespaceName : namespacesNames) {
+      List<Pair<PerlImplicitDeclarationsProvider, List<Element>>> descriptors = myPendingDescriptors.get(namespaceName);
+      if (descriptors == null) {
+        continue;
+      }
+      LOG.debug("Loading implicit declarations for ", namespaceName);
+      for (Pair<PerlImplicitDeclarationsProvider, List<Element>> descriptor : descriptors) {
+        descriptor.first.registerDeclarations(this, namespaceName, descriptor.second);
+      }
+      myPendingDescriptors.remove(namespaceName);
+    }
+  }
+
+  /**
+   * @return true iff declarations of the {@code namespaceName} are registered or there are no such declarations
+   */
+  @TestOnly
+  boolean isLoaded(@NotNull String namespaceName) {
+    return !myPendingDescriptors.containsKey(namespaceName);
   }
 
   public @Nullable PerlSubDefinitionElement getCoreSub(@Nullable String subName) {
@@ -108,11 +193,15 @@ public class PerlImplicitDeclarationsService {
 
   @Contract("null->null")
   public @Nullable PerlSubDefinitionElement getSub(@Nullable String canonicalName) {
+    if (canonicalName == null) {
+      return null;
+    }
+    ensureLoadedByCanonicalName(canonicalName);
     return mySubsMap.get(canonicalName);
   }
 
   public boolean processSubsInPackage(@NotNull String packageName, @NotNull Processor<? super PerlSubDefinitionElement> processor) {
-    return processSubs(it -> !packageName.equals(it.getNamespaceName()) || processor.process(it));
+    return processInPackage(myNamespaceSubsMap, packageName, processor);
   }
 
   public boolean processSubs(@NotNull String canonicalName, @NotNull Processor<? super PerlSubDefinitionElement> processor) {
@@ -121,6 +210,7 @@ public class PerlImplicitDeclarationsService {
   }
 
   public boolean processSubs(@NotNull Processor<? super PerlSubDefinitionElement> processor) {
+    ensureAllLoaded();
     for (PerlImplicitSubDefinition subDefinition : mySubsMap.values()) {
       ProgressManager.checkCanceled();
       if (!processor.process(subDefinition)) {
@@ -132,17 +222,17 @@ public class PerlImplicitDeclarationsService {
 
   @Contract("null->null")
   public @Nullable PerlVariableDeclarationElement getScalar(@Nullable String canonicalName) {
-    return myScalarsMap.get(canonicalName);
+    return getVariable(myScalarsMap, canonicalName);
   }
 
   @Contract("null->null")
   public @Nullable PerlVariableDeclarationElement getArray(@Nullable String canonicalName) {
-    return myArraysMap.get(canonicalName);
+    return getVariable(myArraysMap, canonicalName);
   }
 
   @Contract("null->null")
   public @Nullable PerlVariableDeclarationElement getHash(@Nullable String canonicalName) {
-    return myHashesMap.get(canonicalName);
+    return getVariable(myHashesMap, canonicalName);
   }
 
   public boolean processScalars(@NotNull String canonicalName, @NotNull Processor<? super PerlVariableDeclarationElement> processor) {
@@ -162,17 +252,17 @@ public class PerlImplicitDeclarationsService {
 
   public boolean processScalarsInPackage(@Nullable String packageName,
                                          @NotNull Processor<? super PerlVariableDeclarationElement> processor) {
-    return packageName != null && processScalars(it -> !packageName.equals(it.getNamespaceName()) || processor.process(it));
+    return packageName != null && processInPackage(myNamespaceScalarsMap, packageName, processor);
   }
 
   public boolean processArraysInPackage(@Nullable String packageName,
                                         @NotNull Processor<? super PerlVariableDeclarationElement> processor) {
-    return packageName != null && processArrays(it -> !packageName.equals(it.getNamespaceName()) || processor.process(it));
+    return packageName != null && processInPackage(myNamespaceArraysMap, packageName, processor);
   }
 
   public boolean processHashesInPackage(@Nullable String packageName,
                                         @NotNull Processor<? super PerlVariableDeclarationElement> processor) {
-    return packageName != null && processHashes(it -> !packageName.equals(it.getNamespaceName()) || processor.process(it));
+    return packageName != null && processInPackage(myNamespaceHashesMap, packageName, processor);
   }
 
   public boolean processScalars(@NotNull Processor<? super PerlVariableDeclarationElement> processor) {
@@ -187,8 +277,35 @@ public class PerlImplicitDeclarationsService {
     return processVariables(myHashesMap, processor);
   }
 
-  private static boolean processVariables(@NotNull Map<String, PerlImplicitVariableDeclaration> variablesMap,
-                                          @NotNull Processor<? super PerlVariableDeclarationElement> processor) {
+  private @Nullable PerlVariableDeclarationElement getVariable(@NotNull Map<String, PerlImplicitVariableDeclaration> variablesMap,
+                                                              @Nullable String canonicalName) {
+    if (canonicalName == null) {
+      return null;
+    }
+    ensureLoadedByCanonicalName(canonicalName);
+    return variablesMap.get(canonicalName);
+  }
+
+  private <T extends PerlPackageMember> boolean processInPackage(@NotNull Map<String, List<T>> namespaceMap,
+                                                                 @NotNull String packageName,
+                                                                 @NotNull Processor<? super T> processor) {
+    ensureLoaded(packageName);
+    List<T> members = namespaceMap.get(packageName);
+    if (members == null) {
+      return true;
+    }
+    for (T member : members) {
+      ProgressManager.checkCanceled();
+      if (!processor.process(member)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private boolean processVariables(@NotNull Map<String, PerlImplicitVariableDeclaration> variablesMap,
+                                   @NotNull Processor<? super PerlVariableDeclarationElement> processor) {
+    ensureAllLoaded();
     for (PerlImplicitVariableDeclaration variableDeclaration : variablesMap.values()) {
       ProgressManager.checkCanceled();
       if (!processor.process(variableDeclaration)) {
@@ -0,0 +1,295 @@
+/*
+ * Copyright 2015-2021 Alexandr Evstigneev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.perl5.lang.perl.psi.references.scopes;
+
+import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.openapi.util.TextRange;
+import com.intellij.psi.*;
+import com.intellij.psi.util.CachedValueProvider;
+import com.intellij.psi.util.CachedValuesManager;
+import com.perl5.lang.perl.extensions.PerlImplicitVariablesProvider;
+import com.perl5.lang.perl.psi.PerlCompositeElement;
+import com.perl5.lang.perl.psi.PerlStubBasedPsiElementBase;
+import com.perl5.lang.perl.psi.PerlVariable;
+import com.perl5.lang.perl.psi.PerlVariableDeclarationElement;
+import com.perl5.lang.perl.psi.impl.PerlCompositeElementImpl;
+import com.perl5.lang.perl.psi.impl.PerlFileImpl;
+import com.perl5.lang.perl.psi.impl.PerlSubCallElement;
+import com.perl5.lang.perl.psi.properties.PerlLexicalScope;
+import com.perl5.lang.perl.psi.utils.PerlResolveUtil;
+import com.perl5.lang.perl.psi.utils.PerlVariableType;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.*;
+
+/**
+ * Lexical variables declarations of the plain perl file, collected in one pass and indexed by variable type and name. Declarations of
+ * each name are sorted by offset and searched with binary search. Each declaration knows the range it is visible in and its priority,
+ * so declarations visible at some place could be processed in the same order as
+ * {@link PerlResolveUtil#treeWalkUp(PsiElement, PsiScopeProcessor)} does, without walking the tree.
+ * <p>
+ * Priority is defined by the start offset and depth of the element, the declaration comes from: walk up processes deeper levels first and
+ * siblings in reverse order, each one with children first, then its implicit variables and then the element itself.
+ */
+public final class PerlLexicalDeclarationsTable {
+  private final @NotNull Map<String, NameDeclarations> myDeclarations = new HashMap<>();
+  /**
+   * Variables grouped by type and name, in order of appearance
+   */
+  private final @NotNull Map<String, List<PerlVariable>> myVariables = new HashMap<>();
+
+  private PerlLexicalDeclarationsTable(@NotNull PerlFileImpl file) {
+    Map<String, List<Entry>> declarations = new HashMap<>();
+    List<PsiElement> ancestors = new ArrayList<>();
+    file.accept(new PsiRecursiveElementWalkingVisitor() {
+      @Override
+      public void visitElement(@NotNull PsiElement element) {
+        ProgressManager.checkCanceled();
+        ancestors.add(element);
+        if (element instanceof PerlVariableDeclarationElement) {
+          addEntry(declarations, ancestors, (PerlVariableDeclarationElement)element, element, 0);
+        }
+        else if (element instanceof PerlVariable) {
+          String key = computeKey((PerlVariable)element);
+          if (key != null) {
+            myVariables.computeIfAbsent(key, it -> new ArrayList<>()).add((PerlVariable)element);
+          }
+        }
+        if (element instanceof PerlImplicitVariablesProvider) {
+          int index = 0;
+          for (PerlVariableDeclarationElement implicitVariable : ((PerlImplicitVariablesProvider)element).getImplicitVariables()) {
+            addEntry(declarations, ancestors, implicitVariable, element, ++index);
+          }
+        }
+        super.visitElement(element);
+      }
+
+      @Override
+      protected void elementFinished(PsiElement element) {
+        ancestors.remove(ancestors.size() - 1);
+      }
+    });
+    Comparator<Entry> comparator = Comparator.comparingInt((Entry it) -> it.myStartOffset)
+      .thenComparingInt(it -> it.myRank)
+      .thenComparingInt(it -> -it.myIndex);
+    declarations.forEach((key, entries) -> {
+      entries.sort(comparator);
+      myDeclarations.put(key, new NameDeclarations(entries));
+    });
+  }
+
+  /**
+   * @param ancestors chain of elements from the file to the {@code owner}, inclusive
+   * @param owner     element declaration belongs to: declaration itself or implicit variables provider
+   * @param index     1-based index of the implicit variable in the provider or 0 for explicit declarations
+   */
+  private static void addEntry(@NotNull Map<String, List<Entry>> declarations,
+                               @NotNull List<PsiElement> ancestors,
+                               @NotNull PerlVariableDeclarationElement declaration,
+                               @NotNull PsiElement owner,
+                               int index) {
+    PerlVariable variable = declaration.getVariable();
+    String key = variable == null ? null : computeKey(variable);
+    if (key == null) {
+      return;
+    }
+    TextRange ownerRange = owner.getTextRange();
+    int depth = ancestors.size() - 1;
+
+    // topmost element, children of which are processed by the walk up and may see the declaration as preceding sibling
+    int topIndex = depth;
+    if (isTransparent(owner)) {
+      while (topIndex > 0 && isTransparent(ancestors.get(topIndex - 1))) {
+        topIndex--;
+      }
+      if (topIndex > 0 && isProcessingChildren(ancestors.get(topIndex - 1))) {
+        topIndex--;
+      }
+    }
+    boolean isVisibleInside = isProcessingChildren(owner);
+    int fromOffset = isVisibleInside ? ownerRange.getStartOffset() : ownerRange.getEndOffset();
+    int toOffset = topIndex < depth ? ancestors.get(topIndex).getTextRange().getEndOffset() :
+                   isVisibleInside ? ownerRange.getEndOffset() : fromOffset;
+    if (fromOffset >= toOffset) {
+      return;
+    }
+
+    declarations.computeIfAbsent(key, it -> new ArrayList<>()).add(
+      new Entry(declaration, ownerRange.getStartOffset(), index == 0 ? 2 * depth : 2 * depth + 1, index, fromOffset, toOffset));
+  }
+
+  /**
+   * Processes declarations visible at the {@code variable} with the same type and name in the order of
+   * {@link PerlResolveUtil#treeWalkUp(PsiElement, PsiScopeProcessor)}
+   *
+   * @return false iff processing has been stopped by the {@code processor}
+   */
+  public boolean processDeclarations(@NotNull PerlVariable variable, @NotNull PsiScopeProcessor processor) {
+    String key = computeKey(variable);
+    NameDeclarations nameDeclarations = key == null ? null : myDeclarations.get(key);
+    if (nameDeclarations == null) {
+      return true;
+    }
+    int offset = variable.getTextRange().getStartOffset();
+    ResolveState state = ResolveState.initial();
+    Entry[] entries = nameDeclarations.myEntries;
+    for (int i = nameDeclarations.findLastEntryBefore(offset); i >= 0 && nameDeclarations.myMaxToOffsets[i] > offset; i--) {
+      Entry entry = entries[i];
+      if (entry.myFromOffset <= offset && offset < entry.myToOffset && !processor.execute(entry.myDeclaration, state)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * @return true iff some variable in this file, following the {@code declaration}, resolves to it
+   */
+  public boolean hasUsages(@NotNull PerlVariableDeclarationElement declaration) {
+    PerlVariable declaredVariable = declaration.getVariable();
+    String key = declaredVariable == null ? null : computeKey(declaredVariable);
+    List<PerlVariable> variables = key == null ? null : myVariables.get(key);
+    if (variables == null) {
+      return false;
+    }
+    int startOffset = declaration.getTextRange().getStartOffset();
+    for (int i = findFirstVariableAfter(variables, startOffset); i < variables.size(); i++) {
+      ProgressManager.checkCanceled();
+      PerlVariable variable = variables.get(i);
+      if (!(variable.getParent() instanceof PerlVariableDeclarationElement) &&
+          declaration.equals(PerlResolveUtil.getLexicalDeclaration(variable))) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * @return index of the first variable with start offset not less than {@code offset} or size of the list if there is none
+   */
+  private static int findFirstVariableAfter(@NotNull List<PerlVariable> variables, int offset) {
+    int low = 0;
+    int high = variables.size() - 1;
+    while (low <= high) {
+      int middle = (low + high) >>> 1;
+      if (variables.get(middle).getTextRange().getStartOffset() < offset) {
+        low = middle + 1;
+      }
+      else {
+        high = middle - 1;
+      }
+    }
+    return low;
+  }
+
+  private static @Nullable String computeKey(@NotNull PerlVariable variable) {
+    String name = variable.getName();
+    PerlVariableType actualType = variable.getActualType();
+    return name == null || actualType == null ? null : actualType.getSigil() + name;
+  }
+
+  /**
+   * @return true iff walk up processes children and implicit variables of the {@code element}
+   * @see PerlResolveUtil#processChildren
+   */
+  private static boolean isProcessingChildren(@NotNull PsiElement element) {
+    return element instanceof PerlCompositeElementImpl || element instanceof PerlStubBasedPsiElementBase || element instanceof PerlFileImpl;
+  }
+
+  /**
+   * @return true iff walk up descends into the {@code element} when it is a preceding sibling
+   */
+  private static boolean isTransparent(@NotNull PsiElement element) {
+    return (element instanceof PerlCompositeElement || element instanceof PerlSubCallElement) &&
+           !(element instanceof PerlLexicalScope) &&
+           isProcessingChildren(element);
+  }
+
+  /**
+   * @return declarations table for the file of {@code element} or null if it is not a plain perl file and walk up should be used
+   */
+  public static @Nullable PerlLexicalDeclarationsTable getInstance(@NotNull PsiElement element) {
+    if (element.getContext() != element.getParent()) {
+      return null;
+    }
+    PsiFile file = element.getContainingFile();
+    if (file == null || file.getClass() != PerlFileImpl.class || file.getContext() != null) {
+      return null;
+    }
+    return CachedValuesManager.getCachedValue(
+      file, () -> CachedValueProvider.Result.create(new PerlLexicalDeclarationsTable((PerlFileImpl)file), file));
+  }
+
+  /**
+   * Declarations of the same type and name, sorted by the walk up priority
+   */
+  private static final class NameDeclarations {
+    private final Entry @NotNull [] myEntries;
+    /**
+     * Maximal end of the visibility range among entries up to the index, inclusive. Allows to stop the backward search when no earlier
+     * entry may be visible at the offset
+     */
+    private final int @NotNull [] myMaxToOffsets;
+
+    NameDeclarations(@NotNull List<Entry> entries) {
+      myEntries = entries.toArray(new Entry[0]);
+      myMaxToOffsets = new int[myEntries.length];
+      int maxToOffset = 0;
+      for (int i = 0; i < myEntries.length; i++) {
+        maxToOffset = Math.max(maxToOffset, myEntries[i].myToOffset);
+        myMaxToOffsets[i] = maxToOffset;
+      }
+    }
+
+    /**
+     * @return index of the last entry with start offset not greater than {@code offset} or -1 if there is none
+     */
+    int findLastEntryBefore(int offset) {
+      int low = 0;
+      int high = myEntries.length - 1;
+      while (low <= high) {
+        int middle = (low + high) >>> 1;
+        if (myEntries[middle].myStartOffset <= offset) {
+          low = middle + 1;
+        }
+        else {
+          high = middle - 1;
+        }
+      }
+      return high;
+    }
+  }
+
+  private static final class Entry {
+    private final @NotNull PerlVariableDeclarationElement myDeclaration;
+    private final int myStartOffset;
+    private final int myRank;
+    private final int myIndex;
+    private final int myFromOffset;
+    private final int myToOffset;
+
+    Entry(@NotNull PerlVariableDeclarationElement declaration, int startOffset, int rank, int index, int fromOffset, int toOffset) {
+      myDeclaration = declaration;
+      myStartOffset = startOffset;
+      myRank = rank;
+      myIndex = index;
+      myFromOffset = fromOffset;
+      myToOffset = toOffset;
+    }
+  }
+}
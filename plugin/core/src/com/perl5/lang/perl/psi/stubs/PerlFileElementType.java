@@ -37,7 +37,7 @@ import org.jetbrains.annotations.Nullable;
 import java.io.IOException;
 
 public final class PerlFileElementType extends IStubFileElementType<PerlFileStub> {
-  private static final int VERSION = 3;
+  private static final int VERSION = 6;
 
   public PerlFileElementType(String debugName, Language language) {
     super(debugName, language);
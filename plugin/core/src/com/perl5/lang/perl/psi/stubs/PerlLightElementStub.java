@@ -26,4 +26,11 @@ public interface PerlLightElementStub {
   boolean isImplicit();
 
   void setImplicit(boolean isImplicit);
+
+  /**
+   * @return offset of the name identifier of light element in the file or -1 if unknown
+   */
+  int getNameIdentifierOffset();
+
+  void setNameIdentifierOffset(int offset);
 }
@@ -65,8 +65,13 @@ public abstract class PerlPolyNamedElementType<Stub extends PerlPolyNamedElement
 
     psi.getLightElements().forEach(lightPsi -> {
       StubElement<?> lightStubElement = lightPsi.getElementType().createStub(lightPsi, result);
-      if (lightStubElement instanceof PerlLightElementStub && lightPsi.isImplicit()) {
-        ((PerlLightElementStub)lightStubElement).setImplicit(true);
+      if (lightStubElement instanceof PerlLightElementStub) {
+        if (lightPsi.isImplicit()) {
+          ((PerlLightElementStub)lightStubElement).setImplicit(true);
+        }
+        else {
+          ((PerlLightElementStub)lightStubElement).setNameIdentifierOffset(lightPsi.getNameIdentifierOffset());
+        }
       }
       lightNamedElements.add(lightStubElement);
     });
@@ -93,6 +98,9 @@ public abstract class PerlPolyNamedElementType<Stub extends PerlPolyNamedElement
       dataStream.writeVarInt(getSerializationId(childStub)); // serialization id
       //noinspection unchecked
       childStub.getStubType().serialize(childStub, dataStream);
+      // name identifier offset, shifted to keep unknown one non-negative
+      dataStream.writeVarInt(
+        childStub instanceof PerlLightElementStub ? ((PerlLightElementStub)childStub).getNameIdentifierOffset() + 1 : 0);
     }
   }
 
@@ -107,7 +115,12 @@ public abstract class PerlPolyNamedElementType<Stub extends PerlPolyNamedElement
     Stub result = deserialize(dataStream, parentStub, childStubs);
 
     for (int i = 0; i < size; i++) {
-      childStubs.add(getElementTypeById(dataStream.readVarInt()).deserialize(dataStream, result));
+      StubElement<?> childStub = getElementTypeById(dataStream.readVarInt()).deserialize(dataStream, result);
+      int nameIdentifierOffset = dataStream.readVarInt() - 1;
+      if (childStub instanceof PerlLightElementStub) {
+        ((PerlLightElementStub)childStub).setNameIdentifierOffset(nameIdentifierOffset);
+      }
+      childStubs.add(childStub);
     }
 
     return result;
@@ -23,11 +23,13 @@ import com.intellij.psi.search.GlobalSearchScope;
 import com.intellij.psi.stubs.StringStubIndexExtension;
 import com.intellij.psi.stubs.StubIndex;
 import com.intellij.util.Processor;
+import com.intellij.util.indexing.IdFilter;
 import com.perl5.lang.perl.idea.EP.PerlPackageProcessorEP;
 import com.perl5.lang.perl.idea.codeInsight.typeInference.value.PerlValuesManager;
 import com.perl5.lang.perl.psi.PerlSubCallHandler;
 import com.perl5.lang.perl.util.PerlStubUtil;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import java.util.Collection;
 
@@ -52,6 +54,12 @@ public abstract class PerlStubIndexBase<Psi extends PsiElement> extends StringSt
     return PerlStubUtil.getAllKeys(getKey(), globalSearchScope);
   }
 
+  public boolean processAllNames(@NotNull GlobalSearchScope scope,
+                                 @Nullable IdFilter idFilter,
+                                 @NotNull Processor<? super String> processor) {
+    return PerlStubUtil.processAllKeys(getKey(), scope, idFilter, processor);
+  }
+
   protected abstract @NotNull Class<Psi> getPsiClass();
 
   public boolean processElements(@NotNull Project project,
@@ -0,0 +1,59 @@
+/*
+ * Copyright 2015-2021 Alexandr Evstigneev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.perl5.lang.perl.psi.stubs.imports;
+
+import com.intellij.openapi.util.text.StringUtil;
+import com.intellij.psi.PsiElement;
+import com.intellij.psi.stubs.StubIndexExtension;
+import com.intellij.psi.stubs.StubIndexKey;
+import com.perl5.lang.perl.psi.stubs.PerlStubIndexBase;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Indexes {@code use}, {@code no}, {@code require} and {@code do} statements by the name of included file, e.g. {@code Bar.pm} for
+ * {@code use Foo::Bar}. Used to find files, which may include some file, without resolving imports of all the files.
+ */
+public class PerlIncludedFilesIndex extends PerlStubIndexBase<PsiElement> {
+  public static final int VERSION = 1;
+  public static final StubIndexKey<String, PsiElement> KEY = StubIndexKey.createIndexKey("perl.included.files");
+
+  @Override
+  public int getVersion() {
+    return super.getVersion() + VERSION;
+  }
+
+  @Override
+  public @NotNull StubIndexKey<String, PsiElement> getKey() {
+    return KEY;
+  }
+
+  @Override
+  protected @NotNull Class<PsiElement> getPsiClass() {
+    return PsiElement.class;
+  }
+
+  /**
+   * @return index key for the {@code relativePath} of included file: the file name
+   */
+  public static @NotNull String getIncludedFileKey(@NotNull String relativePath) {
+    return relativePath.substring(StringUtil.lastIndexOfAny(relativePath, "/\\") + 1);
+  }
+
+  public static @NotNull PerlIncludedFilesIndex getInstance() {
+    return StubIndexExtension.EP_NAME.findExtensionOrFail(PerlIncludedFilesIndex.class);
+  }
+}
@@ -27,6 +27,7 @@ import com.perl5.lang.perl.parser.elementTypes.PsiElementProvider;
 import com.perl5.lang.perl.psi.impl.PerlUseStatementElement;
 import com.perl5.lang.perl.psi.stubs.PerlPolyNamedElementType;
 import com.perl5.lang.perl.psi.stubs.PerlStubSerializationUtil;
+import com.perl5.lang.perl.util.PerlPackageUtil;
 import org.jetbrains.annotations.NotNull;
 
 import java.io.IOException;
@@ -87,6 +88,8 @@ public class PerlUseStatementStubElementType extends PerlPolyNamedElementType<Pe
   @Override
   public void doIndexStub(@NotNull PerlUseStatementStub stub, @NotNull IndexSink sink) {
     sink.occurrence(PerlUseStatementsIndex.KEY, stub.getNamespaceName());
+    sink.occurrence(PerlIncludedFilesIndex.KEY,
+                    PerlIncludedFilesIndex.getIncludedFileKey(PerlPackageUtil.getPackagePathByName(stub.getPackageName())));
   }
 
   @Override
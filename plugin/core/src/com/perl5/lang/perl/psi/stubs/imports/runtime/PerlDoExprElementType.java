@@ -25,6 +25,7 @@ import com.perl5.lang.perl.parser.elementTypes.PsiElementProvider;
 import com.perl5.lang.perl.psi.PerlDoExpr;
 import com.perl5.lang.perl.psi.impl.PsiPerlDoExprImpl;
 import com.perl5.lang.perl.psi.stubs.PerlStubSerializationUtil;
+import com.perl5.lang.perl.psi.stubs.imports.PerlIncludedFilesIndex;
 import org.jetbrains.annotations.NotNull;
 
 import java.io.IOException;
@@ -80,6 +81,9 @@ public class PerlDoExprElementType extends IStubElementType<PerlRuntimeImportStu
 
   @Override
   public void indexStub(@NotNull PerlRuntimeImportStub stub, @NotNull IndexSink sink) {
-
+    String importPath = stub.getImportPath();
+    if (StringUtil.isNotEmpty(importPath)) {
+      sink.occurrence(PerlIncludedFilesIndex.KEY, PerlIncludedFilesIndex.getIncludedFileKey(importPath));
+    }
   }
 }
@@ -29,6 +29,8 @@ public class PerlLightNamespaceDefinitionStub extends PerlNamespaceDefinitionStu
 
   private boolean myIsImplicit = false;
 
+  private int myNameIdentifierOffset = -1;
+
   public PerlLightNamespaceDefinitionStub(@Nullable StubElement<?> parent,
                                           IStubElementType elementType,
                                           @NotNull PerlNamespaceDefinitionData data) {
@@ -60,4 +62,14 @@ public class PerlLightNamespaceDefinitionStub extends PerlNamespaceDefinitionStu
   public void setImplicit(boolean isImplicit) {
     myIsImplicit = isImplicit;
   }
+
+  @Override
+  public int getNameIdentifierOffset() {
+    return myNameIdentifierOffset;
+  }
+
+  @Override
+  public void setNameIdentifierOffset(int offset) {
+    myNameIdentifierOffset = offset;
+  }
 }
@@ -34,6 +34,8 @@ public class PerlLightSubDefinitionStub extends PerlSubDefinitionStub implements
 
   private boolean myIsImplicit = false;
 
+  private int myNameIdentifierOffset = -1;
+
   public PerlLightSubDefinitionStub(@Nullable StubElement<?> parent,
                                     String packageName,
                                     String subName,
@@ -69,4 +71,14 @@ public class PerlLightSubDefinitionStub extends PerlSubDefinitionStub implements
   public void setImplicit(boolean isImplicit) {
     myIsImplicit = isImplicit;
   }
+
+  @Override
+  public int getNameIdentifierOffset() {
+    return myNameIdentifierOffset;
+  }
+
+  @Override
+  public void setNameIdentifierOffset(int offset) {
+    myNameIdentifierOffset = offset;
+  }
 }
@@ -16,7 +16,6 @@
 
 package com.perl5.lang.perl.psi.utils;
 
-import com.intellij.codeInsight.controlflow.ControlFlowUtil;
 import com.intellij.codeInsight.controlflow.Instruction;
 import com.intellij.injected.editor.VirtualFileWindow;
 import com.intellij.openapi.application.Application;
@@ -33,9 +32,9 @@ import com.intellij.psi.util.PsiTreeUtil;
 import com.intellij.psi.util.PsiUtilCore;
 import com.intellij.util.PairProcessor;
 import com.perl5.lang.perl.extensions.PerlImplicitVariablesProvider;
-import com.perl5.lang.perl.idea.codeInsight.controlFlow.PerlAssignInstruction;
 import com.perl5.lang.perl.idea.codeInsight.controlFlow.PerlControlFlowBuilder;
 import com.perl5.lang.perl.idea.codeInsight.controlFlow.PerlMutationInstruction;
+import com.perl5.lang.perl.idea.codeInsight.controlFlow.PerlReachingDefinitions;
 import com.perl5.lang.perl.idea.codeInsight.typeInference.value.PerlOneOfValue;
 import com.perl5.lang.perl.idea.codeInsight.typeInference.value.PerlValue;
 import com.perl5.lang.perl.idea.codeInsight.typeInference.value.PerlValues;
@@ -45,6 +44,7 @@ import com.perl5.lang.perl.psi.impl.PerlBuiltInVariable;
 import com.perl5.lang.perl.psi.impl.PerlImplicitVariableDeclaration;
 import com.perl5.lang.perl.psi.impl.PerlSubCallElement;
 import com.perl5.lang.perl.psi.properties.PerlLexicalScope;
+import com.perl5.lang.perl.psi.references.scopes.PerlLexicalDeclarationsTable;
 import com.perl5.lang.perl.psi.references.scopes.PerlVariableDeclarationSearcher;
 import com.perl5.lang.perl.util.PerlUtil;
 import org.jetbrains.annotations.Contract;
@@ -111,7 +111,8 @@ public class PerlResolveUtil {
   }
 
   /**
-   * Searching for most recent lexically visible variable declaration
+   * Searching for most recent lexically visible variable declaration. Uses {@link PerlLexicalDeclarationsTable} of the plain perl files
+   * and walks up the tree for the rest ones
    *
    * @param variable variable to search declaration for
    * @return variable in declaration term or null if there is no such one
@@ -125,7 +126,9 @@ public class PerlResolveUtil {
     }
     return CachedValuesManager.getCachedValue(variable, () -> {
       PerlVariableDeclarationSearcher variableProcessor = new PerlVariableDeclarationSearcher(variable);
-      if (PerlResolveUtil.treeWalkUp(variable, variableProcessor)) {
+      PerlLexicalDeclarationsTable declarationsTable = PerlLexicalDeclarationsTable.getInstance(variable);
+      if (declarationsTable != null ? declarationsTable.processDeclarations(variable, variableProcessor) :
+          PerlResolveUtil.treeWalkUp(variable, variableProcessor)) {
         variableProcessor.processBuiltIns();
       }
       return CachedValueProvider.Result.create(variableProcessor.getResult(), variable.getContainingFile());
@@ -261,9 +264,10 @@ public class PerlResolveUtil {
       }
       return UNKNOWN_VALUE;
     }
-    Instruction[] instructions = PerlControlFlowBuilder.getFor(controlFlowScope);
+    PerlReachingDefinitions reachingDefinitions = PerlControlFlowBuilder.getReachingDefinitions(controlFlowScope);
+    Instruction[] instructions = reachingDefinitions.getInstructions();
     PsiElement elementToFind = element instanceof PerlFile ? element.getContext() : element;
-    int elementInstructionIndex = findElementInstruction(elementToFind, instructions, element);
+    int elementInstructionIndex = findElementInstruction(elementToFind, reachingDefinitions, element);
     if (elementInstructionIndex < 0) {
       String message = "Unable to find an instruction for " +
                        element.getClass() + "; " +
@@ -281,54 +285,32 @@ public class PerlResolveUtil {
       }
       return UNKNOWN_VALUE;
     }
+    boolean withArguments =
+      lexicalDeclaration instanceof PerlBuiltInVariable && "_".equals(variableName) && actualType == PerlVariableType.ARRAY;
+    PerlReachingDefinitions.Result result = reachingDefinitions.getReachingDefinitions(
+      elementInstructionIndex, actualType, variableName, namespaceName, stopElement, withArguments);
+
     PerlOneOfValue.Builder valueBuilder = PerlOneOfValue.builder();
-    ControlFlowUtil.iteratePrev(elementInstructionIndex, instructions, currentInstruction -> {
-      if (!(currentInstruction instanceof PerlMutationInstruction)) {
-        PsiElement instructionElement = currentInstruction.getElement();
-        if ((instructionElement instanceof PerlSubDefinitionElement || instructionElement instanceof PerlSubExpr) &&
-            lexicalDeclaration instanceof PerlBuiltInVariable && "_".equals(variableName) && actualType == PerlVariableType.ARRAY) {
-          valueBuilder.addVariant(PerlValues.ARGUMENTS_VALUE);
-          return CONTINUE;
-        }
-        if (Objects.equals(stopElement, instructionElement)) {
-          return CONTINUE;
-        }
-        if (currentInstruction.num() == 1 && instructionElement != null && instructionElement.getContext() != null) {
-          valueBuilder.addVariant(
-            getValueFromControlFlow(instructionElement, namespaceName, variableName, actualType, lexicalDeclaration, stopElement));
-        }
-        return NEXT;
-      }
-      if (currentInstruction.num() > elementInstructionIndex) {
-        return NEXT;
-      }
-      // fixme pop instruction should be decomposed
-      if (currentInstruction.num() == elementInstructionIndex && !(currentInstruction instanceof PerlAssignInstruction)) {
-        return NEXT;
-      }
-      PsiElement assignee = ((PerlMutationInstruction)currentInstruction).getLeftSide();
-      if (!(assignee instanceof PerlVariable) || ((PerlVariable)assignee).getActualType() != actualType) {
-        return NEXT;
-      }
-      if (!Objects.equals(variableName, ((PerlVariable)assignee).getName())) {
-        return NEXT;
-      }
-      String explicitNamespaceName = ((PerlVariable)assignee).getExplicitNamespaceName();
-      if ((explicitNamespaceName != null || namespaceName != null) && !Objects.equals(namespaceName, explicitNamespaceName)) {
-        return NEXT;
-      }
-      PerlVariableDeclarationElement assigneeDeclaration = getLexicalDeclaration((PerlVariable)assignee);
+    if (result.isArgumentsReached()) {
+      valueBuilder.addVariant(PerlValues.ARGUMENTS_VALUE);
+    }
+    if (result.isOuterScopeReached()) {
+      PsiElement instructionElement = Objects.requireNonNull(instructions[1].getElement());
+      valueBuilder.addVariant(
+        getValueFromControlFlow(instructionElement, namespaceName, variableName, actualType, lexicalDeclaration, stopElement));
+    }
+    for (PerlMutationInstruction definition : result.getDefinitions()) {
+      PsiElement assignee = definition.getLeftSide();
+      PerlVariableDeclarationElement assigneeDeclaration = getLexicalDeclaration((PerlVariable)Objects.requireNonNull(assignee));
       if (element == assignee ||
           lexicalDeclaration == null && assigneeDeclaration == null && !(assignee.getParent() instanceof PerlVariableDeclarationElement) ||
           lexicalDeclaration != null && (
             Objects.equals(lexicalDeclaration, assigneeDeclaration) ||
             Objects.equals(lexicalDeclaration, assignee.getParent()))
       ) {
-        valueBuilder.addVariant(((PerlMutationInstruction)currentInstruction).createValue());
+        valueBuilder.addVariant(definition.createValue());
       }
-      return CONTINUE;
-    });
-
+    }
 
     if (lexicalDeclaration != null) {
       PerlValue declaredValue = lexicalDeclaration.getDeclaredValue();
@@ -340,15 +322,15 @@ public class PerlResolveUtil {
   }
 
   private static int findElementInstruction(@Nullable PsiElement elementToFind,
-                                            @NotNull Instruction[] instructions,
+                                            @NotNull PerlReachingDefinitions reachingDefinitions,
                                             @Nullable PsiElement originalElementToFind) {
     if (elementToFind == null) {
       return -1;
     }
-    int elementInstructionIndex = ControlFlowUtil.findInstructionNumberByElement(instructions, elementToFind);
+    int elementInstructionIndex = reachingDefinitions.findInstructionNumberByElement(elementToFind);
 
     if (elementInstructionIndex < 0 && originalElementToFind instanceof PerlFile) {
-      elementInstructionIndex = PerlControlFlowBuilder.findInstructionNumberByRange(instructions, elementToFind);
+      elementInstructionIndex = PerlControlFlowBuilder.findInstructionNumberByRange(reachingDefinitions.getInstructions(), elementToFind);
     }
 
     return elementInstructionIndex;
@@ -0,0 +1,126 @@
+/*
+ * Copyright 2015-2021 Alexandr Evstigneev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.perl5.lang.perl.util;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import static com.perl5.lang.perl.util.PerlPackageUtil.MAIN_NAMESPACE_NAME;
+import static com.perl5.lang.perl.util.PerlPackageUtil.NAMESPACE_SEPARATOR;
+
+/**
+ * Bounded direct-mapped cache of canonical names. Lookups work on {@link CharSequence} ranges and allocate nothing on hit, so lexer
+ * may canonicalize barewords without creating strings for them. Colliding names just replace each other.
+ */
+final class PerlCanonicalNamesCache {
+  private static final int CACHE_SIZE = 4096;
+  private static final int CACHE_MASK = CACHE_SIZE - 1;
+  private static final AtomicReferenceArray<Entry> CACHE = new AtomicReferenceArray<>(CACHE_SIZE);
+
+  private PerlCanonicalNamesCache() {
+  }
+
+  static @NotNull String getCanonicalName(@NotNull String name) {
+    return getCanonicalName(name.hashCode(), name, 0, name.length());
+  }
+
+  static @NotNull String getCanonicalName(@NotNull CharSequence buffer, int start, int end) {
+    int hash = 0;
+    for (int i = start; i < end; i++) {
+      hash = 31 * hash + buffer.charAt(i);
+    }
+    return getCanonicalName(hash, buffer, start, end);
+  }
+
+  /**
+   * @param hash hash of the range, computed the same way as {@link String#hashCode()}
+   */
+  private static @NotNull String getCanonicalName(int hash, @NotNull CharSequence buffer, int start, int end) {
+    int index = (hash ^ (hash >>> 16)) & CACHE_MASK;
+    Entry entry = CACHE.get(index);
+    if (entry != null && entry.myHash == hash && entry.matches(buffer, start, end)) {
+      return entry.myCanonicalName;
+    }
+    String name = buffer.subSequence(start, end).toString();
+    String canonicalName = computeCanonicalName(name);
+    CACHE.set(index, new Entry(hash, name, canonicalName));
+    return canonicalName;
+  }
+
+  /**
+   * Strips trailing separator, replaces legacy separators with {@code ::} and adds implicit {@code main}.
+   *
+   * @return {@code name} itself if it is already canonical
+   */
+  static @NotNull String computeCanonicalName(@NotNull String name) {
+    int end = name.length();
+    if (name.endsWith(NAMESPACE_SEPARATOR)) {
+      end -= 2;
+    }
+    else if (end > 0 && name.charAt(end - 1) == '\'') {
+      end--;
+    }
+    boolean isImplicitMain = end == 0 || name.charAt(0) == '\'' || name.startsWith(NAMESPACE_SEPARATOR);
+    if (!isImplicitMain && end == name.length() && name.indexOf('\'') < 0) {
+      return name;
+    }
+
+    StringBuilder sb = new StringBuilder(end + MAIN_NAMESPACE_NAME.length() + 1);
+    if (isImplicitMain) {
+      sb.append(MAIN_NAMESPACE_NAME);
+    }
+    for (int i = 0; i < end; i++) {
+      char currentChar = name.charAt(i);
+      if (currentChar == '\'') {
+        sb.append(NAMESPACE_SEPARATOR);
+      }
+      else if (currentChar == ':' && i + 1 < end && name.charAt(i + 1) == ':') {
+        sb.append(NAMESPACE_SEPARATOR);
+        i++;
+      }
+      else {
+        sb.append(currentChar);
+      }
+    }
+    return sb.toString();
+  }
+
+  private static final class Entry {
+    private final int myHash;
+    private final @NotNull String myName;
+    private final @NotNull String myCanonicalName;
+
+    Entry(int hash, @NotNull String name, @NotNull String canonicalName) {
+      myHash = hash;
+      myName = name;
+      myCanonicalName = canonicalName;
+    }
+
+    boolean matches(@NotNull CharSequence buffer, int start, int end) {
+      if (myName.length() != end - start) {
+        return false;
+      }
+      for (int i = 0; i < myName.length(); i++) {
+        if (myName.charAt(i) != buffer.charAt(start + i)) {
+          return false;
+        }
+      }
+      return true;
+    }
+  }
+}
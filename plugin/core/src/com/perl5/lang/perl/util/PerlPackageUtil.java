@@ -24,13 +24,17 @@ import com.intellij.openapi.util.TextRange;
 import com.intellij.openapi.util.text.StringUtil;
 import com.intellij.openapi.vfs.VfsUtil;
 import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.openapi.vfs.VirtualFileManager;
 import com.intellij.psi.PsiElement;
 import com.intellij.psi.PsiFile;
 import com.intellij.psi.PsiManager;
 import com.intellij.psi.PsiReference;
+import com.intellij.psi.impl.source.PsiFileImpl;
 import com.intellij.psi.search.FileTypeIndex;
 import com.intellij.psi.search.GlobalSearchScope;
 import com.intellij.psi.search.searches.ReferencesSearch;
+import com.intellij.psi.stubs.StubElement;
+import com.intellij.psi.stubs.StubTree;
 import com.intellij.psi.util.CachedValueProvider;
 import com.intellij.psi.util.CachedValuesManager;
 import com.intellij.psi.util.PsiTreeUtil;
@@ -38,6 +42,7 @@ import com.intellij.psi.util.PsiUtilCore;
 import com.intellij.util.PairProcessor;
 import com.intellij.util.Processor;
 import com.intellij.util.SmartList;
+import com.intellij.util.containers.ContainerUtil;
 import com.perl5.lang.perl.extensions.packageprocessor.PerlLibProvider;
 import com.perl5.lang.perl.extensions.packageprocessor.PerlPackageParentsProvider;
 import com.perl5.lang.perl.extensions.packageprocessor.PerlPackageProcessor;
@@ -50,6 +55,7 @@ import com.perl5.lang.perl.idea.codeInsight.typeInference.value.PerlValue;
 import com.perl5.lang.perl.idea.configuration.settings.PerlSharedSettings;
 import com.perl5.lang.perl.idea.manipulators.PerlNamespaceElementManipulator;
 import com.perl5.lang.perl.idea.project.PerlDirectoryIndex;
+import com.perl5.lang.perl.idea.project.PerlIncPathIndex;
 import com.perl5.lang.perl.idea.project.PerlProjectManager;
 import com.perl5.lang.perl.idea.refactoring.rename.RenameRefactoringQueue;
 import com.perl5.lang.perl.internals.PerlVersion;
@@ -57,6 +63,7 @@ import com.perl5.lang.perl.lexer.PerlElementTypes;
 import com.perl5.lang.perl.psi.*;
 import com.perl5.lang.perl.psi.impl.PerlFileImpl;
 import com.perl5.lang.perl.psi.impl.PerlUseStatementElement;
+import com.perl5.lang.perl.psi.stubs.imports.PerlUseStatementStub;
 import com.perl5.lang.perl.psi.stubs.namespaces.PerlLightNamespaceIndex;
 import com.perl5.lang.perl.psi.stubs.namespaces.PerlLightNamespaceReverseIndex;
 import com.perl5.lang.perl.psi.stubs.namespaces.PerlNamespaceIndex;
@@ -125,7 +132,6 @@ public class PerlPackageUtil implements PerlElementTypes, PerlCorePackages {
   public static final String DEFAULT_LIB_DIR = "lib";
   public static final String DEFAULT_TEST_DIR = "t";
 
-  private static final Map<String, String> CANONICAL_NAMES_CACHE = new ConcurrentHashMap<>();
   private static final Map<String, String> PATH_TO_PACKAGE_NAME_MAP = new ConcurrentHashMap<>();
   public static final String FUNCTION_PARAMETERS = "Function::Parameters";
 
@@ -203,28 +209,16 @@ public class PerlPackageUtil implements PerlElementTypes, PerlCorePackages {
   }
 
   public static @NotNull String getCanonicalName(@NotNull String name) {
-    String newName;
-
-    if ((newName = CANONICAL_NAMES_CACHE.get(name)) != null) {
-      return newName;
-    }
-
-    String originalName = name;
-
-    name = PACKAGE_SEPARATOR_TAIL_RE.matcher(name).replaceFirst("");
-
-    String[] chunks = PACKAGE_SEPARATOR_RE.split(name, -1);
-
-    if (chunks.length > 0 && chunks[0].isEmpty())    // implicit main
-    {
-      chunks[0] = MAIN_NAMESPACE_NAME;
-    }
-
-    newName = StringUtil.join(chunks, NAMESPACE_SEPARATOR);
-
-    CANONICAL_NAMES_CACHE.put(originalName, newName);
+    return PerlCanonicalNamesCache.getCanonicalName(name);
+  }
 
-    return newName;
+  /**
+   * Allocation-free on repeated names version of {@link #getCanonicalName(String)}
+   *
+   * @return canonical name of the {@code buffer} range from {@code start} to {@code end}
+   */
+  public static @NotNull String getCanonicalName(@NotNull CharSequence buffer, int start, int end) {
+    return PerlCanonicalNamesCache.getCanonicalName(buffer, start, end);
   }
 
   public static @NotNull PerlValue getContextType(@Nullable PsiElement element) {
@@ -633,14 +627,7 @@ public class PerlPackageUtil implements PerlElementTypes, PerlCorePackages {
       return null;
     }
 
-    String packagePath = getPackagePathByName(packageName);
-    for (VirtualFile classRoot : PerlProjectManager.getInstance(project).getAllLibraryRoots()) {
-      VirtualFile targetFile = classRoot.findFileByRelativePath(packagePath);
-      if (targetFile != null) {
-        return targetFile;
-      }
-    }
-    return null;
+    return PerlIncPathIndex.getInstance(project).findFile(getPackagePathByName(packageName));
   }
 
   /**
@@ -695,22 +682,16 @@ public class PerlPackageUtil implements PerlElementTypes, PerlCorePackages {
     if (relativePath == null) {
       return null;
     }
-    for (VirtualFile classRoot : getIncDirsForPsiElement(psiFile)) {
-      if (classRoot == null) {
-        continue;
-      }
-      VirtualFile targetFile = classRoot.findFileByRelativePath(relativePath);
-      if (targetFile == null) {
-        continue;
-      }
-      String foundRelativePath = VfsUtil.getRelativePath(targetFile, classRoot);
-
-      if (StringUtil.isNotEmpty(foundRelativePath) && StringUtil.equals(foundRelativePath, relativePath)) {
+    PsiFile originalFile = psiFile.getOriginalFile();
+    for (VirtualFile libDir : getUseLibDirs(originalFile)) {
+      VirtualFile targetFile = PerlIncPathIndex.findFileInRoot(libDir, relativePath);
+      if (targetFile != null) {
         return targetFile;
       }
     }
 
-    return null;
+    VirtualFile targetFile = PerlIncPathIndex.getInstance(psiFile.getProject()).findFile(relativePath);
+    return targetFile != null ? targetFile : PerlIncPathIndex.findFileInRoot(getCurrentIncDir(originalFile), relativePath);
   }
 
   /**
@@ -721,27 +702,59 @@ public class PerlPackageUtil implements PerlElementTypes, PerlCorePackages {
    */
   private static @NotNull List<VirtualFile> getIncDirsForPsiElement(@NotNull PsiElement psiElement) {
     PsiFile psiFile = psiElement.getContainingFile().getOriginalFile();
-    List<VirtualFile> result = new ArrayList<>();
-
-    // libdirs providers fixme we need to use stubs or psi here
-    for (PerlUseStatementElement useStatement : PsiTreeUtil.findChildrenOfType(psiFile, PerlUseStatementElement.class)) {
-      PerlPackageProcessor packageProcessor = useStatement.getPackageProcessor();
-      if (packageProcessor instanceof PerlLibProvider) {
-        ((PerlLibProvider)packageProcessor).addLibDirs(useStatement, result);
-      }
-    }
+    List<VirtualFile> result = new ArrayList<>(getUseLibDirs(psiFile));
 
     // classpath
     result.addAll(PerlProjectManager.getInstance(psiElement.getProject()).getAllLibraryRoots());
 
-    // current dir
+    ContainerUtil.addIfNotNull(result, getCurrentIncDir(psiFile));
+
+    return result;
+  }
+
+  /**
+   * @return directory of the {@code psiFile} if target perl version has current directory in the {@code @INC}
+   */
+  private static @Nullable VirtualFile getCurrentIncDir(@NotNull PsiFile psiFile) {
     if (PerlSharedSettings.getInstance(psiFile.getProject()).getTargetPerlVersion().lesserThan(PerlVersion.V5_26)) {
       VirtualFile virtualFile = psiFile.getVirtualFile();
-      if (virtualFile != null && virtualFile.getParent() != null) {
-        result.add(virtualFile.getParent());
-      }
+      return virtualFile == null ? null : virtualFile.getParent();
     }
+    return null;
+  }
 
+  /**
+   * @return lib dirs, added by {@code use lib} and similar statements of the {@code psiFile}, in order of precedence. Cached, computed from
+   * stubs if possible.
+   */
+  public static @NotNull List<VirtualFile> getUseLibDirs(@NotNull PsiFile psiFile) {
+    return CachedValuesManager.getCachedValue(psiFile, () -> {
+      List<VirtualFile> result = new ArrayList<>();
+      for (PerlUseStatementElement useStatement : getUseStatements(psiFile)) {
+        PerlPackageProcessor packageProcessor = useStatement.getPackageProcessor();
+        if (packageProcessor instanceof PerlLibProvider) {
+          ((PerlLibProvider)packageProcessor).addLibDirs(useStatement, result);
+        }
+      }
+      return CachedValueProvider.Result.create(result.isEmpty() ? Collections.emptyList() : Collections.unmodifiableList(result),
+                                               psiFile, VirtualFileManager.VFS_STRUCTURE_MODIFICATIONS);
+    });
+  }
+
+  /**
+   * @return use statements of the {@code psiFile} in order of appearance. Taken from stubs if AST is not loaded.
+   */
+  private static @NotNull Collection<PerlUseStatementElement> getUseStatements(@NotNull PsiFile psiFile) {
+    StubTree stubTree = psiFile instanceof PsiFileImpl ? ((PsiFileImpl)psiFile).getStubTree() : null;
+    if (stubTree == null) {
+      return PsiTreeUtil.findChildrenOfType(psiFile, PerlUseStatementElement.class);
+    }
+    List<PerlUseStatementElement> result = new ArrayList<>();
+    for (StubElement<?> stubElement : stubTree.getPlainList()) {
+      if (stubElement instanceof PerlUseStatementStub) {
+        result.add(((PerlUseStatementStub)stubElement).getPsi());
+      }
+    }
     return result;
   }
 
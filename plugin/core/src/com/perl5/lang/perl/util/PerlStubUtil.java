@@ -16,6 +16,7 @@
 
 package com.perl5.lang.perl.util;
 
+import com.intellij.openapi.progress.ProgressManager;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.util.text.StringUtil;
 import com.intellij.psi.search.GlobalSearchScope;
@@ -23,8 +24,10 @@ import com.intellij.psi.stubs.StubIndex;
 import com.intellij.psi.stubs.StubIndexKey;
 import com.intellij.util.Processor;
 import com.intellij.util.Processors;
+import com.intellij.util.indexing.IdFilter;
 import gnu.trove.THashSet;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import java.util.Collection;
 import java.util.Set;
@@ -42,6 +45,19 @@ public final class PerlStubUtil {
     return allKeys;
   }
 
+  /**
+   * Processes all names from the index with {@code indexKey} limited with {@code scope} and {@code idFilter} without collecting them
+   */
+  public static boolean processAllKeys(@NotNull StubIndexKey<String, ?> indexKey,
+                                       @NotNull GlobalSearchScope scope,
+                                       @Nullable IdFilter idFilter,
+                                       @NotNull Processor<? super String> processor) {
+    return StubIndex.getInstance().processAllKeys(indexKey, it -> {
+      ProgressManager.checkCanceled();
+      return processor.process(it);
+    }, scope, idFilter);
+  }
+
   @Deprecated // make reverse index and use it
   public static Collection<String> getIndexKeysWithoutInternals(@NotNull StubIndexKey<String, ?> key, @NotNull Project project) {
     final Set<String> result = new THashSet<>();
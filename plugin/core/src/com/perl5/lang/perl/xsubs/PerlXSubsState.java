@@ -16,14 +16,12 @@
 
 package com.perl5.lang.perl.xsubs;
 
-import com.intellij.execution.ExecutionException;
 import com.intellij.execution.process.ProcessOutput;
 import com.intellij.notification.Notification;
 import com.intellij.notification.NotificationType;
 import com.intellij.notification.Notifications;
 import com.intellij.openapi.actionSystem.AnAction;
 import com.intellij.openapi.actionSystem.AnActionEvent;
-import com.intellij.openapi.application.Application;
 import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.application.ReadAction;
 import com.intellij.openapi.application.WriteAction;
@@ -43,12 +41,15 @@ import com.intellij.openapi.util.SystemInfo;
 import com.intellij.openapi.util.text.StringUtil;
 import com.intellij.openapi.vfs.VfsUtilCore;
 import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.PsiFile;
 import com.intellij.psi.search.FilenameIndex;
 import com.intellij.psi.search.GlobalSearchScope;
 import com.intellij.psi.search.GlobalSearchScopesCore;
 import com.intellij.testFramework.LightVirtualFile;
 import com.intellij.util.FileContentUtilCore;
 import com.intellij.util.Function;
+import com.intellij.util.concurrency.AppExecutorUtil;
+import com.intellij.util.containers.ContainerUtil;
 import com.intellij.util.xmlb.XmlSerializerUtil;
 import com.intellij.util.xmlb.annotations.Transient;
 import com.perl5.PerlBundle;
@@ -56,6 +57,7 @@ import com.perl5.lang.perl.idea.PerlPathMacros;
 import com.perl5.lang.perl.idea.execution.PerlCommandLine;
 import com.perl5.lang.perl.idea.project.PerlProjectManager;
 import com.perl5.lang.perl.idea.sdk.host.PerlHostData;
+import com.perl5.lang.perl.util.PerlPackageUtil;
 import com.perl5.lang.perl.util.PerlPluginUtil;
 import com.perl5.lang.perl.util.PerlRunUtil;
 import gnu.trove.THashMap;
@@ -66,10 +68,11 @@ import org.jetbrains.annotations.Nullable;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.nio.charset.StandardCharsets;
-import java.util.Collections;
-import java.util.List;
-import java.util.Map;
-import java.util.Set;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 @State(
   name = "Perl5XSubsState",
@@ -78,8 +81,26 @@ import java.util.Set;
 
 public class PerlXSubsState implements PersistentStateComponent<PerlXSubsState> {
   private static final Logger LOG = Logger.getInstance(PerlXSubsState.class);
+  /**
+   * Legacy monolithic file with deparsed XSubs, removed on the next deparsing
+   */
   @Transient
   public static final String DEPARSED_FILE_NAME = "_Deparsed_XSubs.pm";
+  /**
+   * Directory with per-module stubs of deparsed XSubs
+   */
+  @Transient
+  public static final String DEPARSED_DIRECTORY_NAME = "_Deparsed_XSubs";
+  private static final String DEPARSED_HEADER =
+    "#\n#\n# DO NOT EDIT THIS FILE, IT'S AUTOGENERATED FROM XS MODULES AND WILL BE UPDATED AUTOMATICALLY\n#\n#\n";
+  private static final String MODULE_SECTION_PREFIX = "#@module ";
+  /**
+   * Pseudo-module with XSubs built into the perl itself, they are not attributed to any XS binary
+   */
+  static final String CORE_MODULE_NAME = "CORE";
+  static final String BATCH_PARAMETER = "--batch";
+  private static final String AUTO_DIRECTORY = "auto/";
+  private static final int DEPARSER_WORKERS = 4;
   public boolean isActual = true;
   public Map<String, Long> myFilesMap = new THashMap<>();
   @Transient
@@ -101,27 +122,45 @@ public class PerlXSubsState implements PersistentStateComponent<PerlXSubsState>
     XmlSerializerUtil.copyBean(state, this);
   }
 
-  private Set<VirtualFile> getAllXSFiles(@NotNull Project project) {
+  /**
+   * @return XS binaries from library roots, mapped to the names of modules built into them
+   */
+  private @NotNull Map<VirtualFile, String> getAllXSFiles(@NotNull Project project) {
     List<VirtualFile> classesRoots = PerlProjectManager.getInstance(project).getAllLibraryRoots();
     if (classesRoots.isEmpty()) {
-      return Collections.emptySet();
+      return Collections.emptyMap();
     }
 
     GlobalSearchScope classRootsScope =
       GlobalSearchScopesCore.directoriesScope(myProject, true, classesRoots.toArray(new VirtualFile[classesRoots.size()]));
 
-    Set<VirtualFile> result = new THashSet<>();
+    Map<VirtualFile, String> result = new THashMap<>();
     for (VirtualFile virtualFile : FilenameIndex.getAllFilesByExt(project, getXSBinaryExtension(), classRootsScope)) {
       if (virtualFile.isValid() && !virtualFile.isDirectory() && !(virtualFile instanceof LightVirtualFile)) {
-        String path = virtualFile.getCanonicalPath();
-        if (path != null && StringUtil.contains(path, "/auto/")) {
-          result.add(virtualFile);
+        String moduleName = getModuleName(classesRoots, virtualFile);
+        if (moduleName != null) {
+          result.put(virtualFile, moduleName);
         }
       }
     }
     return result;
   }
 
+  /**
+   * @return name of the module, built into the {@code binaryFile}, computed relative to the library root containing it. Nested roots are
+   * checked too, so binary is attributed by the root it is actually loaded from.
+   */
+  private static @Nullable String getModuleName(@NotNull List<VirtualFile> roots, @NotNull VirtualFile binaryFile) {
+    for (VirtualFile root : roots) {
+      String relativePath = VfsUtilCore.getRelativePath(binaryFile, root);
+      String moduleName = relativePath == null ? null : getModuleName(relativePath);
+      if (moduleName != null) {
+        return moduleName;
+      }
+    }
+    return null;
+  }
+
   public void rescanFiles() {
     ProgressIndicatorUtils.scheduleWithWriteActionPriority(new ReadTask() {
       @Override
@@ -133,7 +172,7 @@ public class PerlXSubsState implements PersistentStateComponent<PerlXSubsState>
         indicator.setIndeterminate(false);
         indicator.setText(PerlBundle.message("perl.scanning.xs.changes"));
         if (isActual) {
-          Set<VirtualFile> allXSFiles = getAllXSFiles(myProject);
+          Set<VirtualFile> allXSFiles = getAllXSFiles(myProject).keySet();
           for (VirtualFile virtualFile : allXSFiles) {
             if (indicator.isCanceled()) {
               return;
@@ -155,7 +194,7 @@ public class PerlXSubsState implements PersistentStateComponent<PerlXSubsState>
           }
         }
 
-        isActual = isActual && (filesCounter == 0 || myProject.getBaseDir().findFileByRelativePath(DEPARSED_FILE_NAME) != null);
+        isActual = isActual && (filesCounter == 0 || myProject.getBaseDir().findFileByRelativePath(DEPARSED_DIRECTORY_NAME) != null);
 
         if (!isActual) {
           showNotification(
@@ -204,109 +243,327 @@ public class PerlXSubsState implements PersistentStateComponent<PerlXSubsState>
       return;
     }
 
-    PerlCommandLine commandLine = PerlRunUtil.getPerlCommandLine(myProject, PerlPluginUtil.getHelperPath("xs_parser_simple.pl"));
-
-    if (commandLine == null) {
+    if (createDeparserCommandLine(Collections.emptyList()) == null) {
       LOG.warn("Unable to create deparser command line");
       return;
     }
-    commandLine.withCharset(StandardCharsets.UTF_8).withMissingPackageListener(false);
-
-    LOG.info("Deparsing: " + commandLine.getCommandLineString());
 
     myParserTask = new Task.Backgroundable(myProject, PerlBundle.message("perl.deparsing.xsubs"), false) {
       @Override
       public void run(@NotNull ProgressIndicator indicator) {
-        indicator.setIndeterminate(true);
-        Map<String, Long> newFilesMap = ReadAction.compute(() -> {
-          if (myProject.isDisposed()) {
-            return null;
-          }
-          final Map<String, Long> result = new THashMap<>();
-          for (VirtualFile virtualFile : getAllXSFiles(myProject)) {
-            if (virtualFile.isValid()) {
-              String filePath = virtualFile.getCanonicalPath();
-              if (filePath != null) {
-                result.put(filePath, VfsUtilCore.virtualToIoFile(virtualFile)
-                  .lastModified());
-              }
-            }
-          }
-          return result;
-        });
-        if (newFilesMap == null) {
+        try {
+          doReparseXSubs(indicator);
+        }
+        finally {
           myParserTask = null;
-          return;
         }
+      }
+    };
+    myParserTask.queue();
+  }
 
-        ProcessOutput processOutput;
-        try {
-          processOutput = PerlHostData.execAndGetOutput(commandLine);
+  /**
+   * Deparses new and changed XS modules with several parallel deparser processes and updates their stubs. Stubs of the removed modules
+   * are deleted, stubs with unchanged content are left intact, so only affected stubs are re-indexed. Core XSubs are re-deparsed along
+   * with any changed module, because perl may have been changed as well.
+   */
+  private void doReparseXSubs(@NotNull ProgressIndicator indicator) {
+    indicator.setIndeterminate(true);
+    Map<String, String> modulesNames = new THashMap<>();
+    Map<String, Long> newFilesMap = ReadAction.compute(() -> {
+      if (myProject.isDisposed()) {
+        return null;
+      }
+      final Map<String, Long> result = new THashMap<>();
+      getAllXSFiles(myProject).forEach((virtualFile, moduleName) -> {
+        String filePath = virtualFile.isValid() ? virtualFile.getCanonicalPath() : null;
+        if (filePath != null) {
+          result.put(filePath, VfsUtilCore.virtualToIoFile(virtualFile).lastModified());
+          modulesNames.put(filePath, moduleName);
         }
-        catch (ExecutionException e) {
-          LOG.warn("Error deparsing", e);
+      });
+      return result;
+    });
+    if (newFilesMap == null) {
+      return;
+    }
 
-          showNotification(
-            PerlBundle.message("perl.deparsing.error.execution"),
-            e.getMessage(),
-            NotificationType.ERROR
-          );
-          myParserTask = null;
+    Set<String> existingStubs = ReadAction.compute(this::getDeparsedStubsNames);
+    Set<String> actualStubs = new THashSet<>();
+    Set<String> modulesToDeparse = new TreeSet<>();
+    String coreStubName = getStubFileName(CORE_MODULE_NAME);
+    actualStubs.add(coreStubName);
+    newFilesMap.forEach((filePath, modificationStamp) -> {
+      String moduleName = modulesNames.get(filePath);
+      String stubName = getStubFileName(moduleName);
+      actualStubs.add(stubName);
+      if (!modificationStamp.equals(myFilesMap.get(filePath)) || !existingStubs.contains(stubName)) {
+        modulesToDeparse.add(moduleName);
+      }
+    });
+    Set<String> stubsToRemove = new THashSet<>(existingStubs);
+    stubsToRemove.removeAll(actualStubs);
+    boolean deparseCore = !modulesToDeparse.isEmpty() || !existingStubs.contains(coreStubName);
+    LOG.info("Deparsing " + modulesToDeparse.size() + " of " + newFilesMap.size() + " XS modules" + (deparseCore ? " and core" : "") +
+             ", removing " + stubsToRemove.size() + " stubs");
+
+    Map<String, String> deparsedModules = new ConcurrentHashMap<>();
+    Set<String> failedModules = ContainerUtil.newConcurrentSet();
+    List<String> errors = ContainerUtil.createConcurrentList();
+    if (deparseCore) {
+      runDeparsers(new ArrayList<>(modulesToDeparse), deparsedModules, failedModules, errors);
+    }
+    if (!errors.isEmpty()) {
+      showNotification(
+        PerlBundle.message("perl.deparsing.error.execution"),
+        StringUtil.join(errors, "\n"),
+        NotificationType.ERROR
+      );
+    }
+
+    Map<String, Long> actualFilesMap = new THashMap<>(newFilesMap);
+    actualFilesMap.keySet().removeIf(it -> failedModules.contains(modulesNames.get(it)));
+
+    ApplicationManager.getApplication().invokeAndWait(
+      () -> WriteAction.run(() -> {
+        if (myProject.isDisposed()) {
           return;
         }
-        final String stdout = processOutput.getStdout();
-        String stderr = processOutput.getStderr();
-        int exitCode = processOutput.getExitCode();
-        LOG.info("Deparsing finished with exit code: " + exitCode +
-                 (StringUtil.isEmpty(stderr) ? "" : ". STDERR:\n" + stderr));
+        try {
+          int changedStubs = updateDeparsedStubs(deparsedModules, stubsToRemove);
+          LOG.info("Deparsed XS stubs changed: " + changedStubs);
+
+          myFilesMap = actualFilesMap;
+          isActual = failedModules.isEmpty();
 
-        if (exitCode != 0) {
           showNotification(
-            PerlBundle.message("perl.deparsing.error.execution"),
-            stderr,
-            NotificationType.ERROR
+            PerlBundle.message("perl.deparsing.finished"),
+            "",
+            NotificationType.INFORMATION
           );
         }
-        else if (!stdout.isEmpty()) {
-          Application application = ApplicationManager.getApplication();
-          application.invokeAndWait(
-            () -> WriteAction.run(() -> {
-              if (myProject.isDisposed()) {
-                return;
-              }
-              try {
-                VirtualFile newFile = myProject.getBaseDir().findOrCreateChildData(this, DEPARSED_FILE_NAME);
-                newFile.setWritable(true);
-                OutputStream outputStream = newFile.getOutputStream(null);
-                outputStream.write(stdout.getBytes());
-                outputStream.close();
-                newFile.setWritable(false);
-                FileContentUtilCore.reparseFiles(newFile);
-
-                myFilesMap = newFilesMap;
-                isActual = true;
-
-                showNotification(
-                  PerlBundle.message("perl.deparsing.finished"),
-                  "",
-                  NotificationType.INFORMATION
-                );
-              }
-              catch (IOException e) {
-                LOG.warn("Error creating deparsed file", e);
-                showNotification(
-                  PerlBundle.message("perl.deparsing.error.creating.file"),
-                  e.getMessage(),
-                  NotificationType.ERROR
-                );
-              }
-              // fixme fix modality state
-            }));
+        catch (IOException e) {
+          LOG.warn("Error creating deparsed file", e);
+          showNotification(
+            PerlBundle.message("perl.deparsing.error.creating.file"),
+            e.getMessage(),
+            NotificationType.ERROR
+          );
         }
-        myParserTask = null;
+        // fixme fix modality state
+      }));
+  }
+
+  /**
+   * Runs up to {@link #DEPARSER_WORKERS} deparser processes in parallel, splitting {@code modules} between them. Core XSubs are collected
+   * from the first one only.
+   */
+  private void runDeparsers(@NotNull List<String> modules,
+                            @NotNull Map<String, String> deparsedModules,
+                            @NotNull Set<String> failedModules,
+                            @NotNull List<String> errors) {
+    int workersNumber =
+      Math.max(1, Math.min(Math.min(DEPARSER_WORKERS, Runtime.getRuntime().availableProcessors()), modules.size()));
+    List<List<String>> chunks = new ArrayList<>();
+    for (int i = 0; i < workersNumber; i++) {
+      chunks.add(new ArrayList<>());
+    }
+    for (int i = 0; i < modules.size(); i++) {
+      chunks.get(i % workersNumber).add(modules.get(i));
+    }
+
+    ExecutorService executor = AppExecutorUtil.createBoundedApplicationPoolExecutor("Perl5 XSubs Deparser", workersNumber);
+    try {
+      List<Future<?>> futures = new ArrayList<>();
+      for (int i = 0; i < chunks.size(); i++) {
+        List<String> chunk = chunks.get(i);
+        boolean collectCore = i == 0;
+        futures.add(executor.submit(() -> deparseModules(chunk, collectCore, deparsedModules, failedModules, errors)));
       }
-    };
-    myParserTask.queue();
+      for (Future<?> future : futures) {
+        future.get();
+      }
+    }
+    catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new ProcessCanceledException(e);
+    }
+    catch (ExecutionException e) {
+      if (e.getCause() instanceof ProcessCanceledException) {
+        throw (ProcessCanceledException)e.getCause();
+      }
+      LOG.warn("Error deparsing", e);
+      errors.add(e.getMessage());
+      modules.stream().filter(it -> !deparsedModules.containsKey(it)).forEach(failedModules::add);
+    }
+    finally {
+      executor.shutdownNow();
+    }
+  }
+
+  /**
+   * Deparses {@code modules} in a single process, collecting stubs content to the {@code deparsedModules}
+   *
+   * @param collectCore true iff core XSubs from this process should be collected too
+   */
+  private void deparseModules(@NotNull List<String> modules,
+                              boolean collectCore,
+                              @NotNull Map<String, String> deparsedModules,
+                              @NotNull Set<String> failedModules,
+                              @NotNull List<String> errors) {
+    PerlCommandLine commandLine = createDeparserCommandLine(modules);
+    if (commandLine == null) {
+      failedModules.addAll(modules);
+      return;
+    }
+    LOG.info("Deparsing: " + commandLine.getCommandLineString());
+
+    ProcessOutput processOutput;
+    try {
+      processOutput = PerlHostData.execAndGetOutput(commandLine);
+    }
+    catch (com.intellij.execution.ExecutionException e) {
+      LOG.warn("Error deparsing", e);
+      errors.add(e.getMessage());
+      failedModules.addAll(modules);
+      return;
+    }
+    String stderr = processOutput.getStderr();
+    int exitCode = processOutput.getExitCode();
+    LOG.info("Deparsing of " + modules.size() + " modules finished with exit code: " + exitCode +
+             (StringUtil.isEmpty(stderr) ? "" : ". STDERR:\n" + stderr));
+
+    if (exitCode != 0) {
+      errors.add(stderr);
+      failedModules.addAll(modules);
+      return;
+    }
+
+    List<String> sectionsNames = collectCore ? ContainerUtil.prepend(modules, CORE_MODULE_NAME) : modules;
+    deparsedModules.putAll(parseSections(sectionsNames, processOutput.getStdoutLines()));
+  }
+
+  /**
+   * @return stubs content for each of {@code modules}, from the deparser output {@code lines}, split into sections with
+   * {@link #MODULE_SECTION_PREFIX}. Modules without a section, e.g. skipped ones, get empty stubs to avoid deparsing them over and over
+   */
+  static @NotNull Map<String, String> parseSections(@NotNull List<String> modules, @NotNull List<String> lines) {
+    Map<String, StringBuilder> sections = new THashMap<>();
+    StringBuilder currentSection = null;
+    for (String line : lines) {
+      if (line.startsWith(MODULE_SECTION_PREFIX)) {
+        currentSection = sections.computeIfAbsent(line.substring(MODULE_SECTION_PREFIX.length()), it -> new StringBuilder());
+      }
+      else if (currentSection != null) {
+        currentSection.append(line).append('\n');
+      }
+    }
+    Map<String, String> result = new THashMap<>();
+    for (String module : modules) {
+      StringBuilder section = sections.get(module);
+      result.put(module, DEPARSED_HEADER + (section == null ? "" : section));
+    }
+    return result;
+  }
+
+  private @Nullable PerlCommandLine createDeparserCommandLine(@NotNull List<String> modules) {
+    PerlCommandLine commandLine = PerlRunUtil.getPerlCommandLine(myProject, PerlPluginUtil.getHelperPath("xs_parser_simple.pl"));
+    if (commandLine == null) {
+      return null;
+    }
+    return commandLine.withParameters(BATCH_PARAMETER).withParameters(modules)
+      .withCharset(StandardCharsets.UTF_8).withMissingPackageListener(false);
+  }
+
+  /**
+   * @return names of stub files in the deparsed stubs directory
+   */
+  private @NotNull Set<String> getDeparsedStubsNames() {
+    VirtualFile stubsDirectory = myProject.isDisposed() ? null : myProject.getBaseDir().findChild(DEPARSED_DIRECTORY_NAME);
+    if (stubsDirectory == null || !stubsDirectory.isDirectory()) {
+      return Collections.emptySet();
+    }
+    Set<String> result = new THashSet<>();
+    for (VirtualFile child : stubsDirectory.getChildren()) {
+      result.add(child.getName());
+    }
+    return result;
+  }
+
+  /**
+   * Writes changed stubs from {@code deparsedModules}, removes {@code stubsToRemove} and a legacy monolithic deparsed file.
+   *
+   * @return number of changed stubs
+   */
+  private int updateDeparsedStubs(@NotNull Map<String, String> deparsedModules, @NotNull Set<String> stubsToRemove) throws IOException {
+    VirtualFile baseDir = myProject.getBaseDir();
+    VirtualFile legacyFile = baseDir.findChild(DEPARSED_FILE_NAME);
+    if (legacyFile != null) {
+      legacyFile.delete(this);
+    }
+    VirtualFile stubsDirectory = baseDir.findChild(DEPARSED_DIRECTORY_NAME);
+    if (stubsDirectory == null) {
+      stubsDirectory = baseDir.createChildDirectory(this, DEPARSED_DIRECTORY_NAME);
+    }
+
+    int changedStubs = 0;
+    for (String stubName : stubsToRemove) {
+      VirtualFile stubFile = stubsDirectory.findChild(stubName);
+      if (stubFile != null) {
+        stubFile.delete(this);
+        changedStubs++;
+      }
+    }
+
+    List<VirtualFile> filesToReparse = new ArrayList<>();
+    for (Map.Entry<String, String> entry : deparsedModules.entrySet()) {
+      String stubName = getStubFileName(entry.getKey());
+      String content = entry.getValue();
+      VirtualFile stubFile = stubsDirectory.findChild(stubName);
+      if (stubFile != null && StringUtil.equals(VfsUtilCore.loadText(stubFile), content)) {
+        continue;
+      }
+      if (stubFile == null) {
+        stubFile = stubsDirectory.createChildData(this, stubName);
+      }
+      stubFile.setWritable(true);
+      try (OutputStream outputStream = stubFile.getOutputStream(null)) {
+        outputStream.write(content.getBytes(StandardCharsets.UTF_8));
+      }
+      stubFile.setWritable(false);
+      filesToReparse.add(stubFile);
+    }
+    FileContentUtilCore.reparseFiles(filesToReparse);
+    return changedStubs + filesToReparse.size();
+  }
+
+  /**
+   * @return name of the XS module, built into the binary with {@code relativePath} in the library root, e.g. {@code List::Util} for
+   * {@code auto/List/Util/Util.so}
+   */
+  static @Nullable String getModuleName(@NotNull String relativePath) {
+    int nameIndex = relativePath.lastIndexOf('/');
+    if (!relativePath.startsWith(AUTO_DIRECTORY) || nameIndex <= AUTO_DIRECTORY.length()) {
+      return null;
+    }
+    String modulePath = relativePath.substring(AUTO_DIRECTORY.length(), nameIndex);
+    return StringUtil.replace(modulePath, "/", PerlPackageUtil.NAMESPACE_SEPARATOR);
+  }
+
+  private static @NotNull String getStubFileName(@NotNull String moduleName) {
+    return StringUtil.replace(moduleName, PerlPackageUtil.NAMESPACE_SEPARATOR, "-") + ".pm";
+  }
+
+  /**
+   * @return true iff {@code psiFile} is a stub with deparsed XSubs
+   */
+  public static boolean isDeparsedFile(@NotNull PsiFile psiFile) {
+    if (StringUtil.equals(psiFile.getName(), DEPARSED_FILE_NAME)) {
+      return true;
+    }
+    VirtualFile virtualFile = psiFile.getViewProvider().getVirtualFile();
+    VirtualFile parent = virtualFile.getParent();
+    return parent != null && StringUtil.equals(parent.getName(), DEPARSED_DIRECTORY_NAME);
   }
 
   private void showNotification(@NotNull String title,
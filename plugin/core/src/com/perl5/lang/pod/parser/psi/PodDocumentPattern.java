@@ -46,24 +46,33 @@ public class PodDocumentPattern {
   protected boolean acceptsItem(@NotNull PsiElement element) {
     if (getItemPattern() != null && element instanceof PodSectionItem) {
       String title = ((PodTitledSection)element).getTitleText();
-      if (StringUtil.isNotEmpty(title)) {
-        LOG.debug("Checking pod ", element, " with text ", title);
-        return matches(title, getItemPattern(), myExactMatch);
-      }
+      LOG.debug("Checking pod ", element, " with text ", title);
+      return acceptsItemTitle(title);
     }
     return false;
   }
 
+  /**
+   * @return true iff item with {@code title} matches this pattern
+   */
+  public boolean acceptsItemTitle(@Nullable String title) {
+    return getItemPattern() != null && StringUtil.isNotEmpty(title) && matches(title, getItemPattern(), myExactMatch);
+  }
+
   protected boolean acceptsHeading(@NotNull PsiElement element) {
     if (getHeadingPattern() != null && element instanceof PodTitledSection && ((PodTitledSection)element).isHeading()) {
-      String title = ((PodTitledSection)element).getTitleText();
-      if (StringUtil.isNotEmpty(title)) {
-        return matches(title, getHeadingPattern(), myExactMatch);
-      }
+      return acceptsHeadingTitle(((PodTitledSection)element).getTitleText());
     }
     return false;
   }
 
+  /**
+   * @return true iff heading with {@code title} matches this pattern
+   */
+  public boolean acceptsHeadingTitle(@Nullable String title) {
+    return getHeadingPattern() != null && StringUtil.isNotEmpty(title) && matches(title, getHeadingPattern(), myExactMatch);
+  }
+
   @Contract(pure = true)
   public @Nullable String getItemPattern() {
     return myItemPattern;
@@ -76,11 +85,18 @@ public class PodDocumentPattern {
 
   protected boolean acceptsIndex(@NotNull PsiElement element) {
     if (getIndexKey() != null && element instanceof PodFormatterX) {
-      return getIndexKey().equals(((PodFormatterX)element).getTitleText());
+      return acceptsIndexTitle(((PodFormatterX)element).getTitleText());
     }
     return false;
   }
 
+  /**
+   * @return true iff {@code X<>} index entry with {@code title} matches this pattern
+   */
+  public boolean acceptsIndexTitle(@Nullable String title) {
+    return getIndexKey() != null && getIndexKey().equals(title);
+  }
+
   @Contract(pure = true)
   public @Nullable String getHeadingPattern() {
     return myHeadingPattern;
@@ -0,0 +1,136 @@
+/*
+ * Copyright 2015-2021 Alexandr Evstigneev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.perl5.lang.pod.parser.psi.util;
+
+import com.intellij.openapi.util.text.StringUtil;
+import com.intellij.psi.PsiElement;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.SmartPointerManager;
+import com.intellij.psi.SmartPsiElementPointer;
+import com.intellij.psi.util.CachedValueProvider;
+import com.intellij.psi.util.CachedValuesManager;
+import com.perl5.lang.perl.psi.PsiStubsAwareRecursiveVisitor;
+import com.perl5.lang.pod.parser.psi.PodCompositeElement;
+import com.perl5.lang.pod.parser.psi.PodDocumentPattern;
+import com.perl5.lang.pod.parser.psi.PodTitledSection;
+import com.perl5.lang.pod.parser.psi.mixin.PodFormatterX;
+import com.perl5.lang.pod.parser.psi.mixin.PodSectionItem;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.*;
+import java.util.function.Predicate;
+
+/**
+ * Anchors of the POD file: items, headings and {@code X<>} index entries by their titles. Built with a single pass over the stubs tree
+ * and cached until the file modification, so documentation lookups in large files, like {@code perlfunc.pod}, do not traverse them on
+ * each request. Anchors are kept as smart pointers, so the index does not keep the file tree loaded.
+ */
+public final class PodAnchorsIndex {
+  /**
+   * Pointers to the anchor elements in the order of traversal
+   */
+  private final @NotNull List<SmartPsiElementPointer<PodCompositeElement>> myElements = new ArrayList<>();
+  /**
+   * Titles to the position of the first element with such title in {@link #myElements}
+   */
+  private final @NotNull NavigableMap<String, Integer> myItems = new TreeMap<>();
+  private final @NotNull NavigableMap<String, Integer> myHeadings = new TreeMap<>();
+  private final @NotNull Map<String, Integer> myIndexEntries = new HashMap<>();
+
+  private PodAnchorsIndex(@NotNull PsiFile podFile) {
+    SmartPointerManager pointerManager = SmartPointerManager.getInstance(podFile.getProject());
+    podFile.accept(new PsiStubsAwareRecursiveVisitor() {
+      @Override
+      public void visitElement(@NotNull PsiElement element) {
+        if (element instanceof PodFormatterX) {
+          addAnchor(myIndexEntries, (PodFormatterX)element, pointerManager, podFile);
+        }
+        else if (element instanceof PodSectionItem) {
+          addAnchor(myItems, (PodSectionItem)element, pointerManager, podFile);
+        }
+        else if (element instanceof PodTitledSection && ((PodTitledSection)element).isHeading()) {
+          addAnchor(myHeadings, (PodTitledSection)element, pointerManager, podFile);
+        }
+        super.visitElement(element);
+      }
+    });
+  }
+
+  private void addAnchor(@NotNull Map<String, Integer> anchorsMap,
+                         @NotNull PodTitledSection element,
+                         @NotNull SmartPointerManager pointerManager,
+                         @NotNull PsiFile podFile) {
+    String title = element.getTitleText();
+    if (StringUtil.isNotEmpty(title) && !anchorsMap.containsKey(title)) {
+      anchorsMap.put(title, myElements.size());
+      myElements.add(pointerManager.<PodCompositeElement>createSmartPsiElementPointer(element, podFile));
+    }
+  }
+
+  /**
+   * @return first element, matching the {@code pattern} in the order of the file traversal, or null if there is no such element
+   */
+  public @Nullable PodCompositeElement find(@NotNull PodDocumentPattern pattern) {
+    int position = Integer.MAX_VALUE;
+    String indexKey = pattern.getIndexKey();
+    if (indexKey != null) {
+      Integer indexPosition = myIndexEntries.get(indexKey);
+      if (indexPosition != null) {
+        position = indexPosition;
+      }
+    }
+    String itemPattern = pattern.getItemPattern();
+    if (itemPattern != null) {
+      position = Math.min(position, findByPrefix(myItems, itemPattern, pattern::acceptsItemTitle));
+    }
+    String headingPattern = pattern.getHeadingPattern();
+    if (headingPattern != null) {
+      position = Math.min(position, findByPrefix(myHeadings, headingPattern, pattern::acceptsHeadingTitle));
+    }
+    return position < myElements.size() ? myElements.get(position).getElement() : null;
+  }
+
+  /**
+   * Patterns are matching titles prefixes, so only titles starting with the {@code prefix} are checked
+   *
+   * @return minimal position of the title, accepted by the {@code predicate}
+   */
+  private static int findByPrefix(@NotNull NavigableMap<String, Integer> anchorsMap,
+                                  @NotNull String prefix,
+                                  @NotNull Predicate<String> predicate) {
+    int result = Integer.MAX_VALUE;
+    for (Map.Entry<String, Integer> entry : anchorsMap.tailMap(prefix, true).entrySet()) {
+      String title = entry.getKey();
+      if (!title.startsWith(prefix)) {
+        break;
+      }
+      if (entry.getValue() < result && predicate.test(title)) {
+        result = entry.getValue();
+      }
+    }
+    return result;
+  }
+
+  /**
+   * @return cached anchors index for the {@code podFile}
+   */
+  public static @NotNull PodAnchorsIndex getInstance(@NotNull PsiFile podFile) {
+    return CachedValuesManager.getCachedValue(
+      podFile, () -> CachedValueProvider.Result.create(new PodAnchorsIndex(podFile), podFile));
+  }
+}
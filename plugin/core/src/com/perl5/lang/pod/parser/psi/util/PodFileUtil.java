@@ -27,7 +27,7 @@ import com.intellij.psi.search.GlobalSearchScope;
 import com.intellij.psi.util.PsiUtilCore;
 import com.intellij.util.Processor;
 import com.perl5.lang.perl.fileTypes.PerlFileTypePackage;
-import com.perl5.lang.perl.idea.project.PerlProjectManager;
+import com.perl5.lang.perl.idea.project.PerlIncPathIndex;
 import com.perl5.lang.perl.util.PerlPackageUtil;
 import com.perl5.lang.pod.PodLanguage;
 import com.perl5.lang.pod.filetypes.PodFileType;
@@ -144,20 +144,11 @@ public class PodFileUtil {
       if (fileId.contains(PerlPackageUtil.NAMESPACE_SEPARATOR) ||
           !StringUtil.startsWith(fileId, "perl")) // can be Foo/Bar.pod or Foo/Bar.pm
       {
+        // pod files are processed first, because they are preferred over the documentation in packages
         final PsiManager psiManager = PsiManager.getInstance(project);
-        String podRelativePath = PodFileUtil.getFilenameFromPackage(fileId);
-        String packageRelativePath = PerlPackageUtil.getPackagePathByName(fileId);
-
-        for (VirtualFile classRoot : PerlProjectManager.getInstance(project).getAllLibraryRoots()) {
-          VirtualFile targetVirtualFile = classRoot.findFileByRelativePath(podRelativePath);
-          if (targetVirtualFile != null) {
-            if (!processor.process(psiManager.findFile(targetVirtualFile))) {
-              return;
-            }
-          }
-
-          targetVirtualFile = classRoot.findFileByRelativePath(packageRelativePath);
-          if (targetVirtualFile != null) {
+        PerlIncPathIndex incPathIndex = PerlIncPathIndex.getInstance(project);
+        for (String relativePath : Arrays.asList(getFilenameFromPackage(fileId), PerlPackageUtil.getPackagePathByName(fileId))) {
+          for (VirtualFile targetVirtualFile : incPathIndex.getFiles(relativePath)) {
             if (!processor.process(psiManager.findFile(targetVirtualFile))) {
               return;
             }
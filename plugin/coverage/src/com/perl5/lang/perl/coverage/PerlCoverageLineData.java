@@ -0,0 +1,46 @@
+/*
+ * Copyright 2015-2021 Alexandr Evstigneev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.perl5.lang.perl.coverage;
+
+import com.intellij.rt.coverage.data.LineCoverage;
+import com.intellij.rt.coverage.data.LineData;
+
+/**
+ * Line data with status computed once from the {@code Devel::Cover} statement counters
+ */
+class PerlCoverageLineData extends LineData {
+  private final byte myStatus;
+
+  PerlCoverageLineData(int line, int statements, int covered) {
+    super(line, null);
+    setHits(covered);
+    if (covered == 0) {
+      myStatus = LineCoverage.NONE;
+    }
+    else if (covered < statements) {
+      myStatus = LineCoverage.PARTIAL;
+    }
+    else {
+      myStatus = LineCoverage.FULL;
+    }
+  }
+
+  @Override
+  public int getStatus() {
+    return myStatus;
+  }
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright 2015-2021 Alexandr Evstigneev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.perl5.lang.perl.coverage;
+
+import com.intellij.openapi.progress.ProgressManager;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.Reader;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reader over the chunks of process output, passed from the process handler thread. Queue is bounded, so process output is read no faster
+ * than it is consumed. Reading thread checks for cancellation while waiting for the output.
+ */
+class PerlCoverageOutputReader extends Reader {
+  private static final int QUEUE_SIZE = 1024;
+  @SuppressWarnings("StringOperationCanBeSimplified")
+  private static final String END_OF_OUTPUT = new String();
+
+  private final BlockingQueue<String> myChunks = new ArrayBlockingQueue<>(QUEUE_SIZE);
+  private volatile boolean myIsClosed = false;
+  private @NotNull String myCurrentChunk = "";
+  private int myOffset = 0;
+
+  /**
+   * Invoked from the process handler thread. Blocks if the queue is full, unless reader is closed
+   */
+  void addChunk(@NotNull String text) {
+    putChunk(text);
+  }
+
+  /**
+   * Invoked from the process handler thread on process termination
+   */
+  void finish() {
+    putChunk(END_OF_OUTPUT);
+  }
+
+  private void putChunk(@NotNull String text) {
+    try {
+      while (!myIsClosed) {
+        if (myChunks.offer(text, 10, TimeUnit.MILLISECONDS)) {
+          return;
+        }
+      }
+    }
+    catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  @Override
+  public int read(char @NotNull [] buffer, int offset, int length) throws IOException {
+    if (length == 0) {
+      return 0;
+    }
+    while (myOffset >= myCurrentChunk.length()) {
+      if (myCurrentChunk == END_OF_OUTPUT) {
+        return -1;
+      }
+      ProgressManager.checkCanceled();
+      try {
+        String nextChunk = myChunks.poll(10, TimeUnit.MILLISECONDS);
+        if (nextChunk != null) {
+          myCurrentChunk = nextChunk;
+          myOffset = 0;
+        }
+      }
+      catch (InterruptedException e) {
+        throw new InterruptedIOException(e.getMessage());
+      }
+    }
+    int charsToRead = Math.min(length, myCurrentChunk.length() - myOffset);
+    myCurrentChunk.getChars(myOffset, myOffset + charsToRead, buffer, offset);
+    myOffset += charsToRead;
+    return charsToRead;
+  }
+
+  /**
+   * Unblocks process handler thread, remaining output is dropped
+   */
+  @Override
+  public void close() {
+    myIsClosed = true;
+    myChunks.clear();
+  }
+}
@@ -18,26 +18,32 @@ package com.perl5.lang.perl.coverage;
 
 import com.google.gson.Gson;
 import com.google.gson.JsonParseException;
+import com.google.gson.stream.JsonReader;
 import com.intellij.coverage.CoverageEngine;
 import com.intellij.coverage.CoverageRunner;
 import com.intellij.coverage.CoverageSuite;
 import com.intellij.execution.ExecutionException;
-import com.intellij.execution.process.ProcessOutput;
+import com.intellij.execution.process.BaseProcessHandler;
+import com.intellij.execution.process.ProcessAdapter;
+import com.intellij.execution.process.ProcessEvent;
+import com.intellij.execution.process.ProcessOutputType;
 import com.intellij.notification.Notification;
 import com.intellij.notification.NotificationType;
 import com.intellij.notification.Notifications;
 import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.application.ReadAction;
 import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.progress.ProcessCanceledException;
+import com.intellij.openapi.progress.ProgressIndicator;
 import com.intellij.openapi.progress.ProgressManager;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.projectRoots.Sdk;
+import com.intellij.openapi.util.Key;
 import com.intellij.openapi.util.Ref;
 import com.intellij.openapi.util.io.FileUtil;
 import com.intellij.openapi.util.text.StringUtil;
 import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.rt.coverage.data.ClassData;
-import com.intellij.rt.coverage.data.LineCoverage;
 import com.intellij.rt.coverage.data.LineData;
 import com.intellij.rt.coverage.data.ProjectData;
 import com.perl5.PerlBundle;
@@ -48,15 +54,18 @@ import com.perl5.lang.perl.util.PerlRunUtil;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.io.EOFException;
 import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
 import java.util.Collections;
 import java.util.Map;
-import java.util.Set;
 
 public class PerlCoverageRunner extends CoverageRunner {
   private static final String COVER = "cover";
   private static final String COVER_LIB = "Devel::Cover";
   private static final Logger LOG = Logger.getInstance(PerlCoverageRunner.class);
+  private static final int MAX_ERROR_LENGTH = 64 * 1024;
 
   @Override
   public ProjectData loadCoverageData(@NotNull File sessionDataFile, @Nullable CoverageSuite baseCoverageSuite) {
@@ -132,81 +141,155 @@ public class PerlCoverageRunner extends CoverageRunner {
       return null;
     }
 
+    LOG.info("Loading coverage by: " + perlCommandLine.getCommandLineString());
+    PerlHostData<?, ?> hostData = PerlHostData.notNullFrom(effectiveSdk);
+    StringBuilder errorOutput = new StringBuilder();
+    BaseProcessHandler<?> processHandler;
     try {
-      LOG.info("Loading coverage by: " + perlCommandLine.getCommandLineString());
-      ProcessOutput output = PerlHostData.execAndGetOutput(perlCommandLine);
-      if (output.getExitCode() != 0) {
-        String errorMessage = output.getStderr();
-        if (StringUtil.isEmpty(errorMessage)) {
-          errorMessage = output.getStdout();
-        }
+      processHandler = PerlHostData.createProcessHandler(perlCommandLine);
+    }
+    catch (ExecutionException e) {
+      LOG.warn("Error loading coverage", e);
+      showError(project, e.getMessage());
+      return null;
+    }
 
-        if (!StringUtil.isEmpty(errorMessage)) {
-          showError(project, errorMessage);
-        }
-        return null;
-      }
-      String stdout = output.getStdout();
-      if (StringUtil.isEmpty(stdout)) {
-        return null;
-      }
+    ProjectData projectData = null;
+    Exception parsingException = null;
+    try {
+      projectData = readCoverageData(processHandler, hostData, errorOutput);
+    }
+    catch (IOException | JsonParseException | IllegalStateException e) {
+      parsingException = e;
+    }
+    catch (ProcessCanceledException e) {
+      LOG.debug("Coverage loading cancelled");
+      throw e;
+    }
 
-      try {
-        PerlFileCoverageData[] filesData = new Gson().fromJson(stdout, PerlFileCoverageData[].class);
-        if (filesData != null) {
-          return parsePerlFileData(PerlHostData.notNullFrom(effectiveSdk), filesData);
+    processHandler.waitFor();
+    String errorMessage;
+    synchronized (errorOutput) {
+      errorMessage = errorOutput.toString();
+    }
+    if (parsingException != null) {
+      LOG.warn("Error parsing JSON", parsingException);
+      showError(project, StringUtil.isEmpty(errorMessage) ? StringUtil.notNullize(parsingException.getMessage()) : errorMessage);
+      return null;
+    }
+    Integer exitCode = processHandler.getExitCode();
+    if (exitCode != null && exitCode != 0) {
+      showError(project, StringUtil.isEmpty(errorMessage) ? "Exit code: " + exitCode : errorMessage);
+      return null;
+    }
+    return projectData;
+  }
+
+  /**
+   * Starts {@code processHandler} and parses its output while it is running. Process is destroyed if the output can't be parsed or
+   * loading is cancelled, so it won't be left blocked on writing the rest of the report.
+   *
+   * @param errorOutput collects first {@link #MAX_ERROR_LENGTH} characters of the process stderr
+   */
+  static @Nullable ProjectData readCoverageData(@NotNull BaseProcessHandler<?> processHandler,
+                                                @NotNull PerlHostData<?, ?> hostData,
+                                                @NotNull StringBuilder errorOutput) throws IOException {
+    PerlCoverageOutputReader outputReader = new PerlCoverageOutputReader();
+    processHandler.addProcessListener(new ProcessAdapter() {
+      @Override
+      public void onTextAvailable(@NotNull ProcessEvent event, @NotNull Key outputType) {
+        if (ProcessOutputType.isStdout(outputType)) {
+          outputReader.addChunk(event.getText());
+        }
+        else if (ProcessOutputType.isStderr(outputType)) {
+          synchronized (errorOutput) {
+            if (errorOutput.length() < MAX_ERROR_LENGTH) {
+              errorOutput.append(event.getText());
+            }
+          }
         }
       }
-      catch (JsonParseException e) {
-        LOG.warn("Error parsing JSON", e);
-        showError(project, e.getMessage());
+
+      @Override
+      public void processTerminated(@NotNull ProcessEvent event) {
+        outputReader.finish();
       }
+    });
+
+    boolean isParsed = false;
+    try {
+      processHandler.startNotify();
+      ProjectData projectData = parsePerlFileData(hostData, outputReader);
+      isParsed = true;
+      return projectData;
     }
-    catch (ExecutionException e) {
-      LOG.warn("Error loading coverage", e);
-      showError(project, e.getMessage());
+    finally {
+      outputReader.close();
+      if (!isParsed) {
+        processHandler.destroyProcess();
+      }
     }
-    return null;
   }
 
-  private static @NotNull ProjectData parsePerlFileData(@NotNull PerlHostData<?, ?> hostData, @NotNull PerlFileCoverageData[] filesData) {
+  /**
+   * Reads {@code Devel::Cover} report file by file, reporting progress and checking for cancellation between files
+   */
+  private static @Nullable ProjectData parsePerlFileData(@NotNull PerlHostData<?, ?> hostData, @NotNull Reader reader) throws IOException {
+    JsonReader jsonReader = new JsonReader(reader);
+    try {
+      jsonReader.peek();
+    }
+    catch (EOFException e) {
+      LOG.debug("Empty coverage report");
+      return null;
+    }
+    Gson gson = new Gson();
+    ProgressIndicator indicator = ProgressManager.getInstance().getProgressIndicator();
     ProjectData projectData = new ProjectData();
-    for (PerlFileCoverageData perlFileCoverageData : filesData) {
-      if (StringUtil.isEmpty(perlFileCoverageData.name) || perlFileCoverageData.lines == null) {
-        LOG.warn("Name or lines is null in " + perlFileCoverageData);
+    int filesCounter = 0;
+    jsonReader.beginArray();
+    while (jsonReader.hasNext()) {
+      ProgressManager.checkCanceled();
+      PerlFileCoverageData perlFileCoverageData = gson.fromJson(jsonReader, PerlFileCoverageData.class);
+      if (perlFileCoverageData == null) {
         continue;
       }
-      String localPath = hostData.getLocalPath(perlFileCoverageData.name);
-      if (localPath == null) {
-        continue;
-      }
-      ClassData classData = projectData.getOrCreateClassData(FileUtil.toSystemIndependentName(localPath));
-      Set<Map.Entry<Integer, PerlLineData>> linesEntries = perlFileCoverageData.lines.entrySet();
-      Integer maxLineNumber = linesEntries.stream().map(Map.Entry::getKey).max(Integer::compare).orElse(0);
-      LineData[] linesData = new LineData[maxLineNumber + 1];
-      for (Map.Entry<Integer, PerlLineData> lineEntry : linesEntries) {
-        PerlLineData perlLineData = lineEntry.getValue();
-        final Integer lineNumber = lineEntry.getKey();
-        LineData lineData = new LineData(lineNumber, null) {
-          @Override
-          public int getStatus() {
-            if (perlLineData.cover == 0) {
-              return LineCoverage.NONE;
-            }
-            else if (perlLineData.cover < perlLineData.data) {
-              return LineCoverage.PARTIAL;
-            }
-            return LineCoverage.FULL;
-          }
-        };
-        lineData.setHits(perlLineData.cover);
-        linesData[lineNumber] = lineData;
+      filesCounter++;
+      if (indicator != null) {
+        indicator.setText2(
+          PerlBundle.message("perl.coverage.loading.file", filesCounter, StringUtil.notNullize(perlFileCoverageData.name)));
       }
+      addFileData(projectData, hostData, perlFileCoverageData);
+    }
+    jsonReader.endArray();
+    LOG.debug("Loaded coverage for files: ", filesCounter);
+    return projectData;
+  }
 
-      classData.setLines(linesData);
+  private static void addFileData(@NotNull ProjectData projectData,
+                                  @NotNull PerlHostData<?, ?> hostData,
+                                  @NotNull PerlFileCoverageData perlFileCoverageData) {
+    if (StringUtil.isEmpty(perlFileCoverageData.name) || perlFileCoverageData.lines == null) {
+      LOG.warn("Name or lines is null in " + perlFileCoverageData);
+      return;
+    }
+    String localPath = hostData.getLocalPath(perlFileCoverageData.name);
+    if (localPath == null) {
+      return;
+    }
+    ClassData classData = projectData.getOrCreateClassData(FileUtil.toSystemIndependentName(localPath));
+    int maxLineNumber = 0;
+    for (Integer lineNumber : perlFileCoverageData.lines.keySet()) {
+      maxLineNumber = Math.max(maxLineNumber, lineNumber);
+    }
+    LineData[] linesData = new LineData[maxLineNumber + 1];
+    for (Map.Entry<Integer, PerlLineData> lineEntry : perlFileCoverageData.lines.entrySet()) {
+      PerlLineData perlLineData = lineEntry.getValue();
+      int lineNumber = lineEntry.getKey();
+      linesData[lineNumber] = new PerlCoverageLineData(lineNumber, perlLineData.data, perlLineData.cover);
     }
 
-    return projectData;
+    classData.setLines(linesData);
   }
 
   private static void showError(@NotNull Project project, @NotNull String message) {
@@ -42,7 +42,6 @@ import com.perl5.lang.perl.debugger.ui.PerlScriptsPanel;
 import com.perl5.lang.perl.idea.project.PerlProjectManager;
 import com.perl5.lang.perl.idea.run.debugger.PerlDebugOptions;
 import com.perl5.lang.perl.util.PerlRunUtil;
-import gnu.trove.TByteArrayList;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import org.jetbrains.annotations.PropertyKey;
@@ -189,28 +188,16 @@ public class PerlDebugThread extends Thread {
       myOutputStream = mySocket.getOutputStream();
       myInputStream = mySocket.getInputStream();
 
-      TByteArrayList response = new TByteArrayList();
+      PerlDebuggingFrameReader frameReader = new PerlDebuggingFrameReader(myInputStream);
 
       while (!myStop) {
-        response.clear();
-
         LOG.debug("Reading data from the debugger");
 
-        // reading bytes
-        while (myInputStream != null) {
-          int dataByte = myInputStream.read();
-          if (dataByte == '\n') {
-            break;
-          }
-          else if (dataByte == -1) {
-            return true;
-          }
-          else {
-            response.add((byte)dataByte);
-          }
+        if (!frameReader.readFrame()) {
+          return true;
         }
 
-        processResponse(response);
+        processResponse(frameReader);
       }
     }
     catch (Exception e) {
@@ -235,12 +222,13 @@ public class PerlDebugThread extends Thread {
     }
   }
 
-  private void processResponse(TByteArrayList responseBytes) {
-    final String response = new String(responseBytes.toNativeArray(), StandardCharsets.UTF_8);
-    LOG.debug("Got response: ", response);
+  private void processResponse(@NotNull PerlDebuggingFrameReader frameReader) {
+    if (LOG.isDebugEnabled()) {
+      LOG.debug("Got response: ", frameReader.getFrameText());
+    }
 
     try {
-      final PerlDebuggingEvent newEvent = myGson.fromJson(response, PerlDebuggingEvent.class);
+      final PerlDebuggingEvent newEvent = myGson.fromJson(frameReader.getFrameReader(), PerlDebuggingEvent.class);
 
       if (newEvent != null) {
         if (newEvent instanceof PerlDebuggingEventReady) {
@@ -278,7 +266,7 @@ public class PerlDebugThread extends Thread {
       }
     }
     catch (JsonSyntaxException e) {
-      LOG.error("Error parsing JSON response: " + response, e);
+      LOG.error("Error parsing JSON response: " + frameReader.getFrameText(), e);
       print("perl.debug.error.parsing.response");
       setStop();
     }
@@ -0,0 +1,139 @@
+/*
+ * Copyright 2015-2021 Alexandr Evstigneev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.perl5.lang.perl.debugger.protocol;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.TestOnly;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Reads newline-terminated frames of the debugger protocol. Data is read in blocks into a single reusable buffer, frames are exposed
+ * as regions of this buffer and valid until the next {@link #readFrame()} invocation. Buffer grows to fit large frames and shrinks back
+ * to the initial size when pending data fits into it.
+ */
+public class PerlDebuggingFrameReader {
+  private static final int INITIAL_BUFFER_SIZE = 64 * 1024;
+
+  private final @NotNull InputStream myInputStream;
+  private final int myInitialBufferSize;
+  private byte[] myBuffer;
+  /**
+   * Start of the data not consumed yet
+   */
+  private int myDataStart = 0;
+  /**
+   * End of the data read from the stream
+   */
+  private int myDataEnd = 0;
+  /**
+   * Offset to continue search for the frame terminator from
+   */
+  private int myScanOffset = 0;
+  private int myFrameStart = 0;
+  private int myFrameLength = 0;
+
+  public PerlDebuggingFrameReader(@NotNull InputStream inputStream) {
+    this(inputStream, INITIAL_BUFFER_SIZE);
+  }
+
+  @TestOnly
+  PerlDebuggingFrameReader(@NotNull InputStream inputStream, int initialBufferSize) {
+    myInputStream = inputStream;
+    myInitialBufferSize = initialBufferSize;
+    myBuffer = new byte[initialBufferSize];
+  }
+
+  /**
+   * Reads next frame from the stream, blocking if necessary
+   *
+   * @return false iff end of stream has been reached before frame terminator
+   */
+  public boolean readFrame() throws IOException {
+    shrinkBuffer();
+    while (true) {
+      for (int i = myScanOffset; i < myDataEnd; i++) {
+        if (myBuffer[i] == '\n') {
+          myFrameStart = myDataStart;
+          myFrameLength = i - myDataStart;
+          myDataStart = myScanOffset = i + 1;
+          return true;
+        }
+      }
+      myScanOffset = myDataEnd;
+
+      if (myDataEnd == myBuffer.length) {
+        if (myDataStart > 0) {
+          int dataLength = myDataEnd - myDataStart;
+          System.arraycopy(myBuffer, myDataStart, myBuffer, 0, dataLength);
+          myDataEnd = myScanOffset = dataLength;
+          myDataStart = 0;
+        }
+        else {
+          myBuffer = Arrays.copyOf(myBuffer, myBuffer.length * 2);
+        }
+      }
+
+      int bytesRead = myInputStream.read(myBuffer, myDataEnd, myBuffer.length - myDataEnd);
+      if (bytesRead < 0) {
+        return false;
+      }
+      myDataEnd += bytesRead;
+    }
+  }
+
+  /**
+   * Replaces the buffer, grown for a large frame, with the initial-sized one, if pending data fits into it
+   */
+  private void shrinkBuffer() {
+    int dataLength = myDataEnd - myDataStart;
+    if (myBuffer.length == myInitialBufferSize || dataLength >= myInitialBufferSize) {
+      return;
+    }
+    byte[] newBuffer = new byte[myInitialBufferSize];
+    System.arraycopy(myBuffer, myDataStart, newBuffer, 0, dataLength);
+    myBuffer = newBuffer;
+    myScanOffset -= myDataStart;
+    myDataEnd = dataLength;
+    myDataStart = 0;
+  }
+
+  /**
+   * @return reader decoding current frame right from the buffer
+   */
+  public @NotNull Reader getFrameReader() {
+    return new InputStreamReader(new ByteArrayInputStream(myBuffer, myFrameStart, myFrameLength), StandardCharsets.UTF_8);
+  }
+
+  /**
+   * @return current frame as a string, intended for logging and error reporting
+   */
+  public @NotNull String getFrameText() {
+    return new String(myBuffer, myFrameStart, myFrameLength, StandardCharsets.UTF_8);
+  }
+
+  @TestOnly
+  int getBufferSize() {
+    return myBuffer.length;
+  }
+}
@@ -33,6 +33,7 @@ import com.intellij.openapi.util.text.StringUtil;
 import com.intellij.openapi.vfs.VfsUtil;
 import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.util.ArrayUtil;
+import com.intellij.util.containers.ContainerUtil;
 import com.perl5.lang.perl.idea.execution.PerlCommandLine;
 import com.perl5.lang.perl.idea.project.PerlProjectManager;
 import com.perl5.lang.perl.idea.sdk.host.PerlExecutionException;
@@ -40,11 +41,13 @@ import com.perl5.lang.perl.idea.sdk.host.PerlFileDescriptor;
 import com.perl5.lang.perl.idea.sdk.host.PerlHostData;
 import com.perl5.lang.perl.idea.sdk.host.PerlHostHandler;
 import com.perl5.lang.perl.util.PerlPluginUtil;
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveInputStream;
 import org.jetbrains.annotations.NotNull;
 
-import java.io.File;
-import java.io.IOException;
+import java.io.*;
 import java.util.*;
+import java.util.concurrent.Future;
 import java.util.stream.Collectors;
 
 /**
@@ -79,6 +82,11 @@ class PerlDockerAdapter {
   private static final String EXPOSE_PORT = "--expose";
   private static final String PUBLISH_PORT = "-p";
   private static final String WORKING_DIRECTORY = "-w";
+  private static final String SHELL = "sh";
+  private static final String WITH_SCRIPT = "-c";
+  private static final String LIST_FILES = "ls";
+  private static final String WITH_SIZES_DEREFERENCED = "-LAs";
+  private static final String CLASSIFIED = "--classify";
   static final String DOCKER_EXECUTABLE = SystemInfo.isWindows ? "docker.exe" : "docker";
 
   private final @NotNull PerlDockerData myData;
@@ -125,6 +133,153 @@ class PerlDockerAdapter {
     }
   }
 
+  /**
+   * Copies {@code remotePath} from the container to the {@code localPath} in a single exec, streaming it as a tar archive and unpacking
+   * locally. Missing {@code remotePath} is silently ignored, like in {@link #copyRemote(String, String, String)}.
+   *
+   * @param extensions if not empty, only files with these extensions are copied
+   */
+  public void copyRemoteArchive(@NotNull String containerName,
+                                @NotNull String remotePath,
+                                @NotNull String localPath,
+                                @NotNull Collection<String> extensions) throws ExecutionException {
+    File remoteFile = new File(remotePath);
+    String remoteParent = remoteFile.getParent();
+    if (remoteParent == null) {
+      throw new ExecutionException("Unable to copy root path from " + containerName);
+    }
+    File localPathFile = new File(localPath);
+    FileUtil.createDirectory(localPathFile);
+    File localParent = localPathFile.getParentFile();
+
+    StringBuilder script = new StringBuilder("[ -e \"$1/$2\" ] || exit 0; cd \"$1\" && ");
+    if (extensions.isEmpty()) {
+      script.append("tar -chf - \"$2\"");
+    }
+    else {
+      script.append("find -L \"$2\" -type f ").append(getNamesFilter(extensions)).append(" | tar -chf - -T -");
+    }
+    streamArchive(containerName, remotePath, localParent, script.toString(),
+                  FileUtil.toSystemIndependentName(remoteParent), remoteFile.getName());
+  }
+
+  /**
+   * Copies files with {@code relativePaths} from the {@code remoteRoot} in the container to the {@code localRoot} in a single exec.
+   * Missing files are silently ignored.
+   *
+   * @param extensions if not empty, only files with these extensions are copied
+   */
+  public void copyRemoteFiles(@NotNull String containerName,
+                              @NotNull String remoteRoot,
+                              @NotNull String localRoot,
+                              @NotNull List<String> relativePaths,
+                              @NotNull Collection<String> extensions) throws ExecutionException {
+    File localRootFile = new File(localRoot);
+    FileUtil.createDirectory(localRootFile);
+    String script = "cd \"$1\" && shift && find -L \"$@\" -type f " + getNamesFilter(extensions) + " 2>/dev/null | tar -chf - -T -";
+    List<String> arguments = new ArrayList<>();
+    arguments.add(remoteRoot);
+    // prefixed to avoid treating paths as find options
+    relativePaths.forEach(it -> arguments.add("./" + it));
+    streamArchive(containerName, remoteRoot, localRootFile, script, ArrayUtil.toStringArray(arguments));
+  }
+
+  /**
+   * @return {@code find} predicate for files with {@code extensions} or empty string if {@code extensions} are empty
+   */
+  private static @NotNull String getNamesFilter(@NotNull Collection<String> extensions) {
+    if (extensions.isEmpty()) {
+      return "";
+    }
+    return "\\( " + extensions.stream().map(it -> "-name '*." + it + "'").collect(Collectors.joining(" -o ")) + " \\)";
+  }
+
+  /**
+   * Runs the shell {@code script} with {@code arguments} in the container and unpacks tar archive from its output to the
+   * {@code targetDir}
+   */
+  private void streamArchive(@NotNull String containerName,
+                             @NotNull String remotePath,
+                             @NotNull File targetDir,
+                             @NotNull String script,
+                             String @NotNull ... arguments) throws ExecutionException {
+    PerlCommandLine commandLine = baseCommandLine().withParameters(EXEC, containerName, SHELL, WITH_SCRIPT, script, SHELL)
+      .withParameters(arguments);
+    LOG.info("Streaming " + containerName + ":" + remotePath + " => " + targetDir);
+
+    Process process = commandLine.createProcess();
+    Future<String> stderr = ApplicationManager.getApplication().executeOnPooledThread(
+      () -> FileUtil.loadTextAndClose(new InputStreamReader(process.getErrorStream(), commandLine.getCharset())));
+    int filesNumber;
+    try (InputStream stdout = process.getInputStream()) {
+      filesNumber = unpackTar(stdout, targetDir);
+    }
+    catch (IOException e) {
+      process.destroy();
+      throw new ExecutionException("Error unpacking " + remotePath + " from " + containerName, e);
+    }
+    try {
+      int exitCode = process.waitFor();
+      if (exitCode != 0) {
+        throw new ExecutionException("Error streaming " + remotePath + " from " + containerName + "; exit code: " + exitCode + "; " +
+                                     stderr.get());
+      }
+    }
+    catch (InterruptedException | java.util.concurrent.ExecutionException e) {
+      throw new ExecutionException(e);
+    }
+    LOG.info("Unpacked " + filesNumber + " files from " + containerName + ":" + remotePath);
+  }
+
+  /**
+   * Unpacks tar archive from {@code inputStream} to the {@code targetDir}, ignoring entries pointing outside of it. Links are unpacked as
+   * copies of their targets, archive is expected to contain them.
+   *
+   * @return number of unpacked files
+   * @throws IOException if link target is not in the archive or outside of the {@code targetDir}
+   */
+  static int unpackTar(@NotNull InputStream inputStream, @NotNull File targetDir) throws IOException {
+    int filesNumber = 0;
+    String targetPath = targetDir.getCanonicalPath() + File.separator;
+    TarArchiveInputStream tarStream = new TarArchiveInputStream(new BufferedInputStream(inputStream));
+    TarArchiveEntry entry;
+    while ((entry = tarStream.getNextTarEntry()) != null) {
+      File targetFile = new File(targetDir, entry.getName());
+      if (!targetFile.getCanonicalPath().startsWith(targetPath)) {
+        LOG.warn("Skipping entry outside of target directory: " + entry.getName());
+        continue;
+      }
+      if (entry.isDirectory()) {
+        FileUtil.createDirectory(targetFile);
+      }
+      else if (entry.isFile()) {
+        FileUtil.createParentDirs(targetFile);
+        try (OutputStream outputStream = new BufferedOutputStream(new FileOutputStream(targetFile))) {
+          FileUtil.copy(tarStream, outputStream);
+        }
+        //noinspection ResultOfMethodCallIgnored
+        targetFile.setLastModified(entry.getModTime().getTime());
+        filesNumber++;
+      }
+      else if (entry.isLink() || entry.isSymbolicLink()) {
+        // hard links are relative to the archive root, symbolic ones to the entry
+        File linkTarget = entry.isLink() ? new File(targetDir, entry.getLinkName())
+                                         : new File(targetFile.getParentFile(), entry.getLinkName());
+        if (!linkTarget.getCanonicalPath().startsWith(targetPath) || !linkTarget.exists()) {
+          throw new IOException("Unable to unpack link " + entry.getName() + " => " + entry.getLinkName() +
+                                ", target is missing or outside of " + targetDir);
+        }
+        FileUtil.createParentDirs(targetFile);
+        FileUtil.copyFileOrDir(linkTarget, targetFile);
+        filesNumber++;
+      }
+      else {
+        LOG.warn("Skipping unsupported entry: " + entry.getName());
+      }
+    }
+    return filesNumber;
+  }
+
   public void killContainer(@NotNull String... containers) throws ExecutionException {
     runCommand(ArrayUtil.mergeArrays(new String[]{KILL}, containers));
   }
@@ -148,18 +303,21 @@ class PerlDockerAdapter {
    * @return contents of {@code path} in the container.
    */
   public @NotNull List<PerlFileDescriptor> listFiles(@NotNull String containerName, @NotNull String path) {
+    List<String> paths = Collections.singletonList(path);
     try {
+      Map<String, List<PerlFileDescriptor>> listings;
       if (ApplicationManager.getApplication().isDispatchThread()) {
-        return ProgressManager.getInstance().runProcessWithProgressSynchronously(
-          () -> doListFiles(containerName, path),
+        listings = ProgressManager.getInstance().runProcessWithProgressSynchronously(
+          () -> listFiles(containerName, paths),
           PerlDockerBundle.message("docker.adapter.listing.files.in", path),
           true,
           null
         );
       }
       else {
-        return doListFiles(containerName, path);
+        listings = listFiles(containerName, paths);
       }
+      return listings.getOrDefault(path, Collections.emptyList());
     }
     catch (ExecutionException e) {
       LOG.error(e);
@@ -167,12 +325,57 @@ class PerlDockerAdapter {
     }
   }
 
-  private @NotNull List<PerlFileDescriptor> doListFiles(@NotNull String containerName, @NotNull String path) throws ExecutionException {
-    ProcessOutput output = runCommand(EXEC, containerName, "ls", "-LAs", "--classify", path);
-    return output.getStdoutLines().stream()
-      .map(it -> PerlFileDescriptor.create(path, it))
-      .filter(Objects::nonNull)
-      .collect(Collectors.toList());
+  /**
+   * Lists contents of all {@code paths} in the container with a single exec.
+   *
+   * @return map of path to its contents. Missing paths and paths failed to list are absent in the map.
+   */
+  public @NotNull Map<String, List<PerlFileDescriptor>> listFiles(@NotNull String containerName, @NotNull Collection<String> paths)
+    throws ExecutionException {
+    if (paths.isEmpty()) {
+      return Collections.emptyMap();
+    }
+    List<String> uniquePaths = new ArrayList<>(new LinkedHashSet<>(paths));
+    List<String> parameters = new ArrayList<>(Arrays.asList(EXEC, containerName, LIST_FILES, WITH_SIZES_DEREFERENCED, CLASSIFIED));
+    parameters.addAll(uniquePaths);
+    // ls exits with non-zero code if some of paths are missing, but still lists the rest of them
+    ProcessOutput output = PerlHostData.execAndGetOutput(baseCommandLine().withParameters(parameters));
+    List<String> lines = output.getStdoutLines();
+    if (uniquePaths.size() == 1 && output.getExitCode() != 0 && lines.isEmpty()) {
+      // single listing has no header, so missing path is distinguishable only by the exit code
+      return Collections.emptyMap();
+    }
+    return parseListings(uniquePaths, lines);
+  }
+
+  /**
+   * Parses output of {@code ls} invoked with the {@code paths}: each listing is preceded with {@code path:} header, unless there is only
+   * one path
+   */
+  static @NotNull Map<String, List<PerlFileDescriptor>> parseListings(@NotNull List<String> paths, @NotNull List<String> lines) {
+    if (paths.isEmpty()) {
+      return Collections.emptyMap();
+    }
+    Set<String> headers = new HashSet<>(paths);
+    Map<String, List<PerlFileDescriptor>> result = new HashMap<>();
+    String currentPath = paths.size() == 1 ? paths.get(0) : null;
+    if (currentPath != null) {
+      result.put(currentPath, new ArrayList<>());
+    }
+    for (String line : lines) {
+      if (line.isEmpty()) {
+        continue;
+      }
+      if (paths.size() > 1 && line.endsWith(":") && headers.contains(line.substring(0, line.length() - 1))) {
+        currentPath = line.substring(0, line.length() - 1);
+        result.put(currentPath, new ArrayList<>());
+        continue;
+      }
+      if (currentPath != null) {
+        ContainerUtil.addIfNotNull(result.get(currentPath), PerlFileDescriptor.create(currentPath, line));
+      }
+    }
+    return result;
   }
 
   private static String createContainerName(@NotNull String seed) {
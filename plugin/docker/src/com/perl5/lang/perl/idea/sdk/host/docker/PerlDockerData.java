@@ -145,7 +145,7 @@ class PerlDockerData extends PerlHostData<PerlDockerData, PerlDockerHandler> {
 
   @Override
   public @NotNull PerlHostFileTransfer<PerlDockerData> getFileTransfer() {
-    return new PerlDockerFileTransfer(this);
+    return new PerlDockerFileTransfer(this, PerlDockerFileTransfer.computeLibraryExtensions());
   }
 
   @Override
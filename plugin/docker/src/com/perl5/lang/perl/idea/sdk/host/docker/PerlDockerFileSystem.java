@@ -16,6 +16,7 @@
 
 package com.perl5.lang.perl.idea.sdk.host.docker;
 
+import com.intellij.execution.ExecutionException;
 import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.util.io.FileUtil;
 import com.intellij.openapi.vfs.VirtualFile;
@@ -27,9 +28,7 @@ import org.jetbrains.annotations.Nullable;
 
 import java.io.File;
 import java.io.IOException;
-import java.util.List;
-import java.util.Map;
-import java.util.Objects;
+import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
 
 class PerlDockerFileSystem extends PerlPluggableVirtualFileSystem {
@@ -37,6 +36,11 @@ class PerlDockerFileSystem extends PerlPluggableVirtualFileSystem {
 
   private final Map<String, VirtualFile> myFiles = new ConcurrentHashMap<>();
 
+  /**
+   * Known contents of directories, filled on listing or {@link #prefetchListings(Collection) prefetching}
+   */
+  private final Map<String, List<PerlFileDescriptor>> myListings = new ConcurrentHashMap<>();
+
   private final @NotNull PerlDockerFileTransfer myTransfer;
 
 
@@ -70,7 +74,42 @@ class PerlDockerFileSystem extends PerlPluggableVirtualFileSystem {
   }
 
   private @NotNull List<PerlFileDescriptor> listFiles(@NotNull String path) throws IOException {
-    return myTransfer.getAdapter().listFiles(myTransfer.getContainerName(), FileUtil.toSystemIndependentName(path));
+    String systemIndependentPath = FileUtil.toSystemIndependentName(path);
+    List<PerlFileDescriptor> listing = myListings.get(systemIndependentPath);
+    if (listing != null) {
+      return listing;
+    }
+    listing = myTransfer.getAdapter().listFiles(myTransfer.getContainerName(), systemIndependentPath);
+    myListings.put(systemIndependentPath, listing);
+    return listing;
+  }
+
+  /**
+   * Lists contents of all not yet listed {@code paths} with a single container exec, so subsequent lookups and listings of them are served
+   * from the cache
+   */
+  void prefetchListings(@NotNull Collection<String> paths) throws IOException {
+    List<String> pathsToList = new ArrayList<>();
+    for (String path : paths) {
+      String systemIndependentPath = FileUtil.toSystemIndependentName(path);
+      if (!myListings.containsKey(systemIndependentPath)) {
+        pathsToList.add(systemIndependentPath);
+      }
+    }
+    if (pathsToList.isEmpty()) {
+      return;
+    }
+    try {
+      Map<String, List<PerlFileDescriptor>> listings = myTransfer.getAdapter().listFiles(myTransfer.getContainerName(), pathsToList);
+      LOG.debug("Prefetched " + listings.size() + " of " + pathsToList.size() + " listings");
+      // missing paths are cached as empty, like in single listings
+      for (String path : pathsToList) {
+        myListings.put(path, listings.getOrDefault(path, Collections.emptyList()));
+      }
+    }
+    catch (ExecutionException e) {
+      throw new IOException(e);
+    }
   }
 
   @Override
@@ -87,6 +126,7 @@ class PerlDockerFileSystem extends PerlPluggableVirtualFileSystem {
       LOG.warn("Error cleaning file system for " + myTransfer.getAdapter(), e);
     }
     finally {
+      myListings.clear();
       super.clean();
     }
   }
@@ -17,19 +17,42 @@
 package com.perl5.lang.perl.idea.sdk.host.docker;
 
 import com.intellij.execution.ExecutionException;
+import com.intellij.openapi.fileTypes.ExtensionFileNameMatcher;
+import com.intellij.openapi.fileTypes.FileNameMatcher;
+import com.intellij.openapi.fileTypes.FileType;
+import com.intellij.openapi.fileTypes.FileTypeManager;
 import com.intellij.openapi.util.AtomicNullableLazyValue;
 import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.util.PathUtil;
+import com.perl5.lang.perl.fileTypes.PerlFileTypePackage;
+import com.perl5.lang.perl.fileTypes.PerlFileTypeScript;
+import com.perl5.lang.perl.fileTypes.PerlFileTypeTest;
 import com.perl5.lang.perl.idea.sdk.host.PerlHostFileTransfer;
+import com.perl5.lang.pod.filetypes.PodFileType;
+import com.perl5.lang.xs.filetypes.XSFileType;
 import org.jetbrains.annotations.NotNull;
 
 import java.io.IOException;
-import java.util.Arrays;
-import java.util.Collections;
-import java.util.List;
+import java.util.*;
 
 class PerlDockerFileTransfer extends PerlHostFileTransfer<PerlDockerData> {
+  /**
+   * Extensions of compiled XS modules on different platforms, {@code $Config{dlext}}
+   */
+  private static final List<String> XS_BINARY_EXTENSIONS = Arrays.asList("so", "dll", "bundle");
+
   private final @NotNull PerlDockerAdapter myAdapter;
 
+  /**
+   * If not empty, only files with these extensions are synced
+   */
+  private final @NotNull Collection<String> myExtensionsFilter;
+
+  /**
+   * File system shared by all listings of this transfer, so listings done for lookups are reused
+   */
+  private final @NotNull PerlDockerFileSystem myFileSystem = new PerlDockerFileSystem(this);
+
   private volatile boolean isOpened = false;
   private volatile Throwable closedThrowable;
   private volatile ExecutionException myCreationError;
@@ -47,8 +70,35 @@ class PerlDockerFileTransfer extends PerlHostFileTransfer<PerlDockerData> {
   });
 
   public PerlDockerFileTransfer(@NotNull PerlDockerData hostData) {
+    this(hostData, Collections.emptyList());
+  }
+
+  /**
+   * @param extensionsFilter if not empty, only files with these extensions are synced
+   */
+  PerlDockerFileTransfer(@NotNull PerlDockerData hostData, @NotNull Collection<String> extensionsFilter) {
     super(hostData);
     myAdapter = new PerlDockerAdapter(hostData);
+    myExtensionsFilter = extensionsFilter;
+  }
+
+  /**
+   * @return extensions of library files necessary for the IDE: all extensions associated with Perl, POD and XS file types, including
+   * user-defined ones, and compiled XS modules. Everything else in the libraries, e.g. data files, is useless locally
+   */
+  static @NotNull Set<String> computeLibraryExtensions() {
+    Set<String> result = new LinkedHashSet<>();
+    FileTypeManager fileTypeManager = FileTypeManager.getInstance();
+    for (FileType fileType : Arrays.asList(PerlFileTypePackage.INSTANCE, PerlFileTypeScript.INSTANCE, PerlFileTypeTest.INSTANCE,
+                                           PodFileType.INSTANCE, XSFileType.INSTANCE)) {
+      for (FileNameMatcher matcher : fileTypeManager.getAssociations(fileType)) {
+        if (matcher instanceof ExtensionFileNameMatcher) {
+          result.add(((ExtensionFileNameMatcher)matcher).getExtension());
+        }
+      }
+    }
+    result.addAll(XS_BINARY_EXTENSIONS);
+    return result;
   }
 
   @NotNull
@@ -60,7 +110,19 @@ class PerlDockerFileTransfer extends PerlHostFileTransfer<PerlDockerData> {
   protected void doSyncPath(@NotNull String remotePath, String localPath) throws IOException {
     assertNotClosed();
     try {
-      myAdapter.copyRemote(getContainerName(), remotePath, localPath);
+      myAdapter.copyRemoteArchive(getContainerName(), remotePath, localPath, myExtensionsFilter);
+    }
+    catch (ExecutionException e) {
+      throw new IOException(e);
+    }
+  }
+
+  @Override
+  protected void doSyncFiles(@NotNull String remoteRoot, @NotNull String localRoot, @NotNull List<String> relativePaths)
+    throws IOException {
+    assertNotClosed();
+    try {
+      myAdapter.copyRemoteFiles(getContainerName(), remoteRoot, localRoot, relativePaths, myExtensionsFilter);
     }
     catch (ExecutionException e) {
       throw new IOException(e);
@@ -108,8 +170,24 @@ class PerlDockerFileTransfer extends PerlHostFileTransfer<PerlDockerData> {
 
   @Override
   public @NotNull List<VirtualFile> listFiles(@NotNull String remotePath) throws IOException {
-    VirtualFile root = new PerlDockerFileSystem(this).refreshAndFindFileByPath(remotePath);
+    String parentPath = PathUtil.getParentPath(remotePath);
+    myFileSystem.prefetchListings(parentPath.isEmpty() ? Collections.singletonList(remotePath) : Arrays.asList(parentPath, remotePath));
+    VirtualFile root = myFileSystem.refreshAndFindFileByPath(remotePath);
     return root == null ? Collections.emptyList() : Collections.unmodifiableList(Arrays.asList(root.getChildren()));
   }
+
+  @Override
+  public void prefetchListings(@NotNull Collection<String> remotePaths) throws IOException {
+    assertNotClosed();
+    Set<String> pathsToList = new LinkedHashSet<>();
+    for (String remotePath : remotePaths) {
+      String parentPath = PathUtil.getParentPath(remotePath);
+      if (!parentPath.isEmpty()) {
+        pathsToList.add(parentPath);
+      }
+      pathsToList.add(remotePath);
+    }
+    myFileSystem.prefetchListings(pathsToList);
+  }
 }
 
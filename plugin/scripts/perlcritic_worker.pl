@@ -0,0 +1,77 @@
+#!/usr/bin/perl
+#
+# Long-living Perl::Critic worker. Accepts perlcritic command line options as arguments and critiques sources sent to STDIN.
+#
+# Request:  <number of bytes>\n<source bytes>
+# Response: violations, one per line, followed by the terminator line
+#
+# Options the worker can't handle, e.g. output formatting ones, are reported in response to each request, so the caller could fall back
+# to the perlcritic script.
+#
+use strict;
+use warnings;
+use Getopt::Long qw(GetOptionsFromArray :config bundling pass_through);
+use Perl::Critic;
+use Perl::Critic::Violation;
+
+my $TERMINATOR = '__PERLCRITIC_WORKER_DONE__';
+my $UNSUPPORTED_MARKER = '__PERLCRITIC_WORKER_UNSUPPORTED__';
+
+my %options = ();
+GetOptionsFromArray(\@ARGV,
+  'severity|s=s'                    => \$options{-severity},
+  'profile|p=s'                     => \$options{-profile},
+  'noprofile'                       => sub {$options{-profile} = ''},
+  'theme=s'                         => \$options{-theme},
+  'include=s@'                      => \$options{-include},
+  'exclude=s@'                      => \$options{-exclude},
+  'single-policy|single_policy=s'   => \$options{'-single-policy'},
+  'top:i'                           => \$options{-top},
+  'force!'                          => \$options{-force},
+  'only!'                           => \$options{-only},
+  'profile-strictness=s'            => \$options{'-profile-strictness'},
+  'gentle'                          => sub {$options{-severity} = 5},
+  'stern'                           => sub {$options{-severity} = 4},
+  'harsh'                           => sub {$options{-severity} = 3},
+  'cruel'                           => sub {$options{-severity} = 2},
+  'brutal'                          => sub {$options{-severity} = 1},
+  map {my $level = $_; ($level => sub {$options{-severity} = $level})} 1 .. 5,
+);
+delete @options{grep {!defined $options{$_}} keys %options};
+my $unsupported_options = join ' ', @ARGV;
+
+my $critic = Perl::Critic->new(%options);
+Perl::Critic::Violation::set_format("%m at line %l, column %c.  %e.  (Severity: %s)\n");
+
+binmode STDIN;
+binmode STDOUT;
+$| = 1;
+
+while (defined(my $header = <STDIN>)) {
+  chomp $header;
+  next unless $header =~ /^(\d+)$/;
+  my $length = $1;
+  my $source = '';
+  while (length($source) < $length) {
+    my $read = read(STDIN, $source, $length - length($source), length($source));
+    last unless $read;
+  }
+
+  if ($unsupported_options) {
+    print "$UNSUPPORTED_MARKER $unsupported_options\n$TERMINATOR\n";
+    next;
+  }
+
+  my @violations = eval {
+    local $SIG{__WARN__} = sub {};
+    $critic->critique(\$source);
+  };
+  if (my $error = $@) {
+    $error =~ s/\s+/ /g;
+    print "$error\n";
+  }
+  else {
+    print @violations;
+  }
+  print "$TERMINATOR\n";
+}
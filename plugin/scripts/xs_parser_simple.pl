@@ -1,7 +1,40 @@
 #!/usr/bin/perl
-use File::Find;
-use B::Deparse;
+# Usage:
+#   xs_parser_simple.pl                            - loads all XS modules from @INC and prints declarations of all XSubs
+#   xs_parser_simple.pl --batch Module1 Module2... - loads listed modules and prints declarations of their XSubs in sections, started
+#                                                    with: #@module ModuleName. Each XSub belongs to the module, whose binary defined
+#                                                    it while booting. XSubs, built into perl, are printed in the #@module CORE section
+my $deparser;
+
+if (@ARGV && $ARGV[0] eq '--batch')
+{
+    shift @ARGV;
+    require XSLoader;
+    require DynaLoader;
+    my %initial_globs = map {$_ => 1} @{get_typeglobs_snapshot()};
+    my %booted_by = ();
+    hook_bootstrap($_, \%booted_by, \%initial_globs) for qw/XSLoader::load DynaLoader::bootstrap/;
+
+    load_module($_) for @ARGV;
+
+    my %module_globs = map {$_ => [ ]} @ARGV;
+    foreach my $globname (keys %booted_by)
+    {
+        my $module = $booted_by{$globname};
+        push @{$module_globs{$module}}, $globname if $module_globs{$module};
+    }
+
+    print "#\@module CORE\n";
+    print_subs([ keys %initial_globs ]);
+    foreach my $module (@ARGV)
+    {
+        print "#\@module $module\n";
+        print_subs($module_globs{$module});
+    }
+    exit;
+}
 
+require File::Find;
 File::Find::find( \&file_processor, @INC );
 
 my @packages = ();
@@ -12,15 +45,52 @@ sub file_processor
         $name =~ s{/+}{::}g;
         return if $name =~ /\QType::Tiny::XS\E/; # see https://github.com/tobyink/p5-type-tiny-xs/issues/4
         #        print STDERR "Processing $name\n";
-        eval "require $name;";
-        if (my $e = $@) {
-            print STDERR "Error loading $name:\n$e\n";
+        load_module($name);
+    }
+}
+
+# Wraps the bootstrapping sub, to attribute subs defined while booting a module to this module. Subs, existing before, are not
+# attributed, as well as subs, already attributed to the module booted earlier
+sub hook_bootstrap
+{
+    my ($name, $booted_by, $initial_globs) = @_;
+    my $original = \&{$name};
+    no warnings 'redefine';
+    *{$name} = sub {
+        # XSLoader::load without arguments boots the calling package
+        my $module = @_ ? $_[0] : caller;
+        my $subs_before = get_subs_snapshot();
+        my @result = $original->($module, @_[1 .. $#_]);
+        my $subs_after = get_subs_snapshot();
+        foreach my $globname (keys %{$subs_after})
+        {
+            next if $initial_globs->{$globname} || $subs_before->{$globname} == $subs_after->{$globname};
+            $booted_by->{$globname} //= $module;
         }
+        return wantarray ? @result : $result[-1];
+    };
+}
+
+# returns hash of globs with subs to the subs addresses
+sub get_subs_snapshot
+{
+    my %result = ();
+    foreach my $globname (@{get_typeglobs_snapshot()})
+    {
+        my $code = *{$globname}{CODE};
+        $result{$globname} = 0 + $code if $code;
     }
+    return \%result;
 }
 
-my $deparser = B::Deparse->new();
-my %sub_map = ();
+sub load_module
+{
+    my $name = shift;
+    eval "require $name;";
+    if (my $e = $@) {
+        print STDERR "Error loading $name:\n$e\n";
+    }
+}
 
 print <<'EOM';
 #
@@ -30,41 +100,50 @@ print <<'EOM';
 #
 EOM
 
+print_subs(get_typeglobs_snapshot());
 
-foreach my $globname (sort @{get_typeglobs_snapshot()})
+sub print_subs
 {
-    next if $globname =~ /::bootstrap/;
-    next if $globname =~ /[^\w\:_]/;
+    my $globnames = shift;
+    my %sub_map = ();
+    require B::Deparse;
+    $deparser //= B::Deparse->new();
 
-    if (*{$globname}{CODE})
+    foreach my $globname (sort @{$globnames})
     {
-        my $deparsed = eval {$deparser->coderef2text( \&{$globname} )};
-        # too messy
-#        if( my $e = $@ )
-#        {
-#            print STDERR "Error deparsing $globname:\n$e\n";
-#        }
-
-        if ($deparsed =~ /^(?:\(.*?\))?\s*;$/)
+        next if $globname =~ /::bootstrap/;
+        next if $globname =~ /[^\w\:_]/;
+
+        if (*{$globname}{CODE})
         {
-            $globname =~ s/^:://;
-            $globname =~ /^(.+)::([^:]+)$/;
-            my ($package, $sub) = ($1, $2);
-            $sub_map{$package} //= [ ];
-            push @{$sub_map{$package}}, $sub.$deparsed;
+            my $deparsed = eval {$deparser->coderef2text( \&{$globname} )};
+            # too messy
+    #        if( my $e = $@ )
+    #        {
+    #            print STDERR "Error deparsing $globname:\n$e\n";
+    #        }
+
+            if ($deparsed =~ /^(?:\(.*?\))?\s*;$/)
+            {
+                $globname =~ s/^:://;
+                $globname =~ /^(.+)::([^:]+)$/;
+                my ($package, $sub) = ($1, $2);
+                $sub_map{$package} //= [ ];
+                push @{$sub_map{$package}}, $sub.$deparsed;
+            }
         }
     }
-}
-
-foreach my $package (sort keys %sub_map)
-{
 
-    print "package $package {\n";
-    foreach my $sub_name (sort @{$sub_map{$package}})
+    foreach my $package (sort keys %sub_map)
     {
-        print "sub $sub_name\n";
+
+        print "package $package {\n";
+        foreach my $sub_name (sort @{$sub_map{$package}})
+        {
+            print "sub $sub_name\n";
+        }
+        print "}\n";
     }
-    print "}\n";
 }
 
 sub get_typeglobs_snapshot
@@ -0,0 +1,146 @@
+/*
+ * Copyright 2015-2021 Alexandr Evstigneev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.perl5.lang.perl.coverage;
+
+import base.PerlLightTestCase;
+import com.google.gson.JsonParseException;
+import com.intellij.execution.process.OSProcessHandler;
+import com.intellij.rt.coverage.data.ProjectData;
+import com.perl5.lang.perl.idea.sdk.host.PerlHostData;
+import com.perl5.lang.perl.idea.sdk.host.PerlHostHandler;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.junit.Test;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+public class PerlCoverageRunnerTest extends PerlLightTestCase {
+  private static final long TIMEOUT_SECONDS = 10;
+  private static final String REPORT =
+    "[{\"name\":\"/test.pl\",\"lines\":{\"1\":{\"data\":1,\"cover\":1},\"3\":{\"data\":0,\"cover\":0}}}]";
+
+  @Test
+  public void testCompleteOutput() throws IOException {
+    TestProcess process = new TestProcess(REPORT, true);
+    ProjectData projectData = readCoverageData(process);
+    assertNotNull(projectData);
+    assertSize(1, projectData.getClasses().keySet());
+  }
+
+  @Test
+  public void testEmptyOutput() throws IOException {
+    assertNull(readCoverageData(new TestProcess("", true)));
+  }
+
+  @Test
+  public void testTruncatedOutput() {
+    assertNotParsed(new TestProcess(REPORT.substring(0, REPORT.length() / 2), true));
+  }
+
+  @Test
+  public void testMalformedOutput() throws InterruptedException {
+    TestProcess process = new TestProcess("[{\"name\":\"/test.pl\",\"lines\":]", false);
+    assertNotParsed(process);
+    assertTrue(process.myTerminatedLatch.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+  }
+
+  @Test
+  public void testMalformedOutputFollowedByReport() throws InterruptedException {
+    TestProcess process = new TestProcess("Unexpected warning\n" + REPORT, false);
+    assertNotParsed(process);
+    assertTrue(process.myTerminatedLatch.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+  }
+
+  private static void assertNotParsed(@NotNull TestProcess process) {
+    try {
+      readCoverageData(process);
+      fail("Output should not be parsed");
+    }
+    catch (IOException | JsonParseException e) {
+      LOG.debug("Expected exception: ", e);
+    }
+  }
+
+  private static @Nullable ProjectData readCoverageData(@NotNull TestProcess process) throws IOException {
+    PerlHostData<?, ?> hostData = PerlHostHandler.getDefaultHandler().createData();
+    return PerlCoverageRunner.readCoverageData(
+      new OSProcessHandler(process, "cover", StandardCharsets.UTF_8), hostData, new StringBuilder());
+  }
+
+  /**
+   * Process printing {@code output} to stdout. Unless terminated on creation, keeps stdout open until destroyed
+   */
+  private static class TestProcess extends Process {
+    private final CountDownLatch myTerminatedLatch = new CountDownLatch(1);
+    private final @NotNull InputStream myInputStream;
+
+    TestProcess(@NotNull String output, boolean isTerminated) {
+      myInputStream = new SequenceInputStream(new ByteArrayInputStream(output.getBytes(StandardCharsets.UTF_8)), new InputStream() {
+        @Override
+        public int read() throws IOException {
+          try {
+            myTerminatedLatch.await();
+          }
+          catch (InterruptedException e) {
+            throw new InterruptedIOException(e.getMessage());
+          }
+          return -1;
+        }
+      });
+      if (isTerminated) {
+        myTerminatedLatch.countDown();
+      }
+    }
+
+    @Override
+    public OutputStream getOutputStream() {
+      return OutputStream.nullOutputStream();
+    }
+
+    @Override
+    public InputStream getInputStream() {
+      return myInputStream;
+    }
+
+    @Override
+    public InputStream getErrorStream() {
+      return InputStream.nullInputStream();
+    }
+
+    @Override
+    public int waitFor() throws InterruptedException {
+      myTerminatedLatch.await();
+      return 0;
+    }
+
+    @Override
+    public int exitValue() {
+      if (myTerminatedLatch.getCount() > 0) {
+        throw new IllegalThreadStateException("Process is running");
+      }
+      return 0;
+    }
+
+    @Override
+    public void destroy() {
+      myTerminatedLatch.countDown();
+    }
+  }
+}
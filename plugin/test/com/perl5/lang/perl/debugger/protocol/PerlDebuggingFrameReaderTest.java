@@ -0,0 +1,122 @@
+/*
+ * Copyright 2015-2021 Alexandr Evstigneev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.perl5.lang.perl.debugger.protocol;
+
+import com.intellij.openapi.util.io.StreamUtil;
+import com.intellij.openapi.util.text.StringUtil;
+import junit.framework.TestCase;
+import org.jetbrains.annotations.NotNull;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+public class PerlDebuggingFrameReaderTest extends TestCase {
+  private static final int BUFFER_SIZE = 8;
+
+  @Test
+  public void testSplitFrames() throws IOException {
+    List<String> frames = Arrays.asList("first", "", "{\"event\":\"STOP\"}", "last");
+    for (int chunkSize = 1; chunkSize <= 4; chunkSize++) {
+      PerlDebuggingFrameReader frameReader = createReader(String.join("\n", frames) + "\n", chunkSize);
+      for (String frame : frames) {
+        assertFrame(frameReader, frame);
+      }
+      assertFalse(frameReader.readFrame());
+    }
+  }
+
+  @Test
+  public void testUnterminatedFrame() throws IOException {
+    PerlDebuggingFrameReader frameReader = createReader("first\nunterminated", 3);
+    assertFrame(frameReader, "first");
+    assertFalse(frameReader.readFrame());
+  }
+
+  @Test
+  public void testFramesAtBufferBoundaries() throws IOException {
+    String fillingFrame = StringUtil.repeat("a", BUFFER_SIZE - 1);
+    String overflowingFrame = StringUtil.repeat("b", BUFFER_SIZE);
+    String doubleFrame = StringUtil.repeat("c", BUFFER_SIZE * 2 - 1);
+    for (int chunkSize : new int[]{1, BUFFER_SIZE - 1, BUFFER_SIZE, BUFFER_SIZE + 1, BUFFER_SIZE * 4}) {
+      PerlDebuggingFrameReader frameReader = createReader(
+        fillingFrame + "\n" + fillingFrame + "\n" + overflowingFrame + "\n" + doubleFrame + "\nx\n" + fillingFrame + "\n", chunkSize);
+      assertFrame(frameReader, fillingFrame);
+      assertFrame(frameReader, fillingFrame);
+      assertFrame(frameReader, overflowingFrame);
+      assertFrame(frameReader, doubleFrame);
+      assertFrame(frameReader, "x");
+      assertFrame(frameReader, fillingFrame);
+      assertFalse(frameReader.readFrame());
+    }
+  }
+
+  @Test
+  public void testBufferShrinksAfterLargeFrame() throws IOException {
+    String largeFrame = StringUtil.repeat("large", BUFFER_SIZE * 10);
+    PerlDebuggingFrameReader frameReader = createReader("small\n" + largeFrame + "\nsmall\n" + largeFrame + "\n", BUFFER_SIZE);
+    assertFrame(frameReader, "small");
+    assertEquals(BUFFER_SIZE, frameReader.getBufferSize());
+    assertFrame(frameReader, largeFrame);
+    assertTrue(frameReader.getBufferSize() > largeFrame.length());
+    assertFrame(frameReader, "small");
+    assertEquals(BUFFER_SIZE, frameReader.getBufferSize());
+    assertFrame(frameReader, largeFrame);
+    assertFalse(frameReader.readFrame());
+  }
+
+  @Test
+  public void testMultiByteCharacters() throws IOException {
+    String frame = "{\"name\":\"значение\"}";
+    PerlDebuggingFrameReader frameReader = createReader(frame + "\n" + frame + "\n", 3);
+    assertFrame(frameReader, frame);
+    assertFrame(frameReader, frame);
+  }
+
+  private static void assertFrame(@NotNull PerlDebuggingFrameReader frameReader, @NotNull String expected) throws IOException {
+    assertTrue(frameReader.readFrame());
+    assertEquals(expected, frameReader.getFrameText());
+    try (Reader reader = frameReader.getFrameReader()) {
+      assertEquals(expected, StreamUtil.readText(reader));
+    }
+  }
+
+  private static @NotNull PerlDebuggingFrameReader createReader(@NotNull String text, int chunkSize) {
+    return new PerlDebuggingFrameReader(new ChunkedInputStream(text.getBytes(StandardCharsets.UTF_8), chunkSize), BUFFER_SIZE);
+  }
+
+  /**
+   * Returns at most {@code chunkSize} bytes per read, like a socket receiving data in parts
+   */
+  private static class ChunkedInputStream extends ByteArrayInputStream {
+    private final int myChunkSize;
+
+    ChunkedInputStream(byte @NotNull [] bytes, int chunkSize) {
+      super(bytes);
+      myChunkSize = chunkSize;
+    }
+
+    @Override
+    public synchronized int read(byte @NotNull [] bytes, int offset, int length) {
+      return super.read(bytes, offset, Math.min(length, myChunkSize));
+    }
+  }
+}
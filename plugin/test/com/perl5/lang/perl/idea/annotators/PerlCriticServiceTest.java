@@ -0,0 +1,176 @@
+/*
+ * Copyright 2015-2021 Alexandr Evstigneev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.perl5.lang.perl.idea.annotators;
+
+import base.PerlLightTestCase;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.Disposer;
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.openapi.util.text.StringUtil;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.util.containers.ContainerUtil;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.*;
+
+public class PerlCriticServiceTest extends PerlLightTestCase {
+  private static final long TIMEOUT_SECONDS = 10;
+  private static final String MESSAGE_SUFFIX = " Severity: 5";
+
+  @Test
+  public void testCachedResults() throws Exception {
+    TestCriticService service = createService();
+    VirtualFile virtualFile = myFixture.addFileToProject("test.pl", "").getVirtualFile();
+
+    assertEquals("first", getMessage(service.submit(virtualFile, getBytes("first"))));
+    assertEquals("first", getMessage(service.submit(virtualFile, getBytes("first"))));
+    assertEquals("second", getMessage(service.submit(virtualFile, getBytes("second"))));
+    assertEquals(List.of("first", "second"), service.myCritiquedSources);
+
+    service.reset();
+    assertEquals("first", getMessage(service.submit(virtualFile, getBytes("first"))));
+    assertEquals(List.of("first", "second", "first"), service.myCritiquedSources);
+  }
+
+  @Test
+  public void testCoalescedRequests() throws Exception {
+    TestCriticService service = createService();
+    VirtualFile blockingFile = myFixture.addFileToProject("blocking.pl", "").getVirtualFile();
+    VirtualFile sameFile = myFixture.addFileToProject("same.pl", "").getVirtualFile();
+    VirtualFile changedFile = myFixture.addFileToProject("changed.pl", "").getVirtualFile();
+
+    CountDownLatch releaseLatch = new CountDownLatch(1);
+    service.myBlockingLatch = releaseLatch;
+    CompletableFuture<List<PerlCriticErrorDescriptor>> blockingFuture = service.submit(blockingFile, getBytes("blocking"));
+    assertTrue(service.myStartedLatch.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+
+    CompletableFuture<List<PerlCriticErrorDescriptor>> sameFuture = service.submit(sameFile, getBytes("same"));
+    assertSame(sameFuture, service.submit(sameFile, getBytes("same")));
+
+    CompletableFuture<List<PerlCriticErrorDescriptor>> supersededFuture = service.submit(changedFile, getBytes("old"));
+    CompletableFuture<List<PerlCriticErrorDescriptor>> changedFuture = service.submit(changedFile, getBytes("new"));
+    assertTrue(supersededFuture.isDone());
+    assertNull(supersededFuture.get());
+
+    releaseLatch.countDown();
+    assertEquals("blocking", getMessage(blockingFuture));
+    assertEquals("same", getMessage(sameFuture));
+    assertEquals("new", getMessage(changedFuture));
+    assertEquals(List.of("blocking", "same", "new"), service.myCritiquedSources);
+  }
+
+  @Test
+  public void testProfileKey() throws IOException {
+    File workDirectory = FileUtil.createTempDirectory("perlcritic", "work");
+    File homeDirectory = FileUtil.createTempDirectory("perlcritic", "home");
+    try {
+      String workPath = workDirectory.getPath();
+      String homePath = homeDirectory.getPath();
+      assertEquals("", PerlCriticService.computeProfileKey(null, null, workPath, homePath));
+
+      File homeProfile = createProfile(homeDirectory, ".perlcriticrc");
+      assertEquals(homeProfile.getPath() + "@1000", PerlCriticService.computeProfileKey(null, null, workPath, homePath));
+
+      File workProfile = createProfile(workDirectory, ".perlcriticrc");
+      assertEquals(workProfile.getPath() + "@1000", PerlCriticService.computeProfileKey(null, null, workPath, homePath));
+      assertTrue(workProfile.setLastModified(2000));
+      assertEquals(workProfile.getPath() + "@2000", PerlCriticService.computeProfileKey(null, null, workPath, homePath));
+
+      File envProfile = createProfile(homeDirectory, "env.rc");
+      assertEquals(envProfile.getPath() + "@1000",
+                   PerlCriticService.computeProfileKey(null, envProfile.getPath(), workPath, homePath));
+
+      File explicitProfile = createProfile(workDirectory, "explicit.rc");
+      String explicitKey = explicitProfile.getPath() + "@1000";
+      assertEquals(explicitKey, PerlCriticService.computeProfileKey("--profile explicit.rc", envProfile.getPath(), workPath, homePath));
+      assertEquals(explicitKey, PerlCriticService.computeProfileKey("-p explicit.rc", null, workPath, homePath));
+      assertEquals(explicitKey,
+                   PerlCriticService.computeProfileKey("--profile=" + explicitProfile.getPath(), null, workPath, homePath));
+      assertEquals("", PerlCriticService.computeProfileKey("--severity 3 --noprofile", envProfile.getPath(), workPath, homePath));
+    }
+    finally {
+      FileUtil.delete(workDirectory);
+      FileUtil.delete(homeDirectory);
+    }
+  }
+
+  private static @NotNull File createProfile(@NotNull File directory, @NotNull String name) throws IOException {
+    File profile = new File(directory, name);
+    FileUtil.writeToFile(profile, "severity = 3\n");
+    assertTrue(profile.setLastModified(1000));
+    return profile;
+  }
+
+  private @NotNull TestCriticService createService() {
+    TestCriticService service = new TestCriticService(getProject());
+    Disposer.register(getTestRootDisposable(), service);
+    return service;
+  }
+
+  private static byte @NotNull [] getBytes(@NotNull String source) {
+    return source.getBytes(StandardCharsets.UTF_8);
+  }
+
+  /**
+   * @return source the {@code future} result has been computed for
+   */
+  private static @Nullable String getMessage(@NotNull Future<List<PerlCriticErrorDescriptor>> future) throws Exception {
+    List<PerlCriticErrorDescriptor> errors = future.get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+    assertSize(1, errors);
+    return StringUtil.trimEnd(ContainerUtil.getFirstItem(errors).getMessage(), MESSAGE_SUFFIX);
+  }
+
+  /**
+   * Reports the whole source as a violation instead of running Perl::Critic
+   */
+  private static class TestCriticService extends PerlCriticService {
+    private final List<String> myCritiquedSources = Collections.synchronizedList(new ArrayList<>());
+    private final CountDownLatch myStartedLatch = new CountDownLatch(1);
+    private volatile @Nullable CountDownLatch myBlockingLatch;
+
+    TestCriticService(@NotNull Project project) {
+      super(project);
+    }
+
+    @Override
+    @Nullable List<PerlCriticErrorDescriptor> doCritique(byte[] sourceBytes, @NotNull Charset charset) {
+      String source = new String(sourceBytes, charset);
+      myCritiquedSources.add(source);
+      myStartedLatch.countDown();
+      CountDownLatch blockingLatch = myBlockingLatch;
+      if (blockingLatch != null) {
+        myBlockingLatch = null;
+        try {
+          assertTrue(blockingLatch.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        }
+        catch (InterruptedException e) {
+          throw new RuntimeException(e);
+        }
+      }
+      return Collections.singletonList(PerlCriticErrorDescriptor.getFromString(source + " at line 1, column 1. " + MESSAGE_SUFFIX));
+    }
+  }
+}
@@ -0,0 +1,169 @@
+/*
+ * Copyright 2015-2021 Alexandr Evstigneev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.perl5.lang.perl.idea.run.prove;
+
+import base.PerlLightTestCase;
+import com.intellij.execution.testframework.sm.runner.SMTRunnerEventsAdapter;
+import com.intellij.execution.testframework.sm.runner.SMTestProxy;
+import com.intellij.openapi.application.WriteAction;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.util.containers.ContainerUtil;
+import com.perl5.lang.perl.idea.sdk.host.PerlHostHandler;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+public class PerlTestsSchedulingTest extends PerlLightTestCase {
+  private PerlTestDurationsState myDurationsState;
+
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    myDurationsState = PerlTestDurationsState.getInstance(getProject());
+    myDurationsState.loadState(new PerlTestDurationsState());
+  }
+
+  @Override
+  protected void tearDown() throws Exception {
+    try {
+      myDurationsState.loadState(new PerlTestDurationsState());
+      myDurationsState = null;
+    }
+    finally {
+      super.tearDown();
+    }
+  }
+
+  @Test
+  public void testNoDurations() {
+    VirtualFile testsDir = createTests();
+    List<VirtualFile> testFiles = Collections.singletonList(testsDir);
+    assertSame(testFiles, myDurationsState.scheduleTests(testFiles));
+  }
+
+  @Test
+  public void testSlowestFirst() {
+    VirtualFile testsDir = createTests();
+    setDuration(testsDir, "fast.t", 10);
+    setDuration(testsDir, "slow.t", 1000);
+    setDuration(testsDir, "nested/medium.t", 100);
+    assertOrderedEquals(getNames(myDurationsState.scheduleTests(Collections.singletonList(testsDir))),
+                        "new.t", "slow.t", "medium.t", "fast.t");
+  }
+
+  @Test
+  public void testUnknownTestsOnly() {
+    VirtualFile testsDir = createTests();
+    myDurationsState.setDuration("/some/other/test.t", 100);
+    List<VirtualFile> testFiles = Collections.singletonList(testsDir);
+    assertSame(testFiles, myDurationsState.scheduleTests(testFiles));
+  }
+
+  @Test
+  public void testPruneRemovedTests() throws Exception {
+    VirtualFile testsDir = createTests();
+    setDuration(testsDir, "fast.t", 10);
+    setDuration(testsDir, "slow.t", 1000);
+    setDuration(testsDir, "nested/medium.t", 100);
+    myDurationsState.setDuration("/some/other/test.t", 100);
+    VirtualFile slowTest = testsDir.findChild("slow.t");
+    assertNotNull(slowTest);
+    String slowTestPath = slowTest.getPath();
+    WriteAction.runAndWait(() -> slowTest.delete(this));
+
+    assertOrderedEquals(getNames(myDurationsState.scheduleTests(Collections.singletonList(testsDir))),
+                        "new.t", "medium.t", "fast.t");
+    assertFalse(myDurationsState.myDurations.containsKey(slowTestPath));
+    assertSameElements(myDurationsState.myDurations.values(), 10L, 100L, 100L);
+  }
+
+  @Test
+  public void testDurationsListener() {
+    SMTRunnerEventsAdapter listener = myDurationsState.createDurationsListener(() -> PerlHostHandler.getDefaultHandler().createData());
+    SMTestProxy.SMRootTestProxy rootProxy = new SMTestProxy.SMRootTestProxy();
+    SMTestProxy fileSuite = createSuite(rootProxy, "slow.t", "/project/t/slow.t", 300);
+    SMTestProxy subtestSuite = createSuite(fileSuite, "subtest", "/project/t/slow.t", 200);
+    SMTestProxy unknownSuite = createSuite(rootProxy, "unknown", null, 50);
+
+    listener.onSuiteFinished(subtestSuite);
+    listener.onSuiteFinished(unknownSuite);
+    assertEmpty(myDurationsState.myDurations.keySet());
+
+    listener.onSuiteFinished(fileSuite);
+    assertEquals(Collections.singletonMap("/project/t/slow.t", 500L), myDurationsState.myDurations);
+  }
+
+  @Test
+  public void testCommandLineOrder() {
+    VirtualFile testsDir = createTests();
+    setDuration(testsDir, "fast.t", 10);
+    setDuration(testsDir, "slow.t", 1000);
+    setDuration(testsDir, "nested/medium.t", 100);
+    VirtualFile otherTest = myFixture.addFileToProject("other.t", "print \"1..0\\n\";").getVirtualFile();
+    myDurationsState.setDuration(otherTest.getPath(), 500);
+    PerlTestRunConfiguration runConfiguration = new PerlTestRunConfiguration(
+      getProject(), PerlTestRunConfigurationType.getInstance().getConfigurationFactories()[0], "Test");
+    List<VirtualFile> targetFiles = Arrays.asList(otherTest, testsDir);
+
+    assertOrderedEquals(runConfiguration.computeTestsPaths(targetFiles, 2, testsDir, PerlHostHandler.getDefaultHandler().createData()),
+                        "new.t", "slow.t", otherTest.getPath(), "nested/medium.t", "fast.t");
+    assertOrderedEquals(runConfiguration.computeTestsPaths(targetFiles, 1, testsDir, PerlHostHandler.getDefaultHandler().createData()),
+                        otherTest.getPath(), testsDir.getPath());
+  }
+
+  /**
+   * Creates a suite with a single test, lasting {@code duration} milliseconds
+   */
+  private static @NotNull SMTestProxy createSuite(@NotNull SMTestProxy parent,
+                                                  @NotNull String name,
+                                                  @Nullable String path,
+                                                  long duration) {
+    SMTestProxy suite = new SMTestProxy(name, true, path == null ? null : PerlSMTestLocator.FILE_PROTOCOL + "://" + path);
+    parent.addChild(suite);
+    SMTestProxy test = new SMTestProxy(name + " test", false, null);
+    suite.addChild(test);
+    test.setDuration(duration);
+    return suite;
+  }
+
+  private void setDuration(@NotNull VirtualFile testsDir, @NotNull String relativePath, long duration) {
+    VirtualFile testFile = testsDir.findFileByRelativePath(relativePath);
+    assertNotNull(testFile);
+    myDurationsState.setDuration(testFile.getPath(), duration);
+  }
+
+  /**
+   * Creates test scripts, producing fake TAP output
+   */
+  private @NotNull VirtualFile createTests() {
+    for (String testPath : List.of("t/fast.t", "t/slow.t", "t/new.t", "t/nested/medium.t")) {
+      myFixture.addFileToProject(testPath, "print \"1..1\\nok 1 - " + testPath + "\\n\";");
+    }
+    myFixture.addFileToProject("t/lib/Helper.pm", "package Helper; 1;");
+    VirtualFile testsDir = myFixture.findFileInTempDir("t");
+    assertNotNull(testsDir);
+    return testsDir;
+  }
+
+  private static @NotNull List<String> getNames(@NotNull List<VirtualFile> files) {
+    return ContainerUtil.map(files, VirtualFile::getName);
+  }
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright 2015-2021 Alexandr Evstigneev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.perl5.lang.perl.idea.sdk.host;
+
+import base.PerlLightTestCase;
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.util.containers.ContainerUtil;
+import org.jetbrains.annotations.NotNull;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.*;
+
+public class PerlHostFileTransferTest extends PerlLightTestCase {
+  @Test
+  public void testSyncChangedFiles() throws IOException {
+    File remoteRoot = FileUtil.createTempDirectory("remote", "lib");
+    File localRoot = FileUtil.createTempDirectory("local", "lib");
+    try {
+      createFile(remoteRoot, "Changed.pm", "new");
+      createFile(remoteRoot, "Same.pm", "remote");
+      createFile(remoteRoot, "Foo/Added.pm", "added");
+      createFile(localRoot, "Changed.pm", "old");
+      createFile(localRoot, "Same.pm", "local");
+      createFile(localRoot, "Foo/Removed.pm", "removed");
+
+      PerlHostSyncManifest oldManifest = createManifest("Changed.pm", "3\t1", "Same.pm", "6\t1", "Foo/Removed.pm", "7\t1");
+      PerlHostSyncManifest manifest = createManifest("Changed.pm", "3\t2", "Same.pm", "6\t1", "Foo/Added.pm", "5\t2");
+      String remotePath = FileUtil.toSystemIndependentName(remoteRoot.getPath());
+      String localPath = localRoot.getPath();
+      CopyingFileTransfer fileTransfer = new CopyingFileTransfer(PerlHostHandler.getDefaultHandler().createData());
+
+      List<File> changedFiles = fileTransfer.syncChangedFiles(remotePath, localPath, manifest, oldManifest);
+      assertSameElements(ContainerUtil.map(changedFiles, it -> FileUtil.getRelativePath(localRoot, it)),
+                         FileUtil.toSystemDependentName("Changed.pm"),
+                         FileUtil.toSystemDependentName("Foo/Added.pm"),
+                         FileUtil.toSystemDependentName("Foo/Removed.pm"));
+      assertSameElements(fileTransfer.mySyncedPaths, remotePath + "/Changed.pm", remotePath + "/Foo/Added.pm");
+      assertEquals("new", FileUtil.loadFile(new File(localRoot, "Changed.pm")));
+      assertEquals("added", FileUtil.loadFile(new File(localRoot, "Foo/Added.pm")));
+      assertEquals("local", FileUtil.loadFile(new File(localRoot, "Same.pm")));
+      assertFalse(new File(localRoot, "Foo/Removed.pm").exists());
+
+      fileTransfer.mySyncedPaths.clear();
+      assertEmpty(fileTransfer.syncChangedFiles(remotePath, localPath, manifest, manifest));
+      assertEmpty(fileTransfer.mySyncedPaths);
+    }
+    finally {
+      FileUtil.delete(remoteRoot);
+      FileUtil.delete(localRoot);
+    }
+  }
+
+  private static void createFile(@NotNull File root, @NotNull String relativePath, @NotNull String content) throws IOException {
+    FileUtil.writeToFile(new File(root, relativePath), content);
+  }
+
+  private static @NotNull PerlHostSyncManifest createManifest(String @NotNull ... pathsAndStamps) {
+    Map<String, String> entries = new HashMap<>();
+    for (int i = 0; i < pathsAndStamps.length; i += 2) {
+      entries.put(pathsAndStamps[i], pathsAndStamps[i + 1]);
+    }
+    return new PerlHostSyncManifest(entries);
+  }
+
+  /**
+   * Transfer treating local paths as remote ones and copying files between them
+   */
+  private static class CopyingFileTransfer extends PerlHostFileTransfer<PerlHostData<?, ?>> {
+    private final List<String> mySyncedPaths = new ArrayList<>();
+
+    public CopyingFileTransfer(@NotNull PerlHostData<?, ?> hostData) {
+      super(hostData);
+    }
+
+    @Override
+    public @NotNull List<VirtualFile> listFiles(@NotNull String remotePath) {
+      return Collections.emptyList();
+    }
+
+    @Override
+    protected void doSyncPath(@NotNull String remotePath, String localPath) throws IOException {
+      mySyncedPaths.add(remotePath);
+      FileUtil.copy(new File(remotePath), new File(localPath));
+    }
+
+    @Override
+    protected void doSyncHelpers() {
+    }
+
+    @Override
+    public void close() {
+    }
+  }
+}
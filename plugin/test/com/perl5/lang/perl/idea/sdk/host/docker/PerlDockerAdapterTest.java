@@ -0,0 +1,134 @@
+/*
+ * Copyright 2015-2021 Alexandr Evstigneev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.perl5.lang.perl.idea.sdk.host.docker;
+
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.util.ThrowableConsumer;
+import com.intellij.util.containers.ContainerUtil;
+import com.perl5.lang.perl.idea.sdk.host.PerlFileDescriptor;
+import junit.framework.TestCase;
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveOutputStream;
+import org.jetbrains.annotations.NotNull;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+public class PerlDockerAdapterTest extends TestCase {
+  @Test
+  public void testParseSingleListing() {
+    Map<String, List<PerlFileDescriptor>> listings = PerlDockerAdapter.parseListings(
+      Collections.singletonList("/usr/lib/perl5"),
+      Arrays.asList("total 12", "4 Foo/", "8 Foo.pm", "0 link@"));
+    assertEquals(Collections.singleton("/usr/lib/perl5"), listings.keySet());
+    assertEquals(Arrays.asList("/usr/lib/perl5/Foo", "/usr/lib/perl5/Foo.pm", "/usr/lib/perl5/link"),
+                 getPaths(listings, "/usr/lib/perl5"));
+    assertTrue(listings.get("/usr/lib/perl5").get(0).isDirectory());
+  }
+
+  @Test
+  public void testParseMultipleListings() {
+    Map<String, List<PerlFileDescriptor>> listings = PerlDockerAdapter.parseListings(
+      Arrays.asList("/usr/bin", "/usr/local/bin", "/missing", "/empty"),
+      Arrays.asList("/usr/bin:", "total 8", "4 perl*", "4 cpan*", "",
+                    "/usr/local/bin:", "total 4", "4 carton*", "",
+                    "/empty:", "total 0"));
+    assertEquals(ContainerUtil.newHashSet("/usr/bin", "/usr/local/bin", "/empty"), listings.keySet());
+    assertEquals(Arrays.asList("/usr/bin/perl", "/usr/bin/cpan"), getPaths(listings, "/usr/bin"));
+    assertEquals(Collections.singletonList("/usr/local/bin/carton"), getPaths(listings, "/usr/local/bin"));
+    assertEmpty(listings.get("/empty"));
+  }
+
+  @Test
+  public void testParseEmptyPaths() {
+    assertEmpty(PerlDockerAdapter.parseListings(Collections.emptyList(), Collections.singletonList("total 0")).keySet());
+  }
+
+  @Test
+  public void testUnpackTarWithLinks() throws IOException {
+    File targetDir = FileUtil.createTempDirectory("docker", "unpack");
+    try {
+      byte[] archive = createArchive(tarStream -> {
+        addFile(tarStream, "lib/Foo.pm", "package Foo;");
+        addLink(tarStream, "lib/Bar.pm", "lib/Foo.pm", TarArchiveEntry.LF_LINK);
+        addLink(tarStream, "lib/Baz.pm", "Foo.pm", TarArchiveEntry.LF_SYMLINK);
+      });
+      assertEquals(3, PerlDockerAdapter.unpackTar(new ByteArrayInputStream(archive), targetDir));
+      for (String name : Arrays.asList("Foo.pm", "Bar.pm", "Baz.pm")) {
+        assertEquals(name, "package Foo;", FileUtil.loadFile(new File(targetDir, "lib/" + name)));
+      }
+    }
+    finally {
+      FileUtil.delete(targetDir);
+    }
+  }
+
+  @Test
+  public void testUnpackTarWithOutsideLink() throws IOException {
+    File targetDir = FileUtil.createTempDirectory("docker", "unpack");
+    try {
+      byte[] archive = createArchive(tarStream -> addLink(tarStream, "lib/Foo.pm", "../../etc/passwd", TarArchiveEntry.LF_SYMLINK));
+      PerlDockerAdapter.unpackTar(new ByteArrayInputStream(archive), targetDir);
+      fail("Link pointing outside of the target directory should not be unpacked");
+    }
+    catch (IOException e) {
+      assertTrue(e.getMessage(), e.getMessage().contains("lib/Foo.pm"));
+    }
+    finally {
+      FileUtil.delete(targetDir);
+    }
+  }
+
+  private static @NotNull List<String> getPaths(@NotNull Map<String, List<PerlFileDescriptor>> listings, @NotNull String path) {
+    return ContainerUtil.map(listings.get(path), PerlFileDescriptor::getPath);
+  }
+
+  private static void addFile(@NotNull TarArchiveOutputStream tarStream, @NotNull String name, @NotNull String content)
+    throws IOException {
+    TarArchiveEntry entry = new TarArchiveEntry(name);
+    byte[] bytes = content.getBytes(StandardCharsets.UTF_8);
+    entry.setSize(bytes.length);
+    tarStream.putArchiveEntry(entry);
+    tarStream.write(bytes);
+    tarStream.closeArchiveEntry();
+  }
+
+  private static void addLink(@NotNull TarArchiveOutputStream tarStream, @NotNull String name, @NotNull String target, byte linkFlag)
+    throws IOException {
+    TarArchiveEntry entry = new TarArchiveEntry(name, linkFlag);
+    entry.setLinkName(target);
+    tarStream.putArchiveEntry(entry);
+    tarStream.closeArchiveEntry();
+  }
+
+  private static byte @NotNull [] createArchive(@NotNull ThrowableConsumer<TarArchiveOutputStream, IOException> archiveBuilder)
+    throws IOException {
+    ByteArrayOutputStream result = new ByteArrayOutputStream();
+    try (TarArchiveOutputStream tarStream = new TarArchiveOutputStream(result)) {
+      archiveBuilder.consume(tarStream);
+    }
+    return result.toByteArray();
+  }
+}
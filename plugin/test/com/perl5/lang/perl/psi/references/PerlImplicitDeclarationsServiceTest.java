@@ -0,0 +1,103 @@
+/*
+ * Copyright 2015-2021 Alexandr Evstigneev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.perl5.lang.perl.psi.references;
+
+import base.PerlLightTestCase;
+import com.intellij.util.CommonProcessors;
+import com.perl5.lang.perl.psi.PerlSubDefinitionElement;
+import com.perl5.lang.perl.psi.PerlVariableDeclarationElement;
+import org.jetbrains.annotations.NotNull;
+import org.junit.Test;
+
+import static com.perl5.lang.perl.util.PerlPackageUtil.CORE_NAMESPACE;
+
+public class PerlImplicitDeclarationsServiceTest extends PerlLightTestCase {
+  private static final String MOO = "Moo";
+  private static final String MOO_ROLE = "Moo::Role";
+  private static final String LEVELS = "Log::Log4perl::Levels";
+
+  @Test
+  public void testSubLookup() {
+    PerlImplicitDeclarationsService service = createService();
+    assertNotLoaded(service, CORE_NAMESPACE, MOO, MOO_ROLE);
+    assertNotNull(service.getSub(MOO, "extends"));
+    assertTrue(service.isLoaded(MOO));
+    assertNotLoaded(service, CORE_NAMESPACE, MOO_ROLE);
+    assertNotNull(service.getCoreSub("print"));
+    assertTrue(service.isLoaded(CORE_NAMESPACE));
+    assertNotLoaded(service, MOO_ROLE);
+  }
+
+  @Test
+  public void testMissingSubLookup() {
+    PerlImplicitDeclarationsService service = createService();
+    assertNull(service.getSub(MOO_ROLE, "extends"));
+    assertTrue(service.isLoaded(MOO_ROLE));
+    assertNotLoaded(service, MOO);
+    assertNull(service.getSub("Missing::Namespace", "extends"));
+    assertNotLoaded(service, MOO);
+  }
+
+  @Test
+  public void testVariableLookup() {
+    PerlImplicitDeclarationsService service = createService();
+    assertNotNull(service.getScalar(LEVELS + "::OFF"));
+    assertTrue(service.isLoaded(LEVELS));
+    assertNotLoaded(service, "Log::Log4perl", MOO);
+  }
+
+  @Test
+  public void testNamespaceLookup() {
+    PerlImplicitDeclarationsService service = createService();
+    CommonProcessors.CollectProcessor<PerlSubDefinitionElement> subsProcessor = new CommonProcessors.CollectProcessor<>();
+    service.processSubsInPackage(MOO_ROLE, subsProcessor);
+    assertSize(7, subsProcessor.getResults());
+    assertTrue(service.isLoaded(MOO_ROLE));
+    assertNotLoaded(service, MOO, LEVELS);
+
+    CommonProcessors.CollectProcessor<PerlVariableDeclarationElement> scalarsProcessor = new CommonProcessors.CollectProcessor<>();
+    service.processScalarsInPackage(LEVELS, scalarsProcessor);
+    assertSize(8, scalarsProcessor.getResults());
+    assertTrue(service.isLoaded(LEVELS));
+    assertNotLoaded(service, MOO);
+  }
+
+  @Test
+  public void testProcessAll() {
+    PerlImplicitDeclarationsService service = createService();
+    CommonProcessors.CollectProcessor<PerlSubDefinitionElement> processor = new CommonProcessors.CollectProcessor<>();
+    service.processSubs(processor);
+    assertTrue(service.isLoaded(MOO));
+    assertTrue(service.isLoaded(MOO_ROLE));
+    assertTrue(service.isLoaded(CORE_NAMESPACE));
+    assertNotNull(service.getSub(MOO_ROLE, "requires"));
+    assertContainsElements(processor.getResults(), service.getSub(MOO, "has"), service.getCoreSub("print"));
+  }
+
+  /**
+   * Project service is shared between light tests, so a fresh one is necessary to check loading
+   */
+  private @NotNull PerlImplicitDeclarationsService createService() {
+    return new PerlImplicitDeclarationsService(getProject());
+  }
+
+  private static void assertNotLoaded(@NotNull PerlImplicitDeclarationsService service, String @NotNull ... namespacesNames) {
+    for (String namespaceName : namespacesNames) {
+      assertFalse(namespaceName, service.isLoaded(namespaceName));
+    }
+  }
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright 2015-2021 Alexandr Evstigneev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.perl5.lang.perl.xsubs;
+
+import com.intellij.execution.ExecutionException;
+import com.intellij.execution.configurations.GeneralCommandLine;
+import com.intellij.execution.configurations.PathEnvironmentVariableUtil;
+import com.intellij.execution.process.ProcessOutput;
+import com.intellij.execution.util.ExecUtil;
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.util.containers.ContainerUtil;
+import junit.framework.TestCase;
+import org.jetbrains.annotations.NotNull;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+public class PerlXSubsStateTest extends TestCase {
+  @Test
+  public void testModuleName() {
+    assertEquals("List::Util", PerlXSubsState.getModuleName("auto/List/Util/Util.so"));
+    assertEquals("Cwd", PerlXSubsState.getModuleName("auto/Cwd/Cwd.so"));
+  }
+
+  @Test
+  public void testModuleNameOutsideAutoDirectory() {
+    assertNull(PerlXSubsState.getModuleName("x86_64-linux/auto/List/Util/Util.so"));
+    assertNull(PerlXSubsState.getModuleName("lib/auto/Foo/Foo.so"));
+    assertNull(PerlXSubsState.getModuleName("auto/Util.so"));
+    assertNull(PerlXSubsState.getModuleName("Util.so"));
+  }
+
+  @Test
+  public void testParseSections() {
+    Map<String, String> sections = PerlXSubsState.parseSections(
+      Arrays.asList("List::Util", "Scalar::Util", "Skipped"),
+      Arrays.asList("garbage before sections",
+                    "#@module List::Util", "package List::Util {", "sub sum(@) ;", "}",
+                    "#@module Scalar::Util", "package Scalar::Util {", "sub blessed($) ;", "}",
+                    "#@module Unknown", "package Unknown {", "}"));
+    assertEquals(3, sections.size());
+    assertSection(sections.get("List::Util"), "package List::Util {\nsub sum(@) ;\n}\n");
+    assertSection(sections.get("Scalar::Util"), "package Scalar::Util {\nsub blessed($) ;\n}\n");
+    assertSection(sections.get("Skipped"), "");
+  }
+
+  @Test
+  public void testXSubsOwnership() throws IOException, ExecutionException {
+    File libRoot = FileUtil.createTempDirectory("xsubs", "lib");
+    try {
+      // static modules, booted with their own bootstrap subs; Alpha binary defines a sub in the Beta namespace
+      FileUtil.writeToFile(new File(libRoot, "Alpha.pm"),
+                           "package Alpha;\n" +
+                           "require XSLoader;\n" +
+                           "sub bootstrap { eval 'sub Alpha::alpha($); sub Beta::Helper::helper(@);'; }\n" +
+                           "XSLoader::load('Alpha');\n" +
+                           "1;\n");
+      FileUtil.writeToFile(new File(libRoot, "Beta.pm"),
+                           "package Beta;\n" +
+                           "use Alpha;\n" +
+                           "require XSLoader;\n" +
+                           "sub bootstrap { eval 'sub Beta::beta($);'; }\n" +
+                           "XSLoader::load();\n" +
+                           "1;\n");
+
+      for (List<String> modules : Arrays.asList(Arrays.asList("Alpha", "Beta"), Arrays.asList("Beta", "Alpha"))) {
+        Map<String, String> sections = deparse(libRoot, modules);
+        assertSection(sections.get("Alpha"), "package Alpha {\nsub alpha($) ;\n}\npackage Beta::Helper {\nsub helper(@) ;\n}\n");
+        assertSection(sections.get("Beta"), "package Beta {\nsub beta($) ;\n}\n");
+        assertCoreSection(sections.get(PerlXSubsState.CORE_MODULE_NAME));
+      }
+
+      Map<String, String> betaSections = deparse(libRoot, Collections.singletonList("Beta"));
+      assertSection(betaSections.get("Beta"), "package Beta {\nsub beta($) ;\n}\n");
+      assertCoreSection(betaSections.get(PerlXSubsState.CORE_MODULE_NAME));
+
+      Map<String, String> coreSections = deparse(libRoot, Collections.emptyList());
+      assertCoreSection(coreSections.get(PerlXSubsState.CORE_MODULE_NAME));
+    }
+    finally {
+      FileUtil.delete(libRoot);
+    }
+  }
+
+  private static @NotNull Map<String, String> deparse(@NotNull File libRoot, @NotNull List<String> modules) throws ExecutionException {
+    File perl = PathEnvironmentVariableUtil.findInPath("perl");
+    assertNotNull("Cannot find perl in path", perl);
+    GeneralCommandLine commandLine = new GeneralCommandLine(perl.getAbsolutePath())
+      .withParameters("-I" + libRoot.getAbsolutePath(), "scripts/xs_parser_simple.pl", PerlXSubsState.BATCH_PARAMETER)
+      .withParameters(modules);
+    ProcessOutput output = ExecUtil.execAndGetOutput(commandLine);
+    assertEquals(output.getStderr(), 0, output.getExitCode());
+    return PerlXSubsState.parseSections(ContainerUtil.prepend(modules, PerlXSubsState.CORE_MODULE_NAME), output.getStdoutLines());
+  }
+
+  private static void assertCoreSection(String section) {
+    assertNotNull(section);
+    assertTrue(section, section.contains("package Internals {\n"));
+    assertTrue(section, section.contains("package UNIVERSAL {\n"));
+    assertFalse(section, section.contains("Alpha"));
+    assertFalse(section, section.contains("Beta"));
+  }
+
+  private static void assertSection(String section, String expectedBody) {
+    assertNotNull(section);
+    assertTrue(section, section.startsWith("#\n#\n# DO NOT EDIT THIS FILE"));
+    assertTrue(section, section.endsWith("#\n#\n" + expectedBody));
+  }
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright 2015-2021 Alexandr Evstigneev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package documentation;
+
+import base.PodLightTestCase;
+import com.intellij.openapi.command.WriteCommandAction;
+import com.intellij.openapi.editor.Document;
+import com.intellij.psi.PsiDocumentManager;
+import com.perl5.lang.perl.documentation.PerlDocUtil;
+import com.perl5.lang.pod.parser.psi.PodCompositeElement;
+import com.perl5.lang.pod.parser.psi.PodDocumentPattern;
+import com.perl5.lang.pod.parser.psi.PodTitledSection;
+import com.perl5.lang.pod.parser.psi.mixin.PodFormatterX;
+import com.perl5.lang.pod.parser.psi.mixin.PodSectionItem;
+import org.jetbrains.annotations.NotNull;
+import org.junit.Test;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+public class PodAnchorsTest extends PodLightTestCase {
+  @Override
+  protected String getBaseDataPath() {
+    return "testData/documentation/pod/anchors";
+  }
+
+  @Test
+  public void testAnchors() {
+    initWithFileSmart();
+    StringBuilder sb = new StringBuilder();
+    dumpAnchors(sb);
+    sb.append(SEPARATOR_NEWLINES).append("Renamed opendir to readdir").append(SEPARATOR_NEWLINES);
+    replaceText("=item opendir DIRHANDLE,EXPR", "=item readdir DIRHANDLE");
+    dumpAnchors(sb);
+    assertSameLinesWithFile(getTestResultsFilePath(), sb.toString());
+  }
+
+  private void dumpAnchors(@NotNull StringBuilder sb) {
+    Document document = getEditor().getDocument();
+    for (Map.Entry<String, PodDocumentPattern> entry : createPatterns().entrySet()) {
+      sb.append(entry.getKey()).append(": ");
+      PodCompositeElement element = PerlDocUtil.searchPodElement(getFile(), entry.getValue());
+      if (element == null) {
+        sb.append("none");
+      }
+      else {
+        String kind = element instanceof PodFormatterX ? "index" : element instanceof PodSectionItem ? "item" : "heading";
+        sb.append(kind).append(" '").append(((PodTitledSection)element).getTitleText()).append("' at line ")
+          .append(document.getLineNumber(element.getTextRange().getStartOffset()) + 1);
+      }
+      sb.append("\n");
+    }
+  }
+
+  private static @NotNull Map<String, PodDocumentPattern> createPatterns() {
+    Map<String, PodDocumentPattern> result = new LinkedHashMap<>();
+    for (String item : new String[]{"open", "opendir", "readdir", "ope", "-X"}) {
+      result.put("item " + item, PodDocumentPattern.itemPattern(item));
+    }
+    result.put("item open FILEHANDLE, exact", PodDocumentPattern.itemPattern("open FILEHANDLE").withExactMatch());
+    result.put("item open, exact", PodDocumentPattern.itemPattern("open").withExactMatch());
+    result.put("heading and item open", PodDocumentPattern.headingAndItemPattern("open"));
+    result.put("heading and item FUNCTIONS", PodDocumentPattern.headingAndItemPattern("FUNCTIONS"));
+    result.put("anything open, exact", PodDocumentPattern.exactAnythingPattern("open"));
+    result.put("anything open and close, exact", PodDocumentPattern.exactAnythingPattern("open and close"));
+    for (String indexKey : new String[]{"pipe", "-w", "missing"}) {
+      result.put("index " + indexKey, PodDocumentPattern.indexPattern(indexKey));
+    }
+    return result;
+  }
+
+  private void replaceText(@NotNull String oldText, @NotNull String newText) {
+    Document document = getEditor().getDocument();
+    int offset = document.getText().indexOf(oldText);
+    assertTrue(offset >= 0);
+    WriteCommandAction.runWriteCommandAction(getProject(), () -> document.replaceString(offset, offset + oldText.length(), newText));
+    PsiDocumentManager.getInstance(getProject()).commitDocument(document);
+  }
+}
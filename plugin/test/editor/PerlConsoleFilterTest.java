@@ -18,10 +18,27 @@ package editor;
 
 
 import base.PerlLightTestCase;
+import com.intellij.execution.filters.Filter;
+import com.intellij.openapi.editor.Document;
 import com.perl5.lang.perl.idea.execution.filters.PerlAbsolutePathConsoleFilter;
 import com.perl5.lang.perl.idea.execution.filters.PerlConsoleFileLinkFilter;
+import org.jetbrains.annotations.NotNull;
 import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
 public class PerlConsoleFilterTest extends PerlLightTestCase {
+  /**
+   * Patterns filters used to match with, scanners should find the same links
+   */
+  private static final Pattern DIE_PATTERN = Pattern.compile(
+    "\\bat ((?:(?:\\p{Alpha}:)|/:)?[0-9a-z_A-Z\\-\\\\./]+) line (\\d+)\\.?\\b");
+  private static final Pattern ABSOLUTE_PATH_PATTERN = Pattern.compile(
+    "(?<=^|-I|[^.\\w/~:])((?:[/~]|\\w:[/\\\\])[-@\\w./~:\\\\]+[-@\\w.~])");
+
   @Override
   protected String getBaseDataPath() {
     return "testData/consoleFilter/perl";
@@ -57,6 +74,63 @@ public class PerlConsoleFilterTest extends PerlLightTestCase {
   @Test
   public void testSemicolons() {doTestAbsolute();}
 
+  @Test
+  public void testDieEdgeCases() {doTestDie();}
+
+  @Test
+  public void testAbsolutePathEdgeCases() {doTestAbsolute();}
+
+  @Test
+  public void testDieEdgeCasesMatchRegex() {
+    doTestMatchesRegex(new PerlConsoleFileLinkFilter(getProject(), () -> null), DIE_PATTERN, 2, false);
+  }
+
+  @Test
+  public void testAbsolutePathEdgeCasesMatchRegex() {
+    doTestMatchesRegex(new PerlAbsolutePathConsoleFilter(getProject(), () -> null), ABSOLUTE_PATH_PATTERN, 1, true);
+  }
+
+  @Test
+  public void testInstallDtlFastMatchRegex() {
+    doTestMatchesRegex(new PerlAbsolutePathConsoleFilter(getProject(), () -> null), ABSOLUTE_PATH_PATTERN, 1, true);
+  }
+
+  @Test
+  public void testConfessMatchRegex() {
+    doTestMatchesRegex(new PerlConsoleFileLinkFilter(getProject(), () -> null), DIE_PATTERN, 2, false);
+  }
+
+  /**
+   * Checks that {@code filter} finds the same ranges as the {@code pattern} from the start of the first group to the end of the
+   * {@code lastGroup} for each line of the test file
+   */
+  private void doTestMatchesRegex(@NotNull Filter filter, @NotNull Pattern pattern, int lastGroup, boolean findAll) {
+    initWithFileSmart(getTestName(true).replace("MatchRegex", ""));
+    Document document = getEditor().getDocument();
+    for (int lineNumber = 0; lineNumber < document.getLineCount(); lineNumber++) {
+      int lineStart = document.getLineStartOffset(lineNumber);
+      String lineText = document.getText().substring(lineStart, document.getLineEndOffset(lineNumber));
+
+      List<String> expectedRanges = new ArrayList<>();
+      Matcher matcher = pattern.matcher(lineText);
+      while (matcher.find()) {
+        expectedRanges.add((lineStart + matcher.start(1)) + "-" + (lineStart + matcher.end(lastGroup)));
+        if (!findAll) {
+          break;
+        }
+      }
+
+      List<String> actualRanges = new ArrayList<>();
+      Filter.Result result = filter.applyFilter(lineText, lineStart + lineText.length());
+      if (result != null) {
+        for (Filter.ResultItem resultItem : result.getResultItems()) {
+          actualRanges.add(resultItem.getHighlightStartOffset() + "-" + resultItem.getHighlightEndOffset());
+        }
+      }
+      assertEquals(lineText, expectedRanges, actualRanges);
+    }
+  }
+
   private void doTestAbsolute() {
     doTestConsoleFilter(new PerlAbsolutePathConsoleFilter(getProject(), () -> null));
   }
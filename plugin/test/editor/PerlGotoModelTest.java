@@ -112,6 +112,12 @@ public class PerlGotoModelTest extends PerlLightTestCase {
     doTestEveryWhere(getGoToSymbolModel());
   }
 
+  @Test
+  public void testSameNamesSymbol() {
+    myFixture.copyDirectoryToProject("samenamesfiles", "");
+    doTestGoToByModel(getGoToSymbolModel(), "$Foo::VALUE", "$Foo::Inner::VALUE", "%Bar::VALUE", "@Bar::LIST", "@Foo::LIST");
+  }
+
   private void doTestEveryWhere(@NotNull FilteringGotoByModel<?> model) {
     copyToProject();
     addSecondContentEntry();
@@ -18,7 +18,17 @@ package lightElements;
 
 
 import base.PerlLightTestCase;
+import com.intellij.psi.PsiElement;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.impl.source.PsiFileImpl;
+import com.perl5.lang.perl.psi.light.PerlDelegatingLightNamedElement;
+import com.perl5.lang.perl.util.PerlPackageUtil;
+import com.perl5.lang.perl.util.PerlSubUtil;
+import org.jetbrains.annotations.NotNull;
 import org.junit.Test;
+
+import java.util.Collection;
+
 public class PerlLightElementsTest extends PerlLightTestCase {
   @Override
   protected String getBaseDataPath() {
@@ -58,6 +68,34 @@ public class PerlLightElementsTest extends PerlLightTestCase {
   @Test
   public void testMooseAttrsWithStandardTypes() {doTest();}
 
+  @Test
+  public void testNavigationFromStubs() {
+    String libraryText = "package Foo;\nuse constant {\n  FIRST => 1,\n  SECOND => 2,\n};\nuse Exception::Class ('Foo::Error');\n1;";
+    PsiFile libraryFile = myFixture.addFileToProject("Foo.pm", libraryText);
+    initWithTextSmart("Foo::SECOND;");
+    addVirtualFileFilter();
+    PerlDelegatingLightNamedElement<?> firstConstant = getLightElement(PerlSubUtil.getSubDefinitions(getProject(), "Foo::FIRST"));
+    PerlDelegatingLightNamedElement<?> secondConstant = getLightElement(PerlSubUtil.getSubDefinitions(getProject(), "Foo::SECOND"));
+    PerlDelegatingLightNamedElement<?> exceptionClass =
+      getLightElement(PerlPackageUtil.getNamespaceDefinitions(getProject(), "Foo::Error"));
+    assertEquals(libraryText.indexOf("FIRST"), firstConstant.getTextOffset());
+    assertEquals(libraryText.indexOf("SECOND"), secondConstant.getTextOffset());
+    int exceptionClassOffset = exceptionClass.getTextOffset();
+    assertTrue(exceptionClassOffset >= libraryText.indexOf("'Foo::Error'"));
+    assertFalse(((PsiFileImpl)libraryFile).isContentsLoaded());
+    removeVirtualFileFilter();
+
+    PsiElement exceptionClassIdentifier = exceptionClass.getNameIdentifier();
+    assertNotNull(exceptionClassIdentifier);
+    assertEquals(exceptionClassIdentifier.getTextOffset(), exceptionClassOffset);
+  }
+
+  private static @NotNull PerlDelegatingLightNamedElement<?> getLightElement(@NotNull Collection<? extends PsiElement> elements) {
+    PsiElement element = assertOneElement(elements);
+    assertInstanceOf(element, PerlDelegatingLightNamedElement.class);
+    return (PerlDelegatingLightNamedElement<?>)element;
+  }
+
   private void doTest() {
     doTestLightElements();
   }
@@ -0,0 +1,75 @@
+/*
+ * Copyright 2015-2021 Alexandr Evstigneev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package resolve;
+
+import base.PerlLightTestCase;
+import categories.Performance;
+import com.intellij.psi.util.PsiTreeUtil;
+import com.intellij.testFramework.PlatformTestUtil;
+import com.intellij.testFramework.fixtures.impl.CodeInsightTestFixtureImpl;
+import com.perl5.lang.perl.extensions.packageprocessor.PerlExportDescriptor;
+import com.perl5.lang.perl.psi.impl.PerlUseStatementElement;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Category(Performance.class)
+public class PerlExportsPerformanceTest extends PerlLightTestCase {
+  private static final int MODULES_NUMBER = 50;
+  private static final int EXPORTS_NUMBER = 20;
+
+  @Test
+  public void testImportsLookup() {
+    StringBuilder usesBuilder = new StringBuilder();
+    for (int i = 0; i < MODULES_NUMBER; i++) {
+      StringBuilder sb = new StringBuilder();
+      sb.append("package Module").append(i).append(";\n")
+        .append("use Exporter 'import';\n")
+        .append("our @EXPORT = qw/default").append(i).append("/;\n")
+        .append("our @EXPORT_OK = qw/");
+      for (int j = 0; j < EXPORTS_NUMBER; j++) {
+        sb.append(" sub").append(i).append("_").append(j);
+      }
+      sb.append("/;\n")
+        .append("our %EXPORT_TAGS = (all => [qw/");
+      for (int j = 0; j < EXPORTS_NUMBER; j += 2) {
+        sb.append(" sub").append(i).append("_").append(j);
+      }
+      sb.append("/]);\n1;\n");
+      myFixture.addFileToProject("Module" + i + ".pm", sb.toString());
+      usesBuilder.append("use Module").append(i).append(i % 2 == 0 ? " qw/:all sub" + i + "_1/;\n" : ";\n");
+    }
+    initWithTextSmart(usesBuilder.toString());
+    CodeInsightTestFixtureImpl.ensureIndexesUpToDate(getProject());
+
+    List<PerlUseStatementElement> useStatements = new ArrayList<>(PsiTreeUtil.findChildrenOfType(getFile(), PerlUseStatementElement.class));
+    assertSize(MODULES_NUMBER, useStatements);
+    List<PerlExportDescriptor> firstImports = useStatements.get(0).getPackageProcessor().getImports(useStatements.get(0));
+    assertSize(EXPORTS_NUMBER / 2 + 1, firstImports);
+
+    final int iterations = 1000;
+    PlatformTestUtil.startPerformanceTest("Imports of " + MODULES_NUMBER + " use statements", 2000, () -> {
+      for (int iteration = 0; iteration < iterations; iteration++) {
+        for (PerlUseStatementElement useStatement : useStatements) {
+          useStatement.getPackageProcessor().getImports(useStatement);
+        }
+      }
+    }).assertTiming();
+  }
+}
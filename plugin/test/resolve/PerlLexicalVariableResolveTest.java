@@ -30,6 +30,21 @@ public class PerlLexicalVariableResolveTest extends PerlLightTestCase {
     doTestResolve();
   }
 
+  @Test
+  public void testShadowing() {
+    doTestResolve();
+  }
+
+  @Test
+  public void testNestedScopes() {
+    doTestResolve();
+  }
+
+  @Test
+  public void testOurState() {
+    doTestResolve();
+  }
+
   @Test
   public void testSimple() {
     doTestResolve();
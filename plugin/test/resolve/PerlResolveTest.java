@@ -385,6 +385,12 @@ public class PerlResolveTest extends PerlLightTestCase {
     doTest();
   }
 
+  @Test
+  public void testExportTags() {
+    myFixture.copyFileToProject("exportTagsModule.code", "exportTagsModule.pl");
+    doTest();
+  }
+
   private void doTest() {
     doTestResolve();
   }
@@ -0,0 +1,116 @@
+/*
+ * Copyright 2015-2021 Alexandr Evstigneev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package unit.perl;
+
+import base.PerlLightTestCase;
+import com.intellij.navigation.GotoRelatedItem;
+import com.intellij.openapi.application.WriteAction;
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.openapi.vfs.LocalFileSystem;
+import com.intellij.openapi.vfs.VfsUtilCore;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.PsiElement;
+import com.intellij.psi.PsiFile;
+import com.perl5.lang.perl.idea.navigation.PerlIncludedFilesGotoRelatedProvider;
+import com.perl5.lang.perl.idea.project.PerlDependenciesGraph;
+import org.jetbrains.annotations.NotNull;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collection;
+
+public class PerlDependenciesGraphTest extends PerlLightTestCase {
+  @Override
+  protected String getBaseDataPath() {
+    return "testData/unit/perl/dependenciesGraph";
+  }
+
+  /**
+   * {@code Foo} can't resolve {@code Bar} by itself, only with lib dir added by the script
+   */
+  @Test
+  public void testTransitiveUseLib() throws IOException {
+    String testName = getTestName(true);
+    VirtualFile testDir = LocalFileSystem.getInstance().refreshAndFindFileByPath(getTestDataPath() + "/" + testName);
+    assertNotNull(testDir);
+    VirtualFile extraDir = testDir.findChild("extra");
+    assertNotNull(extraDir);
+    VirtualFile rootDir = myFixture.getTempDirFixture().getFile("");
+    myFixture.copyDirectoryToProject(testName + "/project", "");
+    VirtualFile fooFile = myFixture.findFileInTempDir("lib/Foo.pm");
+    markAsLibRoot(fooFile.getParent(), true);
+    String scriptText = FileUtil.loadFile(new File(testDir.getPath(), "script.code"));
+    PsiFile scriptFile = myFixture.addFileToProject("script.pl", scriptText.replace("$EXTRA_DIR$", extraDir.getPath()));
+    VirtualFile barFile = extraDir.findChild("Bar.pm");
+    assertNotNull(barFile);
+
+    PerlDependenciesGraph graph = PerlDependenciesGraph.getInstance(getProject());
+    StringBuilder sb = new StringBuilder();
+    dumpFiles(sb, "Dependencies of script.pl", graph.getDependencies(scriptFile.getVirtualFile()), rootDir, testDir);
+    dumpFiles(sb, "Direct dependencies of lib/Foo.pm", graph.getDirectDependencies(fooFile), rootDir, testDir);
+    dumpFiles(sb, "Dependents of extra/Bar.pm", graph.getDependents(barFile), rootDir, testDir);
+    sb.append("Related items of script.pl:\n");
+    for (GotoRelatedItem item : new PerlIncludedFilesGotoRelatedProvider().getItems(scriptFile)) {
+      PsiElement element = item.getElement();
+      assertNotNull(element);
+      sb.append("  ").append(item.getGroup()).append(": ")
+        .append(getRelativePath(element.getContainingFile().getVirtualFile(), rootDir, testDir)).append("\n");
+    }
+
+    long modificationCount = graph.getModificationCount();
+    sb.append(SEPARATOR_NEWLINES).append("Added lib/Bar.pm").append(SEPARATOR_NEWLINES);
+    VirtualFile libBarFile = myFixture.addFileToProject("lib/Bar.pm", "package Bar;\n1;\n").getVirtualFile();
+    dumpFiles(sb, "Direct dependencies of lib/Foo.pm", graph.getDirectDependencies(fooFile), rootDir, testDir);
+    dumpFiles(sb, "Dependencies of script.pl", graph.getDependencies(scriptFile.getVirtualFile()), rootDir, testDir);
+    assertTrue(graph.getModificationCount() > modificationCount);
+
+    modificationCount = graph.getModificationCount();
+    myFixture.addFileToProject("lib/Bar.txt", "Bar.pm");
+    graph.getDirectDependencies(fooFile);
+    assertEquals(modificationCount, graph.getModificationCount());
+
+    sb.append(SEPARATOR_NEWLINES).append("Removed lib/Bar.pm").append(SEPARATOR_NEWLINES);
+    WriteAction.run(() -> libBarFile.delete(this));
+    dumpFiles(sb, "Direct dependencies of lib/Foo.pm", graph.getDirectDependencies(fooFile), rootDir, testDir);
+    assertTrue(graph.getModificationCount() > modificationCount);
+    assertSameLinesWithFile(getTestResultsFilePath(), sb.toString());
+  }
+
+  private static void dumpFiles(@NotNull StringBuilder sb,
+                                @NotNull String title,
+                                @NotNull Collection<VirtualFile> files,
+                                @NotNull VirtualFile rootDir,
+                                @NotNull VirtualFile testDir) {
+    sb.append(title).append(":\n");
+    for (VirtualFile file : files) {
+      sb.append("  ").append(getRelativePath(file, rootDir, testDir)).append("\n");
+    }
+  }
+
+  /**
+   * @return path of a project file relative to the project root or path of an external file relative to the test directory
+   */
+  private static @NotNull String getRelativePath(@NotNull VirtualFile file, @NotNull VirtualFile rootDir, @NotNull VirtualFile testDir) {
+    String relativePath = VfsUtilCore.getRelativePath(file, rootDir);
+    if (relativePath == null) {
+      relativePath = VfsUtilCore.getRelativePath(file, testDir);
+    }
+    assertNotNull(file.getPath(), relativePath);
+    return relativePath;
+  }
+}
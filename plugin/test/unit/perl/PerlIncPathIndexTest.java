@@ -0,0 +1,100 @@
+/*
+ * Copyright 2015-2021 Alexandr Evstigneev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package unit.perl;
+
+import base.PerlLightTestCase;
+import com.intellij.openapi.application.WriteAction;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.PsiFile;
+import com.perl5.lang.perl.idea.project.PerlIncPathIndex;
+import com.perl5.lang.pod.parser.psi.PodLinkDescriptor;
+import com.perl5.lang.pod.parser.psi.util.PodFileUtil;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class PerlIncPathIndexTest extends PerlLightTestCase {
+  @Test
+  public void testFileCreation() {
+    PerlIncPathIndex index = setUpIndex();
+    assertEmpty(index.getFiles("Foo/Baz.pm"));
+
+    myFixture.addFileToProject("lib/Foo/Baz.pm", "package Foo::Baz;");
+    assertFalse(index.isCached("Foo/Baz.pm"));
+    assertTrue(index.isCached("Foo/Bar.pm"));
+    assertTrue(index.isCached("Other.pm"));
+    assertSize(1, index.getFiles("Foo/Baz.pm"));
+  }
+
+  @Test
+  public void testFileDeletion() {
+    PerlIncPathIndex index = setUpIndex();
+    VirtualFile file = index.findFile("Foo/Bar.pm");
+    assertNotNull(file);
+
+    WriteAction.run(() -> file.delete(this));
+    assertFalse(index.isCached("Foo/Bar.pm"));
+    assertTrue(index.isCached("Other.pm"));
+    assertEmpty(index.getFiles("Foo/Bar.pm"));
+  }
+
+  @Test
+  public void testDirectoryRename() {
+    PerlIncPathIndex index = setUpIndex();
+    VirtualFile directory = myFixture.findFileInTempDir("lib/Foo");
+    assertNotNull(directory);
+
+    WriteAction.run(() -> directory.rename(this, "Qux"));
+    assertFalse(index.isCached("Foo/Bar.pm"));
+    assertFalse(index.isCached("Foo/Baz.pm"));
+    assertTrue(index.isCached("Other.pm"));
+    assertEmpty(index.getFiles("Foo/Bar.pm"));
+    assertSize(1, index.getFiles("Qux/Bar.pm"));
+  }
+
+  @Test
+  public void testPodFilesByDescriptor() {
+    setUpIndex();
+    myFixture.addFileToProject("lib/Foo/Bar.pod", "=head1 NAME\n\nFoo::Bar\n\n=cut");
+    List<String> names = new ArrayList<>();
+    PodFileUtil.processPodFilesByDescriptor(getProject(), PodLinkDescriptor.create("Foo::Bar", null), psiFile -> {
+      names.add(psiFile.getName());
+      return true;
+    });
+    assertEquals(Arrays.asList("Bar.pod", "Bar.pm"), names);
+    PsiFile podFile = PodFileUtil.getPodOrPackagePsiByDescriptor(getProject(), PodLinkDescriptor.create("Foo::Bar", null));
+    assertNotNull(podFile);
+    assertEquals("Bar.pod", podFile.getName());
+  }
+
+  /**
+   * Sets up library root with {@code Foo/Bar.pm} and index with cached {@code Foo/Bar.pm}, {@code Foo/Baz.pm} and {@code Other.pm}
+   */
+  private PerlIncPathIndex setUpIndex() {
+    myFixture.addFileToProject("lib/Foo/Bar.pm", "package Foo::Bar;\n1;");
+    VirtualFile libRoot = myFixture.findFileInTempDir("lib");
+    assertNotNull(libRoot);
+    markAsLibRoot(libRoot, true);
+    PerlIncPathIndex index = PerlIncPathIndex.getInstance(getProject());
+    assertSize(1, index.getFiles("Foo/Bar.pm"));
+    assertEmpty(index.getFiles("Foo/Baz.pm"));
+    assertEmpty(index.getFiles("Other.pm"));
+    return index;
+  }
+}
@@ -0,0 +1,139 @@
+/*
+ * Copyright 2015-2021 Alexandr Evstigneev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package unit.perl;
+
+import base.PerlLightTestCase;
+import com.intellij.openapi.command.WriteCommandAction;
+import com.intellij.openapi.editor.Document;
+import com.intellij.psi.PsiDocumentManager;
+import com.intellij.util.Processor;
+import com.perl5.lang.perl.idea.project.PerlNamesCache;
+import com.perl5.lang.perl.idea.project.PerlNamesSnapshot;
+import org.jetbrains.annotations.NotNull;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+
+public class PerlNamesCacheTest extends PerlLightTestCase {
+  @Override
+  protected String getBaseDataPath() {
+    return "testData/unit/perl/namesCache";
+  }
+
+  @Test
+  public void testNamespacesDictionary() {
+    initWithFileSmart();
+    PerlNamesCache namesCache = PerlNamesCache.getInstance(getProject());
+    namesCache.forceCacheUpdate();
+    StringBuilder sb = new StringBuilder();
+    dumpNamespacesNames(sb);
+    sb.append(SEPARATOR_NEWLINES).append("Added Dictionary::Delta").append(SEPARATOR_NEWLINES);
+    replaceText("package DictionaryOther;", "package DictionaryOther;\npackage Dictionary::Delta;");
+    namesCache.flushPendingChanges();
+    dumpNamespacesNames(sb);
+    assertSameLinesWithFile(getTestResultsFilePath(), sb.toString());
+  }
+
+  private void dumpNamespacesNames(@NotNull StringBuilder sb) {
+    PerlNamesSnapshot snapshot = PerlNamesCache.getInstance(getProject()).getSnapshot();
+    for (String prefix : Arrays.asList("Dictionary", "DICTIONARY::a", "dictionary::G", "Missing")) {
+      List<String> names = new ArrayList<>();
+      snapshot.processNamespacesNames(prefix, names::add);
+      sb.append(prefix).append(": ").append(names.isEmpty() ? "none" : String.join(", ", names)).append("\n");
+    }
+  }
+
+  @Test
+  public void testNamesDictionaries() {
+    initWithFileSmart();
+    PerlNamesCache namesCache = PerlNamesCache.getInstance(getProject());
+    namesCache.forceCacheUpdate();
+    StringBuilder sb = new StringBuilder();
+    dumpNamesDictionaries(sb, namesCache.getSnapshot());
+    sb.append(SEPARATOR_NEWLINES).append("Added Dictionary::Beta::added_sub and $Dictionary::Beta::added").append(SEPARATOR_NEWLINES);
+    replaceText("sub beta_sub{}", "sub beta_sub{}\nsub added_sub{}\nour $added;");
+    // actual snapshot applies pending changes synchronously
+    dumpNamesDictionaries(sb, namesCache.getActualSnapshot());
+    assertSameLinesWithFile(getTestResultsFilePath(), sb.toString());
+  }
+
+  private static void dumpNamesDictionaries(@NotNull StringBuilder sb, @NotNull PerlNamesSnapshot snapshot) {
+    dumpNames(sb, "subs with prefix Dictionary::", it -> snapshot.processSubsNames("Dictionary::", it));
+    dumpNames(sb, "subs in Dictionary::Alpha", it -> snapshot.processSubsNamesInNamespace("Dictionary::Alpha", it));
+    dumpNames(sb, "namespaces in Dictionary", it -> snapshot.processNamespacesNamesInNamespace("Dictionary", it));
+    dumpNames(sb, "namespaces in Dictionary::Alpha", it -> snapshot.processNamespacesNamesInNamespace("Dictionary::Alpha", it));
+    dumpNames(sb, "globals with prefix Dictionary::", it -> snapshot.processGlobalsNames("Dictionary::", it));
+    dumpNames(sb, "globals in Dictionary::Alpha", it -> snapshot.processGlobalsNamesInNamespace("Dictionary::Alpha", it));
+  }
+
+  private static void dumpNames(@NotNull StringBuilder sb, @NotNull String title, @NotNull Consumer<Processor<String>> namesProvider) {
+    List<String> names = new ArrayList<>();
+    namesProvider.accept(names::add);
+    sb.append(title).append(": ").append(names.isEmpty() ? "none" : String.join(", ", names)).append("\n");
+  }
+
+  @Test
+  public void testRemoveNameOnFirstChange() {
+    initWithTextSmart("package Foo::Bar;\nsub removed_sub{}\nsub kept_sub{}\n");
+    PerlNamesCache namesCache = PerlNamesCache.getInstance(getProject());
+    namesCache.forceCacheUpdate();
+    assertTrue(namesCache.getSnapshot().isKnownSub("Foo::Bar::removed_sub"));
+    long fullRebuilds = namesCache.getFullRebuildsCount();
+    long incrementalUpdates = namesCache.getIncrementalUpdatesCount();
+
+    replaceText("sub removed_sub{}\n", "");
+    namesCache.flushPendingChanges();
+    assertTrue(namesCache.getSnapshot().isKnownSub("Foo::Bar::kept_sub"));
+    assertTrue(namesCache.getIncrementalUpdatesCount() > incrementalUpdates);
+
+    // removed name is known from indexes, so it may be dropped only by the full rebuild
+    namesCache.flushPendingChanges();
+    assertTrue(namesCache.getFullRebuildsCount() > fullRebuilds);
+  }
+
+  @Test
+  public void testAddAndRemoveName() {
+    initWithTextSmart("package Foo::Bar;\nsub existing_sub{}\n");
+    PerlNamesCache namesCache = PerlNamesCache.getInstance(getProject());
+    namesCache.forceCacheUpdate();
+    long fullRebuilds = namesCache.getFullRebuildsCount();
+    assertFalse(namesCache.getSnapshot().isKnownSub("Foo::Bar::added_sub"));
+
+    replaceText("sub existing_sub{}\n", "sub existing_sub{}\nsub added_sub{}\n");
+    namesCache.flushPendingChanges();
+    assertTrue(namesCache.getSnapshot().isKnownSub("Foo::Bar::added_sub"));
+    assertEquals(1, namesCache.getLastDeltaSize());
+
+    replaceText("sub added_sub{}\n", "");
+    namesCache.flushPendingChanges();
+    assertFalse(namesCache.getSnapshot().isKnownSub("Foo::Bar::added_sub"));
+    assertEquals(1, namesCache.getLastDeltaSize());
+    assertTrue(namesCache.getSnapshot().isKnownSub("Foo::Bar::existing_sub"));
+    assertEquals(fullRebuilds, namesCache.getFullRebuildsCount());
+  }
+
+  private void replaceText(@NotNull String oldText, @NotNull String newText) {
+    Document document = getEditor().getDocument();
+    int offset = document.getText().indexOf(oldText);
+    assertTrue(offset >= 0);
+    WriteCommandAction.runWriteCommandAction(getProject(), () -> document.replaceString(offset, offset + oldText.length(), newText));
+    PsiDocumentManager.getInstance(getProject()).commitDocument(document);
+  }
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright 2015-2021 Alexandr Evstigneev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package unit.perl;
+
+import base.PerlLightTestCase;
+import com.intellij.openapi.command.WriteCommandAction;
+import com.intellij.openapi.editor.Document;
+import com.intellij.psi.PsiDocumentManager;
+import com.perl5.lang.perl.idea.project.PerlNamespacesModificationTracker;
+import org.jetbrains.annotations.NotNull;
+import org.junit.Test;
+
+public class PerlNamespacesModificationTrackerTest extends PerlLightTestCase {
+  @Test
+  public void testSubBodyChange() {
+    initWithTextSmart("package Foo;\nuse parent -norequire, 'Bar';\nsub something{ 42 }\n");
+    long modificationCount = getModificationCount();
+    replaceText("42", "43");
+    replaceText("43", "my $var = 44;");
+    assertEquals(modificationCount, getModificationCount());
+  }
+
+  @Test
+  public void testStatementChange() {
+    initWithTextSmart("package Foo;\nuse parent -norequire, 'Bar';\nmy $var = 42;\n");
+    long modificationCount = getModificationCount();
+    replaceText("42", "43");
+    assertEquals(modificationCount, getModificationCount());
+  }
+
+  @Test
+  public void testNamespaceAddedInSubBody() {
+    initWithTextSmart("package Foo;\nsub something{ 42 }\n");
+    long modificationCount = getModificationCount();
+    replaceText("42", "package Foo::Bar; 42");
+    assertTrue(getModificationCount() > modificationCount);
+  }
+
+  @Test
+  public void testNamespaceRenamed() {
+    initWithTextSmart("package Foo;\nsub something{ 42 }\n");
+    long modificationCount = getModificationCount();
+    replaceText("Foo", "Foo::Bar");
+    assertTrue(getModificationCount() > modificationCount);
+  }
+
+  @Test
+  public void testIsaChange() {
+    initWithTextSmart("package Foo;\nour @ISA = ('Bar');\nsub something{ 42 }\n");
+    long modificationCount = getModificationCount();
+    replaceText("'Bar'", "'Baz'");
+    assertTrue(getModificationCount() > modificationCount);
+  }
+
+  @Test
+  public void testParentChange() {
+    initWithTextSmart("package Foo;\nuse parent -norequire, 'Bar';\nsub something{ 42 }\n");
+    long modificationCount = getModificationCount();
+    replaceText("'Bar'", "'Baz'");
+    long newModificationCount = getModificationCount();
+    assertTrue(newModificationCount > modificationCount);
+    assertEquals(newModificationCount, getModificationCount());
+  }
+
+  @Test
+  public void testNamespaceAdded() {
+    initWithTextSmart("package Foo;\nsub something{ 42 }\n");
+    long modificationCount = getModificationCount();
+    replaceText("sub something{ 42 }\n", "sub something{ 42 }\npackage Foo::Bar;\n");
+    assertTrue(getModificationCount() > modificationCount);
+  }
+
+  @Test
+  public void testExportChange() {
+    initWithTextSmart("package Foo;\nour @EXPORT = qw/something/;\nsub something{ 42 }\nsub other{}\n");
+    long modificationCount = getModificationCount();
+    replaceText("qw/something/", "qw/something other/");
+    assertTrue(getModificationCount() > modificationCount);
+  }
+
+  private long getModificationCount() {
+    return PerlNamespacesModificationTracker.getInstance(getProject()).getModificationCount();
+  }
+
+  private void replaceText(@NotNull String oldText, @NotNull String newText) {
+    Document document = getEditor().getDocument();
+    int offset = document.getText().indexOf(oldText);
+    assertTrue(offset >= 0);
+    WriteCommandAction.runWriteCommandAction(getProject(), () -> document.replaceString(offset, offset + oldText.length(), newText));
+    PsiDocumentManager.getInstance(getProject()).commitDocument(document);
+  }
+}
@@ -0,0 +1,127 @@
+/*
+ * Copyright 2015-2021 Alexandr Evstigneev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package unit.perl;
+
+import base.PerlLightTestCase;
+import com.intellij.openapi.command.WriteCommandAction;
+import com.intellij.openapi.editor.Document;
+import com.intellij.psi.PsiDocumentManager;
+import com.intellij.psi.PsiFile;
+import com.perl5.lang.perl.idea.codeInsight.typeInference.value.PerlValue;
+import com.perl5.lang.perl.idea.codeInsight.typeInference.value.PerlValuesCacheService;
+import com.perl5.lang.perl.idea.codeInsight.typeInference.value.PerlValuesManager;
+import com.perl5.lang.perl.psi.PerlVariable;
+import org.jetbrains.annotations.NotNull;
+import org.junit.Test;
+
+public class PerlValuesCacheServiceTest extends PerlLightTestCase {
+  /**
+   * Value of {@code $obj} depends on the script and {@code Foo.pm}. Changes in sub bodies of other files keep it, unless they assign
+   * package variables
+   */
+  @Test
+  public void testSubBodyChanges() {
+    PsiFile fooFile = myFixture.addFileToProject("Foo.pm", "package Foo;\nsub new{ return bless {}, shift; }\n");
+    PsiFile barFile = myFixture.addFileToProject("Bar.pm", "package Bar;\nsub bar{ my $var = 1; }\n");
+    initWithTextSmart("my $obj = Foo->new();\n$o<caret>bj;");
+    PerlVariable variable = getElementAtCaret(PerlVariable.class);
+    PerlValuesCacheService cacheService = PerlValuesCacheService.getInstance(getProject());
+
+    PerlValue value = resolve(variable);
+    PerlValuesCacheService.Statistics statistics = cacheService.getStatistics();
+    assertTrue(statistics.getSize() > 0);
+    assertEquals(value, resolve(variable));
+    statistics = assertCachedValueUsed(statistics, true);
+
+    replaceText(barFile, "my $var = 1;", "my $var = 2;");
+    assertEquals(value, resolve(variable));
+    statistics = assertCachedValueUsed(statistics, true);
+
+    replaceText(fooFile, "return bless {}, shift;", "my $self = bless {}, shift; return $self;");
+    assertEquals(value, resolve(variable));
+    statistics = assertCachedValueUsed(statistics, false);
+
+    replaceText(barFile, "my $var = 2;", "our $var = 2;");
+    assertEquals(value, resolve(variable));
+    statistics = assertCachedValueUsed(statistics, false);
+
+    replaceText(barFile, "our $var = 2;", "our $var = 2; $Foo::var = 3;");
+    assertEquals(value, resolve(variable));
+    statistics = assertCachedValueUsed(statistics, false);
+
+    replaceText(barFile, "$Foo::var = 3;", "$Foo::var = 4;");
+    assertEquals(value, resolve(variable));
+    assertCachedValueUsed(statistics, false);
+  }
+
+  /**
+   * Assignments to variables declared lexically in the enclosing sub or file keep values of other files, others are considered global
+   */
+  @Test
+  public void testLexicalAssignmentChanges() {
+    myFixture.addFileToProject("Foo.pm", "package Foo;\nsub new{ return bless {}, shift; }\n");
+    PsiFile barFile = myFixture.addFileToProject(
+      "Bar.pm", "package Bar;\nmy $fileVar;\nsub bar{ my $var; $var = 1; $fileVar = 1; $otherVar = 1; }\n");
+    initWithTextSmart("my $obj = Foo->new();\n$o<caret>bj;");
+    PerlVariable variable = getElementAtCaret(PerlVariable.class);
+    PerlValuesCacheService cacheService = PerlValuesCacheService.getInstance(getProject());
+
+    PerlValue value = resolve(variable);
+    PerlValuesCacheService.Statistics statistics = cacheService.getStatistics();
+
+    replaceText(barFile, "$var = 1;", "$var = 2;");
+    assertEquals(value, resolve(variable));
+    statistics = assertCachedValueUsed(statistics, true);
+
+    replaceText(barFile, "$fileVar = 1;", "$fileVar = 2;");
+    assertEquals(value, resolve(variable));
+    statistics = assertCachedValueUsed(statistics, true);
+
+    replaceText(barFile, "$otherVar = 1;", "$otherVar = 2;");
+    assertEquals(value, resolve(variable));
+    assertCachedValueUsed(statistics, false);
+  }
+
+  private @NotNull PerlValuesCacheService.Statistics assertCachedValueUsed(@NotNull PerlValuesCacheService.Statistics oldStatistics,
+                                                                           boolean isUsed) {
+    PerlValuesCacheService.Statistics newStatistics = PerlValuesCacheService.getInstance(getProject()).getStatistics();
+    if (isUsed) {
+      assertTrue(newStatistics.getHits() > oldStatistics.getHits());
+      assertEquals(oldStatistics.getMisses(), newStatistics.getMisses());
+      assertEquals(oldStatistics.getInvalidations(), newStatistics.getInvalidations());
+    }
+    else {
+      assertTrue(newStatistics.getMisses() > oldStatistics.getMisses());
+      assertTrue(newStatistics.getInvalidations() > oldStatistics.getInvalidations());
+    }
+    return newStatistics;
+  }
+
+  private static @NotNull PerlValue resolve(@NotNull PerlVariable variable) {
+    return PerlValuesManager.from(variable).resolve(variable);
+  }
+
+  private void replaceText(@NotNull PsiFile psiFile, @NotNull String oldText, @NotNull String newText) {
+    PsiDocumentManager documentManager = PsiDocumentManager.getInstance(getProject());
+    Document document = documentManager.getDocument(psiFile);
+    assertNotNull(document);
+    int offset = document.getText().indexOf(oldText);
+    assertTrue(offset >= 0);
+    WriteCommandAction.runWriteCommandAction(getProject(), () -> document.replaceString(offset, offset + oldText.length(), newText));
+    documentManager.commitDocument(document);
+  }
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright 2015-2021 Alexandr Evstigneev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package unit.perl;
+
+import base.PerlLightTestCase;
+import com.intellij.lang.cacheBuilder.DefaultWordsScanner;
+import com.intellij.lang.cacheBuilder.WordOccurrence;
+import com.intellij.lang.cacheBuilder.WordsScanner;
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.openapi.vfs.CharsetToolkit;
+import com.intellij.psi.tree.TokenSet;
+import com.perl5.lang.perl.PerlParserDefinition;
+import com.perl5.lang.perl.idea.findusages.PerlWordsScanner;
+import com.perl5.lang.perl.lexer.PerlElementTypes;
+import com.perl5.lang.perl.lexer.PerlLexingContext;
+import com.perl5.lang.perl.lexer.adapters.PerlMergingLexerAdapter;
+import org.jetbrains.annotations.NotNull;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+public class PerlWordsScannerTest extends PerlLightTestCase {
+  @Override
+  protected String getBaseDataPath() {
+    return "testData/unit/perl/wordsScanner";
+  }
+
+  @Test
+  public void testHeredocs() {doTest();}
+
+  @Test
+  public void testQuoteLike() {doTest();}
+
+  @Test
+  public void testDeclarations() {doTest();}
+
+  @Test
+  public void testHandlesAndLabels() {doTest();}
+
+  @Test
+  public void testFormatAndSignatures() {doTest();}
+
+  @Test
+  public void testParserTestData() {
+    File[] files = new File("testData/unit/perl/parser").listFiles((dir, name) -> name.endsWith(getRealDataFileExtension()));
+    assertNotNull(files);
+    assertTrue(files.length > 0);
+    for (File file : files) {
+      assertCodeWordsFound(file);
+    }
+  }
+
+  private void doTest() {
+    assertCodeWordsFound(new File(getTestDataPath(), getTestName(true) + getRealDataFileExtension()));
+  }
+
+  /**
+   * Checks that each code word, reported by the lexer-based scanner, is reported by the {@link PerlWordsScanner} as code or foreign language
+   * word, so references search finds it
+   */
+  private static void assertCodeWordsFound(@NotNull File file) {
+    String text = loadText(file);
+    Set<String> searchableWords = new HashSet<>();
+    new PerlWordsScanner().processWords(text, it -> {
+      if (it.getKind() == WordOccurrence.Kind.CODE || it.getKind() == WordOccurrence.Kind.FOREIGN_LANGUAGE) {
+        searchableWords.add(serialize(it));
+      }
+      return true;
+    });
+    List<String> missingWords = new ArrayList<>();
+    createLexerWordsScanner().processWords(text, it -> {
+      if (it.getKind() == WordOccurrence.Kind.CODE && !searchableWords.contains(serialize(it))) {
+        missingWords.add(serialize(it));
+      }
+      return true;
+    });
+    assertEmpty(file.getName(), missingWords);
+  }
+
+  private static @NotNull String loadText(@NotNull File file) {
+    try {
+      return FileUtil.loadFile(file, CharsetToolkit.UTF8, true);
+    }
+    catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  private static @NotNull String serialize(@NotNull WordOccurrence occurrence) {
+    return occurrence.getStart() + ": " + occurrence.getBaseText().subSequence(occurrence.getStart(), occurrence.getEnd());
+  }
+
+  /**
+   * @return lexer-based scanner, used for words indexing before {@link PerlWordsScanner}
+   */
+  public static @NotNull WordsScanner createLexerWordsScanner() {
+    DefaultWordsScanner wordsScanner = new DefaultWordsScanner(
+      new PerlMergingLexerAdapter(PerlLexingContext.create(null).withEnforcedSublexing(true)),
+      PerlParserDefinition.IDENTIFIERS,
+      TokenSet.orSet(PerlParserDefinition.COMMENTS, TokenSet.create(PerlElementTypes.POD)),
+      PerlParserDefinition.LITERALS
+    );
+    wordsScanner.setMayHaveFileRefsInLiterals(true);
+    return wordsScanner;
+  }
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright 2015-2021 Alexandr Evstigneev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package unit.perl.parser;
+
+import base.PerlLightTestCase;
+import categories.Performance;
+import com.intellij.execution.filters.Filter;
+import com.intellij.testFramework.PlatformTestUtil;
+import com.perl5.lang.perl.idea.execution.filters.PerlAbsolutePathConsoleFilter;
+import com.perl5.lang.perl.idea.execution.filters.PerlConsoleFileLinkFilter;
+import org.jetbrains.annotations.NotNull;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Category(Performance.class)
+public class PerlConsoleFiltersPerformanceTest extends PerlLightTestCase {
+  private static final int LINES_NUMBER = 1_000_000;
+
+  @Test
+  public void testFileLinkFilter() {
+    doTest(new PerlConsoleFileLinkFilter(getProject(), () -> null), 1500);
+  }
+
+  @Test
+  public void testAbsolutePathFilter() {
+    doTest(new PerlAbsolutePathConsoleFilter(getProject(), () -> null), 1500);
+  }
+
+  private void doTest(@NotNull Filter filter, int expectedMs) {
+    List<String> lines = createTapLog();
+    int[] linksNumber = new int[1];
+    PlatformTestUtil.startPerformanceTest("Filtering " + LINES_NUMBER + " lines of TAP output", expectedMs, () -> {
+      linksNumber[0] = 0;
+      int entireLength = 0;
+      for (String line : lines) {
+        entireLength += line.length();
+        if (filter.applyFilter(line, entireLength) != null) {
+          linksNumber[0]++;
+        }
+      }
+    }).assertTiming();
+    assertTrue(linksNumber[0] > 0);
+  }
+
+  /**
+   * @return lines of verbose prove output with some failures, diagnostics and stack traces
+   */
+  private static @NotNull List<String> createTapLog() {
+    List<String> result = new ArrayList<>(LINES_NUMBER);
+    int testNumber = 0;
+    while (result.size() < LINES_NUMBER) {
+      testNumber++;
+      String testPath = "t/module" + testNumber % 100 + "/test" + testNumber + ".t";
+      result.add(testPath + " .. \n");
+      for (int i = 1; i <= 20; i++) {
+        if (i % 10 == 0) {
+          result.add("not ok " + i + " - comparing structures of the result, number " + i + "\n");
+          result.add("#   Failed test 'comparing structures of the result, number " + i + "'\n");
+          result.add("#   at " + testPath + " line " + (i * 10) + ".\n");
+          result.add("# Died at /home/user/perl5/lib/perl5/Some/Module.pm line 42, <STDIN> line 1.\n");
+          result.add("# \tSome::Module::method('Some::Module=HASH(0x55d5c8a3c2a0)') called at /usr/lib/perl5/Test/More.pm line 12\n");
+        }
+        else {
+          result.add("ok " + i + " - checking that everything is fine with the value " + i * 42 + "\n");
+        }
+      }
+      result.add("1..20\n");
+      result.add("# Looks like you failed 2 tests of 20.\n");
+      result.add("Dubious, test returned 2 (wstat 512, 0x200)\n");
+    }
+    return result;
+  }
+}
@@ -0,0 +1,135 @@
+/*
+ * Copyright 2015-2021 Alexandr Evstigneev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package unit.perl.parser;
+
+import base.PerlLightTestCase;
+import categories.Performance;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.testFramework.PlatformTestUtil;
+import com.perl5.lang.perl.debugger.protocol.PerlDebuggingEvent;
+import com.perl5.lang.perl.debugger.protocol.PerlDebuggingEventLoadedFiles;
+import com.perl5.lang.perl.debugger.protocol.PerlDebuggingEventStop;
+import com.perl5.lang.perl.debugger.protocol.PerlDebuggingEventsDeserializer;
+import com.perl5.lang.perl.debugger.protocol.PerlDebuggingFrameReader;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Replays synthetic debugger session from the local socket and measures events decoding throughput
+ */
+@Category(Performance.class)
+public class PerlDebuggerProtocolPerformanceTest extends PerlLightTestCase {
+  private static final Logger LOG = Logger.getInstance(PerlDebuggerProtocolPerformanceTest.class);
+  private static final int ITERATIONS = 200;
+  private static final int LOADED_FILES_NUMBER = 5_000;
+  private static final int FRAMES_NUMBER = 50;
+  private static final int VALUES_NUMBER = 100;
+
+  @Test
+  public void testEventsDecoding() throws Exception {
+    byte[] session = createSession().getBytes(StandardCharsets.UTF_8);
+    int expectedEvents = ITERATIONS * 2;
+    Gson gson = new GsonBuilder().registerTypeAdapter(PerlDebuggingEvent.class, new PerlDebuggingEventsDeserializer(null)).create();
+
+    PlatformTestUtil.startPerformanceTest("Debugger events decoding", 10_000, () -> {
+      long start = System.nanoTime();
+      int eventsNumber = replaySession(session, gson);
+      long elapsed = System.nanoTime() - start;
+      assertEquals(expectedEvents, eventsNumber);
+      LOG.info("Decoded " + eventsNumber + " events, " + (eventsNumber * 1_000_000_000L / Math.max(elapsed, 1)) + " events/sec");
+    }).assertTiming();
+  }
+
+  private static int replaySession(byte[] session, Gson gson) throws IOException {
+    try (ServerSocket serverSocket = new ServerSocket(0, 1, InetAddress.getLoopbackAddress())) {
+      Thread writer = new Thread(() -> {
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), serverSocket.getLocalPort())) {
+          OutputStream outputStream = socket.getOutputStream();
+          for (int i = 0; i < ITERATIONS; i++) {
+            outputStream.write(session);
+          }
+        }
+        catch (IOException e) {
+          throw new RuntimeException(e);
+        }
+      }, "Debugger session replay");
+      writer.start();
+
+      int eventsNumber = 0;
+      try (Socket socket = serverSocket.accept()) {
+        PerlDebuggingFrameReader frameReader = new PerlDebuggingFrameReader(socket.getInputStream());
+        while (frameReader.readFrame()) {
+          PerlDebuggingEvent event = gson.fromJson(frameReader.getFrameReader(), PerlDebuggingEvent.class);
+          assertTrue(event instanceof PerlDebuggingEventLoadedFiles || event instanceof PerlDebuggingEventStop);
+          eventsNumber++;
+        }
+      }
+      try {
+        writer.join();
+      }
+      catch (InterruptedException e) {
+        throw new RuntimeException(e);
+      }
+      return eventsNumber;
+    }
+  }
+
+  /**
+   * @return loaded files delta event with many files and stop event with deep stack and many variables
+   */
+  private static String createSession() {
+    StringBuilder sb = new StringBuilder();
+    sb.append("{\"event\":\"LOADED_FILES_DELTA\",\"data\":{\"add\":[");
+    for (int i = 0; i < LOADED_FILES_NUMBER; i++) {
+      if (i > 0) {
+        sb.append(',');
+      }
+      sb.append("{\"path\":\"/usr/lib/perl5/site_perl/Some/Module").append(i).append(".pm\",\"name\":\"Some/Module").append(i)
+        .append(".pm\"}");
+    }
+    sb.append("],\"remove\":[]}}\n");
+
+    sb.append("{\"event\":\"STOP\",\"data\":[");
+    for (int frame = 0; frame < FRAMES_NUMBER; frame++) {
+      if (frame > 0) {
+        sb.append(',');
+      }
+      sb.append("{\"file\":{\"path\":\"/home/user/app/lib/App/Module").append(frame).append(".pm\",\"name\":null},")
+        .append("\"line\":").append(frame * 10).append(",\"main_size\":1000,\"lexicals\":[");
+      for (int value = 0; value < VALUES_NUMBER; value++) {
+        if (value > 0) {
+          sb.append(',');
+        }
+        sb.append("{\"name\":\"$variable").append(value).append("\",\"type\":\"HASH\",\"value\":\"HASH(0x").append(value)
+          .append(")\",\"rendered\":null,\"render_error\":false,\"ref_depth\":1,\"key\":\"HASH(0x").append(value)
+          .append(")\",\"size\":").append(value).append(",\"blessed\":true,\"fileno\":null,\"layers\":null}");
+      }
+      sb.append("],\"globals\":[],\"args\":[]}");
+    }
+    sb.append("]}\n");
+    return sb.toString();
+  }
+}
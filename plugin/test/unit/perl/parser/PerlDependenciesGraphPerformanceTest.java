@@ -0,0 +1,93 @@
+/*
+ * Copyright 2015-2021 Alexandr Evstigneev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package unit.perl.parser;
+
+import base.PerlLightTestCase;
+import categories.Performance;
+import com.intellij.openapi.application.WriteAction;
+import com.intellij.openapi.command.WriteCommandAction;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.editor.Document;
+import com.intellij.openapi.fileEditor.FileDocumentManager;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.vfs.VfsUtil;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.PsiDocumentManager;
+import com.intellij.testFramework.PlatformTestUtil;
+import com.intellij.testFramework.fixtures.impl.CodeInsightTestFixtureImpl;
+import com.perl5.lang.perl.idea.project.PerlDependenciesGraph;
+import org.jetbrains.annotations.NotNull;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+@Category(Performance.class)
+public class PerlDependenciesGraphPerformanceTest extends PerlLightTestCase {
+  private static final Logger LOG = Logger.getInstance(PerlDependenciesGraphPerformanceTest.class);
+  private static final int MODULES_NUMBER = 20_000;
+
+  /**
+   * Each module uses two others, forming a graph with depth ~log2(N), where all modules depend on {@code Mod0}
+   */
+  @Test
+  public void testDependenciesGraph() throws Exception {
+    VirtualFile libDir = myFixture.getTempDirFixture().findOrCreateDir("lib");
+    VirtualFile[] modules = new VirtualFile[MODULES_NUMBER];
+    WriteAction.run(() -> {
+      for (int i = 0; i < MODULES_NUMBER; i++) {
+        modules[i] = libDir.createChildData(this, "Mod" + i + ".pm");
+        VfsUtil.saveText(modules[i], createModuleText(i));
+      }
+    });
+    markAsLibRoot(libDir, true);
+    Project project = getProject();
+    CodeInsightTestFixtureImpl.ensureIndexesUpToDate(project);
+    PerlDependenciesGraph graph = PerlDependenciesGraph.getInstance(project);
+
+    long start = System.currentTimeMillis();
+    assertSize(MODULES_NUMBER - 1, graph.getDependents(modules[0]));
+    LOG.warn("Dependents of " + MODULES_NUMBER + " modules computed in " + (System.currentTimeMillis() - start) + "ms");
+    assertSize(2, graph.getDirectDependencies(modules[MODULES_NUMBER - 1]));
+    assertContainsElements(graph.getDependencies(modules[MODULES_NUMBER - 1]), modules[0]);
+
+    Document document = FileDocumentManager.getInstance().getDocument(modules[MODULES_NUMBER / 2]);
+    assertNotNull(document);
+    PsiDocumentManager documentManager = PsiDocumentManager.getInstance(project);
+    final int iterations = 10;
+    PlatformTestUtil.startPerformanceTest("Dependencies of " + MODULES_NUMBER + " modules after changes", 500, () -> {
+      for (int i = 0; i < iterations; i++) {
+        String newSub = "sub newMethod" + i + "{}\n";
+        WriteCommandAction.runWriteCommandAction(project, () -> document.insertString(document.getTextLength(), newSub));
+        documentManager.commitDocument(document);
+        assertSize(MODULES_NUMBER - 1, graph.getDependents(modules[0]));
+        for (int j = MODULES_NUMBER - 100; j < MODULES_NUMBER; j++) {
+          graph.getDependencies(modules[j]);
+        }
+      }
+    }).assertTiming();
+  }
+
+  private static @NotNull String createModuleText(int index) {
+    StringBuilder sb = new StringBuilder();
+    sb.append("package Mod").append(index).append(";\n");
+    if (index > 0) {
+      sb.append("use Mod").append((index - 1) / 2).append(";\n");
+      sb.append("require 'Mod").append((index - 1) / 3).append(".pm';\n");
+    }
+    sb.append("sub method").append(index).append("{}\n");
+    return sb.toString();
+  }
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright 2015-2021 Alexandr Evstigneev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package unit.perl.parser;
+
+import base.PerlLightTestCase;
+import categories.Performance;
+import com.intellij.navigation.NavigationItem;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.project.Project;
+import com.intellij.testFramework.PlatformTestUtil;
+import com.intellij.testFramework.fixtures.impl.CodeInsightTestFixtureImpl;
+import com.intellij.util.CommonProcessors;
+import com.intellij.util.indexing.FindSymbolParameters;
+import com.perl5.lang.perl.idea.gotosearch.PerlGoToSubDefinitionContributor;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+@Category(Performance.class)
+public class PerlGotoSymbolPerformanceTest extends PerlLightTestCase {
+  private static final Logger LOG = Logger.getInstance(PerlGotoSymbolPerformanceTest.class);
+  private static final int FILES_NUMBER = 500;
+  private static final int SUBS_NUMBER = 1000;
+
+  @Test
+  public void testSubsNames() {
+    for (int i = 0; i < FILES_NUMBER; i++) {
+      StringBuilder sb = new StringBuilder();
+      sb.append("package Module").append(i).append(";\n");
+      for (int j = 0; j < SUBS_NUMBER; j++) {
+        sb.append("sub sub").append(j).append("{}\n");
+      }
+      myFixture.addFileToProject("Module" + i + ".pm", sb.toString());
+    }
+    Project project = getProject();
+    CodeInsightTestFixtureImpl.ensureIndexesUpToDate(project);
+
+    PerlGoToSubDefinitionContributor contributor = new PerlGoToSubDefinitionContributor();
+    FindSymbolParameters parameters = FindSymbolParameters.wrap("sub", project, false);
+    long start = System.currentTimeMillis();
+    AtomicInteger namesCounter = new AtomicInteger();
+    contributor.processNames(it -> namesCounter.incrementAndGet() > 0, parameters.getSearchScope(), parameters.getIdFilter());
+    LOG.warn(namesCounter.get() + " names processed in " + (System.currentTimeMillis() - start) + "ms");
+    assertTrue(namesCounter.get() >= FILES_NUMBER * SUBS_NUMBER);
+
+    CommonProcessors.CollectProcessor<NavigationItem> itemsCollector = new CommonProcessors.CollectProcessor<>();
+    contributor.processElementsWithName("Module0::sub0", itemsCollector, parameters);
+    assertSize(1, itemsCollector.getResults());
+
+    final int iterations = 10;
+    PlatformTestUtil.startPerformanceTest("Go to symbol with " + FILES_NUMBER * SUBS_NUMBER + " names", 5000, () -> {
+      for (int i = 0; i < iterations; i++) {
+        contributor.processNames(CommonProcessors.alwaysTrue(), parameters.getSearchScope(), parameters.getIdFilter());
+        for (int j = 0; j < FILES_NUMBER; j++) {
+          contributor.processElementsWithName("Module" + j + "::sub" + i, new CommonProcessors.CollectProcessor<>(), parameters);
+        }
+      }
+    }).assertTiming();
+  }
+}
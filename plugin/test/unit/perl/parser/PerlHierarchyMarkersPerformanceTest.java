@@ -0,0 +1,77 @@
+/*
+ * Copyright 2015-2021 Alexandr Evstigneev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package unit.perl.parser;
+
+import base.PerlLightTestCase;
+import categories.Performance;
+import com.intellij.codeInsight.daemon.GutterMark;
+import com.intellij.openapi.command.WriteCommandAction;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.editor.Document;
+import com.intellij.testFramework.PlatformTestUtil;
+import org.jetbrains.annotations.NotNull;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import java.util.List;
+
+@Category(Performance.class)
+public class PerlHierarchyMarkersPerformanceTest extends PerlLightTestCase {
+  private static final Logger LOG = Logger.getInstance(PerlHierarchyMarkersPerformanceTest.class);
+  private static final int METHODS_NUMBER = 500;
+  private static final int SUBCLASSES_NUMBER = 100;
+  private static final int OVERRIDES_NUMBER = METHODS_NUMBER / SUBCLASSES_NUMBER;
+
+  /**
+   * Base class with many methods, each of them is overridden in one of the subclasses
+   */
+  @Test
+  public void testBaseClassMarkers() {
+    for (int i = 0; i < SUBCLASSES_NUMBER; i++) {
+      StringBuilder sb = new StringBuilder();
+      sb.append("package Subclass").append(i).append(";\n");
+      sb.append("use parent -norequire, 'Base';\n");
+      for (int j = 0; j < OVERRIDES_NUMBER; j++) {
+        appendMethod(sb, i * OVERRIDES_NUMBER + j);
+      }
+      myFixture.addFileToProject("Subclass" + i + ".pm", sb.toString());
+    }
+    StringBuilder sb = new StringBuilder("package Base;\n");
+    for (int i = 0; i < METHODS_NUMBER; i++) {
+      appendMethod(sb, i);
+    }
+    initWithTextSmart(sb.toString());
+
+    long start = System.currentTimeMillis();
+    List<GutterMark> gutters = myFixture.findAllGutters();
+    LOG.warn("Markers for " + METHODS_NUMBER + " methods computed in " + (System.currentTimeMillis() - start) + "ms");
+    assertSize(METHODS_NUMBER + 1, gutters);
+
+    Document document = myFixture.getEditor().getDocument();
+    final int iterations = 10;
+    PlatformTestUtil.startPerformanceTest("Markers for " + METHODS_NUMBER + " methods", 3000, () -> {
+      for (int i = 0; i < iterations; i++) {
+        WriteCommandAction.runWriteCommandAction(getProject(), () -> document.insertString(document.getTextLength(), "\n# comment"));
+        assertSize(METHODS_NUMBER + 1, myFixture.findAllGutters());
+      }
+    }).assertTiming();
+  }
+
+  private static void appendMethod(@NotNull StringBuilder sb, int index) {
+    sb.append("sub method").append(index).append("{ my $self = shift; }\n");
+  }
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright 2015-2021 Alexandr Evstigneev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package unit.perl.parser;
+
+import base.PerlLightTestCase;
+import categories.Performance;
+import com.intellij.openapi.project.Project;
+import com.intellij.psi.search.GlobalSearchScope;
+import com.intellij.testFramework.PlatformTestUtil;
+import com.intellij.testFramework.fixtures.impl.CodeInsightTestFixtureImpl;
+import com.perl5.lang.perl.psi.mro.PerlMro;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import java.util.List;
+
+@Category(Performance.class)
+public class PerlMroPerformanceTest extends PerlLightTestCase {
+  private static final int CLASSES_NUMBER = 10_000;
+
+  @Test
+  public void testLinearIsaDfs() {
+    doTest(false);
+  }
+
+  @Test
+  public void testLinearIsaC3() {
+    doTest(true);
+  }
+
+  /**
+   * Each class has two parents, forming a diamond-rich hierarchy with depth ~log2(N)
+   */
+  private void doTest(boolean isC3) {
+    StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < CLASSES_NUMBER; i++) {
+      sb.append("package Class").append(i).append(";\n");
+      if (isC3) {
+        sb.append("use mro 'c3';\n");
+      }
+      if (i > 0) {
+        sb.append("use parent -norequire, 'Class").append((i - 1) / 2).append("', 'Class").append((i - 1) / 3).append("';\n");
+      }
+      sb.append("sub method").append(i).append("{}\n");
+    }
+    myFixture.addFileToProject("Hierarchy.pm", sb.toString());
+    Project project = getProject();
+    CodeInsightTestFixtureImpl.ensureIndexesUpToDate(project);
+    GlobalSearchScope searchScope = GlobalSearchScope.allScope(project);
+
+    List<String> linearIsa = PerlMro.getLinearISA(project, searchScope, "Class" + (CLASSES_NUMBER - 1), false);
+    assertTrue(linearIsa.size() > 10);
+
+    final int iterations = 10;
+    PlatformTestUtil.startPerformanceTest("Linear @ISA for " + CLASSES_NUMBER + " classes", 2000, () -> {
+      for (int iteration = 0; iteration < iterations; iteration++) {
+        for (int i = 0; i < CLASSES_NUMBER; i++) {
+          PerlMro.getLinearISA(project, searchScope, "Class" + i, false);
+        }
+      }
+    }).assertTiming();
+  }
+}
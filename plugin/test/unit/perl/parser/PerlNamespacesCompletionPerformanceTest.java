@@ -0,0 +1,84 @@
+/*
+ * Copyright 2015-2021 Alexandr Evstigneev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package unit.perl.parser;
+
+import base.PerlLightTestCase;
+import categories.Performance;
+import com.intellij.codeInsight.lookup.LookupManager;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.testFramework.PlatformTestUtil;
+import com.intellij.testFramework.fixtures.impl.CodeInsightTestFixtureImpl;
+import com.perl5.lang.perl.idea.project.PerlNamesCache;
+import com.perl5.lang.perl.idea.project.PerlNamesSnapshot;
+import org.jetbrains.annotations.NotNull;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import java.util.List;
+
+@Category(Performance.class)
+public class PerlNamespacesCompletionPerformanceTest extends PerlLightTestCase {
+  private static final Logger LOG = Logger.getInstance(PerlNamespacesCompletionPerformanceTest.class);
+  private static final int ROOTS_NUMBER = 100;
+  private static final int CHILDREN_NUMBER = 600;
+
+  @Test
+  public void testUnqualifiedPrefix() {
+    doTest("use Root1<caret>;", "Root1::Child0");
+  }
+
+  @Test
+  public void testQualifiedPrefix() {
+    doTest("use Root42::Child1<caret>;", "Root42::Child12");
+  }
+
+  private void doTest(@NotNull String text, @NotNull String expectedName) {
+    StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < ROOTS_NUMBER; i++) {
+      for (int j = 0; j < CHILDREN_NUMBER; j++) {
+        sb.append("package Root").append(i).append("::Child").append(j).append(";\n");
+      }
+    }
+    myFixture.addFileToProject("Library.pm", sb.toString());
+    CodeInsightTestFixtureImpl.ensureIndexesUpToDate(getProject());
+    PerlNamesCache.getInstance(getProject()).forceCacheUpdate();
+    PerlNamesSnapshot snapshot = PerlNamesCache.getInstance(getProject()).getSnapshot();
+    assertTrue(snapshot.isKnownNamespace(expectedName));
+
+    initWithTextSmart(text);
+    List<String> lookupStrings = completeAndGetLookupStrings();
+    assertContainsElements(lookupStrings, expectedName);
+
+    final int iterations = 50;
+    PlatformTestUtil.startPerformanceTest("Completing namespaces from " + ROOTS_NUMBER * CHILDREN_NUMBER, 10_000, () -> {
+      long start = System.nanoTime();
+      for (int i = 0; i < iterations; i++) {
+        completeAndGetLookupStrings();
+      }
+      long length = System.nanoTime() - start;
+      LOG.warn("Completion done in " + length / iterations / 1_000_000 + " ms per invocation");
+    }).assertTiming();
+  }
+
+  private @NotNull List<String> completeAndGetLookupStrings() {
+    myFixture.completeBasic();
+    List<String> result = myFixture.getLookupElementStrings();
+    LookupManager.getInstance(getProject()).hideActiveLookup();
+    assertNotNull(result);
+    return result;
+  }
+}
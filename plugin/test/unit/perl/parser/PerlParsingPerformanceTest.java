@@ -18,14 +18,20 @@ package unit.perl.parser;
 
 
 import categories.Performance;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.project.Project;
 import com.intellij.psi.PsiElement;
 import com.intellij.psi.PsiElementVisitor;
 import com.intellij.psi.PsiFile;
 import com.intellij.psi.tree.IElementType;
 import com.intellij.psi.tree.TokenSet;
 import com.intellij.psi.util.PsiUtilCore;
+import com.intellij.testFramework.PlatformTestUtil;
+import com.perl5.lang.perl.lexer.PerlLexingContext;
+import com.perl5.lang.perl.lexer.adapters.PerlMergingLexerAdapter;
 import gnu.trove.THashMap;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import org.junit.Test;
 import org.junit.experimental.categories.Category;
 
@@ -116,6 +122,49 @@ public class PerlParsingPerformanceTest extends PerlParserTestBase {
     //		analyzeFile(psiFile);
   }
 
+  @Test
+  public void testPerlTidyLexingWithProject() {
+    doTestLexingSpeed(getProject());
+  }
+
+  @Test
+  public void testPerlTidyLexingWithoutProject() {
+    doTestLexingSpeed(null);
+  }
+
+  /**
+   * Lexes perltidy source and reports tokens per second. Without project identifiers are not classified, so difference between two
+   * modes shows the price of names canonicalization and lookups
+   */
+  private void doTestLexingSpeed(@Nullable Project project) {
+    String testData = getPerlTidy();
+    PerlLexingContext lexingContext = PerlLexingContext.create(project).withEnforcedSublexing(true);
+    int tokensNumber = lexAll(lexingContext, testData);
+    assertTrue(tokensNumber > 0);
+
+    final int iterations = 30;
+    Logger logger = Logger.getInstance(PerlParsingPerformanceTest.class);
+    PlatformTestUtil.startPerformanceTest("Lexing " + tokensNumber + " tokens", 10_000, () -> {
+      long start = System.nanoTime();
+      for (int i = 0; i < iterations; i++) {
+        lexAll(lexingContext, testData);
+      }
+      long elapsed = Math.max(1, System.nanoTime() - start);
+      logger.warn(getTestName(true) + ": " + (long)((double)tokensNumber * iterations * 1_000_000_000L / elapsed) + " tokens/sec");
+    }).assertTiming();
+  }
+
+  private static int lexAll(@NotNull PerlLexingContext lexingContext, @NotNull String testData) {
+    PerlMergingLexerAdapter perlLexer = new PerlMergingLexerAdapter(lexingContext);
+    perlLexer.start(testData, 0, testData.length(), 0);
+    int tokensNumber = 0;
+    while (perlLexer.getTokenType() != null) {
+      tokensNumber++;
+      perlLexer.advance();
+    }
+    return tokensNumber;
+  }
+
   private void analyzeFile(PsiFile psiFile) {
     final Map<IElementType, Integer> tokensMap = new THashMap<>();
     final int[] totalTokens = new int[]{0};
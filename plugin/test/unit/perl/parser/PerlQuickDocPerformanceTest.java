@@ -0,0 +1,61 @@
+/*
+ * Copyright 2015-2021 Alexandr Evstigneev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package unit.perl.parser;
+
+import base.PerlLightTestCase;
+import categories.Performance;
+import com.intellij.psi.PsiElement;
+import com.intellij.testFramework.PlatformTestUtil;
+import com.perl5.lang.perl.documentation.PerlDocUtil;
+import com.perl5.lang.pod.parser.psi.PodSection;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import java.util.List;
+
+@Category(Performance.class)
+public class PerlQuickDocPerformanceTest extends PerlLightTestCase {
+  private static final List<String> FUNCTIONS = List.of(
+    "abs", "binmode", "chomp", "die", "each", "grep", "join", "keys", "local", "map", "open", "pack", "print", "ref", "return",
+    "sort", "splice", "sprintf", "substr", "tie", "unpack", "wantarray", "write", "-X");
+
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    withPerlPod528();
+  }
+
+  @Test
+  public void testBuiltInFunctionsDoc() {
+    initWithTextSmart("say 'hello';");
+    PsiElement origin = getFile();
+    for (String function : FUNCTIONS) {
+      PsiElement docElement = PerlDocUtil.resolveDoc("perlfunc", function, origin, false);
+      assertInstanceOf(docElement, PodSection.class);
+      assertNotNull(function, PerlDocUtil.renderElement((PodSection)docElement));
+    }
+
+    final int iterations = 100;
+    PlatformTestUtil.startPerformanceTest("Built-in functions documentation", 1000, () -> {
+      for (int i = 0; i < iterations; i++) {
+        for (String function : FUNCTIONS) {
+          PerlDocUtil.renderElement((PodSection)PerlDocUtil.resolveDoc("perlfunc", function, origin, false));
+        }
+      }
+    }).assertTiming();
+  }
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright 2015-2021 Alexandr Evstigneev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package unit.perl.parser;
+
+import base.PerlLightTestCase;
+import categories.Performance;
+import com.intellij.openapi.command.WriteCommandAction;
+import com.intellij.openapi.editor.Document;
+import com.intellij.psi.PsiDocumentManager;
+import com.intellij.psi.util.PsiTreeUtil;
+import com.intellij.testFramework.PlatformTestUtil;
+import com.perl5.lang.perl.psi.PerlVariable;
+import com.perl5.lang.perl.psi.mixins.PerlSubDefinitionBase;
+import com.perl5.lang.perl.psi.utils.PerlResolveUtil;
+import org.jetbrains.annotations.NotNull;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Infers values of all variables in a long sub with branches and loops. Each iteration changes the sub, so it starts with a fresh
+ * control flow
+ */
+@Category(Performance.class)
+public class PerlVariablesInferencePerformanceTest extends PerlLightTestCase {
+  private static final int STATEMENTS_NUMBER = 1_000;
+  private int myChangesCount = 0;
+
+  @Test
+  public void testLongSubInference() {
+    StringBuilder sb = new StringBuilder("package Foo;\nsub new{ return bless {}, shift }\nsub method{\n  my $self = shift;\n");
+    sb.append("  my $obj = Foo->new();\n");
+    for (int i = 0; i < STATEMENTS_NUMBER; i++) {
+      switch (i % 4) {
+        case 0:
+          sb.append("  $self->method").append(i).append("($obj);\n");
+          break;
+        case 1:
+          sb.append("  if( $self->check").append(i).append(" ){ $obj = Foo->new(").append(i).append("); }")
+            .append(" else { $obj->process($self); }\n");
+          break;
+        case 2:
+          sb.append("  for my $item").append(i).append(" (1..10){ $self->add($item").append(i).append(", $obj); }\n");
+          break;
+        default:
+          sb.append("  while( $obj->next ){ $self->step(").append(i).append("); last if $obj->done; }\n");
+      }
+    }
+    sb.append("  return $self;\n}\n");
+    initWithTextSmart(sb.toString());
+
+    assertTrue(getVariables().size() > STATEMENTS_NUMBER);
+
+    final int iterations = 10;
+    PlatformTestUtil.startPerformanceTest("Inference of variables", 5000, () -> {
+      for (int i = 0; i < iterations; i++) {
+        changeSubBody();
+        for (PerlVariable variable : getVariables()) {
+          PerlResolveUtil.inferVariableValue(variable);
+        }
+      }
+    }).assertTiming();
+  }
+
+  /**
+   * Changes the body of the sub, so its control flow is rebuilt
+   */
+  private void changeSubBody() {
+    Document document = getEditor().getDocument();
+    String returnStatement = "  return $self;";
+    int offset = document.getText().lastIndexOf(returnStatement) + returnStatement.length();
+    int lineEndOffset = document.getLineEndOffset(document.getLineNumber(offset));
+    WriteCommandAction.runWriteCommandAction(
+      getProject(), () -> document.replaceString(offset, lineEndOffset, " # change " + ++myChangesCount));
+    PsiDocumentManager.getInstance(getProject()).commitDocument(document);
+  }
+
+  private @NotNull List<PerlVariable> getVariables() {
+    PerlSubDefinitionBase subDefinition = PsiTreeUtil.findChildrenOfType(getFile(), PerlSubDefinitionBase.class).stream()
+      .filter(it -> "method".equals(it.getSubName())).findFirst().orElseThrow();
+    return PsiTreeUtil.findChildrenOfType(subDefinition, PerlVariable.class).stream()
+      .filter(it -> "self".equals(it.getName()) || "obj".equals(it.getName())).collect(Collectors.toList());
+  }
+}
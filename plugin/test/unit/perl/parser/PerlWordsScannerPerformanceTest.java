@@ -0,0 +1,98 @@
+/*
+ * Copyright 2015-2021 Alexandr Evstigneev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package unit.perl.parser;
+
+import categories.Performance;
+import com.intellij.lang.cacheBuilder.DefaultWordsScanner;
+import com.intellij.lang.cacheBuilder.WordOccurrence;
+import com.intellij.lang.cacheBuilder.WordsScanner;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.psi.tree.TokenSet;
+import com.perl5.lang.perl.PerlParserDefinition;
+import com.perl5.lang.perl.idea.findusages.PerlWordsScanner;
+import com.perl5.lang.perl.lexer.PerlElementTypes;
+import com.perl5.lang.perl.lexer.PerlLexingContext;
+import com.perl5.lang.perl.lexer.adapters.PerlMergingLexerAdapter;
+import org.jetbrains.annotations.NotNull;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.function.Supplier;
+
+@Category(Performance.class)
+public class PerlWordsScannerPerformanceTest extends PerlParserTestBase {
+  private static final Logger LOG = Logger.getInstance(PerlWordsScannerPerformanceTest.class);
+  private static final int ITERATIONS = 100;
+  private static final int MIN_SPEEDUP = 2;
+
+  @Test
+  public void testPerlTidyWordsScanning() {
+    String testData = getPerlTidy();
+
+    Set<String> lexerWords = collectWords(createLexerWordsScanner(), testData);
+    Set<String> scannerWords = collectWords(new PerlWordsScanner(), testData);
+    Set<String> missingWords = new HashSet<>(lexerWords);
+    missingWords.removeAll(scannerWords);
+    LOG.warn("Lexer words: " + lexerWords.size() + "; scanner words: " + scannerWords.size() + "; missing: " + missingWords);
+
+    long lexerTime = measure(PerlWordsScannerPerformanceTest::createLexerWordsScanner, testData);
+    long scannerTime = measure(PerlWordsScanner::new, testData);
+    LOG.warn("Words scanning, lexer: " + lexerTime + "ms, per iteration: " + lexerTime / ITERATIONS +
+             "; scanner: " + scannerTime + "ms, per iteration: " + scannerTime / ITERATIONS);
+    assertTrue("Scanner should be at least " + MIN_SPEEDUP + " times faster than lexer: " + scannerTime + "ms vs " + lexerTime + "ms",
+               scannerTime * MIN_SPEEDUP < lexerTime);
+  }
+
+  private static long measure(@NotNull Supplier<? extends WordsScanner> scannerSupplier, @NotNull String testData) {
+    long start = System.currentTimeMillis();
+    int[] counter = new int[1];
+    for (int i = 0; i < ITERATIONS; i++) {
+      scannerSupplier.get().processWords(testData, it -> {
+        counter[0]++;
+        return true;
+      });
+    }
+    return System.currentTimeMillis() - start;
+  }
+
+  private static @NotNull Set<String> collectWords(@NotNull WordsScanner wordsScanner, @NotNull String testData) {
+    Set<String> result = new HashSet<>();
+    wordsScanner.processWords(testData, it -> {
+      if (it.getKind() != WordOccurrence.Kind.FOREIGN_LANGUAGE) {
+        result.add(it.getBaseText().subSequence(it.getStart(), it.getEnd()).toString());
+      }
+      return true;
+    });
+    return result;
+  }
+
+  /**
+   * @return lexer-based scanner, used for words indexing before
+   */
+  private static @NotNull WordsScanner createLexerWordsScanner() {
+    DefaultWordsScanner wordsScanner = new DefaultWordsScanner(
+      new PerlMergingLexerAdapter(PerlLexingContext.create(null).withEnforcedSublexing(true)),
+      PerlParserDefinition.IDENTIFIERS,
+      TokenSet.orSet(PerlParserDefinition.COMMENTS, TokenSet.create(PerlElementTypes.POD)),
+      PerlParserDefinition.LITERALS
+    );
+    wordsScanner.setMayHaveFileRefsInLiterals(true);
+    return wordsScanner;
+  }
+}
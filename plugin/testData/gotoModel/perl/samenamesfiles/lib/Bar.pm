@@ -0,0 +1,7 @@
+package Bar;
+
+our (%VALUE, @LIST);
+
+$Foo::VALUE = 1;
+
+1;
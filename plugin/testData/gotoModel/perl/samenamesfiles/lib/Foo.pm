@@ -0,0 +1,9 @@
+package Foo;
+
+our ($VALUE, @LIST);
+
+package Foo::Inner;
+
+our $VALUE;
+
+1;
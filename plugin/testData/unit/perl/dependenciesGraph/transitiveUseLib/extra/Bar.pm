@@ -0,0 +1,3 @@
+package Bar;
+use Qux;
+1;
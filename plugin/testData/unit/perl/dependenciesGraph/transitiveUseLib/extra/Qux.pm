@@ -0,0 +1,2 @@
+package Qux;
+1;
@@ -0,0 +1,3 @@
+package Foo;
+use Bar;
+1;